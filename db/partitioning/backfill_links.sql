@@ -0,0 +1,116 @@
+-- Online backfill of the hash-partitioned links table ahead of migration V3.
+--
+--   psql "$DATABASE_URL" -v batch_size=10000 -f db/partitioning/backfill_links.sql
+--
+-- Run it against the previous release while it keeps serving traffic. A trigger mirrors every
+-- write on links into the new tables, and the procedure copies existing rows in id order,
+-- committing after each batch. The script can be interrupted and rerun; it resumes from the last
+-- committed batch. Once it reports completion, deploy the release containing V3, which then only
+-- swaps the tables.
+
+\if :{?batch_size}
+\else
+\set batch_size 10000
+\endif
+
+-- Same definitions as V3__partition_links_by_short_key.sql.
+CREATE TABLE IF NOT EXISTS links_partitioned (
+    id BIGINT NOT NULL DEFAULT nextval('links_id_seq'),
+    short_key VARCHAR(12) NOT NULL,
+    original_url VARCHAR(128) NOT NULL,
+    click_count INT DEFAULT 0,
+    PRIMARY KEY (short_key)
+) PARTITION BY HASH (short_key);
+
+CREATE TABLE IF NOT EXISTS link_urls (
+    original_url VARCHAR(128) NOT NULL,
+    short_key VARCHAR(12) NOT NULL,
+    PRIMARY KEY (original_url)
+) PARTITION BY HASH (original_url);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS links_p%s PARTITION OF links_partitioned '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+        EXECUTE format('CREATE TABLE IF NOT EXISTS link_urls_p%s PARTITION OF link_urls '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+    END LOOP;
+END $$;
+
+CREATE TABLE IF NOT EXISTS links_backfill_state (
+    id INT PRIMARY KEY CHECK (id = 1),
+    last_id BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT false
+);
+INSERT INTO links_backfill_state (id) VALUES (1) ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION links_mirror_to_partitioned() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO links_partitioned (id, short_key, original_url, click_count)
+        VALUES (NEW.id, NEW.short_key, NEW.original_url, NEW.click_count)
+        ON CONFLICT (short_key) DO UPDATE
+            SET original_url = EXCLUDED.original_url, click_count = EXCLUDED.click_count;
+        INSERT INTO link_urls (original_url, short_key) VALUES (NEW.original_url, NEW.short_key)
+        ON CONFLICT (original_url) DO UPDATE SET short_key = EXCLUDED.short_key;
+    ELSIF TG_OP = 'UPDATE' THEN
+        -- Rows not copied yet are picked up later by the backfill with their current values.
+        UPDATE links_partitioned
+        SET original_url = NEW.original_url, click_count = NEW.click_count
+        WHERE short_key = NEW.short_key;
+    ELSE
+        DELETE FROM links_partitioned WHERE short_key = OLD.short_key;
+        DELETE FROM link_urls WHERE original_url = OLD.original_url AND short_key = OLD.short_key;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS links_mirror_to_partitioned ON links;
+CREATE TRIGGER links_mirror_to_partitioned
+    AFTER INSERT OR UPDATE OR DELETE ON links
+    FOR EACH ROW EXECUTE FUNCTION links_mirror_to_partitioned();
+
+-- FOR SHARE holds off click-count updates on the batch being copied, so a copy never overwrites
+-- an update the trigger has already mirrored.
+CREATE OR REPLACE PROCEDURE backfill_links_partitioned(batch_size INT) AS $$
+DECLARE
+    from_id BIGINT;
+    to_id BIGINT;
+BEGIN
+    LOOP
+        SELECT last_id INTO from_id FROM links_backfill_state WHERE id = 1;
+
+        WITH batch AS (
+            SELECT id, short_key, original_url, click_count FROM links
+            WHERE id > from_id
+            ORDER BY id
+            LIMIT batch_size
+            FOR SHARE
+        ), copied_links AS (
+            INSERT INTO links_partitioned (id, short_key, original_url, click_count)
+            SELECT id, short_key, original_url, click_count FROM batch
+            ON CONFLICT DO NOTHING
+        ), copied_urls AS (
+            INSERT INTO link_urls (original_url, short_key)
+            SELECT original_url, short_key FROM batch
+            ON CONFLICT DO NOTHING
+        )
+        SELECT max(id) INTO to_id FROM batch;
+
+        IF to_id IS NULL THEN
+            UPDATE links_backfill_state SET completed = true WHERE id = 1;
+            COMMIT;
+            RAISE NOTICE 'links backfill completed';
+            RETURN;
+        END IF;
+
+        UPDATE links_backfill_state SET last_id = to_id WHERE id = 1;
+        COMMIT;
+        RAISE NOTICE 'links backfilled up to id %', to_id;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CALL backfill_links_partitioned(:batch_size);
@@ -0,0 +1,2 @@
+\set n random(1, 10000000)
+UPDATE bench_partitioned.links SET click_count = click_count + 1 WHERE short_key = 'k' || :n;
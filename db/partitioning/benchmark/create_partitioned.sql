@@ -0,0 +1,10 @@
+\set n random(10000001, 2000000000)
+WITH claimed AS (
+    INSERT INTO bench_partitioned.link_digests (url_digest, short_key)
+    VALUES (md5('https://bench.example/new/' || :n)::uuid, 'n' || :n)
+    ON CONFLICT DO NOTHING
+    RETURNING short_key
+)
+INSERT INTO bench_partitioned.links (short_key, original_url, click_count)
+SELECT short_key, 'https://bench.example/new/' || :n, 0 FROM claimed
+ON CONFLICT DO NOTHING;
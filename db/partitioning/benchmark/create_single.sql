@@ -0,0 +1,4 @@
+\set n random(10000001, 2000000000)
+INSERT INTO bench_single.links (short_key, original_url, click_count)
+VALUES ('n' || :n, 'https://bench.example/new/' || :n, 0)
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,2 @@
+\set n random(1, 10000000)
+SELECT original_url FROM bench_single.links WHERE short_key = 'k' || :n;
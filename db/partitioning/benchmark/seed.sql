@@ -0,0 +1,59 @@
+-- Fills two copies of the links schema with the same rows for pgbench comparison:
+-- bench_single mirrors V1 (one heap, duplicate indexes), bench_partitioned mirrors V4.
+--
+--   psql "$DATABASE_URL" -v rows=10000000 -f db/partitioning/benchmark/seed.sql
+
+\if :{?rows}
+\else
+\set rows 10000000
+\endif
+
+DROP SCHEMA IF EXISTS bench_single CASCADE;
+DROP SCHEMA IF EXISTS bench_partitioned CASCADE;
+CREATE SCHEMA bench_single;
+CREATE SCHEMA bench_partitioned;
+
+CREATE TABLE bench_single.links (
+    id BIGSERIAL PRIMARY KEY,
+    short_key VARCHAR(12) UNIQUE NOT NULL,
+    original_url VARCHAR(128) UNIQUE NOT NULL,
+    click_count INT DEFAULT 0
+);
+CREATE INDEX idx_short_key ON bench_single.links(short_key);
+CREATE INDEX idx_original_url ON bench_single.links(original_url);
+
+CREATE SEQUENCE bench_partitioned.links_id_seq;
+CREATE TABLE bench_partitioned.links (
+    id BIGINT NOT NULL DEFAULT nextval('bench_partitioned.links_id_seq'),
+    short_key VARCHAR(12) NOT NULL,
+    original_url VARCHAR(4096) NOT NULL,
+    click_count INT DEFAULT 0,
+    PRIMARY KEY (short_key)
+) PARTITION BY HASH (short_key);
+CREATE TABLE bench_partitioned.link_digests (
+    url_digest UUID NOT NULL,
+    short_key VARCHAR(12) NOT NULL,
+    PRIMARY KEY (url_digest)
+) PARTITION BY HASH (url_digest);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE bench_partitioned.links_p%s PARTITION OF bench_partitioned.links '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+        EXECUTE format('CREATE TABLE bench_partitioned.link_digests_p%s PARTITION OF bench_partitioned.link_digests '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+    END LOOP;
+END $$;
+
+-- Key n is 'k' || n and its URL is https://bench.example/n, so pgbench scripts can derive both.
+INSERT INTO bench_single.links (short_key, original_url)
+SELECT 'k' || n, 'https://bench.example/' || n FROM generate_series(1, :rows) AS n;
+INSERT INTO bench_partitioned.links (short_key, original_url)
+SELECT 'k' || n, 'https://bench.example/' || n FROM generate_series(1, :rows) AS n;
+INSERT INTO bench_partitioned.link_digests (url_digest, short_key)
+SELECT md5('https://bench.example/' || n)::uuid, 'k' || n FROM generate_series(1, :rows) AS n;
+
+VACUUM ANALYZE bench_single.links;
+VACUUM ANALYZE bench_partitioned.links;
+VACUUM ANALYZE bench_partitioned.link_digests;
@@ -0,0 +1,58 @@
+// Redirect load test for comparing platform-thread and virtual-thread modes.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e KEYS=abc123,def456 loadtest/redirect.js
+//
+// Run it once against the default profile and once with SPRING_PROFILES_ACTIVE=virtual,
+// then compare the http_req_duration p(99) lines of both summaries.
+//
+// All virtual users share one client address, so start the application with rate limits off,
+// e.g. LINK_SHORTER_RATE_LIMIT_ENABLED=false docker-compose up -d; otherwise most redirects
+// get 429 and the summary measures the limiter. The run stops at once if it sees a 429.
+import http from 'k6/http';
+import { check } from 'k6';
+import exec from 'k6/execution';
+
+const baseUrl = __ENV.BASE_URL || 'http://localhost:8080';
+const keys = (__ENV.KEYS || '').split(',').filter((key) => key.length > 0);
+
+export const options = {
+  scenarios: {
+    redirects: {
+      executor: 'constant-vus',
+      vus: Number(__ENV.VUS || 2000),
+      duration: __ENV.DURATION || '2m',
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+  thresholds: {
+    checks: ['rate>0.99'],
+  },
+};
+
+export function setup() {
+  if (keys.length > 0) {
+    return { keys };
+  }
+  const created = [];
+  for (let i = 0; i < 100; i++) {
+    const response = http.post(`${baseUrl}/api/links/`,
+      JSON.stringify({ url: `https://load-test-${i}.example.com`, len: 6 }),
+      { headers: { 'Content-Type': 'application/json' } });
+    abortIfThrottled(response);
+    created.push(response.json('shortKey'));
+  }
+  return { keys: created };
+}
+
+export default function (data) {
+  const key = data.keys[Math.floor(Math.random() * data.keys.length)];
+  const response = http.get(`${baseUrl}/${key}`, { redirects: 0 });
+  abortIfThrottled(response);
+  check(response, { 'is 302': (r) => r.status === 302 });
+}
+
+function abortIfThrottled(response) {
+  if (response.status === 429) {
+    exec.test.abort('Rate limited: start the application with LINK_SHORTER_RATE_LIMIT_ENABLED=false');
+  }
+}
@@ -0,0 +1,146 @@
+package ru.mws.link_shorter.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.cache.LinkCache;
+import ru.mws.link_shorter.cache.NoOpSharedLinkCache;
+import ru.mws.link_shorter.cache.ProxyCachePurger;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.keygen.ShortKeyAllocator;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+import ru.mws.link_shorter.repository.LinkStore;
+import ru.mws.link_shorter.repository.TrendingRepository;
+import ru.mws.link_shorter.repository.VisitorSketchRepository;
+import ru.mws.link_shorter.service.ClickAnalytics;
+import ru.mws.link_shorter.service.ClickCounter;
+import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
+import ru.mws.link_shorter.service.VisitorCounter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+final class BenchmarkFixtures {
+  private BenchmarkFixtures() {
+  }
+
+  static ShorterService shorterService(LinkStore linkStore) {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    TrendingLinks trendingLinks = new TrendingLinks(absent(TrendingRepository.class), 1000, Duration.ofSeconds(30),
+        Duration.ofSeconds(5));
+    ClickCounter clickCounter = new ClickCounter(linkStore, trendingLinks, meterRegistry, 100_000, 500, false);
+    ClickAnalytics clickAnalytics = new ClickAnalytics(new ClickStatsRepository(null, null, meterRegistry), meterRegistry,
+        200_000, 1000);
+    VisitorCounter visitorCounter = new VisitorCounter(new VisitorSketchRepository(null, null, meterRegistry),
+        meterRegistry, Integer.MAX_VALUE, 500, false);
+    LinkCache linkCache = new LinkCache(100_000, Duration.ofHours(1), Duration.ofMinutes(1), DataSize.ofBytes(0), meterRegistry);
+    ShortKeyAllocator allocator = new ShortKeyAllocator(linkStore, 1000);
+    return new ShorterService(linkStore, clickCounter, present(ClickAnalytics.class, clickAnalytics),
+        present(VisitorCounter.class, visitorCounter), linkCache, new NoOpSharedLinkCache(),
+        new ProxyCachePurger(List.of(), Duration.ofSeconds(2), meterRegistry), allocator, new LinkMetrics(meterRegistry));
+  }
+
+  static <T> ObjectProvider<T> absent(Class<T> type) {
+    return new StaticListableBeanFactory().getBeanProvider(type);
+  }
+
+  static <T> ObjectProvider<T> present(Class<T> type, T bean) {
+    return new StaticListableBeanFactory(Map.of(type.getSimpleName(), bean)).getBeanProvider(type);
+  }
+
+  /**
+   * Link store stand-in: lookups read the given map, key blocks come from local counters, and every
+   * single-row insert reports a short key conflict with the given probability.
+   */
+  static final class StubLinkStore implements LinkStore {
+    private final Map<Integer, AtomicLong> blocks = new ConcurrentHashMap<>();
+    private final Map<String, LinkDto> linksByShortKey;
+    private final double collisionRate;
+
+    StubLinkStore(double collisionRate) {
+      this(collisionRate, Map.of());
+    }
+
+    StubLinkStore(double collisionRate, Map<String, LinkDto> linksByShortKey) {
+      this.collisionRate = collisionRate;
+      this.linksByShortKey = linksByShortKey;
+    }
+
+    @Override
+    public Optional<LinkDto> findByShortKey(String shortKey) {
+      return Optional.ofNullable(linksByShortKey.get(shortKey));
+    }
+
+    @Override
+    public List<LinkDto> findAllByShortKeyIn(Collection<String> shortKeys) {
+      return shortKeys.stream().map(linksByShortKey::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public Optional<LinkDto> findByOriginalUrl(String originalUrl) {
+      return linksByShortKey.values().stream().filter(link -> link.originalUrl().equals(originalUrl)).findFirst();
+    }
+
+    @Override
+    public List<LinkDto> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+      return linksByShortKey.values().stream().filter(link -> originalUrls.contains(link.originalUrl())).toList();
+    }
+
+    @Override
+    public Optional<LinkDto> findForRedirect(String shortKey) {
+      return findByShortKey(shortKey);
+    }
+
+    @Override
+    public boolean insertIfAbsent(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt) {
+      return ThreadLocalRandom.current().nextDouble() >= collisionRate;
+    }
+
+    @Override
+    public Set<String> insertAllIfAbsent(Map<String, String> originalUrlsByShortKey) {
+      return originalUrlsByShortKey.keySet();
+    }
+
+    @Override
+    public long nextKeyBlock(int keyLength) {
+      return blocks.computeIfAbsent(keyLength, len -> new AtomicLong()).getAndIncrement();
+    }
+
+    @Override
+    public void incrementClickCounts(Map<String, Long> clicksByShortKey, int batchSize) {
+    }
+
+    @Override
+    public boolean delete(String shortKey) {
+      return linksByShortKey.containsKey(shortKey);
+    }
+
+    @Override
+    public int deleteExpired(Instant now, int limit) {
+      return 0;
+    }
+
+    @Override
+    public Stream<LinkDto> streamHottestLinks(int limit, int fetchSize, int timeoutSeconds) {
+      return Stream.empty();
+    }
+  }
+
+  static List<String> shortKeys(Map<String, LinkDto> linksByShortKey) {
+    return List.copyOf(linksByShortKey.keySet());
+  }
+}
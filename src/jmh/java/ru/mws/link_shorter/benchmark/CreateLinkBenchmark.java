@@ -0,0 +1,39 @@
+package ru.mws.link_shorter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.mws.link_shorter.exception.ShortKeyUnavailable;
+import ru.mws.link_shorter.service.ShorterService;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CreateLinkBenchmark {
+  @Param({"6", "12"})
+  private int length;
+
+  // Share of inserts that hit an existing key, e.g. one left over from the old hash-based keys.
+  @Param({"0.0", "0.1", "0.5"})
+  private double collisionRate;
+
+  private ShorterService shorterService;
+  private long url;
+
+  @Setup
+  public void setUp() {
+    shorterService = BenchmarkFixtures.shorterService(new BenchmarkFixtures.StubLinkStore(collisionRate));
+  }
+
+  @Benchmark
+  public Object createUnderCollisionPressure() {
+    try {
+      return shorterService.createShortLinkWithLen("https://bench-" + url++ + ".example.com", length);
+    } catch (ShortKeyUnavailable e) {
+      return e;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package ru.mws.link_shorter.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.cache.LinkCache;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Redirect cache lookups over a large hot set: a plain map on the heap, the Caffeine cache and the
+ * off-heap table behind the same cache. The heap and direct memory each variant holds per link is
+ * printed after setup, since JMH only measures time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class HotLinkTableBenchmark {
+  private static final Function<String, Optional<String>> NO_LOAD = shortKey -> Optional.empty();
+
+  @Param({"1000000"})
+  private int links;
+
+  @Param({"MAP", "CAFFEINE", "OFF_HEAP"})
+  private String table;
+
+  private Map<String, String> map;
+  private LinkCache linkCache;
+  private String[] shortKeys;
+
+  @Setup
+  public void setUp() {
+    shortKeys = new String[links];
+    for (int i = 0; i < links; i++) {
+      shortKeys[i] = ShortKeyCodec.encode(i * 7919L, 7);
+    }
+    long heapBefore = heapUsed();
+    long directBefore = directUsed();
+    if (table.equals("MAP")) {
+      map = new ConcurrentHashMap<>();
+    } else {
+      DataSize offHeapSize = table.equals("OFF_HEAP") ? DataSize.ofBytes(links * 96L) : DataSize.ofBytes(0);
+      linkCache = new LinkCache(links, Duration.ofHours(1), Duration.ofMinutes(1), offHeapSize, new SimpleMeterRegistry());
+    }
+    for (int i = 0; i < links; i++) {
+      String location = "https://bench-" + i + ".example.com/some/long/path?with=query";
+      if (map != null) {
+        map.put(shortKeys[i], location);
+      } else {
+        linkCache.put(shortKeys[i], location);
+      }
+    }
+    long heap = heapUsed() - heapBefore;
+    long direct = directUsed() - directBefore;
+    System.out.printf("%n%s: %d heap + %d direct bytes per link%n", table, heap / links, direct / links);
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Benchmark
+  public String lookup(Cursor cursor) {
+    cursor.next = (cursor.next + 104729) % shortKeys.length;
+    String shortKey = shortKeys[cursor.next];
+    return map != null ? map.get(shortKey) : linkCache.get(shortKey, NO_LOAD).orElse(null);
+  }
+
+  private static long heapUsed() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long directUsed() {
+    return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+        .filter(pool -> pool.getName().equals("direct"))
+        .mapToLong(BufferPoolMXBean::getMemoryUsed)
+        .sum();
+  }
+}
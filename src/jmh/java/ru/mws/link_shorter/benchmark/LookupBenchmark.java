@@ -0,0 +1,95 @@
+package ru.mws.link_shorter.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import ru.mws.link_shorter.controller.PageController;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.RedirectLocations;
+import ru.mws.link_shorter.service.ShorterService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+  private static final int LINKS = 10_000;
+
+  @Param({"true", "false"})
+  private boolean urlHasScheme;
+
+  private ShorterService shorterService;
+  private PageController pageController;
+  private MockHttpServletRequest redirectRequest;
+  private ObjectMapper objectMapper;
+  private List<String> shortKeys;
+  private List<String> originalUrls;
+  private LinkDto linkDto;
+
+  @Setup
+  public void setUp() {
+    Map<String, LinkDto> links = new HashMap<>();
+    for (int i = 0; i < LINKS; i++) {
+      String shortKey = ShortKeyCodec.encode(i, 6);
+      String host = "bench-" + i + ".example.com/some/long/path?with=query";
+      links.put(shortKey, new LinkDto(shortKey, urlHasScheme ? "https://" + host : host, 0));
+    }
+    shortKeys = BenchmarkFixtures.shortKeys(links);
+    originalUrls = links.values().stream().map(LinkDto::originalUrl).toList();
+    shorterService = BenchmarkFixtures.shorterService(new BenchmarkFixtures.StubLinkStore(0, links));
+    pageController = new PageController(shorterService, new LinkMetrics(new SimpleMeterRegistry()), new AccessLog(0.01),
+        "X-Country-Code", "X-Real-IP");
+    redirectRequest = new MockHttpServletRequest();
+    redirectRequest.addHeader(HttpHeaders.REFERER, "https://t.me/some_channel/123");
+    redirectRequest.addHeader("X-Country-Code", "DE");
+    redirectRequest.addHeader("X-Real-IP", "203.0.113.7");
+    redirectRequest.addHeader(HttpHeaders.USER_AGENT, "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X)");
+    objectMapper = new ObjectMapper();
+    linkDto = new LinkDto(shortKeys.get(0), "https://example.com/very/long/url", 42);
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Benchmark
+  public LinkDto getOriginalLinkByShortKey(Cursor cursor) {
+    return shorterService.getOriginalLinkByShortKey(nextKey(cursor));
+  }
+
+  @Benchmark
+  public ResponseEntity<String> redirect(Cursor cursor) {
+    return pageController.redirect(nextKey(cursor), redirectRequest);
+  }
+
+  @Benchmark
+  public String normalizeLocation(Cursor cursor) {
+    cursor.next = (cursor.next + 1) % originalUrls.size();
+    return RedirectLocations.normalize(originalUrls.get(cursor.next));
+  }
+
+  @Benchmark
+  public byte[] serializeLinkDto() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(linkDto);
+  }
+
+  private String nextKey(Cursor cursor) {
+    cursor.next = (cursor.next + 1) % shortKeys.size();
+    return shortKeys.get(cursor.next);
+  }
+}
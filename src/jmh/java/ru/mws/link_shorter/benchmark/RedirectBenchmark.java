@@ -0,0 +1,82 @@
+package ru.mws.link_shorter.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.mws.link_shorter.controller.FastRedirectFilter;
+import ru.mws.link_shorter.controller.PageController;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ShorterService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * A cached redirect through the whole servlet stack: DispatcherServlet and {@link PageController}
+ * against {@link FastRedirectFilter} in front of them. Run with {@code -prof gc} for the allocation
+ * rate per redirect.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectBenchmark {
+  private static final int LINKS = 10_000;
+
+  private MockMvc mvc;
+  private MockMvc fastPath;
+  private List<String> shortKeys;
+
+  @Setup
+  public void setUp() throws Exception {
+    Map<String, LinkDto> links = new HashMap<>();
+    for (int i = 0; i < LINKS; i++) {
+      String shortKey = ShortKeyCodec.encode(i, 6);
+      links.put(shortKey, new LinkDto(shortKey, "https://bench-" + i + ".example.com/some/long/path?with=query", 0));
+    }
+    shortKeys = BenchmarkFixtures.shortKeys(links);
+    ShorterService shorterService = BenchmarkFixtures.shorterService(new BenchmarkFixtures.StubLinkStore(0, links));
+    LinkMetrics linkMetrics = new LinkMetrics(new SimpleMeterRegistry());
+    AccessLog accessLog = new AccessLog(0.01);
+    PageController pageController = new PageController(shorterService, linkMetrics, accessLog, "X-Country-Code", "X-Real-IP");
+
+    mvc = MockMvcBuilders.standaloneSetup(pageController).build();
+    fastPath = MockMvcBuilders.standaloneSetup(pageController)
+        .addFilters(new FastRedirectFilter(shorterService, linkMetrics, accessLog, "X-Country-Code", "X-Real-IP"))
+        .build();
+    for (String shortKey : shortKeys) {
+      shorterService.getRedirectLocation(shortKey);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Benchmark
+  public MvcResult mvc(Cursor cursor) throws Exception {
+    return mvc.perform(get("/" + nextKey(cursor)).header("X-Real-IP", "203.0.113.7")).andReturn();
+  }
+
+  @Benchmark
+  public MvcResult fastPath(Cursor cursor) throws Exception {
+    return fastPath.perform(get("/" + nextKey(cursor)).header("X-Real-IP", "203.0.113.7")).andReturn();
+  }
+
+  private String nextKey(Cursor cursor) {
+    cursor.next = (cursor.next + 1) % shortKeys.size();
+    return shortKeys.get(cursor.next);
+  }
+}
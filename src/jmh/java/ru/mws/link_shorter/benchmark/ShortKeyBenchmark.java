@@ -0,0 +1,35 @@
+package ru.mws.link_shorter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.mws.link_shorter.keygen.ShortKeyAllocator;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShortKeyBenchmark {
+  @Param({"6", "12"})
+  private int length;
+
+  private ShortKeyAllocator allocator;
+  private long id;
+
+  @Setup
+  public void setUp() {
+    allocator = new ShortKeyAllocator(new BenchmarkFixtures.StubLinkStore(0), 1000);
+  }
+
+  @Benchmark
+  public String encode() {
+    return ShortKeyCodec.encode(id++ & 0xFFFFFFFL, length);
+  }
+
+  @Benchmark
+  public String allocate() {
+    return allocator.allocate(length);
+  }
+}
@@ -0,0 +1,177 @@
+package ru.mws.link_shorter.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.repository.LinkStore;
+import ru.mws.link_shorter.service.RedirectLocations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Fills {@link LinkCache} before the instance reports ready: first with the hot keys the previous
+ * instance saved on shutdown, then with the most clicked links from the {@link LinkStore}. The
+ * snapshot keeps only keys and their locations are read again from the store, so links deleted,
+ * changed or expired since the snapshot was taken are not served from it. Boot
+ * switches readiness to ACCEPTING_TRAFFIC only after ApplicationReadyEvent listeners return, so
+ * warm-up runs inside the listener and stops at its deadline.
+ */
+@Component
+public class CacheWarmer {
+  private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+  private final LinkCache linkCache;
+  private final LinkStore linkStore;
+  private final int topN;
+  private final int fetchSize;
+  private final Duration timeout;
+  private final Path snapshotPath;
+  private final Duration snapshotMaxAge;
+
+  public CacheWarmer(LinkCache linkCache,
+                     LinkStore linkStore,
+                     @Value("${link-shorter.cache.warmup.top-n:10000}") int topN,
+                     @Value("${link-shorter.cache.warmup.fetch-size:1000}") int fetchSize,
+                     @Value("${link-shorter.cache.warmup.timeout:30s}") Duration timeout,
+                     @Value("${link-shorter.cache.warmup.snapshot-path:}") String snapshotPath,
+                     @Value("${link-shorter.cache.warmup.snapshot-max-age:24h}") Duration snapshotMaxAge) {
+    this.linkCache = linkCache;
+    this.linkStore = linkStore;
+    this.topN = topN;
+    this.fetchSize = fetchSize;
+    this.timeout = timeout;
+    this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    this.snapshotMaxAge = snapshotMaxAge;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    long start = System.nanoTime();
+    long deadline = start + timeout.toNanos();
+    int fromSnapshot = loadSnapshot(deadline);
+    int fromDatabase = loadHottestLinks(deadline);
+    logger.info("Cache warm-up loaded {} links from snapshot and {} from database in {} ms", fromSnapshot,
+        fromDatabase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  @PreDestroy
+  public void saveSnapshot() {
+    if (snapshotPath == null) {
+      return;
+    }
+    Set<String> hottest = linkCache.hottest(topN).keySet();
+    try {
+      Path directory = snapshotPath.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      Path temporary = Files.createTempFile(directory, "hot-links", ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        for (String shortKey : hottest) {
+          writer.write(shortKey);
+          writer.newLine();
+        }
+      }
+      Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      logger.info("Saved {} hot links to {}", hottest.size(), snapshotPath);
+    } catch (IOException e) {
+      logger.warn("Failed to save hot links to {}", snapshotPath, e);
+    }
+  }
+
+  // One short key per line; a snapshot of an older version also has the location after a tab.
+  private int loadSnapshot(long deadline) {
+    if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+      return 0;
+    }
+    List<String> shortKeys = new ArrayList<>();
+    try {
+      Instant savedAt = Files.getLastModifiedTime(snapshotPath).toInstant();
+      if (savedAt.plus(snapshotMaxAge).isBefore(Instant.now())) {
+        logger.info("Ignoring hot links snapshot {} saved at {}", snapshotPath, savedAt);
+        return 0;
+      }
+      try (BufferedReader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null && shortKeys.size() < topN) {
+          int tab = line.indexOf('\t');
+          String shortKey = tab < 0 ? line : line.substring(0, tab);
+          if (!shortKey.isEmpty()) {
+            shortKeys.add(shortKey);
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to read hot links snapshot {}", snapshotPath, e);
+      return 0;
+    }
+    int loaded = 0;
+    try {
+      for (int from = 0; from < shortKeys.size() && System.nanoTime() < deadline; from += fetchSize) {
+        List<String> chunk = shortKeys.subList(from, Math.min(shortKeys.size(), from + fetchSize));
+        for (LinkDto link : linkStore.findAllByShortKeyIn(chunk)) {
+          if (put(link)) {
+            loaded++;
+          }
+        }
+      }
+    } catch (DataAccessException e) {
+      logger.warn("Cache warm-up from snapshot failed, continuing with the database", e);
+    }
+    return loaded;
+  }
+
+  private int loadHottestLinks(long deadline) {
+    if (topN <= 0 || System.nanoTime() >= deadline) {
+      return 0;
+    }
+    int timeoutSeconds = (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()));
+    try {
+      int count = 0;
+      try (Stream<LinkDto> links = linkStore.streamHottestLinks(topN, fetchSize, timeoutSeconds)) {
+        Iterator<LinkDto> iterator = links.iterator();
+        while (iterator.hasNext() && System.nanoTime() < deadline) {
+          if (put(iterator.next())) {
+            count++;
+          }
+        }
+      }
+      return count;
+    } catch (DataAccessException e) {
+      logger.warn("Cache warm-up from database failed, continuing cold", e);
+      return 0;
+    }
+  }
+
+  private boolean put(LinkDto link) {
+    try {
+      String location = RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt());
+      if (RedirectLocations.isExpired(location)) {
+        return false;
+      }
+      linkCache.put(link.shortKey(), location);
+      return true;
+    } catch (IllegalArgumentException e) {
+      logger.debug("Skipping link {} with an invalid URL", link.shortKey());
+      return false;
+    }
+  }
+}
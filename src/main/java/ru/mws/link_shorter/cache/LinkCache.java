@@ -0,0 +1,204 @@
+package ru.mws.link_shorter.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.service.RedirectLocations;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded shortKey -> redirect location cache in front of the database. Unknown keys are cached too,
+ * with a shorter TTL, so random key scans do not reach Postgres.
+ * <p>
+ * Concurrent misses for one key share a single load. The load runs on the calling thread outside
+ * of any map lock, so a virtual thread waiting on JDBC does not pin its carrier.
+ * {@link #getAsync} serves the reactive mode, where the load is itself non-blocking.
+ * <p>
+ * With {@code link-shorter.cache.off-heap.size} set, known locations move to an
+ * {@link OffHeapLinkTable} once loaded, and the on-heap cache keeps only unknown keys and loads in
+ * flight. This holds millions of hot links without growing the heap the GC has to walk.
+ * <p>
+ * A link that expires is refused by every read from its expiry on and becomes a known-missing key.
+ */
+@Component
+public class LinkCache {
+  private static final String MISSING = "";
+
+  private final AsyncCache<String, String> cache;
+  private final OffHeapLinkTable hotLinks;
+
+  public LinkCache(@Value("${link-shorter.cache.max-size:100000}") long maxSize,
+                   @Value("${link-shorter.cache.ttl:1h}") Duration ttl,
+                   @Value("${link-shorter.cache.negative-ttl:1m}") Duration negativeTtl,
+                   @Value("${link-shorter.cache.off-heap.size:0}") DataSize offHeapSize,
+                   MeterRegistry meterRegistry) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfter(new LinkExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "links");
+
+    this.hotLinks = offHeapSize.toBytes() > 0 ? new OffHeapLinkTable(offHeapSize.toBytes(), ttl) : null;
+    if (hotLinks != null) {
+      FunctionCounter.builder("links.cache.off_heap.hits", hotLinks, OffHeapLinkTable::hits)
+          .description("Redirect locations served from the off-heap table")
+          .register(meterRegistry);
+      Gauge.builder("links.cache.off_heap.entries", hotLinks, OffHeapLinkTable::size)
+          .description("Links in the off-heap table")
+          .register(meterRegistry);
+      Gauge.builder("links.cache.off_heap.memory", hotLinks, OffHeapLinkTable::memoryBytes)
+          .description("Direct memory held by the off-heap table")
+          .baseUnit("bytes")
+          .register(meterRegistry);
+    }
+  }
+
+  public Optional<String> get(String shortKey, Function<String, Optional<String>> loader) {
+    String hot = hotLinks == null ? null : hotLinks.get(shortKey);
+    if (hot != null) {
+      return expired(shortKey, hot) ? Optional.empty() : Optional.of(hot);
+    }
+    CompletableFuture<String> load = new CompletableFuture<>();
+    CompletableFuture<String> url = cache.get(shortKey, (key, executor) -> load);
+    if (url == load) {
+      try {
+        load.complete(loader.apply(shortKey).orElse(MISSING));
+      } catch (RuntimeException e) {
+        load.completeExceptionally(e);
+      }
+    }
+    try {
+      return toLocation(shortKey, url.join());
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  /**
+   * Non-blocking variant of {@link #get} for callers on an event loop: concurrent misses still share
+   * one load, but the loader returns a future and the result is never waited for.
+   */
+  public CompletableFuture<Optional<String>> getAsync(String shortKey,
+                                                      Function<String, CompletableFuture<Optional<String>>> loader) {
+    String hot = hotLinks == null ? null : hotLinks.get(shortKey);
+    if (hot != null) {
+      return CompletableFuture.completedFuture(expired(shortKey, hot) ? Optional.empty() : Optional.of(hot));
+    }
+    return cache.get(shortKey, (key, executor) -> loader.apply(key).thenApply(location -> location.orElse(MISSING)))
+        .thenApply(value -> toLocation(shortKey, value));
+  }
+
+  /** Location of a link already in the cache, or null; nothing is loaded and no future is waited for. */
+  public String getIfPresent(String shortKey) {
+    String hot = hotLinks == null ? null : hotLinks.get(shortKey);
+    if (hot != null) {
+      return expired(shortKey, hot) ? null : hot;
+    }
+    CompletableFuture<String> url = cache.getIfPresent(shortKey);
+    if (url == null || url.state() != Future.State.SUCCESS) {
+      return null;
+    }
+    String value = url.resultNow();
+    return MISSING.equals(value) || expired(shortKey, value) ? null : value;
+  }
+
+  public boolean isKnownMissing(String shortKey) {
+    return MISSING.equals(cache.synchronous().getIfPresent(shortKey));
+  }
+
+  public void put(String shortKey, String location) {
+    if (hotLinks != null && hotLinks.put(shortKey, location)) {
+      cache.synchronous().invalidate(shortKey);
+    } else {
+      cache.synchronous().put(shortKey, location);
+    }
+  }
+
+  public void putMissing(String shortKey) {
+    if (hotLinks != null) {
+      hotLinks.remove(shortKey);
+    }
+    cache.synchronous().put(shortKey, MISSING);
+  }
+
+  public void invalidate(String shortKey) {
+    if (hotLinks != null) {
+      hotLinks.remove(shortKey);
+    }
+    cache.synchronous().invalidate(shortKey);
+  }
+
+  // Most frequently used known links first, as ranked by the off-heap table and the eviction policy.
+  public Map<String, String> hottest(int limit) {
+    Map<String, String> hottest = hotLinks == null ? new LinkedHashMap<>() : hotLinks.hottest(limit);
+    cache.synchronous().policy().eviction().ifPresent(eviction ->
+        eviction.hottest(limit).forEach((shortKey, location) -> {
+          if (!MISSING.equals(location) && hottest.size() < limit) {
+            hottest.putIfAbsent(shortKey, location);
+          }
+        }));
+    return hottest;
+  }
+
+  // A loaded location moves to the off-heap table; the on-heap entry only served the shared load.
+  private Optional<String> toLocation(String shortKey, String value) {
+    if (MISSING.equals(value) || expired(shortKey, value)) {
+      return Optional.empty();
+    }
+    if (hotLinks != null && hotLinks.put(shortKey, value)) {
+      cache.synchronous().asMap().remove(shortKey, value);
+    }
+    return Optional.of(value);
+  }
+
+  // An expired link is known missing from then on, so its redirects stop without reaching the database.
+  private boolean expired(String shortKey, String location) {
+    if (!RedirectLocations.isExpired(location)) {
+      return false;
+    }
+    putMissing(shortKey);
+    return true;
+  }
+
+  // An expiring link leaves the cache when it expires, if its TTL does not end first.
+  private record LinkExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, String> {
+    @Override
+    public long expireAfterCreate(String key, String value, long currentTime) {
+      if (MISSING.equals(value)) {
+        return negativeTtlNanos;
+      }
+      long expiresAt = RedirectLocations.expiresAt(value);
+      if (expiresAt == Long.MAX_VALUE) {
+        return ttlNanos;
+      }
+      return Math.max(0, Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(expiresAt - System.currentTimeMillis())));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, String value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, String value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
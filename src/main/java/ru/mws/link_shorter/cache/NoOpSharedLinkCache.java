@@ -0,0 +1,34 @@
+package ru.mws.link_shorter.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Used when no shared cache is configured: every lookup misses and goes to the database, and other
+ * instances keep a removed link in their own caches until it expires there.
+ */
+public class NoOpSharedLinkCache implements SharedLinkCache {
+  @Override
+  public Map<String, String> getLocations(Collection<String> shortKeys) {
+    return Map.of();
+  }
+
+  @Override
+  public void putLocations(Map<String, String> locationsByShortKey) {
+  }
+
+  @Override
+  public Map<String, String> getShortKeys(Collection<String> originalUrls) {
+    return Map.of();
+  }
+
+  @Override
+  public void putShortKeys(Map<String, String> shortKeysByOriginalUrl) {
+  }
+
+  @Override
+  public CompletableFuture<Void> evict(String shortKey, String originalUrl) {
+    return CompletableFuture.completedFuture(null);
+  }
+}
@@ -0,0 +1,472 @@
+package ru.mws.link_shorter.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * shortKey -> redirect location table outside the Java heap, for millions of hot links. A key of up
+ * to 12 base62 characters packs into two longs, so there is no String or map entry per link: the
+ * slots of an open-addressing table live in a direct buffer, the locations in a ring arena next to
+ * it. When the arena wraps, the oldest locations are overwritten and their slots read as misses, so
+ * eviction is first in, first out. Entries also expire after the TTL.
+ * <p>
+ * Keys are spread over shards with a {@link StampedLock} each. Lookups read optimistically and take
+ * the read lock only when a write got in between, so they never write to the slots: read counts live
+ * in a table of their own, one int per slot, updated atomically. Past a few hundred reads a key only
+ * counts a sample of them, which keeps readers of one hot key off each other's cache line.
+ */
+public final class OffHeapLinkTable {
+  private static final int SHARD_BITS = 6;
+  private static final int SHARDS = 1 << SHARD_BITS;
+  private static final int MIN_SHARD_ARENA = 64 * 1024;
+  private static final int INITIAL_SLOTS = 1024;
+  private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+  private static final int MAX_KEY_LENGTH = 12;
+
+  // Slot: packed key (2 longs), arena position + 1 (0 = empty, -1 = removed), expiry second, padding.
+  private static final int SLOT_SIZE = 32;
+  private static final int REF = 16;
+  private static final int EXPIRES_AT = 24;
+  private static final VarHandle HIT_COUNT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+  private static final int EXACT_HITS = 256;
+  private static final int HIT_SAMPLE_RATE = 16;
+  private static final long EMPTY = 0;
+  private static final long REMOVED = -1;
+  // Arena entry: packed key (2 longs) to detect overwritten locations, length, UTF-8 bytes.
+  private static final int ENTRY_HEADER_SIZE = 20;
+
+  private final Shard[] shards = new Shard[SHARDS];
+  private final long startNanos = System.nanoTime();
+  private final int ttlSeconds;
+  private final LongAdder hits = new LongAdder();
+
+  public OffHeapLinkTable(long capacityBytes, Duration ttl) {
+    int arenaSize = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SHARD_ARENA, capacityBytes / SHARDS));
+    for (int i = 0; i < SHARDS; i++) {
+      shards[i] = new Shard(arenaSize);
+    }
+    this.ttlSeconds = (int) Math.min(Integer.MAX_VALUE, Math.max(0, ttl.toSeconds()));
+  }
+
+  /** Location of the key, or null when it is absent, evicted, expired or not a base62 key. */
+  public String get(String shortKey) {
+    long high = packHigh(shortKey);
+    if (high < 0) {
+      return null;
+    }
+    long low = packLow(shortKey);
+    long hash = hash(high, low);
+    Shard shard = shard(hash);
+    int now = now();
+    String location = shard.readOptimistically(high, low, hash, now);
+    if (location == null) {
+      long stamp = shard.lock.readLock();
+      try {
+        int slot = shard.locate(shard.slots, shard.mask, high, low, hash, now);
+        long entry = slot < 0 ? -1 : shard.entry(shard.slots, slot * SLOT_SIZE);
+        if (entry >= 0) {
+          location = shard.copy(entry);
+          recordHit(shard.hitCounts, slot);
+        }
+      } finally {
+        shard.lock.unlockRead(stamp);
+      }
+    }
+    if (location != null) {
+      hits.increment();
+    }
+    return location;
+  }
+
+  /** Stores the location unless the key is not a base62 key or the location is too long to be worth it. */
+  public boolean put(String shortKey, String location) {
+    long high = packHigh(shortKey);
+    if (high < 0) {
+      return false;
+    }
+    long low = packLow(shortKey);
+    long hash = hash(high, low);
+    int now = now();
+    return shard(hash).put(high, low, hash, location.getBytes(StandardCharsets.UTF_8), now, now + ttlSeconds);
+  }
+
+  public void remove(String shortKey) {
+    long high = packHigh(shortKey);
+    if (high >= 0) {
+      long low = packLow(shortKey);
+      long hash = hash(high, low);
+      shard(hash).remove(high, low, hash);
+    }
+  }
+
+  /** Most read entries first. */
+  public Map<String, String> hottest(int limit) {
+    record Candidate(int hits, String shortKey, String location) {}
+    Comparator<Candidate> byHits = Comparator.comparingInt(Candidate::hits);
+    PriorityQueue<Candidate> top = new PriorityQueue<>(byHits);
+    int now = now();
+    for (Shard shard : shards) {
+      long stamp = shard.lock.readLock();
+      try {
+        for (int slot = 0; slot <= shard.mask; slot++) {
+          int base = slot * SLOT_SIZE;
+          int slotHits = (int) HIT_COUNT.getOpaque(shard.hitCounts, slot * Integer.BYTES);
+          if (!shard.isLive(base, now) || (top.size() >= limit && (limit == 0 || slotHits <= top.peek().hits()))) {
+            continue;
+          }
+          long entry = shard.entry(shard.slots, base);
+          if (entry >= 0) {
+            String shortKey = unpack(shard.slots.getLong(base), shard.slots.getLong(base + 8));
+            top.add(new Candidate(slotHits, shortKey, shard.copy(entry)));
+            if (top.size() > limit) {
+              top.poll();
+            }
+          }
+        }
+      } finally {
+        shard.lock.unlockRead(stamp);
+      }
+    }
+    List<Candidate> candidates = new ArrayList<>(top);
+    candidates.sort(byHits.reversed());
+    Map<String, String> hottest = new LinkedHashMap<>();
+    candidates.forEach(candidate -> hottest.put(candidate.shortKey(), candidate.location()));
+    return hottest;
+  }
+
+  /** Entries in the slots, including the ones already evicted from the arena but not yet swept. */
+  public long size() {
+    long size = 0;
+    for (Shard shard : shards) {
+      long stamp = shard.lock.readLock();
+      try {
+        size += shard.live;
+      } finally {
+        shard.lock.unlockRead(stamp);
+      }
+    }
+    return size;
+  }
+
+  /** Direct memory held by the arenas, the slot tables and the read counts. */
+  public long memoryBytes() {
+    long bytes = 0;
+    for (Shard shard : shards) {
+      long stamp = shard.lock.readLock();
+      try {
+        bytes += shard.arenaSize + shard.slots.capacity() + shard.hitCounts.capacity();
+      } finally {
+        shard.lock.unlockRead(stamp);
+      }
+    }
+    return bytes;
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  // Exact up to EXACT_HITS; past that one read in HIT_SAMPLE_RATE adds HIT_SAMPLE_RATE.
+  private static void recordHit(ByteBuffer hitCounts, int slot) {
+    int index = slot * Integer.BYTES;
+    int count = (int) HIT_COUNT.getOpaque(hitCounts, index);
+    if (count < EXACT_HITS) {
+      HIT_COUNT.getAndAdd(hitCounts, index, 1);
+    } else if (count <= Integer.MAX_VALUE - HIT_SAMPLE_RATE
+        && ThreadLocalRandom.current().nextInt(HIT_SAMPLE_RATE) == 0) {
+      HIT_COUNT.getAndAdd(hitCounts, index, HIT_SAMPLE_RATE);
+    }
+  }
+
+  private Shard shard(long hash) {
+    return shards[(int) (hash >>> (Long.SIZE - SHARD_BITS))];
+  }
+
+  private int now() {
+    return (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+  }
+
+  // 6 bits per character in a 72-bit number, with the length in the top byte of the high long.
+  static long packHigh(String shortKey) {
+    int length = shortKey.length();
+    if (length == 0 || length > MAX_KEY_LENGTH) {
+      return -1;
+    }
+    long high = 0;
+    long low = 0;
+    for (int i = 0; i < length; i++) {
+      int digit = digit(shortKey.charAt(i));
+      if (digit < 0) {
+        return -1;
+      }
+      high = high << 6 | low >>> 58;
+      low = low << 6 | digit;
+    }
+    return high | (long) length << 56;
+  }
+
+  static long packLow(String shortKey) {
+    long low = 0;
+    for (int i = 0; i < shortKey.length(); i++) {
+      low = low << 6 | digit(shortKey.charAt(i));
+    }
+    return low;
+  }
+
+  static String unpack(long high, long low) {
+    char[] key = new char[(int) (high >>> 56)];
+    long bits = high & 0xFF;
+    for (int i = key.length - 1; i >= 0; i--) {
+      key[i] = DIGITS.charAt((int) (low & 63));
+      low = low >>> 6 | bits << 58;
+      bits >>>= 6;
+    }
+    return new String(key);
+  }
+
+  private static int digit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'A' && c <= 'Z') {
+      return c - 'A' + 10;
+    }
+    if (c >= 'a' && c <= 'z') {
+      return c - 'a' + 36;
+    }
+    return -1;
+  }
+
+  private static long hash(long high, long low) {
+    long hash = high * 0x9E3779B97F4A7C15L ^ low;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static final class Shard {
+    private final StampedLock lock = new StampedLock();
+    private final ByteBuffer arena;
+    private final int arenaSize;
+    private ByteBuffer slots = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_SIZE);
+    // Read count per slot, replaced together with slots.
+    private ByteBuffer hitCounts = ByteBuffer.allocateDirect(INITIAL_SLOTS * Integer.BYTES);
+    private int mask = INITIAL_SLOTS - 1;
+    private int used;
+    private int live;
+    // Total bytes ever written to the arena; entries below head - arenaSize are overwritten.
+    private long head;
+
+    private Shard(int arenaSize) {
+      this.arenaSize = arenaSize;
+      this.arena = ByteBuffer.allocateDirect(arenaSize);
+    }
+
+    // A write racing with the read shows up in validate; whatever was read before is discarded.
+    private String readOptimistically(long high, long low, long hash, int now) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp == 0) {
+        return null;
+      }
+      try {
+        ByteBuffer slots = this.slots;
+        ByteBuffer hitCounts = this.hitCounts;
+        int slot = locate(slots, mask, high, low, hash, now);
+        long entry = slot < 0 ? -1 : entry(slots, slot * SLOT_SIZE);
+        if (entry < 0 || !lock.validate(stamp)) {
+          return null;
+        }
+        String location = copy(entry);
+        if (!lock.validate(stamp)) {
+          return null;
+        }
+        // Validated: hitCounts matches the slots read above; a rebuild since then only loses this hit.
+        recordHit(hitCounts, slot);
+        return location;
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+
+    /** Slot of the key while it is live, or -1. */
+    private int locate(ByteBuffer slots, int mask, long high, long low, long hash, int now) {
+      int slot = (int) hash & mask;
+      for (int probes = 0; probes <= mask; probes++, slot = (slot + 1) & mask) {
+        int base = slot * SLOT_SIZE;
+        long ref = slots.getLong(base + REF);
+        if (ref == EMPTY) {
+          return -1;
+        }
+        if (ref != REMOVED && slots.getLong(base) == high && slots.getLong(base + 8) == low) {
+          return isLive(slots, base, now) ? slot : -1;
+        }
+      }
+      return -1;
+    }
+
+    // The arena entry repeats the key, so a location overwritten under an optimistic read is a miss.
+    private long entry(ByteBuffer slots, int base) {
+      int offset = (int) ((slots.getLong(base + REF) - 1) % arenaSize);
+      int length = arena.getInt(offset + 16);
+      if (arena.getLong(offset) != slots.getLong(base) || arena.getLong(offset + 8) != slots.getLong(base + 8)
+          || length < 0 || length > arenaSize - ENTRY_HEADER_SIZE - offset) {
+        return -1;
+      }
+      return (long) (offset + ENTRY_HEADER_SIZE) << 32 | length;
+    }
+
+    private String copy(long entry) {
+      byte[] bytes = new byte[(int) entry];
+      arena.get((int) (entry >>> 32), bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean isLive(ByteBuffer slots, int base, int now) {
+      long ref = slots.getLong(base + REF);
+      return ref != EMPTY && ref != REMOVED && ref - 1 >= head - arenaSize
+          && slots.getInt(base + EXPIRES_AT) - now > 0;
+    }
+
+    private boolean put(long high, long low, long hash, byte[] location, int now, int expiresAt) {
+      int size = ENTRY_HEADER_SIZE + location.length;
+      if (size > arenaSize / 4) {
+        return false;
+      }
+      long stamp = lock.writeLock();
+      try {
+        int offset = (int) (head % arenaSize);
+        if (offset + size > arenaSize) {
+          head += arenaSize - offset;
+          offset = 0;
+        }
+        arena.putLong(offset, high);
+        arena.putLong(offset + 8, low);
+        arena.putInt(offset + 16, location.length);
+        arena.put(offset + ENTRY_HEADER_SIZE, location);
+        long ref = head + 1;
+        head += size;
+
+        if (used + 1 > (mask + 1) * 3 / 4) {
+          rebuild(now);
+        }
+        int slot = slotForWrite(high, low, hash);
+        int base = slot * SLOT_SIZE;
+        long previous = slots.getLong(base + REF);
+        if (previous == EMPTY) {
+          used++;
+        }
+        if (previous == EMPTY || previous == REMOVED) {
+          live++;
+          slots.putLong(base, high);
+          slots.putLong(base + 8, low);
+          HIT_COUNT.setOpaque(hitCounts, slot * Integer.BYTES, 0);
+        }
+        slots.putLong(base + REF, ref);
+        slots.putInt(base + EXPIRES_AT, expiresAt);
+        return true;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    private void remove(long high, long low, long hash) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes <= mask; probes++, slot = (slot + 1) & mask) {
+          int base = slot * SLOT_SIZE;
+          long ref = slots.getLong(base + REF);
+          if (ref == EMPTY) {
+            return;
+          }
+          if (ref != REMOVED && slots.getLong(base) == high && slots.getLong(base + 8) == low) {
+            slots.putLong(base + REF, REMOVED);
+            live--;
+            return;
+          }
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    // The slot holding the key, else the first removed or empty slot on its probe sequence.
+    private int slotForWrite(long high, long low, long hash) {
+      int slot = (int) hash & mask;
+      int reusable = -1;
+      while (true) {
+        int base = slot * SLOT_SIZE;
+        long ref = slots.getLong(base + REF);
+        if (ref == EMPTY) {
+          return reusable >= 0 ? reusable : slot;
+        }
+        if (ref == REMOVED) {
+          if (reusable < 0) {
+            reusable = slot;
+          }
+        } else if (slots.getLong(base) == high && slots.getLong(base + 8) == low) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    // Drops removed, overwritten and expired entries, and grows the table if it is still half full.
+    private void rebuild(int now) {
+      ByteBuffer old = slots;
+      int oldSlots = mask + 1;
+      int survivors = 0;
+      for (int slot = 0; slot < oldSlots; slot++) {
+        if (isLive(old, slot * SLOT_SIZE, now)) {
+          survivors++;
+        }
+      }
+      int capacity = INITIAL_SLOTS;
+      while (capacity < survivors * 2 + 2) {
+        capacity *= 2;
+      }
+      ByteBuffer rebuilt = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, SLOT_SIZE));
+      ByteBuffer rebuiltHitCounts = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+      byte[] slot = new byte[SLOT_SIZE];
+      int newMask = capacity - 1;
+      for (int i = 0; i < oldSlots; i++) {
+        int base = i * SLOT_SIZE;
+        if (isLive(old, base, now)) {
+          old.get(base, slot);
+          int target = (int) hash(old.getLong(base), old.getLong(base + 8)) & newMask;
+          while (rebuilt.getLong(target * SLOT_SIZE + REF) != EMPTY) {
+            target = (target + 1) & newMask;
+          }
+          rebuilt.put(target * SLOT_SIZE, slot);
+          rebuiltHitCounts.putInt(target * Integer.BYTES, (int) HIT_COUNT.getOpaque(hitCounts, i * Integer.BYTES));
+        }
+      }
+      slots = rebuilt;
+      hitCounts = rebuiltHitCounts;
+      mask = newMask;
+      used = survivors;
+      live = survivors;
+    }
+
+    private boolean isLive(int base, int now) {
+      return isLive(slots, base, now);
+    }
+  }
+}
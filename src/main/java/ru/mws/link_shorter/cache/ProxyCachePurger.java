@@ -0,0 +1,61 @@
+package ru.mws.link_shorter.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Replaces the redirect of a removed link in the nginx proxy cache. Open-source nginx has no purge,
+ * so each of {@code link-shorter.proxy-cache.purge-urls} is an internal nginx listener that always
+ * bypasses the cache and stores the fresh answer, a 404 by then, over the cached redirect. The
+ * request carries {@link #REFRESH_HEADER}, so the instance answering it reads past its own caches.
+ * Requests go out without waiting; a failed one leaves the entry to expire after its max-age.
+ */
+@Component
+public class ProxyCachePurger {
+  private static final Logger logger = LoggerFactory.getLogger(ProxyCachePurger.class);
+  // nginx clears it on public requests, so only the purge listener gets past the caches.
+  public static final String REFRESH_HEADER = "X-Cache-Refresh";
+
+  private final List<String> purgeUrls;
+  private final Duration timeout;
+  private final HttpClient httpClient;
+  private final Counter failures;
+
+  public ProxyCachePurger(@Value("${link-shorter.proxy-cache.purge-urls:}") List<String> purgeUrls,
+                          @Value("${link-shorter.proxy-cache.purge-timeout:2s}") Duration timeout,
+                          MeterRegistry meterRegistry) {
+    this.purgeUrls = purgeUrls.stream().filter(url -> !url.isBlank()).toList();
+    this.timeout = timeout;
+    this.httpClient = this.purgeUrls.isEmpty() ? null : HttpClient.newBuilder().connectTimeout(timeout).build();
+    this.failures = Counter.builder("links.cache.proxy.purge_failures")
+        .description("Proxy cache refreshes of removed links that failed")
+        .register(meterRegistry);
+  }
+
+  public void purge(String shortKey) {
+    for (String purgeUrl : purgeUrls) {
+      HttpRequest request = HttpRequest.newBuilder(URI.create(purgeUrl + "/" + shortKey))
+          .timeout(timeout)
+          .header(REFRESH_HEADER, "1")
+          .GET()
+          .build();
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+        if (e != null) {
+          failures.increment();
+          logger.warn("Failed to refresh {} in the proxy cache at {}", shortKey, purgeUrl, e);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package ru.mws.link_shorter.cache;
+
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.mws.link_shorter.repository.UrlDigest;
+import ru.mws.link_shorter.service.RedirectLocations;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link SharedLinkCache} on any server speaking the Redis protocol. One multiplexed connection
+ * serves all threads; a multi-key lookup is a single MGET and writes are pipelined without waiting
+ * for replies. URL entries are keyed by {@link UrlDigest}, so long URLs do not make long keys.
+ * <p>
+ * Evictions are published on a channel every instance subscribes to on a second connection, so a
+ * deleted link leaves the local caches of all instances, not just the one that deleted it. Lettuce
+ * subscribes again after a reconnect; messages sent while an instance was disconnected are lost, and
+ * its local entry expires with its TTL.
+ * <p>
+ * The connection is opened in the background with {@code connectAsync}, so no caller, event loop
+ * threads included, ever blocks on connecting: commands issued meanwhile run once it is open, within
+ * the usual timeout. While the server is unreachable lookups miss at once: a new connection is
+ * attempted at most once per {@code reconnectInterval}, and established connections reconnect on
+ * their own.
+ */
+public class RedisSharedLinkCache implements SharedLinkCache {
+  private static final Logger logger = LoggerFactory.getLogger(RedisSharedLinkCache.class);
+  // Versioned with the format of the prepared location (RedirectLocations): an instance still on the
+  // old format must not serve entries carrying a redirect mode or expiry, nor read them back as URLs.
+  private static final String LOCATION_PREFIX = "ls:k2:";
+  private static final String SHORT_KEY_PREFIX = "ls:u:";
+  private static final String EVICTIONS_CHANNEL = "ls:evicted";
+
+  private final RedisClient redisClient;
+  private final RedisURI redisUri;
+  private final long ttlMillis;
+  private final SetArgs setArgs;
+  private final long timeoutNanos;
+  private final long reconnectIntervalNanos;
+  private final Counter errors;
+  private final ReentrantLock connectLock = new ReentrantLock();
+  private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+  private volatile CompletableFuture<RedisAsyncCommands<String, String>> connection;
+  private volatile StatefulRedisPubSubConnection<String, String> subscription;
+  private volatile long nextConnectAttempt;
+
+  public RedisSharedLinkCache(RedisClient redisClient,
+                              RedisURI redisUri,
+                              Duration ttl,
+                              Duration timeout,
+                              Duration reconnectInterval,
+                              MeterRegistry meterRegistry) {
+    this.redisClient = redisClient;
+    this.redisUri = redisUri;
+    this.ttlMillis = ttl.toMillis();
+    this.setArgs = SetArgs.Builder.px(ttlMillis);
+    this.timeoutNanos = timeout.toNanos();
+    this.reconnectIntervalNanos = reconnectInterval.toNanos();
+    this.nextConnectAttempt = System.nanoTime();
+    this.errors = Counter.builder("links.cache.shared.errors")
+        .description("Shared cache commands that failed or timed out and were treated as misses")
+        .register(meterRegistry);
+    this.connection = connect();
+  }
+
+  @Override
+  public Map<String, String> getLocations(Collection<String> shortKeys) {
+    Map<String, String> keys = new HashMap<>();
+    for (String shortKey : shortKeys) {
+      keys.put(LOCATION_PREFIX + shortKey, shortKey);
+    }
+    return multiGet(keys);
+  }
+
+  @Override
+  public CompletableFuture<Optional<String>> getLocationAsync(String shortKey) {
+    return commands().thenCompose(commands -> commands.get(LOCATION_PREFIX + shortKey))
+        .orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+        .handle((location, e) -> {
+          if (e != null) {
+            errors.increment();
+            logger.debug("Shared cache lookup of {} failed", shortKey, e);
+            return Optional.empty();
+          }
+          return Optional.ofNullable(location);
+        });
+  }
+
+  @Override
+  public void putLocations(Map<String, String> locationsByShortKey) {
+    Map<String, String> entries = new HashMap<>();
+    locationsByShortKey.forEach((shortKey, location) -> entries.put(LOCATION_PREFIX + shortKey, location));
+    pipelinedSet(entries, this::locationArgs);
+  }
+
+  @Override
+  public Map<String, String> getShortKeys(Collection<String> originalUrls) {
+    Map<String, String> keys = new HashMap<>();
+    for (String originalUrl : originalUrls) {
+      keys.put(SHORT_KEY_PREFIX + UrlDigest.of(originalUrl), originalUrl);
+    }
+    return multiGet(keys);
+  }
+
+  @Override
+  public void putShortKeys(Map<String, String> shortKeysByOriginalUrl) {
+    Map<String, String> entries = new HashMap<>();
+    shortKeysByOriginalUrl.forEach((originalUrl, shortKey) ->
+        entries.put(SHORT_KEY_PREFIX + UrlDigest.of(originalUrl), shortKey));
+    pipelinedSet(entries, value -> setArgs);
+  }
+
+  // DEL and PUBLISH go down one connection in order, so an instance reloading on the message no
+  // longer finds the shared entry.
+  @Override
+  public CompletableFuture<Void> evict(String shortKey, String originalUrl) {
+    String[] keys = {LOCATION_PREFIX + shortKey, SHORT_KEY_PREFIX + UrlDigest.of(originalUrl)};
+    return commands()
+        .thenCompose(commands -> {
+          commands.del(keys);
+          return commands.publish(EVICTIONS_CHANNEL, shortKey);
+        })
+        .orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+        .<Void>handle((receivers, e) -> {
+          if (e != null) {
+            errors.increment();
+            logger.debug("Shared cache eviction of {} failed", shortKey, e);
+          }
+          return null;
+        });
+  }
+
+  // Runs on a Lettuce event loop thread, so listeners only touch memory.
+  @Override
+  public void onEvict(Consumer<String> listener) {
+    evictionListeners.add(listener);
+  }
+
+  public void close() {
+    connection.thenAccept(commands -> commands.getStatefulConnection().close());
+    StatefulRedisPubSubConnection<String, String> current = subscription;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  // Maps each found value back to the caller's key; redisKeys maps Redis key -> caller key.
+  private Map<String, String> multiGet(Map<String, String> redisKeys) {
+    if (redisKeys.isEmpty()) {
+      return Map.of();
+    }
+    try {
+      List<KeyValue<String, String>> values = commands()
+          .thenCompose(commands -> commands.mget(redisKeys.keySet().toArray(String[]::new)))
+          .get(timeoutNanos, TimeUnit.NANOSECONDS);
+      Map<String, String> found = new HashMap<>();
+      for (KeyValue<String, String> value : values) {
+        if (value.hasValue()) {
+          found.put(redisKeys.get(value.getKey()), value.getValue());
+        }
+      }
+      return found;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Map.of();
+    } catch (Exception e) {
+      errors.increment();
+      logger.debug("Shared cache lookup of {} keys failed", redisKeys.size(), e);
+      return Map.of();
+    }
+  }
+
+  // The location of an expiring link leaves the cache no later than the link expires.
+  private SetArgs locationArgs(String location) {
+    long expiresAt = RedirectLocations.expiresAt(location);
+    if (expiresAt == Long.MAX_VALUE) {
+      return setArgs;
+    }
+    return SetArgs.Builder.px(Math.max(1, Math.min(ttlMillis, expiresAt - System.currentTimeMillis())));
+  }
+
+  private void pipelinedSet(Map<String, String> entries, Function<String, SetArgs> args) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    commands().thenAccept(commands -> entries.forEach((key, value) ->
+        commands.set(key, value, args.apply(value)).exceptionally(e -> {
+          errors.increment();
+          logger.debug("Shared cache write of {} failed", key, e);
+          return null;
+        })));
+  }
+
+  // Completes with the commands once connected; fails at once while the server is unreachable.
+  private CompletableFuture<RedisAsyncCommands<String, String>> commands() {
+    CompletableFuture<RedisAsyncCommands<String, String>> current = connection;
+    if (current.isCompletedExceptionally() && System.nanoTime() - nextConnectAttempt >= 0 && connectLock.tryLock()) {
+      try {
+        if (connection == current) {
+          connection = connect();
+        }
+        return connection;
+      } finally {
+        connectLock.unlock();
+      }
+    }
+    return current;
+  }
+
+  private CompletableFuture<RedisAsyncCommands<String, String>> connect() {
+    return redisClient.connectAsync(StringCodec.UTF8, redisUri).toCompletableFuture()
+        .thenCompose(connection -> subscribe().handle((subscribed, e) -> {
+          if (e != null) {
+            connection.closeAsync();
+            throw new CompletionException(e);
+          }
+          return connection.async();
+        }))
+        .whenComplete((commands, e) -> {
+          if (e == null) {
+            logger.info("Connected to the shared link cache");
+            return;
+          }
+          errors.increment();
+          nextConnectAttempt = System.nanoTime() + reconnectIntervalNanos;
+          logger.warn("Shared link cache is unreachable, retrying in {} ms",
+              TimeUnit.NANOSECONDS.toMillis(reconnectIntervalNanos), e);
+        });
+  }
+
+  private CompletableFuture<Void> subscribe() {
+    if (subscription != null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return redisClient.connectPubSubAsync(StringCodec.UTF8, redisUri).toCompletableFuture()
+        .thenCompose(pubSub -> {
+          pubSub.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String shortKey) {
+              evictionListeners.forEach(listener -> listener.accept(shortKey));
+            }
+          });
+          return pubSub.async().subscribe(EVICTIONS_CHANNEL).toCompletableFuture().<Void>handle((subscribed, e) -> {
+            if (e != null) {
+              pubSub.closeAsync();
+              throw new CompletionException(e);
+            }
+            subscription = pubSub;
+            return null;
+          });
+        });
+  }
+}
@@ -0,0 +1,47 @@
+package ru.mws.link_shorter.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Cache tier shared by all application instances, between the per-instance {@link LinkCache} and the
+ * database. Holds shortKey -> redirect location and originalUrl -> shortKey. Implementations never
+ * throw: an unavailable cache reads as a miss and drops writes.
+ */
+public interface SharedLinkCache {
+  Map<String, String> getLocations(Collection<String> shortKeys);
+
+  void putLocations(Map<String, String> locationsByShortKey);
+
+  Map<String, String> getShortKeys(Collection<String> originalUrls);
+
+  void putShortKeys(Map<String, String> shortKeysByOriginalUrl);
+
+  /**
+   * Drops both entries of a removed link; its URL may name another link, which then costs a lookup.
+   * Every instance is told to drop the link from its own cache too (see {@link #onEvict}). Completes
+   * once that is sent, or once it failed.
+   */
+  CompletableFuture<Void> evict(String shortKey, String originalUrl);
+
+  /** Calls the listener with the short key of every link evicted by any instance, this one included. */
+  default void onEvict(Consumer<String> listener) {
+  }
+
+  default Optional<String> getLocation(String shortKey) {
+    return Optional.ofNullable(getLocations(List.of(shortKey)).get(shortKey));
+  }
+
+  // For callers that must not block on the lookup; completes with a miss on any failure.
+  default CompletableFuture<Optional<String>> getLocationAsync(String shortKey) {
+    return CompletableFuture.completedFuture(getLocation(shortKey));
+  }
+
+  default Optional<String> getShortKey(String originalUrl) {
+    return Optional.ofNullable(getShortKeys(List.of(originalUrl)).get(originalUrl));
+  }
+}
@@ -0,0 +1,36 @@
+package ru.mws.link_shorter.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ru.mws.link_shorter.controller.FastRedirectFilter;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ShorterService;
+
+/**
+ * Redirects of cached links served ahead of Spring MVC, on unless
+ * {@code link-shorter.redirect.fast-path.enabled=false}. Runs after the rate limit filter.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "link-shorter.redirect.fast-path", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class FastRedirectConfig {
+
+  @Bean
+  public FilterRegistrationBean<FastRedirectFilter> fastRedirectFilter(
+      ShorterService shorterService,
+      LinkMetrics linkMetrics,
+      AccessLog accessLog,
+      @Value("${link-shorter.analytics.country-header:X-Country-Code}") String countryHeader,
+      @Value("${link-shorter.analytics.client-ip-header:X-Real-IP}") String clientIpHeader) {
+    FilterRegistrationBean<FastRedirectFilter> registration = new FilterRegistrationBean<>(
+        new FastRedirectFilter(shorterService, linkMetrics, accessLog, countryHeader, clientIpHeader));
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+    return registration;
+  }
+}
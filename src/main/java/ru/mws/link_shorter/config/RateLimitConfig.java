@@ -0,0 +1,61 @@
+package ru.mws.link_shorter.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import ru.mws.link_shorter.ratelimit.RateLimitFilter;
+import ru.mws.link_shorter.ratelimit.RateLimiter;
+import ru.mws.link_shorter.ratelimit.RateLimits;
+import ru.mws.link_shorter.ratelimit.ReactiveRateLimitFilter;
+
+import java.util.Set;
+
+/**
+ * Per-client rate limits on link creation and redirects, on unless
+ * {@code link-shorter.rate-limit.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "link-shorter.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+  @Bean
+  public RateLimits rateLimits(
+      MeterRegistry meterRegistry,
+      @Value("${link-shorter.rate-limit.max-clients:100000}") long maxClients,
+      @Value("${link-shorter.rate-limit.create.rate:5}") double createRate,
+      @Value("${link-shorter.rate-limit.create.burst:20}") int createBurst,
+      @Value("${link-shorter.rate-limit.api-key.create.rate:100}") double apiKeyCreateRate,
+      @Value("${link-shorter.rate-limit.api-key.create.burst:200}") int apiKeyCreateBurst,
+      @Value("${link-shorter.rate-limit.redirect.rate:50}") double redirectRate,
+      @Value("${link-shorter.rate-limit.redirect.burst:100}") int redirectBurst,
+      @Value("${link-shorter.rate-limit.api-keys:}") Set<String> apiKeys,
+      @Value("${link-shorter.rate-limit.trusted-proxies:1}") int trustedProxies) {
+    return new RateLimits(
+        new RateLimiter("create", createRate, createBurst, maxClients, meterRegistry),
+        new RateLimiter("create_api_key", apiKeyCreateRate, apiKeyCreateBurst, maxClients, meterRegistry),
+        new RateLimiter("redirect", redirectRate, redirectBurst, maxClients, meterRegistry),
+        apiKeys,
+        trustedProxies);
+  }
+
+  @Bean
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimits rateLimits) {
+    FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(new RateLimitFilter(rateLimits));
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+    return registration;
+  }
+
+  @Bean
+  @Order(Ordered.HIGHEST_PRECEDENCE + 10)
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+  public ReactiveRateLimitFilter reactiveRateLimitFilter(RateLimits rateLimits) {
+    return new ReactiveRateLimitFilter(rateLimits);
+  }
+}
@@ -0,0 +1,73 @@
+package ru.mws.link_shorter.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enabled by {@code link-shorter.datasource.replica.urls}. Replicas share the primary's credentials.
+ * The lazy proxy defers connection lookup until the first statement, by which time the
+ * transaction's read-only flag is known.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "link-shorter.datasource.replica", name = "urls")
+public class ReadReplicaConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(
+      HikariDataSource primaryDataSource,
+      DataSourceProperties properties,
+      MeterRegistry meterRegistry,
+      @Value("${link-shorter.datasource.replica.urls}") List<String> urls,
+      @Value("${link-shorter.datasource.replica.pool-size:16}") int poolSize,
+      @Value("${link-shorter.datasource.replica.connection-timeout:1s}") Duration connectionTimeout,
+      @Value("${link-shorter.datasource.replica.validation-timeout:500ms}") Duration validationTimeout,
+      @Value("${link-shorter.datasource.replica.health-check-interval-ms:5000}") long healthCheckIntervalMs) {
+    List<DataSource> replicas = new ArrayList<>();
+    for (int i = 0; i < urls.size(); i++) {
+      HikariDataSource replica = new HikariDataSource();
+      replica.setPoolName("replica-" + i);
+      replica.setJdbcUrl(urls.get(i));
+      replica.setUsername(properties.determineUsername());
+      replica.setPassword(properties.determinePassword());
+      replica.setMaximumPoolSize(poolSize);
+      replica.setReadOnly(true);
+      // A replica that is down fails a request within these instead of Hikari's 30s default.
+      replica.setConnectionTimeout(connectionTimeout.toMillis());
+      replica.setValidationTimeout(validationTimeout.toMillis());
+      replica.addDataSourceProperty("connectTimeout", Math.max(1, connectionTimeout.toSeconds()));
+      replica.setInitializationFailTimeout(-1);
+      replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+      replicas.add(replica);
+    }
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primaryDataSource, replicas, validationTimeout);
+    routing.startHealthChecks(Duration.ofMillis(healthCheckIntervalMs));
+    return routing;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(readReplicaRoutingDataSource);
+  }
+}
@@ -0,0 +1,149 @@
+package ru.mws.link_shorter.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections of read-only transactions to replicas in round-robin order and everything else
+ * to the primary. Replicas that fail a connection attempt or a health check are skipped until they
+ * pass a health check again; with no healthy replica reads fall back to the primary.
+ * <p>
+ * Health checks run on a thread of their own: a replica that is down holds it for up to the
+ * connection timeout of its pool, which must not delay the application's scheduled tasks.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+  private final DataSource primary;
+  private final List<Replica> replicas;
+  private final int validationTimeoutSeconds;
+  private final AtomicInteger cursor = new AtomicInteger();
+  private ScheduledExecutorService healthChecks;
+
+  // Connection.isValid takes whole seconds, so the validation timeout is rounded up to at least one.
+  public ReadReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration validationTimeout) {
+    this.primary = primary;
+    this.replicas = replicas.stream().map(Replica::new).toList();
+    this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.plusMillis(999).toSeconds());
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return getConnection(DataSource::getConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return getConnection(dataSource -> dataSource.getConnection(username, password));
+  }
+
+  public Connection getReadConnection() throws SQLException {
+    return getReadConnection(DataSource::getConnection);
+  }
+
+  private Connection getConnection(ConnectionOpener opener) throws SQLException {
+    if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return getReadConnection(opener);
+    }
+    return opener.open(primary);
+  }
+
+  private Connection getReadConnection(ConnectionOpener opener) throws SQLException {
+    if (replicas.isEmpty()) {
+      return opener.open(primary);
+    }
+    int start = Math.floorMod(cursor.getAndIncrement(), replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      if (!replica.healthy) {
+        continue;
+      }
+      try {
+        return opener.open(replica.dataSource);
+      } catch (SQLException e) {
+        replica.healthy = false;
+        logger.warn("Replica {} is unavailable, routing reads elsewhere", start + i, e);
+      }
+    }
+    return opener.open(primary);
+  }
+
+  public DataSource readOnlyView() {
+    return new AbstractDataSource() {
+      @Override
+      public Connection getConnection() throws SQLException {
+        return getReadConnection();
+      }
+
+      @Override
+      public Connection getConnection(String username, String password) throws SQLException {
+        return getReadConnection(dataSource -> dataSource.getConnection(username, password));
+      }
+    };
+  }
+
+  public synchronized void startHealthChecks(Duration interval) {
+    if (healthChecks == null) {
+      healthChecks = Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("replica-health-check").daemon().factory());
+      healthChecks.scheduleWithFixedDelay(this::checkHealth, interval.toMillis(), interval.toMillis(),
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void checkHealth() {
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get(i);
+      boolean healthy;
+      try (Connection connection = replica.dataSource.getConnection()) {
+        healthy = connection.isValid(validationTimeoutSeconds);
+      } catch (SQLException e) {
+        healthy = false;
+      }
+      if (healthy != replica.healthy) {
+        logger.warn("Replica {} is now {}", i, healthy ? "healthy" : "unhealthy");
+      }
+      replica.healthy = healthy;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    synchronized (this) {
+      if (healthChecks != null) {
+        healthChecks.shutdownNow();
+      }
+    }
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof AutoCloseable closeable) {
+        closeable.close();
+      }
+    }
+  }
+
+  private static final class Replica {
+    private final DataSource dataSource;
+    private volatile boolean healthy = true;
+
+    private Replica(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ConnectionOpener {
+    Connection open(DataSource dataSource) throws SQLException;
+  }
+}
@@ -0,0 +1,59 @@
+package ru.mws.link_shorter.config;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.mws.link_shorter.cache.NoOpSharedLinkCache;
+import ru.mws.link_shorter.cache.RedisSharedLinkCache;
+import ru.mws.link_shorter.cache.SharedLinkCache;
+
+import java.time.Duration;
+
+/**
+ * Uses a Redis-protocol server as the shared cache tier when {@code link-shorter.cache.redis.url} is
+ * set, otherwise a no-op tier.
+ */
+@Configuration
+public class SharedCacheConfig {
+
+  @Bean(destroyMethod = "shutdown")
+  @ConditionalOnProperty(prefix = "link-shorter.cache.redis", name = "url")
+  public RedisClient redisClient(@Value("${link-shorter.cache.redis.url}") String url,
+                                 @Value("${link-shorter.cache.redis.timeout:100ms}") Duration timeout,
+                                 @Value("${link-shorter.cache.redis.connect-timeout:500ms}") Duration connectTimeout) {
+    RedisClient redisClient = RedisClient.create(url);
+    redisClient.setOptions(ClientOptions.builder()
+        .protocolVersion(ProtocolVersion.RESP2)
+        .timeoutOptions(TimeoutOptions.enabled(timeout))
+        .socketOptions(SocketOptions.builder().connectTimeout(connectTimeout).build())
+        .build());
+    return redisClient;
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(prefix = "link-shorter.cache.redis", name = "url")
+  public SharedLinkCache redisSharedLinkCache(
+      RedisClient redisClient,
+      MeterRegistry meterRegistry,
+      @Value("${link-shorter.cache.redis.url}") String url,
+      @Value("${link-shorter.cache.redis.ttl:24h}") Duration ttl,
+      @Value("${link-shorter.cache.redis.timeout:100ms}") Duration timeout,
+      @Value("${link-shorter.cache.redis.reconnect-interval:5s}") Duration reconnectInterval) {
+    return new RedisSharedLinkCache(redisClient, RedisURI.create(url), ttl, timeout, reconnectInterval, meterRegistry);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(SharedLinkCache.class)
+  public SharedLinkCache noOpSharedLinkCache() {
+    return new NoOpSharedLinkCache();
+  }
+}
@@ -0,0 +1,98 @@
+package ru.mws.link_shorter.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.transfer.LinkExporter;
+import ru.mws.link_shorter.transfer.LinkImporter;
+import ru.mws.link_shorter.transfer.TransferFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export and import of links, and removal of a single link. Off unless
+ * {@code link-shorter.admin.enabled=true}; nginx does not proxy these paths, so they are reachable
+ * only from inside the deployment.
+ */
+@RequestMapping("/api/admin/links")
+@RestController
+@ConditionalOnProperty(prefix = "link-shorter.admin", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdminController {
+  private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+  private static final String TRANSFER_UNAVAILABLE = "Перенос ссылок недоступен при встроенном хранилище";
+  private final LinkExporter linkExporter;
+  private final LinkImporter linkImporter;
+  private final ShorterService shorterService;
+
+  // Export and import work on Postgres and are absent under the embedded profile.
+  public AdminController(ObjectProvider<LinkExporter> linkExporter,
+                         ObjectProvider<LinkImporter> linkImporter,
+                         ShorterService shorterService) {
+    this.linkExporter = linkExporter.getIfAvailable();
+    this.linkImporter = linkImporter.getIfAvailable();
+    this.shorterService = shorterService;
+  }
+
+  @GetMapping("/export")
+  public void exportLinks(@RequestParam(defaultValue = "ndjson") String format,
+                          @RequestParam(defaultValue = "true") boolean gzip,
+                          @RequestParam(defaultValue = "") String after,
+                          HttpServletResponse response) throws IOException {
+    if (linkExporter == null) {
+      response.sendError(HttpStatus.NOT_IMPLEMENTED.value(), TRANSFER_UNAVAILABLE);
+      return;
+    }
+    TransferFormat transferFormat = TransferFormat.of(format);
+    logger.info("GET /api/admin/links/export - format: {}, gzip: {}, after: {}", transferFormat, gzip, after);
+    String fileName = "links." + transferFormat.extension() + (gzip ? ".gz" : "");
+    response.setContentType(gzip ? "application/gzip" : transferFormat.contentType());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+    OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream()) : response.getOutputStream();
+    linkExporter.export(out, transferFormat, after);
+    if (out instanceof GZIPOutputStream gzipOut) {
+      gzipOut.finish();
+    }
+  }
+
+  @PostMapping("/import")
+  public ResponseEntity<?> importLinks(@RequestParam(defaultValue = "ndjson") String format,
+                                       @RequestParam(defaultValue = "true") boolean gzip,
+                                       @RequestParam(required = false) String importId,
+                                       HttpServletRequest request) throws IOException {
+    if (linkImporter == null) {
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(TRANSFER_UNAVAILABLE);
+    }
+    TransferFormat transferFormat = TransferFormat.of(format);
+    logger.info("POST /api/admin/links/import - format: {}, gzip: {}, importId: {}", transferFormat, gzip, importId);
+    InputStream in = gzip ? new GZIPInputStream(request.getInputStream()) : request.getInputStream();
+    return ResponseEntity.ok(linkImporter.importLinks(in, transferFormat, importId));
+  }
+
+  // Also drops the link from the caches, the nginx proxy cache included, so redirects stop at once
+  // everywhere except in browsers that keep a cached 301 or 308.
+  @DeleteMapping("/{shortKey}")
+  public ResponseEntity<Void> deleteLink(@PathVariable String shortKey) {
+    logger.info("DELETE /api/admin/links/{}", shortKey);
+    return shorterService.deleteLink(shortKey) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<String> handleUnknownFormat(IllegalArgumentException e) {
+    return ResponseEntity.badRequest().body("Неизвестный формат, ожидается ndjson или csv");
+  }
+}
@@ -0,0 +1,83 @@
+package ru.mws.link_shorter.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import ru.mws.link_shorter.cache.ProxyCachePurger;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.RedirectLocations;
+import ru.mws.link_shorter.service.ShorterService;
+
+import java.io.IOException;
+
+/**
+ * Answers redirects for links already in the cache before the request reaches Spring MVC: no handler
+ * mapping, no {@code ResponseEntity}, no message converters, only the status and the prepared
+ * Location string. Uncached keys, purge requests of the proxy cache and every other path go on to
+ * {@link PageController}, which loads the link, so the next request for it takes this path.
+ */
+public class FastRedirectFilter extends HttpFilter {
+  private final ShorterService shorterService;
+  private final LinkMetrics linkMetrics;
+  private final AccessLog accessLog;
+  private final String countryHeader;
+  private final String clientIpHeader;
+
+  public FastRedirectFilter(ShorterService shorterService, LinkMetrics linkMetrics, AccessLog accessLog,
+                            String countryHeader, String clientIpHeader) {
+    this.shorterService = shorterService;
+    this.linkMetrics = linkMetrics;
+    this.accessLog = accessLog;
+    this.countryHeader = countryHeader;
+    this.clientIpHeader = clientIpHeader;
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    long start = System.nanoTime();
+    String shortKey = request.getHeader(ProxyCachePurger.REFRESH_HEADER) == null ? shortKey(request) : null;
+    String redirect = shortKey == null ? null : shorterService.getCachedRedirectLocation(shortKey);
+    if (redirect == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    shorterService.recordClick(shortKey, PageController.clickSource(request, countryHeader, clientIpHeader));
+    int status = RedirectLocations.status(redirect);
+    response.setStatus(status);
+    response.setHeader(HttpHeaders.LOCATION, RedirectLocations.location(redirect));
+    String cacheControl = RedirectLocations.cacheControl(redirect);
+    if (cacheControl != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+    response.setContentLength(0);
+    linkMetrics.recordRedirect(start);
+    accessLog.redirect(shortKey, status, start);
+  }
+
+  // The key of GET /{shortKey}, checked by hand so that other paths cost neither a match nor a lookup.
+  private static String shortKey(HttpServletRequest request) {
+    String method = request.getMethod();
+    if (!method.equals("GET") && !method.equals("HEAD")) {
+      return null;
+    }
+    String uri = request.getRequestURI();
+    int from = request.getContextPath().length() + 1;
+    int length = uri.length() - from;
+    if (length < ShortKeyCodec.MIN_LENGTH || length > ShortKeyCodec.MAX_LENGTH || uri.charAt(from - 1) != '/') {
+      return null;
+    }
+    for (int i = from; i < uri.length(); i++) {
+      char c = uri.charAt(i);
+      if (!(c >= '0' && c <= '9' || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z')) {
+        return null;
+      }
+    }
+    return uri.substring(from);
+  }
+}
@@ -1,55 +1,89 @@
 package ru.mws.link_shorter.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.cache.ProxyCachePurger;
 import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ClickSource;
+import ru.mws.link_shorter.service.RedirectLocations;
 import ru.mws.link_shorter.service.ShorterService;
 
-import java.net.URI;
-
 @Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PageController {
   private static final Logger logger = LoggerFactory.getLogger(PageController.class);
   private final ShorterService shorterService;
+  private final LinkMetrics linkMetrics;
+  private final AccessLog accessLog;
+  private final String countryHeader;
+  private final String clientIpHeader;
 
-  public PageController(ShorterService shorterService) {
+  public PageController(ShorterService shorterService,
+                        LinkMetrics linkMetrics,
+                        AccessLog accessLog,
+                        @Value("${link-shorter.analytics.country-header:X-Country-Code}") String countryHeader,
+                        @Value("${link-shorter.analytics.client-ip-header:X-Real-IP}") String clientIpHeader) {
     this.shorterService = shorterService;
+    this.linkMetrics = linkMetrics;
+    this.accessLog = accessLog;
+    this.countryHeader = countryHeader;
+    this.clientIpHeader = clientIpHeader;
   }
 
   @GetMapping("/")
   public String homePage() {
-    logger.info("GET / - Home page");
+    logger.debug("GET / - Home page");
     return "index";
   }
 
   @GetMapping("/{shortKey}")
-  public ResponseEntity<String> redirect(@PathVariable String shortKey) {
-    logger.info("GET /{} - Redirect attempt", shortKey);
+  public ResponseEntity<String> redirect(@PathVariable String shortKey, HttpServletRequest request) {
+    long start = System.nanoTime();
+    int status = HttpStatus.FOUND.value();
     try {
-      LinkDto linkDto = shorterService.getIncrementedOriginalLinkByShortKey(shortKey);
-
-      String url = linkDto.originalUrl();
-      if (!url.startsWith("http://") && !url.startsWith("https://")) {
-        url = "https://" + url;
-      }
-
-      logger.info("Redirecting {} -> {}", shortKey, url);
-      return ResponseEntity.status(HttpStatus.FOUND)
-          .location(URI.create(url))
-          .build();
+      String redirect = request.getHeader(ProxyCachePurger.REFRESH_HEADER) != null
+          ? shorterService.refreshRedirectLocation(shortKey)
+          : shorterService.getRedirectLocation(shortKey, clickSource(request, countryHeader, clientIpHeader));
+      status = RedirectLocations.status(redirect);
+      return redirectResponse(redirect);
     } catch (LinkNotFoundException e) {
-      logger.warn("Link not found for key: {}", shortKey);
+      status = HttpStatus.NOT_FOUND.value();
       return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Ссылка не найдена");
     } catch (Exception e) {
-      logger.warn("Error with link: {}", shortKey);
-      logger.warn(e.toString());
+      status = HttpStatus.BAD_REQUEST.value();
+      logger.warn("Error with link: {}", shortKey, e);
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Непредвиденная ошибка");
+    } finally {
+      linkMetrics.recordRedirect(start);
+      accessLog.redirect(shortKey, status, start);
+    }
+  }
+
+  // The status, Location and Cache-Control of a location prepared by RedirectLocations.
+  static ResponseEntity<String> redirectResponse(String redirect) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(RedirectLocations.status(redirect))
+        .header(HttpHeaders.LOCATION, RedirectLocations.location(redirect));
+    String cacheControl = RedirectLocations.cacheControl(redirect);
+    if (cacheControl != null) {
+      response.header(HttpHeaders.CACHE_CONTROL, cacheControl);
     }
+    return response.build();
+  }
+
+  static ClickSource clickSource(HttpServletRequest request, String countryHeader, String clientIpHeader) {
+    String clientIp = request.getHeader(clientIpHeader);
+    return new ClickSource(request.getHeader(HttpHeaders.REFERER), request.getHeader(countryHeader),
+        clientIp == null ? request.getRemoteAddr() : clientIp, request.getHeader(HttpHeaders.USER_AGENT));
   }
 }
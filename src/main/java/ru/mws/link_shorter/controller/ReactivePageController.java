@@ -0,0 +1,85 @@
+package ru.mws.link_shorter.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Mono;
+import ru.mws.link_shorter.cache.ProxyCachePurger;
+import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ClickSource;
+import ru.mws.link_shorter.service.ReactiveShorterService;
+
+import java.net.InetSocketAddress;
+
+/**
+ * {@link PageController} of the reactive mode.
+ */
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePageController {
+  private static final Logger logger = LoggerFactory.getLogger(ReactivePageController.class);
+  private final ReactiveShorterService shorterService;
+  private final LinkMetrics linkMetrics;
+  private final AccessLog accessLog;
+  private final String countryHeader;
+  private final String clientIpHeader;
+
+  public ReactivePageController(ReactiveShorterService shorterService,
+                                LinkMetrics linkMetrics,
+                                AccessLog accessLog,
+                                @Value("${link-shorter.analytics.country-header:X-Country-Code}") String countryHeader,
+                                @Value("${link-shorter.analytics.client-ip-header:X-Real-IP}") String clientIpHeader) {
+    this.shorterService = shorterService;
+    this.linkMetrics = linkMetrics;
+    this.accessLog = accessLog;
+    this.countryHeader = countryHeader;
+    this.clientIpHeader = clientIpHeader;
+  }
+
+  @GetMapping("/")
+  public String homePage() {
+    logger.debug("GET / - Home page");
+    return "index";
+  }
+
+  @GetMapping("/{shortKey}")
+  public Mono<ResponseEntity<String>> redirect(@PathVariable String shortKey, ServerHttpRequest request) {
+    long start = System.nanoTime();
+    Mono<String> redirect = request.getHeaders().containsKey(ProxyCachePurger.REFRESH_HEADER)
+        ? shorterService.refreshRedirectLocation(shortKey)
+        : shorterService.getRedirectLocation(shortKey, clickSource(request));
+    return redirect
+        .map(PageController::redirectResponse)
+        .onErrorResume(LinkNotFoundException.class,
+            e -> Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body("Ссылка не найдена")))
+        .onErrorResume(e -> {
+          logger.warn("Error with link: {}", shortKey, e);
+          return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Непредвиденная ошибка"));
+        })
+        .doOnNext(response -> {
+          linkMetrics.recordRedirect(start);
+          accessLog.redirect(shortKey, response.getStatusCode().value(), start);
+        });
+  }
+
+  private ClickSource clickSource(ServerHttpRequest request) {
+    HttpHeaders headers = request.getHeaders();
+    String clientIp = headers.getFirst(clientIpHeader);
+    if (clientIp == null) {
+      InetSocketAddress remoteAddress = request.getRemoteAddress();
+      clientIp = remoteAddress == null ? null : remoteAddress.getHostString();
+    }
+    return new ClickSource(headers.getFirst(HttpHeaders.REFERER), headers.getFirst(countryHeader),
+        clientIp, headers.getFirst(HttpHeaders.USER_AGENT));
+  }
+}
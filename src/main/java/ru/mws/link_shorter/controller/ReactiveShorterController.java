@@ -0,0 +1,234 @@
+package ru.mws.link_shorter.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mws.link_shorter.dto.BatchLinkResult;
+import ru.mws.link_shorter.dto.StatsGranularity;
+import ru.mws.link_shorter.exception.LinkIsInvalid;
+import ru.mws.link_shorter.exception.LinkLengthOverflow;
+import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.exception.RedirectIsInvalid;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.ratelimit.RateLimits;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+import ru.mws.link_shorter.service.LinkStatsService;
+import ru.mws.link_shorter.service.ReactiveShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link ShorterController} of the reactive mode, with the same paths, responses and messages.
+ */
+@RequestMapping("/api/links")
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveShorterController {
+  private static final Logger logger = LoggerFactory.getLogger(ReactiveShorterController.class);
+  private static final Duration DEFAULT_STATS_RANGE = Duration.ofDays(1);
+  private static final int DEFAULT_VISITORS_DAYS = 30;
+  private static final int TRENDING_MAX_LIMIT = 100;
+  private final ReactiveShorterService shorterService;
+  private final LinkStatsService linkStatsService;
+  private final TrendingLinks trendingLinks;
+  private final ObjectMapper objectMapper;
+  private final LinkMetrics linkMetrics;
+  private final RateLimits rateLimits;
+  private final int batchMaxSize;
+  private final int batchChunkSize;
+
+  public ReactiveShorterController(ReactiveShorterService shorterService,
+                                   LinkStatsService linkStatsService,
+                                   TrendingLinks trendingLinks,
+                                   ObjectMapper objectMapper,
+                                   LinkMetrics linkMetrics,
+                                   ObjectProvider<RateLimits> rateLimits,
+                                   @Value("${link-shorter.batch.max-size:10000}") int batchMaxSize,
+                                   @Value("${link-shorter.batch.chunk-size:1000}") int batchChunkSize) {
+    this.shorterService = shorterService;
+    this.linkStatsService = linkStatsService;
+    this.trendingLinks = trendingLinks;
+    this.objectMapper = objectMapper;
+    this.linkMetrics = linkMetrics;
+    this.rateLimits = rateLimits.getIfAvailable();
+    this.batchMaxSize = batchMaxSize;
+    this.batchChunkSize = batchChunkSize;
+  }
+
+  @GetMapping("/trending")
+  public Mono<ResponseEntity<?>> getTrendingLinks(@RequestParam(defaultValue = "1h") String window,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+    logger.debug("GET /api/links/trending - window: {}, limit: {}", window, limit);
+    if (limit < 1 || limit > TRENDING_MAX_LIMIT) {
+      return Mono.just(ResponseEntity.badRequest().body("Размер списка должен быть от 1 до " + TRENDING_MAX_LIMIT));
+    }
+    TrendingLinks.Window trendingWindow;
+    try {
+      trendingWindow = TrendingLinks.Window.of(window);
+    } catch (IllegalArgumentException e) {
+      return Mono.just(ResponseEntity.badRequest().body("Неизвестное окно, ожидается 5m, 1h или 24h"));
+    }
+    return ReactiveShorterService.offload(() -> ResponseEntity.ok(trendingLinks.top(trendingWindow, limit)));
+  }
+
+  @GetMapping("/{shortKey}")
+  public Mono<ResponseEntity<?>> getLink(@PathVariable String shortKey) {
+    logger.debug("GET /api/links/{}", shortKey);
+    long start = System.nanoTime();
+    return shorterService.getOriginalLinkByShortKey(shortKey)
+        .<ResponseEntity<?>>map(ShorterController::linkResponse)
+        .onErrorResume(LinkNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()))
+        .onErrorResume(LinkIsInvalid.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+        .doFinally(signal -> linkMetrics.recordGetLink(start));
+  }
+
+  @GetMapping("/{shortKey}/stats")
+  public Mono<ResponseEntity<?>> getLinkStats(@PathVariable String shortKey,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                              @RequestParam(defaultValue = "hour") String granularity) {
+    logger.debug("GET /api/links/{}/stats - from: {}, to: {}, granularity: {}", shortKey, from, to, granularity);
+    Instant end = to == null ? Instant.now() : to;
+    Instant start = from == null ? end.minus(DEFAULT_STATS_RANGE) : from;
+    return ReactiveShorterService.<ResponseEntity<?>>offload(() -> ResponseEntity.ok(
+            linkStatsService.getStats(shortKey, start, end, StatsGranularity.of(granularity))))
+        .onErrorResume(LinkNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()))
+        .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest()
+            .body("Некорректный период или шаг статистики (minute, hour или day)")));
+  }
+
+  @GetMapping("/{shortKey}/visitors")
+  public Mono<ResponseEntity<?>> getUniqueVisitors(@PathVariable String shortKey,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    logger.debug("GET /api/links/{}/visitors - from: {}, to: {}", shortKey, from, to);
+    LocalDate lastDay = to == null ? LocalDate.now(ZoneOffset.UTC) : to;
+    LocalDate firstDay = from == null ? lastDay.minusDays(DEFAULT_VISITORS_DAYS - 1) : from;
+    return ReactiveShorterService.<ResponseEntity<?>>offload(() -> ResponseEntity.ok(
+            linkStatsService.getUniqueVisitors(shortKey, firstDay, lastDay)))
+        .onErrorResume(LinkNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()))
+        .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().body("Некорректный период")));
+  }
+
+  @PostMapping("/")
+  public Mono<ResponseEntity<?>> postShortLink(@Valid @RequestBody CreateLinkRequest request) {
+    logger.debug("POST /api/links/ - URL: {}, Length: {}", request.url(), request.len());
+    long start = System.nanoTime();
+    return shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(),
+            request.expiresAt())
+        .<ResponseEntity<?>>map(ResponseEntity::ok)
+        .onErrorResume(e -> {
+          if (e instanceof RedirectIsInvalid) {
+            logger.warn("Redirect is invalid: {}", request.redirect());
+            return Mono.just(ResponseEntity.badRequest().body(ShorterController.REDIRECT_INVALID));
+          }
+          if (e instanceof LinkLengthOverflow) {
+            logger.warn("Link is too long: {}", request.url());
+            return Mono.just(ResponseEntity.badRequest().body("Длина ссылки превосходит " + CreateLinkRequest.MAX_URL_LENGTH + " символов"));
+          }
+          if (e instanceof LinkIsInvalid) {
+            logger.warn("Link is invalid: {}", request.url());
+            return Mono.just(ResponseEntity.badRequest().body("Ссылки невалидна"));
+          }
+          logger.warn("Error with link: {}", request.url());
+          return Mono.just(ResponseEntity.badRequest().body("Непредвиденная ошибка"));
+        })
+        .doFinally(signal -> linkMetrics.recordCreate(start));
+  }
+
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ResponseEntity<?>> postShortLinks(@RequestBody List<CreateLinkRequest> requests,
+                                                ServerHttpRequest request) {
+    logger.info("POST /api/links/batch - {} links", requests.size());
+    if (requests.size() > batchMaxSize) {
+      return Mono.just(ResponseEntity.badRequest().body("Размер пакета превосходит " + batchMaxSize + " ссылок"));
+    }
+    long start = System.nanoTime();
+    int allowed = allowedLinks(requests.size(), request);
+    return shorterService.createShortLinks(allowed == requests.size() ? requests : requests.subList(0, allowed))
+        .map(created -> {
+          List<BatchLinkResult> results = new ArrayList<>(created);
+          while (results.size() < requests.size()) {
+            results.add(BatchLinkResult.failed(RateLimits.THROTTLED_LINK_MESSAGE));
+          }
+          return results;
+        })
+        .<ResponseEntity<?>>map(ResponseEntity::ok)
+        .doFinally(signal -> linkMetrics.recordBatchCreate(start));
+  }
+
+  // The body arrives line by line; each chunk of lines is created in one batch before the next is read.
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<BatchLinkResult> postShortLinksStream(@RequestBody Flux<String> lines, ServerHttpRequest request) {
+    logger.info("POST /api/links/batch - NDJSON stream");
+    long start = System.nanoTime();
+    return lines.filter(line -> !line.isBlank())
+        .map(this::parseLine)
+        .buffer(batchChunkSize)
+        .concatMap(chunk -> createChunk(chunk, request).flatMapIterable(results -> results))
+        .doFinally(signal -> linkMetrics.recordBatchCreate(start));
+  }
+
+  private Mono<List<BatchLinkResult>> createChunk(List<ParsedLine> chunk, ServerHttpRequest request) {
+    List<CreateLinkRequest> parsed = chunk.stream().map(ParsedLine::request).filter(Objects::nonNull).toList();
+    int allowed = allowedLinks(parsed.size(), request);
+    return shorterService.createShortLinks(parsed.subList(0, allowed)).map(created -> {
+      List<BatchLinkResult> results = new ArrayList<>(chunk.size());
+      int next = 0;
+      for (ParsedLine item : chunk) {
+        if (item.request() == null) {
+          results.add(BatchLinkResult.failed(ShorterController.MALFORMED_LINE));
+        } else if (next < allowed) {
+          results.add(created.get(next++));
+        } else {
+          results.add(BatchLinkResult.failed(RateLimits.THROTTLED_LINK_MESSAGE));
+        }
+      }
+      return results;
+    });
+  }
+
+  // The rate limit filter let the request itself through; each link takes a permit of its own.
+  private int allowedLinks(int links, ServerHttpRequest request) {
+    if (rateLimits == null || links == 0) {
+      return links;
+    }
+    return rateLimits.acquireLinks(links, request.getHeaders().getFirst(RateLimits.API_KEY_HEADER),
+        request.getHeaders().getFirst(RateLimits.FORWARDED_FOR_HEADER),
+        () -> {
+          InetSocketAddress remoteAddress = request.getRemoteAddress();
+          return remoteAddress == null ? "" : remoteAddress.getHostString();
+        });
+  }
+
+  private ParsedLine parseLine(String line) {
+    try {
+      return new ParsedLine(objectMapper.readValue(line, CreateLinkRequest.class));
+    } catch (JsonProcessingException e) {
+      return new ParsedLine(null);
+    }
+  }
+
+  // Flux elements cannot be null, so a malformed line is a holder without a request.
+  private record ParsedLine(CreateLinkRequest request) {}
+}
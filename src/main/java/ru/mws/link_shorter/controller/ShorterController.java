@@ -1,62 +1,289 @@
 package ru.mws.link_shorter.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import ru.mws.link_shorter.dto.BatchLinkResult;
 import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.dto.StatsGranularity;
 import ru.mws.link_shorter.exception.LinkIsInvalid;
 import ru.mws.link_shorter.exception.LinkLengthOverflow;
 import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.exception.RedirectIsInvalid;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.ratelimit.RateLimits;
 import ru.mws.link_shorter.request.CreateLinkRequest;
+import ru.mws.link_shorter.service.LinkStatsService;
 import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 @RequestMapping("/api/links")
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ShorterController {
   private static final Logger logger = LoggerFactory.getLogger(ShorterController.class);
+  private static final Duration DEFAULT_STATS_RANGE = Duration.ofDays(1);
+  private static final int DEFAULT_VISITORS_DAYS = 30;
+  private static final int TRENDING_MAX_LIMIT = 100;
+  private static final String STATS_UNAVAILABLE = "Статистика недоступна при встроенном хранилище";
+  static final String MALFORMED_LINE = "Строка не является корректным JSON";
+  static final String REDIRECT_INVALID = "Редирект должен быть 301, 302 или 308 с max-age от 0 до "
+      + RedirectMode.MAX_AGE_LIMIT + " секунд";
   private final ShorterService shorterService;
+  private final LinkStatsService linkStatsService;
+  private final TrendingLinks trendingLinks;
+  private final ObjectMapper objectMapper;
+  private final LinkMetrics linkMetrics;
+  private final RateLimits rateLimits;
+  private final int batchMaxSize;
+  private final int batchChunkSize;
 
-  public ShorterController(ShorterService shorterService) {
+  // Click statistics live in Postgres and are absent under the embedded profile; rate limits can be
+  // switched off.
+  public ShorterController(ShorterService shorterService,
+                           ObjectProvider<LinkStatsService> linkStatsService,
+                           TrendingLinks trendingLinks,
+                           ObjectMapper objectMapper,
+                           LinkMetrics linkMetrics,
+                           ObjectProvider<RateLimits> rateLimits,
+                           @Value("${link-shorter.batch.max-size:10000}") int batchMaxSize,
+                           @Value("${link-shorter.batch.chunk-size:1000}") int batchChunkSize) {
     this.shorterService = shorterService;
+    this.linkStatsService = linkStatsService.getIfAvailable();
+    this.trendingLinks = trendingLinks;
+    this.objectMapper = objectMapper;
+    this.linkMetrics = linkMetrics;
+    this.rateLimits = rateLimits.getIfAvailable();
+    this.batchMaxSize = batchMaxSize;
+    this.batchChunkSize = batchChunkSize;
+  }
+
+  @GetMapping("/trending")
+  public ResponseEntity<?> getTrendingLinks(@RequestParam(defaultValue = "1h") String window,
+                                            @RequestParam(defaultValue = "10") int limit) {
+    logger.debug("GET /api/links/trending - window: {}, limit: {}", window, limit);
+    if (limit < 1 || limit > TRENDING_MAX_LIMIT) {
+      return ResponseEntity.badRequest().body("Размер списка должен быть от 1 до " + TRENDING_MAX_LIMIT);
+    }
+    try {
+      return ResponseEntity.ok(trendingLinks.top(TrendingLinks.Window.of(window), limit));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body("Неизвестное окно, ожидается 5m, 1h или 24h");
+    }
   }
 
   @GetMapping("/{shortKey}")
   public ResponseEntity<?> getLink(@PathVariable String shortKey) {
-    logger.info("GET /api/links/{}", shortKey);
+    logger.debug("GET /api/links/{}", shortKey);
+    long start = System.nanoTime();
     try {
       LinkDto linkDto = shorterService.getOriginalLinkByShortKey(shortKey);
-      logger.info("Found link: {}", linkDto);
-      return ResponseEntity.ok(linkDto);
+      logger.debug("Found link: {}", linkDto);
+      return linkResponse(linkDto);
     } catch (LinkNotFoundException e) {
-      logger.warn("Link not found: {}", shortKey);
+      logger.debug("Link not found: {}", shortKey);
       return ResponseEntity.notFound().build();
     } catch (LinkIsInvalid e) {
       logger.warn("Link is invalid: {}", shortKey);
       return ResponseEntity.badRequest().build();
+    } finally {
+      linkMetrics.recordGetLink(start);
+    }
+  }
+
+  @GetMapping("/{shortKey}/stats")
+  public ResponseEntity<?> getLinkStats(@PathVariable String shortKey,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                        @RequestParam(defaultValue = "hour") String granularity) {
+    logger.debug("GET /api/links/{}/stats - from: {}, to: {}, granularity: {}", shortKey, from, to, granularity);
+    if (linkStatsService == null) {
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(STATS_UNAVAILABLE);
+    }
+    Instant end = to == null ? Instant.now() : to;
+    Instant start = from == null ? end.minus(DEFAULT_STATS_RANGE) : from;
+    try {
+      return ResponseEntity.ok(linkStatsService.getStats(shortKey, start, end, StatsGranularity.of(granularity)));
+    } catch (LinkNotFoundException e) {
+      return ResponseEntity.notFound().build();
+    } catch (IllegalArgumentException e) {
+      logger.debug("Invalid stats request for {}: {}", shortKey, e.getMessage());
+      return ResponseEntity.badRequest().body("Некорректный период или шаг статистики (minute, hour или day)");
+    }
+  }
+
+  @GetMapping("/{shortKey}/visitors")
+  public ResponseEntity<?> getUniqueVisitors(@PathVariable String shortKey,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    logger.debug("GET /api/links/{}/visitors - from: {}, to: {}", shortKey, from, to);
+    if (linkStatsService == null) {
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(STATS_UNAVAILABLE);
+    }
+    LocalDate lastDay = to == null ? LocalDate.now(ZoneOffset.UTC) : to;
+    LocalDate firstDay = from == null ? lastDay.minusDays(DEFAULT_VISITORS_DAYS - 1) : from;
+    try {
+      return ResponseEntity.ok(linkStatsService.getUniqueVisitors(shortKey, firstDay, lastDay));
+    } catch (LinkNotFoundException e) {
+      return ResponseEntity.notFound().build();
+    } catch (IllegalArgumentException e) {
+      logger.debug("Invalid visitors request for {}: {}", shortKey, e.getMessage());
+      return ResponseEntity.badRequest().body("Некорректный период");
     }
   }
 
   @PostMapping("/")
   public ResponseEntity<?> postShortLink(@Valid @RequestBody CreateLinkRequest request, HttpServletResponse response) throws IOException {
-    logger.info("POST /api/links/ - URL: {}, Length: {}", request.url(), request.len());
+    logger.debug("POST /api/links/ - URL: {}, Length: {}", request.url(), request.len());
+    long start = System.nanoTime();
     try {
-      LinkDto linkDto = shorterService.createShortLinkWithLen(request.url(), request.len());
-      logger.info("Created link: {}", linkDto);
+      LinkDto linkDto = shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(),
+          request.expiresAt());
+      logger.debug("Created link: {}", linkDto);
       return ResponseEntity.ok(linkDto);
+    } catch (RedirectIsInvalid e) {
+      logger.warn("Redirect is invalid: {}", request.redirect());
+      return ResponseEntity.badRequest().body(REDIRECT_INVALID);
     } catch (LinkLengthOverflow e) {
       logger.warn("Link is too long: {}", request.url());
-      return ResponseEntity.badRequest().body("Длина ссылки превосходит 128 символов");
+      return ResponseEntity.badRequest().body("Длина ссылки превосходит " + CreateLinkRequest.MAX_URL_LENGTH + " символов");
     } catch (LinkIsInvalid e) {
       logger.warn("Link is invalid: {}", request.url());
       return ResponseEntity.badRequest().body("Ссылки невалидна");
     } catch (Exception e) {
       logger.warn("Error with link: {}", request.url());
       return ResponseEntity.badRequest().body("Непредвиденная ошибка");
+    } finally {
+      linkMetrics.recordCreate(start);
+    }
+  }
+
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<?> postShortLinks(@RequestBody List<CreateLinkRequest> requests, HttpServletRequest request) {
+    logger.info("POST /api/links/batch - {} links", requests.size());
+    if (requests.size() > batchMaxSize) {
+      return ResponseEntity.badRequest().body("Размер пакета превосходит " + batchMaxSize + " ссылок");
+    }
+    long start = System.nanoTime();
+    try {
+      int allowed = allowedLinks(requests.size(), request);
+      if (allowed == requests.size()) {
+        return ResponseEntity.ok(shorterService.createShortLinks(requests));
+      }
+      List<BatchLinkResult> results = new ArrayList<>(shorterService.createShortLinks(requests.subList(0, allowed)));
+      while (results.size() < requests.size()) {
+        results.add(BatchLinkResult.failed(RateLimits.THROTTLED_LINK_MESSAGE));
+      }
+      return ResponseEntity.ok(results);
+    } finally {
+      linkMetrics.recordBatchCreate(start);
+    }
+  }
+
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  public void postShortLinksStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    logger.info("POST /api/links/batch - NDJSON stream");
+    long start = System.nanoTime();
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    BufferedReader reader = request.getReader();
+    OutputStream out = response.getOutputStream();
+    List<CreateLinkRequest> chunk = new ArrayList<>(batchChunkSize);
+    int total = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      try {
+        chunk.add(objectMapper.readValue(line, CreateLinkRequest.class));
+      } catch (JsonProcessingException e) {
+        chunk.add(null);
+      }
+      if (chunk.size() == batchChunkSize) {
+        total += writeChunk(chunk, out, request);
+      }
+    }
+    total += writeChunk(chunk, out, request);
+    linkMetrics.recordBatchCreate(start);
+    logger.info("Streamed {} batch results", total);
+  }
+
+  // Spring answers 304 by itself when If-None-Match names this ETag. The ETag covers the click count,
+  // so a client revalidates on every use and downloads the link again only after new clicks.
+  static ResponseEntity<?> linkResponse(LinkDto link) {
+    return ResponseEntity.ok()
+        .eTag(eTag(link))
+        .cacheControl(CacheControl.noCache())
+        .body(link);
+  }
+
+  private static String eTag(LinkDto link) {
+    String fields = link.shortKey() + '\n' + link.originalUrl() + '\n' + link.clickCount() + '\n' + link.redirect();
+    return '"' + DigestUtils.md5DigestAsHex(fields.getBytes(StandardCharsets.UTF_8)) + '"';
+  }
+
+  private int writeChunk(List<CreateLinkRequest> chunk, OutputStream out, HttpServletRequest request)
+      throws IOException {
+    if (chunk.isEmpty()) {
+      return 0;
+    }
+    List<CreateLinkRequest> parsed = chunk.stream().filter(Objects::nonNull).toList();
+    int allowed = allowedLinks(parsed.size(), request);
+    List<BatchLinkResult> created = shorterService.createShortLinks(parsed.subList(0, allowed));
+    int next = 0;
+    for (CreateLinkRequest item : chunk) {
+      BatchLinkResult result;
+      if (item == null) {
+        result = BatchLinkResult.failed(MALFORMED_LINE);
+      } else if (next < allowed) {
+        result = created.get(next++);
+      } else {
+        result = BatchLinkResult.failed(RateLimits.THROTTLED_LINK_MESSAGE);
+      }
+      out.write(objectMapper.writeValueAsBytes(result));
+      out.write('\n');
+    }
+    out.flush();
+    int written = chunk.size();
+    chunk.clear();
+    return written;
+  }
+
+  // The rate limit filter let the request itself through; each link takes a permit of its own.
+  private int allowedLinks(int links, HttpServletRequest request) {
+    if (rateLimits == null || links == 0) {
+      return links;
     }
+    return rateLimits.acquireLinks(links, request.getHeader(RateLimits.API_KEY_HEADER),
+        request.getHeader(RateLimits.FORWARDED_FOR_HEADER), request::getRemoteAddr);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package ru.mws.link_shorter.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Результат сокращения одной ссылки из пакета")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchLinkResult(
+    @Schema(description = "Сокращенная ссылка, если создание прошло успешно")
+    LinkDto link,
+
+    @Schema(description = "Причина ошибки, если ссылку сократить не удалось", example = "Link is invalid: abc")
+    String error
+) {
+  public static BatchLinkResult created(LinkDto link) {
+    return new BatchLinkResult(link, null);
+  }
+
+  public static BatchLinkResult failed(String error) {
+    return new BatchLinkResult(null, error);
+  }
+}
@@ -0,0 +1,27 @@
+package ru.mws.link_shorter.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Итог импорта ссылок")
+public record ImportReport(
+    @Schema(description = "Строк прочитано из файла, включая пропущенные при возобновлении", example = "100000")
+    long rowsRead,
+
+    @Schema(description = "Строк пропущено по контрольной точке предыдущего запуска", example = "0")
+    long rowsResumed,
+
+    @Schema(description = "Ссылок добавлено", example = "99000")
+    long inserted,
+
+    @Schema(description = "Ссылок пропущено, потому что ключ или URL уже заняты", example = "990")
+    long conflicts,
+
+    @Schema(description = "Строк, которые не удалось разобрать", example = "10")
+    long invalid,
+
+    @Schema(description = "Ссылок пропущено, потому что их срок уже истёк", example = "5")
+    long expired,
+
+    @Schema(description = "Скорость импорта, строк в секунду", example = "52000.5")
+    double rowsPerSecond
+) {}
@@ -1,7 +1,10 @@
 package ru.mws.link_shorter.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.time.Instant;
+
 @Schema(description = "Информация о сокращенной ссылке")
 public record LinkDto(
     @Schema(description = "Короткий ключ", example = "AbCdEf")
@@ -11,5 +14,21 @@ public record LinkDto(
     String originalUrl,
 
     @Schema(description = "Количество переходов", example = "42")
-    int clickCount
-) {}
\ No newline at end of file
+    long clickCount,
+
+    @Schema(description = "Кэшируемый редирект, если он задан при создании ссылки")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    RedirectMode redirect,
+
+    @Schema(description = "Когда ссылка перестанет работать, если срок задан при создании", example = "2030-01-01T00:00:00Z")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Instant expiresAt
+) {
+  public LinkDto(String shortKey, String originalUrl, long clickCount) {
+    this(shortKey, originalUrl, clickCount, null, null);
+  }
+
+  public LinkDto(String shortKey, String originalUrl, long clickCount, RedirectMode redirect) {
+    this(shortKey, originalUrl, clickCount, redirect, null);
+  }
+}
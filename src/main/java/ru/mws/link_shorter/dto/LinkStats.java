@@ -0,0 +1,51 @@
+package ru.mws.link_shorter.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+@Schema(description = "Статистика переходов по ссылке за период")
+public record LinkStats(
+    @Schema(description = "Короткий ключ", example = "AbCdEf")
+    String shortKey,
+
+    @Schema(description = "Шаг временного ряда: minute, hour или day", example = "hour")
+    String granularity,
+
+    @Schema(description = "Начало периода включительно, UTC", example = "2025-01-01T00:00:00Z")
+    Instant from,
+
+    @Schema(description = "Конец периода не включительно, UTC", example = "2025-01-02T00:00:00Z")
+    Instant to,
+
+    @Schema(description = "Переходов за период", example = "1250")
+    long total,
+
+    @Schema(description = "Непустые интервалы по возрастанию времени. Старые данные хранятся крупнее и попадают в интервал своего часа или дня")
+    List<Bucket> buckets,
+
+    @Schema(description = "Самые частые источники переходов; пустая строка означает прямой переход")
+    List<Dimension> referrers,
+
+    @Schema(description = "Самые частые страны (ISO 3166-1 alpha-2); пустая строка означает, что страна неизвестна")
+    List<Dimension> countries
+) {
+  @Schema(description = "Переходы за интервал")
+  public record Bucket(
+      @Schema(description = "Начало интервала, UTC", example = "2025-01-01T13:00:00Z")
+      Instant start,
+
+      @Schema(description = "Переходов за интервал", example = "42")
+      long clicks
+  ) {}
+
+  @Schema(description = "Переходы с одним значением измерения")
+  public record Dimension(
+      @Schema(description = "Значение", example = "t.me")
+      String value,
+
+      @Schema(description = "Переходов", example = "700")
+      long clicks
+  ) {}
+}
@@ -0,0 +1,19 @@
+package ru.mws.link_shorter.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Кэшируемый редирект ссылки. Без него ссылка отвечает 302 без Cache-Control")
+public record RedirectMode(
+    @Schema(description = "Код редиректа: 301, 302 или 308", example = "301")
+    int type,
+
+    @Schema(description = "Сколько секунд браузеры и прокси могут хранить редирект, от 0 до 31536000", example = "86400")
+    int maxAge
+) {
+  public static final int MAX_AGE_LIMIT = 31_536_000;
+
+  public static boolean isValid(RedirectMode redirect) {
+    int type = redirect.type();
+    return (type == 301 || type == 302 || type == 308) && redirect.maxAge() >= 0 && redirect.maxAge() <= MAX_AGE_LIMIT;
+  }
+}
@@ -0,0 +1,29 @@
+package ru.mws.link_shorter.dto;
+
+import java.time.Duration;
+import java.util.Locale;
+
+public enum StatsGranularity {
+  MINUTE(Duration.ofMinutes(1)),
+  HOUR(Duration.ofHours(1)),
+  DAY(Duration.ofDays(1));
+
+  private final Duration step;
+
+  StatsGranularity(Duration step) {
+    this.step = step;
+  }
+
+  public Duration step() {
+    return step;
+  }
+
+  // Also the date_trunc field name.
+  public String fieldName() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  public static StatsGranularity of(String name) {
+    return valueOf(name.toUpperCase(Locale.ROOT));
+  }
+}
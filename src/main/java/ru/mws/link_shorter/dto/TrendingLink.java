@@ -0,0 +1,15 @@
+package ru.mws.link_shorter.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Популярная ссылка за окно времени")
+public record TrendingLink(
+    @Schema(description = "Короткий ключ", example = "AbCdEf")
+    String shortKey,
+
+    @Schema(description = "Оценка числа переходов за окно, не меньше настоящего", example = "1520")
+    long clicks,
+
+    @Schema(description = "Насколько оценка может превышать настоящее число переходов", example = "12")
+    long maxOverestimate
+) {}
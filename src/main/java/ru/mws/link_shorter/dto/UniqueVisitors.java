@@ -0,0 +1,33 @@
+package ru.mws.link_shorter.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Schema(description = "Оценка числа уникальных посетителей ссылки (HyperLogLog, погрешность около 2%)")
+public record UniqueVisitors(
+    @Schema(description = "Короткий ключ", example = "AbCdEf")
+    String shortKey,
+
+    @Schema(description = "Первый день периода, UTC", example = "2025-01-01")
+    LocalDate from,
+
+    @Schema(description = "Последний день периода включительно, UTC", example = "2025-01-31")
+    LocalDate to,
+
+    @Schema(description = "Уникальных посетителей за весь период; посетитель, заходивший в разные дни, считается один раз", example = "5300")
+    long total,
+
+    @Schema(description = "Уникальные посетители по дням, только дни с переходами")
+    List<Day> days
+) {
+  @Schema(description = "Уникальные посетители за день")
+  public record Day(
+      @Schema(description = "День, UTC", example = "2025-01-01")
+      LocalDate day,
+
+      @Schema(description = "Уникальных посетителей", example = "420")
+      long visitors
+  ) {}
+}
@@ -1,14 +1,12 @@
 package ru.mws.link_shorter.entity;
 
 import jakarta.persistence.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
 
 @Table(name = "links")
 @Entity
 public class LinkEntity {
-  private static final Logger logger = LoggerFactory.getLogger(LinkEntity.class);
-
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
@@ -16,11 +14,21 @@ public class LinkEntity {
   @Column(name = "short_key", nullable = false)
   private String shortKey;
 
-  @Column(name = "original_url", nullable = false)
+  @Column(name = "original_url", nullable = false, length = 4096)
   private String originalUrl;
 
   @Column(name = "click_count")
-  private int clickCount;
+  private long clickCount;
+
+  // SMALLINT in the schema, which validation does not match with an Integer field.
+  @Column(name = "redirect_type")
+  private Short redirectType;
+
+  @Column(name = "redirect_max_age")
+  private Integer redirectMaxAge;
+
+  @Column(name = "expires_at")
+  private Instant expiresAt;
 
   public LinkEntity() {
   }
@@ -29,16 +37,6 @@ public class LinkEntity {
     this.originalUrl = originalUrl;
   }
 
-  @PrePersist
-  public void logCreate() {
-    logger.debug("Creating new LinkEntity: {}", this);
-  }
-
-  @PreUpdate
-  public void logUpdate() {
-    logger.debug("Updating LinkEntity: {}", this);
-  }
-
   public String getId() {
     return shortKey;
   }
@@ -59,11 +57,35 @@ public class LinkEntity {
     this.originalUrl = originalUrl;
   }
 
-  public int getClickCount() {
+  public long getClickCount() {
     return clickCount;
   }
 
-  public void setClickCount(int clickCount) {
+  public void setClickCount(long clickCount) {
     this.clickCount = clickCount;
   }
+
+  public Integer getRedirectType() {
+    return redirectType == null ? null : redirectType.intValue();
+  }
+
+  public void setRedirectType(Integer redirectType) {
+    this.redirectType = redirectType == null ? null : redirectType.shortValue();
+  }
+
+  public Integer getRedirectMaxAge() {
+    return redirectMaxAge;
+  }
+
+  public void setRedirectMaxAge(Integer redirectMaxAge) {
+    this.redirectMaxAge = redirectMaxAge;
+  }
+
+  public Instant getExpiresAt() {
+    return expiresAt;
+  }
+
+  public void setExpiresAt(Instant expiresAt) {
+    this.expiresAt = expiresAt;
+  }
 }
@@ -0,0 +1,7 @@
+package ru.mws.link_shorter.exception;
+
+public class RedirectIsInvalid extends RuntimeException {
+  public RedirectIsInvalid(String message) {
+    super(message);
+  }
+}
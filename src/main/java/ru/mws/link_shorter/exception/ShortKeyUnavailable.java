@@ -0,0 +1,7 @@
+package ru.mws.link_shorter.exception;
+
+public class ShortKeyUnavailable extends RuntimeException {
+  public ShortKeyUnavailable(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,67 @@
+package ru.mws.link_shorter.keygen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.exception.ShortKeyUnavailable;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.math.BigInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out unique short keys without probing the database. Every instance reserves blocks of
+ * ids from a per-length sequence of the {@link LinkStore} (hi/lo) and encodes them with {@link ShortKeyCodec}.
+ */
+@Component
+public class ShortKeyAllocator {
+  private static final Logger logger = LoggerFactory.getLogger(ShortKeyAllocator.class);
+
+  private final LinkStore linkStore;
+  private final int blockSize;
+  private final KeyBlock[] blocks = new KeyBlock[ShortKeyCodec.MAX_LENGTH + 1];
+
+  public ShortKeyAllocator(LinkStore linkStore,
+                           @Value("${link-shorter.keys.block-size:1000}") int blockSize) {
+    this.linkStore = linkStore;
+    this.blockSize = blockSize;
+    for (int len = ShortKeyCodec.MIN_LENGTH; len <= ShortKeyCodec.MAX_LENGTH; len++) {
+      blocks[len] = new KeyBlock();
+    }
+  }
+
+  public String allocate(int len) {
+    return ShortKeyCodec.encode(nextId(len), len);
+  }
+
+  private long nextId(int len) {
+    if (len < ShortKeyCodec.MIN_LENGTH || len > ShortKeyCodec.MAX_LENGTH) {
+      throw new IllegalArgumentException("Unsupported key length: " + len);
+    }
+    KeyBlock block = blocks[len];
+    block.lock.lock();
+    try {
+      if (block.next == block.end) {
+        long hi = linkStore.nextKeyBlock(len);
+        long start = Math.multiplyExact(hi, (long) blockSize);
+        BigInteger capacity = ShortKeyCodec.capacity(len);
+        if (BigInteger.valueOf(start).compareTo(capacity) >= 0) {
+          throw new ShortKeyUnavailable("All keys of length " + len + " are taken");
+        }
+        block.next = start;
+        block.end = BigInteger.valueOf(start + blockSize).min(capacity).longValueExact();
+        logger.debug("Reserved key block {} for length {}", hi, len);
+      }
+      return block.next++;
+    } finally {
+      block.lock.unlock();
+    }
+  }
+
+  private static final class KeyBlock {
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long end;
+  }
+}
@@ -0,0 +1,86 @@
+package ru.mws.link_shorter.keygen;
+
+import java.math.BigInteger;
+
+/**
+ * Maps a sequential id onto a fixed-length base62 key. The id is first permuted with an affine
+ * bijection modulo 62^len, so consecutive ids give unrelated-looking keys without ever colliding.
+ */
+public final class ShortKeyCodec {
+  public static final int MIN_LENGTH = 3;
+  public static final int MAX_LENGTH = 12;
+
+  private static final String ALPHABET = "R6fSlub3aC4DnZ5YiGIrjtXyvOx8JM2mcUFNsV1hpeBHwoQAz9gKWqTdP0ELk7";
+  private static final int BASE = ALPHABET.length();
+  // Odd and not divisible by 31, hence coprime with every 62^len.
+  private static final BigInteger MULTIPLIER = BigInteger.valueOf(0x5DEECE66DL);
+  private static final BigInteger[] CAPACITY = new BigInteger[MAX_LENGTH + 1];
+  private static final BigInteger[] OFFSET = new BigInteger[MAX_LENGTH + 1];
+  private static final BigInteger[] INVERSE = new BigInteger[MAX_LENGTH + 1];
+
+  static {
+    for (int len = MIN_LENGTH; len <= MAX_LENGTH; len++) {
+      CAPACITY[len] = BigInteger.valueOf(BASE).pow(len);
+      OFFSET[len] = CAPACITY[len].divide(BigInteger.valueOf(7));
+      INVERSE[len] = MULTIPLIER.modInverse(CAPACITY[len]);
+    }
+  }
+
+  private ShortKeyCodec() {
+  }
+
+  public static BigInteger capacity(int len) {
+    checkLength(len);
+    return CAPACITY[len];
+  }
+
+  public static String encode(long id, int len) {
+    checkLength(len);
+    if (id < 0 || BigInteger.valueOf(id).compareTo(CAPACITY[len]) >= 0) {
+      throw new IllegalArgumentException("Id " + id + " does not fit into a key of length " + len);
+    }
+
+    BigInteger permuted = BigInteger.valueOf(id).multiply(MULTIPLIER).add(OFFSET[len]).mod(CAPACITY[len]);
+    char[] key = new char[len];
+    if (permuted.bitLength() < Long.SIZE) {
+      long value = permuted.longValue();
+      for (int i = len - 1; i >= 0; i--) {
+        key[i] = ALPHABET.charAt((int) (value % BASE));
+        value /= BASE;
+      }
+    } else {
+      BigInteger base = BigInteger.valueOf(BASE);
+      for (int i = len - 1; i >= 0; i--) {
+        BigInteger[] divRem = permuted.divideAndRemainder(base);
+        key[i] = ALPHABET.charAt(divRem[1].intValue());
+        permuted = divRem[0];
+      }
+    }
+    return new String(key);
+  }
+
+  /** The id {@link #encode} maps onto the key, or -1 if no id in the long range does. */
+  public static long decode(String key) {
+    int len = key.length();
+    if (len < MIN_LENGTH || len > MAX_LENGTH) {
+      return -1;
+    }
+    BigInteger permuted = BigInteger.ZERO;
+    BigInteger base = BigInteger.valueOf(BASE);
+    for (int i = 0; i < len; i++) {
+      int digit = ALPHABET.indexOf(key.charAt(i));
+      if (digit < 0) {
+        return -1;
+      }
+      permuted = permuted.multiply(base).add(BigInteger.valueOf(digit));
+    }
+    BigInteger id = permuted.subtract(OFFSET[len]).multiply(INVERSE[len]).mod(CAPACITY[len]);
+    return id.bitLength() < Long.SIZE ? id.longValue() : -1;
+  }
+
+  private static void checkLength(int len) {
+    if (len < MIN_LENGTH || len > MAX_LENGTH) {
+      throw new IllegalArgumentException("Key length must be between " + MIN_LENGTH + " and " + MAX_LENGTH);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package ru.mws.link_shorter.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Access log for redirects. Only a sampled share of redirects is written, to the
+ * {@code ru.mws.link_shorter.access} logger that logback routes to a non-blocking appender.
+ */
+@Component
+public class AccessLog {
+  private static final Logger logger = LoggerFactory.getLogger("ru.mws.link_shorter.access");
+
+  private final double redirectSampleRate;
+
+  public AccessLog(@Value("${link-shorter.access-log.redirect-sample-rate:0.01}") double redirectSampleRate) {
+    this.redirectSampleRate = redirectSampleRate;
+  }
+
+  public void redirect(String shortKey, int status, long startNanos) {
+    if (!logger.isInfoEnabled() || !sampled()) {
+      return;
+    }
+    logger.info("GET /{} {} {}us", shortKey, status, (System.nanoTime() - startNanos) / 1000);
+  }
+
+  private boolean sampled() {
+    return redirectSampleRate >= 1.0
+        || (redirectSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < redirectSampleRate);
+  }
+}
@@ -0,0 +1,62 @@
+package ru.mws.link_shorter.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-registered request meters. Callers pass a {@link System#nanoTime()} start stamp, so
+ * recording needs neither a meter lookup nor a {@code Timer.Sample} per request.
+ */
+@Component
+public class LinkMetrics {
+  private final Timer redirectTimer;
+  private final Timer getLinkTimer;
+  private final Timer createTimer;
+  private final Timer batchCreateTimer;
+  private final DistributionSummary createAttempts;
+
+  public LinkMetrics(MeterRegistry meterRegistry) {
+    this.redirectTimer = requestTimer(meterRegistry, "redirect");
+    this.getLinkTimer = requestTimer(meterRegistry, "get_link");
+    this.createTimer = requestTimer(meterRegistry, "create");
+    this.batchCreateTimer = requestTimer(meterRegistry, "batch_create");
+    this.createAttempts = DistributionSummary.builder("links.create.attempts")
+        .description("Short keys tried per created link")
+        .publishPercentileHistogram()
+        .minimumExpectedValue(1.0)
+        .maximumExpectedValue(10.0)
+        .register(meterRegistry);
+  }
+
+  public void recordRedirect(long startNanos) {
+    redirectTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordGetLink(long startNanos) {
+    getLinkTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordCreate(long startNanos) {
+    createTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordBatchCreate(long startNanos) {
+    batchCreateTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordCreateAttempts(int attempts) {
+    createAttempts.record(attempts);
+  }
+
+  private static Timer requestTimer(MeterRegistry meterRegistry, String operation) {
+    return Timer.builder("links.requests")
+        .description("Link shorter request latency")
+        .tag("operation", operation)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,43 @@
+package ru.mws.link_shorter.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers 429 with Retry-After once a client has used up its {@link RateLimits} budget.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+  private final RateLimits rateLimits;
+
+  public RateLimitFilter(RateLimits rateLimits) {
+    this.rateLimits = rateLimits;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    long retryAfterSeconds = rateLimits.tryAcquire(request.getMethod(),
+        request.getRequestURI().substring(request.getContextPath().length()),
+        request.getHeader(RateLimits.API_KEY_HEADER),
+        request.getHeader(RateLimits.FORWARDED_FOR_HEADER),
+        request::getRemoteAddr);
+    if (retryAfterSeconds > 0) {
+      response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+      response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      response.getWriter().write(RateLimits.THROTTLED_MESSAGE.formatted(retryAfterSeconds));
+      return;
+    }
+    chain.doFilter(request, response);
+  }
+}
@@ -0,0 +1,98 @@
+package ru.mws.link_shorter.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per client for one budget, as the generic cell rate algorithm: each bucket is a
+ * single theoretical arrival time updated with compare-and-set, so acquiring never takes a lock.
+ * Buckets live in a bounded map and are dropped once idle long enough to have refilled; an evicted
+ * bucket comes back full, which is what it would have been anyway.
+ */
+public class RateLimiter {
+  private final long emissionIntervalNanos;
+  private final long burstNanos;
+  private final Cache<String, AtomicLong> buckets;
+  private final Counter throttled;
+
+  public RateLimiter(String budget, double permitsPerSecond, int burst, long maxClients, MeterRegistry meterRegistry) {
+    if (permitsPerSecond <= 0 || burst <= 0) {
+      throw new IllegalArgumentException("Rate and burst of " + budget + " must be positive");
+    }
+    this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.burstNanos = emissionIntervalNanos * burst;
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maxClients)
+        .expireAfterAccess(Duration.ofNanos(burstNanos))
+        .build();
+    this.throttled = Counter.builder("links.rate_limit.throttled")
+        .description("Requests rejected with 429 and batch links refused by the per-client rate limiter")
+        .tag("budget", budget)
+        .register(meterRegistry);
+    Gauge.builder("links.rate_limit.clients", buckets, Cache::estimatedSize)
+        .description("Clients with a partially drained token bucket")
+        .tag("budget", budget)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Takes one permit for the client. Returns zero if granted, otherwise how long to wait in
+   * nanoseconds before a permit is available.
+   */
+  public long tryAcquire(String client) {
+    return tryAcquire(client, System.nanoTime());
+  }
+
+  long tryAcquire(String client, long now) {
+    AtomicLong theoreticalArrival = buckets.get(client, key -> new AtomicLong(Long.MIN_VALUE));
+    while (true) {
+      long current = theoreticalArrival.get();
+      long next = Math.max(current, now) + emissionIntervalNanos;
+      long wait = next - now - burstNanos;
+      if (wait > 0) {
+        throttled.increment();
+        return wait;
+      }
+      if (theoreticalArrival.compareAndSet(current, next)) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Takes up to {@code permits} permits for the client at once and returns how many it got: all of
+   * them, or as many as the bucket holds.
+   */
+  public int tryAcquireUpTo(String client, int permits) {
+    return tryAcquireUpTo(client, permits, System.nanoTime());
+  }
+
+  int tryAcquireUpTo(String client, int permits, long now) {
+    if (permits <= 0) {
+      return 0;
+    }
+    AtomicLong theoreticalArrival = buckets.get(client, key -> new AtomicLong(Long.MIN_VALUE));
+    while (true) {
+      long current = theoreticalArrival.get();
+      long start = Math.max(current, now);
+      int granted = (int) Math.min(permits, Math.max(0, (now + burstNanos - start) / emissionIntervalNanos));
+      if (granted == 0) {
+        throttled.increment(permits);
+        return 0;
+      }
+      if (theoreticalArrival.compareAndSet(current, start + granted * emissionIntervalNanos)) {
+        if (granted < permits) {
+          throttled.increment(permits - granted);
+        }
+        return granted;
+      }
+    }
+  }
+}
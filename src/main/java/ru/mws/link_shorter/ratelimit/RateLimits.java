@@ -0,0 +1,94 @@
+package ru.mws.link_shorter.ratelimit;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Applies the create budget to {@code POST /api/links/} and {@code /api/links/batch} and the
+ * redirect budget to {@code GET /{shortKey}}. A batch takes one permit for the request, checked
+ * before its body is read, and then one per link through {@link #acquireLinks}. A client is a known API key from {@code X-Api-Key},
+ * otherwise its IP address. Unknown keys count as no key, so rotating made-up keys does not buy
+ * fresh buckets. Shared by the servlet and the reactive filter.
+ */
+public class RateLimits {
+  public static final String API_KEY_HEADER = "X-Api-Key";
+  public static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+  public static final String THROTTLED_MESSAGE = "Слишком много запросов, повторите через %d с";
+  public static final String THROTTLED_LINK_MESSAGE = "Превышен лимит создания ссылок, повторите позже";
+
+  private final RateLimiter createLimiter;
+  private final RateLimiter apiKeyCreateLimiter;
+  private final RateLimiter redirectLimiter;
+  private final Set<String> apiKeys;
+  private final int trustedProxies;
+
+  public RateLimits(RateLimiter createLimiter,
+                    RateLimiter apiKeyCreateLimiter,
+                    RateLimiter redirectLimiter,
+                    Set<String> apiKeys,
+                    int trustedProxies) {
+    this.createLimiter = createLimiter;
+    this.apiKeyCreateLimiter = apiKeyCreateLimiter;
+    this.redirectLimiter = redirectLimiter;
+    this.apiKeys = apiKeys;
+    this.trustedProxies = trustedProxies;
+  }
+
+  /**
+   * Takes a permit for the request. Returns zero if it may proceed or is not limited at all,
+   * otherwise the number of seconds to put into Retry-After.
+   */
+  public long tryAcquire(String method, String path, String apiKey, String forwardedFor, Supplier<String> remoteAddr) {
+    RateLimiter limiter;
+    String client;
+    if ("POST".equals(method) && (path.equals("/api/links/") || path.equals("/api/links/batch"))) {
+      if (isKnownApiKey(apiKey)) {
+        limiter = apiKeyCreateLimiter;
+        client = "key:" + apiKey;
+      } else {
+        limiter = createLimiter;
+        client = clientIp(forwardedFor, remoteAddr);
+      }
+    } else if ("GET".equals(method) && path.length() > 1 && path.indexOf('/', 1) < 0) {
+      limiter = redirectLimiter;
+      client = clientIp(forwardedFor, remoteAddr);
+    } else {
+      return 0;
+    }
+    long wait = limiter.tryAcquire(client);
+    if (wait <= 0) {
+      return 0;
+    }
+    long second = TimeUnit.SECONDS.toNanos(1);
+    return Math.max(1, (wait + second - 1) / second);
+  }
+
+  /**
+   * Takes create permits for the links of a batch. Returns how many may be created, counted from the
+   * start of the batch; the rest are to be refused with {@link #THROTTLED_LINK_MESSAGE}.
+   */
+  public int acquireLinks(int links, String apiKey, String forwardedFor, Supplier<String> remoteAddr) {
+    if (isKnownApiKey(apiKey)) {
+      return apiKeyCreateLimiter.tryAcquireUpTo("key:" + apiKey, links);
+    }
+    return createLimiter.tryAcquireUpTo(clientIp(forwardedFor, remoteAddr), links);
+  }
+
+  private boolean isKnownApiKey(String apiKey) {
+    return apiKey != null && apiKeys.contains(apiKey);
+  }
+
+  // Each trusted proxy appends the address it received the request from, so the entry added by the
+  // outermost trusted proxy is the first one the client could not have forged.
+  String clientIp(String forwardedFor, Supplier<String> remoteAddr) {
+    if (trustedProxies > 0 && forwardedFor != null && !forwardedFor.isBlank()) {
+      String[] hops = forwardedFor.split(",");
+      String hop = hops[Math.max(0, hops.length - trustedProxies)].trim();
+      if (!hop.isEmpty()) {
+        return hop;
+      }
+    }
+    return remoteAddr.get();
+  }
+}
@@ -0,0 +1,49 @@
+package ru.mws.link_shorter.ratelimit;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link RateLimitFilter} of the reactive mode.
+ */
+public class ReactiveRateLimitFilter implements WebFilter {
+  private final RateLimits rateLimits;
+
+  public ReactiveRateLimitFilter(RateLimits rateLimits) {
+    this.rateLimits = rateLimits;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    ServerHttpRequest request = exchange.getRequest();
+    long retryAfterSeconds = rateLimits.tryAcquire(request.getMethod().name(),
+        request.getPath().pathWithinApplication().value(),
+        request.getHeaders().getFirst(RateLimits.API_KEY_HEADER),
+        request.getHeaders().getFirst(RateLimits.FORWARDED_FOR_HEADER),
+        () -> {
+          InetSocketAddress remoteAddress = request.getRemoteAddress();
+          return remoteAddress == null ? "" : remoteAddress.getHostString();
+        });
+    if (retryAfterSeconds == 0) {
+      return chain.filter(exchange);
+    }
+    ServerHttpResponse response = exchange.getResponse();
+    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+    response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.getHeaders().setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+    DataBuffer body = response.bufferFactory()
+        .wrap(RateLimits.THROTTLED_MESSAGE.formatted(retryAfterSeconds).getBytes(StandardCharsets.UTF_8));
+    return response.writeWith(Mono.just(body));
+  }
+}
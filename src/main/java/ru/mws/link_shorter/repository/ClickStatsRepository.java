@@ -0,0 +1,126 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mws.link_shorter.dto.LinkStats;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Click time series in link_clicks_minute, link_clicks_hour and link_clicks_day. Minute rows are
+ * only ever appended; rollups move rows to the next table in one statement, so every snapshot
+ * counts each click exactly once. Buckets are aligned in UTC.
+ */
+@Repository
+@Profile("!embedded")
+public class ClickStatsRepository {
+  private static final String APPEND_MINUTE_CLICKS_SQL =
+      "INSERT INTO link_clicks_minute (short_key, bucket, referrer, country, clicks) VALUES (?, ?, ?, ?, ?)";
+  private static final String ROLL_UP_SQL = """
+      WITH moved AS (
+        DELETE FROM %1$s WHERE bucket < ? RETURNING short_key, bucket, referrer, country, clicks)
+      INSERT INTO %2$s (short_key, bucket, referrer, country, clicks)
+      SELECT short_key, date_trunc('%3$s', bucket, 'UTC'), referrer, country, sum(clicks) FROM moved
+      GROUP BY 1, 2, 3, 4
+      ON CONFLICT (short_key, bucket, referrer, country) DO UPDATE SET clicks = %2$s.clicks + EXCLUDED.clicks""";
+  private static final String ROLL_UP_MINUTES_SQL = ROLL_UP_SQL.formatted("link_clicks_minute", "link_clicks_hour", "hour");
+  private static final String ROLL_UP_HOURS_SQL = ROLL_UP_SQL.formatted("link_clicks_hour", "link_clicks_day", "day");
+  private static final String CLICKS_IN_RANGE_SQL = """
+      WITH clicks AS (
+        SELECT bucket, referrer, country, clicks FROM link_clicks_minute
+        WHERE short_key = ? AND bucket >= ? AND bucket < ?
+        UNION ALL
+        SELECT bucket, referrer, country, clicks FROM link_clicks_hour
+        WHERE short_key = ? AND bucket >= ? AND bucket < ?
+        UNION ALL
+        SELECT bucket, referrer, country, clicks FROM link_clicks_day
+        WHERE short_key = ? AND bucket >= ? AND bucket < ?)
+      """;
+  private static final String SERIES_SQL = CLICKS_IN_RANGE_SQL
+      + "SELECT date_trunc(?, bucket, 'UTC'), sum(clicks) FROM clicks GROUP BY 1 ORDER BY 1";
+  private static final String TOP_SQL = CLICKS_IN_RANGE_SQL
+      + "SELECT %1$s, sum(clicks) AS total FROM clicks GROUP BY 1 ORDER BY total DESC, 1 LIMIT ?";
+  private static final String TOP_REFERRERS_SQL = TOP_SQL.formatted("referrer");
+  private static final String TOP_COUNTRIES_SQL = TOP_SQL.formatted("country");
+
+  public record MinuteClicks(String shortKey, Instant bucket, String referrer, String country, long clicks) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Timer appendTimer;
+  private final Timer rollUpTimer;
+
+  public ClickStatsRepository(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.appendTimer = queryTimer(meterRegistry, "append_minute_clicks");
+    this.rollUpTimer = queryTimer(meterRegistry, "roll_up_clicks");
+  }
+
+  // All batches commit together, so rows of a failed append can be appended again without being
+  // counted twice.
+  public void appendMinuteClicks(List<MinuteClicks> rows, int batchSize) {
+    appendTimer.record(() -> transactionTemplate.executeWithoutResult(status ->
+        jdbcTemplate.batchUpdate(APPEND_MINUTE_CLICKS_SQL, rows, batchSize, (ps, row) -> {
+          ps.setString(1, row.shortKey());
+          ps.setTimestamp(2, Timestamp.from(row.bucket()));
+          ps.setString(3, row.referrer());
+          ps.setString(4, row.country());
+          ps.setLong(5, row.clicks());
+        })));
+  }
+
+  // Returns the number of hour rows written or updated.
+  public int rollUpMinutes(Instant before) {
+    return rollUpTimer.record(() -> jdbcTemplate.update(ROLL_UP_MINUTES_SQL, Timestamp.from(before)));
+  }
+
+  // Returns the number of day rows written or updated.
+  public int rollUpHours(Instant before) {
+    return rollUpTimer.record(() -> jdbcTemplate.update(ROLL_UP_HOURS_SQL, Timestamp.from(before)));
+  }
+
+  // granularity is a date_trunc field: minute, hour or day.
+  public List<LinkStats.Bucket> series(String shortKey, Instant from, Instant to, String granularity) {
+    return jdbcTemplate.query(SERIES_SQL,
+        (rs, rowNum) -> new LinkStats.Bucket(rs.getTimestamp(1).toInstant(), rs.getLong(2)),
+        rangeArgs(shortKey, from, to, granularity));
+  }
+
+  public List<LinkStats.Dimension> topReferrers(String shortKey, Instant from, Instant to, int limit) {
+    return jdbcTemplate.query(TOP_REFERRERS_SQL,
+        (rs, rowNum) -> new LinkStats.Dimension(rs.getString(1), rs.getLong(2)), rangeArgs(shortKey, from, to, limit));
+  }
+
+  public List<LinkStats.Dimension> topCountries(String shortKey, Instant from, Instant to, int limit) {
+    return jdbcTemplate.query(TOP_COUNTRIES_SQL,
+        (rs, rowNum) -> new LinkStats.Dimension(rs.getString(1), rs.getLong(2)), rangeArgs(shortKey, from, to, limit));
+  }
+
+  private static Object[] rangeArgs(String shortKey, Instant from, Instant to, Object last) {
+    Timestamp fromTimestamp = Timestamp.from(from);
+    Timestamp toTimestamp = Timestamp.from(to);
+    return new Object[]{
+        shortKey, fromTimestamp, toTimestamp,
+        shortKey, fromTimestamp, toTimestamp,
+        shortKey, fromTimestamp, toTimestamp,
+        last};
+  }
+
+  private static Timer queryTimer(MeterRegistry meterRegistry, String query) {
+    return Timer.builder("links.analytics.jdbc")
+        .description("Latency of JDBC statements on the click bucket tables")
+        .tag("query", query)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,142 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.store.LogStructuredStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link LinkStore} in local files through {@link LogStructuredStore}, for single-instance
+ * deployments without Postgres. Compaction and the index checkpoint run on the scheduler.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedLinkStore implements LinkStore {
+  private static final Logger logger = LoggerFactory.getLogger(EmbeddedLinkStore.class);
+
+  private final LogStructuredStore store;
+  private final double compactionMinGarbage;
+
+  public EmbeddedLinkStore(@Value("${link-shorter.embedded.path:data/links}") Path path,
+                           @Value("${link-shorter.embedded.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${link-shorter.embedded.sync-interval:1s}") Duration syncInterval,
+                           @Value("${link-shorter.embedded.compaction-min-garbage:0.5}") double compactionMinGarbage,
+                           MeterRegistry meterRegistry) throws IOException {
+    this.store = LogStructuredStore.open(path, Math.toIntExact(segmentSize.toBytes()), syncInterval);
+    this.compactionMinGarbage = compactionMinGarbage;
+
+    Gauge.builder("links.embedded.links", store, LogStructuredStore::size)
+        .description("Links in the embedded store")
+        .register(meterRegistry);
+    Gauge.builder("links.embedded.segments", store, LogStructuredStore::segmentCount)
+        .description("Log segments of the embedded store")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public Optional<LinkDto> findByShortKey(String shortKey) {
+    return store.findByShortKey(shortKey);
+  }
+
+  @Override
+  public List<LinkDto> findAllByShortKeyIn(Collection<String> shortKeys) {
+    return shortKeys.stream().map(store::findByShortKey).flatMap(Optional::stream).toList();
+  }
+
+  @Override
+  public Optional<LinkDto> findByOriginalUrl(String originalUrl) {
+    return store.findByOriginalUrl(originalUrl);
+  }
+
+  @Override
+  public List<LinkDto> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+    return originalUrls.stream().map(store::findByOriginalUrl).flatMap(Optional::stream).toList();
+  }
+
+  @Override
+  public Optional<LinkDto> findForRedirect(String shortKey) {
+    return store.findByShortKey(shortKey);
+  }
+
+  @Override
+  public boolean insertIfAbsent(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt) {
+    return store.insert(shortKey, originalUrl, redirect, expiresAt);
+  }
+
+  @Override
+  public Set<String> insertAllIfAbsent(Map<String, String> originalUrlsByShortKey) {
+    return store.insertAll(originalUrlsByShortKey);
+  }
+
+  @Override
+  public long nextKeyBlock(int keyLength) {
+    return store.nextSequence(keyLength);
+  }
+
+  // Batches keep the write lock short, so redirects are not held up behind a large flush.
+  @Override
+  public void incrementClickCounts(Map<String, Long> clicksByShortKey, int batchSize) {
+    Map<String, Long> batch = new HashMap<>();
+    for (Map.Entry<String, Long> entry : clicksByShortKey.entrySet()) {
+      batch.put(entry.getKey(), entry.getValue());
+      if (batch.size() == batchSize) {
+        store.addClicks(batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      store.addClicks(batch);
+    }
+  }
+
+  @Override
+  public boolean delete(String shortKey) {
+    return store.delete(shortKey);
+  }
+
+  @Override
+  public int deleteExpired(Instant now, int limit) {
+    return store.deleteExpired(now.toEpochMilli(), limit);
+  }
+
+  @Override
+  public Stream<LinkDto> streamHottestLinks(int limit, int fetchSize, int timeoutSeconds) {
+    return store.hottest(limit, System.currentTimeMillis()).stream();
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.embedded.compaction-interval-ms:60000}")
+  public void compact() {
+    try {
+      store.compact(compactionMinGarbage);
+      store.checkpoint();
+    } catch (IOException e) {
+      logger.warn("Failed to compact the embedded link store", e);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    store.close();
+  }
+}
@@ -0,0 +1,126 @@
+package ru.mws.link_shorter.repository;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import ru.mws.link_shorter.config.ReadReplicaRoutingDataSource;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.entity.LinkEntity;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link LinkStore} in Postgres: entity lookups through {@link ShorterRepository}, the hot
+ * statements through {@link LinkJdbcRepository}.
+ */
+@Repository
+@Profile("!embedded")
+public class JdbcLinkStore implements LinkStore {
+  private final ShorterRepository shorterRepository;
+  private final LinkJdbcRepository linkJdbcRepository;
+  private final PlatformTransactionManager transactionManager;
+  private final boolean readReplicasEnabled;
+
+  public JdbcLinkStore(ShorterRepository shorterRepository,
+                       LinkJdbcRepository linkJdbcRepository,
+                       PlatformTransactionManager transactionManager,
+                       ObjectProvider<ReadReplicaRoutingDataSource> readReplicas) {
+    this.shorterRepository = shorterRepository;
+    this.linkJdbcRepository = linkJdbcRepository;
+    this.transactionManager = transactionManager;
+    this.readReplicasEnabled = readReplicas.getIfAvailable() != null;
+  }
+
+  // A key missing on a replica is checked on the primary, so a just-created link is found at once.
+  @Override
+  public Optional<LinkDto> findByShortKey(String shortKey) {
+    Optional<LinkEntity> link = shorterRepository.findByShortKey(shortKey);
+    if (link.isEmpty() && readReplicasEnabled) {
+      link = shorterRepository.findByShortKeyOnPrimary(shortKey);
+    }
+    return link.map(JdbcLinkStore::toDto);
+  }
+
+  @Override
+  public List<LinkDto> findAllByShortKeyIn(Collection<String> shortKeys) {
+    return shorterRepository.findAllByShortKeyIn(shortKeys).stream().map(JdbcLinkStore::toDto).toList();
+  }
+
+  @Override
+  public Optional<LinkDto> findByOriginalUrl(String originalUrl) {
+    return shorterRepository.findByOriginalUrl(originalUrl).map(JdbcLinkStore::toDto);
+  }
+
+  @Override
+  public List<LinkDto> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+    return shorterRepository.findAllByOriginalUrlIn(originalUrls).stream().map(JdbcLinkStore::toDto).toList();
+  }
+
+  @Override
+  public Optional<LinkDto> findForRedirect(String shortKey) {
+    return linkJdbcRepository.findLink(shortKey);
+  }
+
+  @Override
+  public boolean insertIfAbsent(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt) {
+    return linkJdbcRepository.insertIfAbsent(shortKey, originalUrl, redirect, expiresAt);
+  }
+
+  @Override
+  public Set<String> insertAllIfAbsent(Map<String, String> originalUrlsByShortKey) {
+    return linkJdbcRepository.insertAllIfAbsent(originalUrlsByShortKey);
+  }
+
+  @Override
+  public long nextKeyBlock(int keyLength) {
+    return linkJdbcRepository.nextKeyBlock(keyLength);
+  }
+
+  @Override
+  public void incrementClickCounts(Map<String, Long> clicksByShortKey, int batchSize) {
+    linkJdbcRepository.incrementClickCounts(clicksByShortKey, batchSize);
+  }
+
+  @Override
+  public boolean delete(String shortKey) {
+    return linkJdbcRepository.delete(shortKey);
+  }
+
+  @Override
+  public int deleteExpired(Instant now, int limit) {
+    return linkJdbcRepository.deleteExpired(now, limit);
+  }
+
+  // Postgres only streams with a fetch size inside a transaction, so the stream opens a read-only
+  // one and commits it when closed.
+  @Override
+  public Stream<LinkDto> streamHottestLinks(int limit, int fetchSize, int timeoutSeconds) {
+    DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED);
+    definition.setReadOnly(true);
+    TransactionStatus status = transactionManager.getTransaction(definition);
+    try {
+      return linkJdbcRepository.streamHottestLinks(limit, fetchSize, timeoutSeconds)
+          .onClose(() -> transactionManager.commit(status));
+    } catch (RuntimeException e) {
+      transactionManager.rollback(status);
+      throw e;
+    }
+  }
+
+  private static LinkDto toDto(LinkEntity link) {
+    RedirectMode redirect = link.getRedirectType() == null ? null
+        : new RedirectMode(link.getRedirectType(), link.getRedirectMaxAge());
+    return new LinkDto(link.getShortKey(), link.getOriginalUrl(), link.getClickCount(), redirect, link.getExpiresAt());
+  }
+}
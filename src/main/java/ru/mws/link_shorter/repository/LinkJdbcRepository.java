@@ -0,0 +1,249 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mws.link_shorter.config.ReadReplicaRoutingDataSource;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Repository
+@Profile("!embedded")
+public class LinkJdbcRepository {
+  private static final String INCREMENT_CLICK_COUNT_SQL =
+      "UPDATE links SET click_count = click_count + ? WHERE short_key = ?";
+  private static final String LINK_COLUMNS =
+      "short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at";
+  private static final String FIND_LINK_SQL = "SELECT " + LINK_COLUMNS + " FROM links WHERE short_key = ?";
+  // Top entries of each partition through idx_links_click_count, merged by the planner.
+  private static final String HOTTEST_LINKS_SQL =
+      "SELECT " + LINK_COLUMNS + " FROM links WHERE expires_at IS NULL OR expires_at > now()"
+          + " ORDER BY click_count DESC LIMIT ?";
+  // links is partitioned by short_key, so the one-link-per-URL constraint lives in link_digests.
+  // Claiming the digest first means a URL conflict never writes to links at all.
+  private static final String INSERT_LINK_SQL = """
+      WITH claimed AS (
+        INSERT INTO link_digests (url_digest, short_key) VALUES (?, ?)
+        ON CONFLICT DO NOTHING RETURNING short_key)
+      INSERT INTO links (short_key, original_url, click_count)
+      SELECT short_key, ?, 0 FROM claimed
+      ON CONFLICT DO NOTHING""";
+  // Releases a digest claimed in link_digests whose short key turned out to be taken.
+  private static final String RELEASE_DIGEST_SQL = """
+      DELETE FROM link_digests d WHERE d.url_digest = ? AND d.short_key = ?
+      AND NOT EXISTS (SELECT 1 FROM links l WHERE l.short_key = d.short_key AND l.original_url = ?)""";
+
+  // A link with its own redirect mode or an expiry claims no digest, so it is never returned for its URL.
+  private static final String INSERT_UNSHARED_LINK_SQL = """
+      INSERT INTO links (short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at)
+      VALUES (?, ?, 0, ?, ?, ?)
+      ON CONFLICT DO NOTHING""";
+  // Everything recorded about the clicks of the links in the preceding "deleted" CTE.
+  private static final String DELETE_CLICKS_OF_DELETED = """
+      minute_clicks AS (DELETE FROM link_clicks_minute WHERE short_key IN (SELECT short_key FROM deleted)),
+      hour_clicks AS (DELETE FROM link_clicks_hour WHERE short_key IN (SELECT short_key FROM deleted)),
+      day_clicks AS (DELETE FROM link_clicks_day WHERE short_key IN (SELECT short_key FROM deleted)),
+      sketches AS (DELETE FROM link_visitor_sketches WHERE short_key IN (SELECT short_key FROM deleted))
+      """;
+  // The link, its digest if it owns one, and its clicks in one statement.
+  private static final String DELETE_LINK_SQL = """
+      WITH deleted AS (
+        DELETE FROM links WHERE short_key = ? RETURNING short_key, original_url),
+      digest AS (
+        DELETE FROM link_digests d USING deleted
+        WHERE d.url_digest = md5(deleted.original_url)::uuid AND d.short_key = deleted.short_key),
+      """ + DELETE_CLICKS_OF_DELETED + "SELECT count(*) FROM deleted";
+  // The earliest expired links through idx_links_expires_at. Expiring links own no digest. Rows another
+  // instance is deleting are skipped, so concurrent reapers never wait on each other.
+  private static final String DELETE_EXPIRED_SQL = """
+      WITH expired AS (
+        SELECT short_key FROM links WHERE expires_at <= ? ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED),
+      deleted AS (
+        DELETE FROM links l USING expired e WHERE l.short_key = e.short_key RETURNING l.short_key),
+      """ + DELETE_CLICKS_OF_DELETED + "SELECT count(*) FROM deleted";
+
+  // Keeps the statement below the 32767 bind parameters a Postgres statement accepts.
+  private static final int MAX_ROWS_PER_INSERT = 1000;
+
+  private static final RowMapper<LinkDto> LINK_ROW_MAPPER = (rs, rowNum) -> {
+    int redirectType = rs.getInt(4);
+    RedirectMode redirect = rs.wasNull() ? null : new RedirectMode(redirectType, rs.getInt(5));
+    Timestamp expiresAt = rs.getTimestamp(6);
+    return new LinkDto(rs.getString(1), rs.getString(2), rs.getLong(3), redirect,
+        expiresAt == null ? null : expiresAt.toInstant());
+  };
+
+  private final JdbcTemplate jdbcTemplate;
+  private final JdbcTemplate readJdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Timer findLinkTimer;
+  private final Timer insertTimer;
+  private final Timer insertBatchTimer;
+  private final Timer nextKeyBlockTimer;
+  private final Timer incrementClickCountsTimer;
+  private final Timer deleteTimer;
+  private final Timer deleteExpiredTimer;
+
+  public LinkJdbcRepository(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ObjectProvider<ReadReplicaRoutingDataSource> readReplicas,
+                            MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    ReadReplicaRoutingDataSource routing = readReplicas.getIfAvailable();
+    this.readJdbcTemplate = routing == null ? jdbcTemplate : new JdbcTemplate(routing.readOnlyView());
+    this.findLinkTimer = queryTimer(meterRegistry, "find_link");
+    this.insertTimer = queryTimer(meterRegistry, "insert");
+    this.insertBatchTimer = queryTimer(meterRegistry, "insert_batch");
+    this.nextKeyBlockTimer = queryTimer(meterRegistry, "next_key_block");
+    this.incrementClickCountsTimer = queryTimer(meterRegistry, "increment_click_counts");
+    this.deleteTimer = queryTimer(meterRegistry, "delete");
+    this.deleteExpiredTimer = queryTimer(meterRegistry, "delete_expired");
+  }
+
+  // Runs outside of any transaction on an autocommit connection: one statement, no persistence context.
+  // A key missing on a replica is checked on the primary, so a just-created link resolves at once.
+  public Optional<LinkDto> findLink(String shortKey) {
+    long start = System.nanoTime();
+    try {
+      List<LinkDto> links = readJdbcTemplate.query(FIND_LINK_SQL, LINK_ROW_MAPPER, shortKey);
+      if (links.isEmpty() && readJdbcTemplate != jdbcTemplate) {
+        links = jdbcTemplate.query(FIND_LINK_SQL, LINK_ROW_MAPPER, shortKey);
+      }
+      return links.isEmpty() ? Optional.empty() : Optional.of(links.get(0));
+    } finally {
+      findLinkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public boolean insertIfAbsent(String shortKey, String originalUrl) {
+    return insertTimer.record(() -> {
+      UUID digest = UrlDigest.of(originalUrl);
+      if (jdbcTemplate.update(INSERT_LINK_SQL, digest, shortKey, originalUrl) == 1) {
+        return true;
+      }
+      jdbcTemplate.update(RELEASE_DIGEST_SQL, digest, shortKey, originalUrl);
+      return false;
+    });
+  }
+
+  public boolean insertIfAbsent(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt) {
+    if (redirect == null && expiresAt == null) {
+      return insertIfAbsent(shortKey, originalUrl);
+    }
+    return insertTimer.record(() -> jdbcTemplate.update(INSERT_UNSHARED_LINK_SQL, shortKey, originalUrl,
+        new SqlParameterValue(Types.SMALLINT, redirect == null ? null : redirect.type()),
+        new SqlParameterValue(Types.INTEGER, redirect == null ? null : redirect.maxAge()),
+        new SqlParameterValue(Types.TIMESTAMP, expiresAt == null ? null : Timestamp.from(expiresAt))) == 1);
+  }
+
+  public Set<String> insertAllIfAbsent(Map<String, String> originalUrlsByShortKey) {
+    return insertBatchTimer.record(() -> insertChunks(originalUrlsByShortKey));
+  }
+
+  // Postgres only streams with fetchSize inside a transaction; the caller provides one. The stream
+  // holds the connection until closed.
+  public Stream<LinkDto> streamHottestLinks(int limit, int fetchSize, int timeoutSeconds) {
+    return jdbcTemplate.queryForStream(connection -> {
+      PreparedStatement statement = connection.prepareStatement(HOTTEST_LINKS_SQL);
+      statement.setInt(1, limit);
+      statement.setFetchSize(fetchSize);
+      statement.setQueryTimeout(timeoutSeconds);
+      return statement;
+    }, LINK_ROW_MAPPER);
+  }
+
+  public boolean delete(String shortKey) {
+    return deleteTimer.record(() -> jdbcTemplate.queryForObject(DELETE_LINK_SQL, Long.class, shortKey) > 0);
+  }
+
+  public int deleteExpired(Instant now, int limit) {
+    return deleteExpiredTimer.record(() ->
+        jdbcTemplate.queryForObject(DELETE_EXPIRED_SQL, Long.class, Timestamp.from(now), limit).intValue());
+  }
+
+  public long nextKeyBlock(int keyLength) {
+    return nextKeyBlockTimer.record(() -> jdbcTemplate.queryForObject(
+        "SELECT nextval(?::regclass)", Long.class, "link_key_block_seq_" + keyLength));
+  }
+
+  // All batches commit together, so a failed flush can be retried without counting any click twice.
+  // Rows are locked in key order, so the flushes of several instances wait for each other instead of
+  // deadlocking.
+  public void incrementClickCounts(Map<String, Long> clicksByShortKey, int batchSize) {
+    List<Map.Entry<String, Long>> deltas = new ArrayList<>(clicksByShortKey.entrySet());
+    deltas.sort(Map.Entry.comparingByKey());
+    incrementClickCountsTimer.record(() -> transactionTemplate.executeWithoutResult(status ->
+        jdbcTemplate.batchUpdate(INCREMENT_CLICK_COUNT_SQL, deltas, batchSize, (ps, delta) -> {
+          ps.setLong(1, delta.getValue());
+          ps.setString(2, delta.getKey());
+        })));
+  }
+
+  private Set<String> insertChunks(Map<String, String> originalUrlsByShortKey) {
+    List<Map.Entry<String, String>> rows = new ArrayList<>(originalUrlsByShortKey.entrySet());
+    Set<String> inserted = new HashSet<>();
+    for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_INSERT) {
+      List<Map.Entry<String, String>> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, rows.size()));
+      StringBuilder sql = new StringBuilder("WITH input (url_digest, short_key, original_url) AS (VALUES ");
+      Object[] params = new Object[chunk.size() * 3];
+      for (int i = 0; i < chunk.size(); i++) {
+        sql.append(i == 0 ? "(?::uuid, ?, ?)" : ", (?::uuid, ?, ?)");
+        params[3 * i] = UrlDigest.of(chunk.get(i).getValue());
+        params[3 * i + 1] = chunk.get(i).getKey();
+        params[3 * i + 2] = chunk.get(i).getValue();
+      }
+      sql.append("), claimed AS (INSERT INTO link_digests (url_digest, short_key)")
+          .append(" SELECT url_digest, short_key FROM input ON CONFLICT DO NOTHING RETURNING short_key)")
+          .append(" INSERT INTO links (short_key, original_url, click_count)")
+          .append(" SELECT i.short_key, i.original_url, 0 FROM input i JOIN claimed c ON c.short_key = i.short_key")
+          .append(" ON CONFLICT DO NOTHING RETURNING short_key");
+      List<String> chunkInserted = jdbcTemplate.queryForList(sql.toString(), String.class, params);
+      inserted.addAll(chunkInserted);
+      if (chunkInserted.size() < chunk.size()) {
+        releaseDigests(chunk, inserted);
+      }
+    }
+    return inserted;
+  }
+
+  private void releaseDigests(List<Map.Entry<String, String>> rows, Set<String> inserted) {
+    List<Map.Entry<String, String>> rejected = rows.stream()
+        .filter(row -> !inserted.contains(row.getKey()))
+        .toList();
+    jdbcTemplate.batchUpdate(RELEASE_DIGEST_SQL, rejected, rejected.size(), (ps, row) -> {
+      ps.setObject(1, UrlDigest.of(row.getValue()));
+      ps.setString(2, row.getKey());
+      ps.setString(3, row.getValue());
+    });
+  }
+
+  private static Timer queryTimer(MeterRegistry meterRegistry, String query) {
+    return Timer.builder("links.jdbc")
+        .description("Latency of JDBC statements on the links table")
+        .tag("query", query)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,63 @@
+package ru.mws.link_shorter.repository;
+
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Storage of links: shortKey -> original URL with its click count, the one-link-per-URL rule and
+ * the per-length key block sequences. {@link JdbcLinkStore} keeps them in Postgres,
+ * {@link EmbeddedLinkStore} in local files under the {@code embedded} profile.
+ */
+public interface LinkStore {
+  Optional<LinkDto> findByShortKey(String shortKey);
+
+  List<LinkDto> findAllByShortKeyIn(Collection<String> shortKeys);
+
+  Optional<LinkDto> findByOriginalUrl(String originalUrl);
+
+  List<LinkDto> findAllByOriginalUrlIn(Collection<String> originalUrls);
+
+  /** The link for a redirect: one plain statement, its click count may lag behind. */
+  Optional<LinkDto> findForRedirect(String shortKey);
+
+  /** Inserts the link unless its short key or its URL is already taken. */
+  default boolean insertIfAbsent(String shortKey, String originalUrl) {
+    return insertIfAbsent(shortKey, originalUrl, null, null);
+  }
+
+  /**
+   * Same as {@link #insertIfAbsent(String, String)} with a redirect mode and an expiry, either may be
+   * null. A link with its own mode or an expiry does not take part in the one-link-per-URL rule: only
+   * its short key has to be free, and lookups by URL never return it.
+   */
+  boolean insertIfAbsent(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt);
+
+  /** Same as {@link #insertIfAbsent} for many links at once; returns the short keys inserted. */
+  Set<String> insertAllIfAbsent(Map<String, String> originalUrlsByShortKey);
+
+  /** Next block number of the key sequence for the given length, starting at zero. */
+  long nextKeyBlock(int keyLength);
+
+  /**
+   * Adds the clicks to the links' counters, {@code batchSize} statements per round trip. Either every
+   * counter moves or none does, so a caller may retry the whole map after a failure.
+   */
+  void incrementClickCounts(Map<String, Long> clicksByShortKey, int batchSize);
+
+  /** Removes the link with its clicks; returns false when there is no such link. */
+  boolean delete(String shortKey);
+
+  /** Removes up to {@code limit} links that expired by {@code now} with their clicks; returns how many. */
+  int deleteExpired(Instant now, int limit);
+
+  /** Most clicked links first, expired ones left out. The caller closes the stream. */
+  Stream<LinkDto> streamHottestLinks(int limit, int fetchSize, int timeoutSeconds);
+}
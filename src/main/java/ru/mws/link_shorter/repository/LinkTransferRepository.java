@@ -0,0 +1,177 @@
+package ru.mws.link_shorter.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bulk reads and writes of the whole links table for export and import. Both methods must run
+ * inside a transaction: Postgres only uses a cursor for fetchSize in one, and the import stages
+ * rows in a temporary table cleared on commit. The import also moves the key block sequences past
+ * the imported keys, so new links never get an imported key.
+ */
+@Repository
+@Profile("!embedded")
+public class LinkTransferRepository {
+  // Links the reaper has not deleted yet but that no longer redirect stay behind.
+  private static final String EXPORT_SQL =
+      "SELECT short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at FROM links"
+          + " WHERE short_key > ? AND (expires_at IS NULL OR expires_at > now()) ORDER BY short_key";
+  private static final String CREATE_STAGING_SQL = """
+      CREATE TEMPORARY TABLE IF NOT EXISTS link_import (
+        short_key VARCHAR(12) NOT NULL,
+        original_url VARCHAR(4096) NOT NULL,
+        click_count BIGINT NOT NULL,
+        redirect_type SMALLINT,
+        redirect_max_age INTEGER,
+        expires_at TIMESTAMPTZ
+      ) ON COMMIT DELETE ROWS""";
+  private static final String COPY_SQL = "COPY link_import"
+      + " (short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at) FROM STDIN";
+  // Same claim-then-insert order as LinkJdbcRepository: rows whose URL or short key already exists
+  // are skipped, duplicates within the file included. As on creation, a link with a redirect mode or
+  // an expiry claims no digest and only needs its short key to be free.
+  private static final String MERGE_SQL = """
+      WITH input AS (
+        SELECT DISTINCT ON (short_key) short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at
+        FROM link_import),
+      claimed AS (
+        INSERT INTO link_digests (url_digest, short_key)
+        SELECT md5(original_url)::uuid, short_key FROM input WHERE redirect_type IS NULL AND expires_at IS NULL
+        ON CONFLICT DO NOTHING RETURNING short_key)
+      INSERT INTO links (short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at)
+      SELECT i.short_key, i.original_url, i.click_count, i.redirect_type, i.redirect_max_age, i.expires_at
+      FROM input i
+      WHERE i.redirect_type IS NOT NULL OR i.expires_at IS NOT NULL OR i.short_key IN (SELECT short_key FROM claimed)
+      ON CONFLICT DO NOTHING""";
+  private static final String RELEASE_DIGESTS_SQL = """
+      DELETE FROM link_digests d USING link_import i
+      WHERE d.url_digest = md5(i.original_url)::uuid AND d.short_key = i.short_key
+      AND NOT EXISTS (SELECT 1 FROM links l WHERE l.short_key = i.short_key AND l.original_url = i.original_url)""";
+  private static final String SAVE_CHECKPOINT_SQL = """
+      INSERT INTO link_import_checkpoints (import_id, rows_done) VALUES (?, ?)
+      ON CONFLICT (import_id) DO UPDATE SET rows_done = EXCLUDED.rows_done, updated_at = now()""";
+  // Moves a key block sequence (see ShortKeyAllocator) up to the given block unless it is past it,
+  // so the next block handed out lies beyond every imported key. A block taken by a running instance
+  // between the check and setval is handed out again: import while no keys of that length are made.
+  private static final String ADVANCE_KEY_BLOCKS_SQL = "SELECT setval('%1$s', ?) FROM %1$s"
+      + " WHERE (CASE WHEN is_called THEN last_value ELSE last_value - 1 END) < ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int keyBlockSize;
+
+  public LinkTransferRepository(JdbcTemplate jdbcTemplate,
+                                @Value("${link-shorter.keys.block-size:1000}") int keyBlockSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.keyBlockSize = keyBlockSize;
+  }
+
+  public void forEachLinkAfter(String afterShortKey, int fetchSize, Consumer<LinkDto> consumer) {
+    jdbcTemplate.query(connection -> {
+      PreparedStatement statement = connection.prepareStatement(EXPORT_SQL);
+      statement.setString(1, afterShortKey);
+      statement.setFetchSize(fetchSize);
+      return statement;
+    }, (RowCallbackHandler) rs -> {
+      int redirectType = rs.getInt(4);
+      RedirectMode redirect = rs.wasNull() ? null : new RedirectMode(redirectType, rs.getInt(5));
+      Timestamp expiresAt = rs.getTimestamp(6);
+      consumer.accept(new LinkDto(rs.getString(1), rs.getString(2), rs.getLong(3), redirect,
+          expiresAt == null ? null : expiresAt.toInstant()));
+    });
+  }
+
+  public long importCheckpoint(String importId) {
+    List<Long> rowsDone = jdbcTemplate.queryForList(
+        "SELECT rows_done FROM link_import_checkpoints WHERE import_id = ?", Long.class, importId);
+    return rowsDone.isEmpty() ? 0 : rowsDone.get(0);
+  }
+
+  // Returns the number of links inserted. With an importId the checkpoint commits with the rows.
+  public int importBatch(List<LinkDto> links, String importId, long rowsDone) {
+    jdbcTemplate.execute(CREATE_STAGING_SQL);
+    String rows = copyText(links);
+    jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+      try {
+        return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(rows));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    int inserted = jdbcTemplate.update(MERGE_SQL);
+    if (inserted < links.size()) {
+      jdbcTemplate.update(RELEASE_DIGESTS_SQL);
+    }
+    advanceKeyBlocks(links);
+    if (importId != null) {
+      jdbcTemplate.update(SAVE_CHECKPOINT_SQL, importId, rowsDone);
+    }
+    return inserted;
+  }
+
+  // Imported keys keep the ids they were encoded from, which the key block sequences know nothing of.
+  private void advanceKeyBlocks(List<LinkDto> links) {
+    Map<Integer, Long> highestIdByLength = new HashMap<>();
+    for (LinkDto link : links) {
+      long id = ShortKeyCodec.decode(link.shortKey());
+      if (id >= 0) {
+        highestIdByLength.merge(link.shortKey().length(), id, Math::max);
+      }
+    }
+    highestIdByLength.forEach((length, id) -> {
+      long block = id / keyBlockSize;
+      jdbcTemplate.queryForList(ADVANCE_KEY_BLOCKS_SQL.formatted("link_key_block_seq_" + length), Long.class,
+          block, block);
+    });
+  }
+
+  // COPY text format: tab-separated columns, backslash escapes, \N for NULL.
+  private static String copyText(List<LinkDto> links) {
+    StringBuilder rows = new StringBuilder(links.size() * 64);
+    for (LinkDto link : links) {
+      appendEscaped(rows, link.shortKey());
+      rows.append('\t');
+      appendEscaped(rows, link.originalUrl());
+      rows.append('\t').append(link.clickCount());
+      RedirectMode redirect = link.redirect();
+      if (redirect == null) {
+        rows.append("\t\\N\t\\N");
+      } else {
+        rows.append('\t').append(redirect.type()).append('\t').append(redirect.maxAge());
+      }
+      // ISO-8601 in UTC, which timestamptz input accepts whatever the session time zone.
+      rows.append('\t').append(link.expiresAt() == null ? "\\N" : link.expiresAt().toString()).append('\n');
+    }
+    return rows.toString();
+  }
+
+  private static void appendEscaped(StringBuilder rows, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> rows.append("\\\\");
+        case '\t' -> rows.append("\\t");
+        case '\n' -> rows.append("\\n");
+        case '\r' -> rows.append("\\r");
+        default -> rows.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking reads of the links table for the reactive mode. Writes stay on
+ * {@link LinkJdbcRepository}: link creation needs the transaction around key allocation and the
+ * digest claim, which the blocking path already provides.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class R2dbcLinkRepository {
+  private static final String FIND_LINK_SQL =
+      "SELECT short_key, original_url, click_count, redirect_type, redirect_max_age, expires_at FROM links"
+          + " WHERE short_key = $1";
+
+  private final DatabaseClient databaseClient;
+  private final Timer findLinkTimer;
+
+  public R2dbcLinkRepository(ConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+    this.databaseClient = DatabaseClient.create(connectionFactory);
+    this.findLinkTimer = queryTimer(meterRegistry, "find_link");
+  }
+
+  public Mono<LinkDto> findLink(String shortKey) {
+    return timed(databaseClient.sql(FIND_LINK_SQL)
+        .bind(0, shortKey)
+        .map(row -> {
+          Integer redirectType = row.get("redirect_type", Integer.class);
+          RedirectMode redirect = redirectType == null ? null
+              : new RedirectMode(redirectType, row.get("redirect_max_age", Integer.class));
+          return new LinkDto(row.get("short_key", String.class), row.get("original_url", String.class),
+              row.get("click_count", Long.class), redirect, row.get("expires_at", Instant.class));
+        })
+        .first(), findLinkTimer);
+  }
+
+  private static <T> Mono<T> timed(Mono<T> query, Timer timer) {
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      return query.doFinally(signal -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    });
+  }
+
+  private static Timer queryTimer(MeterRegistry meterRegistry, String query) {
+    return Timer.builder("links.r2dbc")
+        .description("Latency of R2DBC statements on the links table")
+        .tag("query", query)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+}
@@ -1,14 +1,50 @@
 package ru.mws.link_shorter.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.mws.link_shorter.entity.LinkEntity;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 public interface ShorterRepository extends JpaRepository<LinkEntity, Long> {
   Optional<LinkEntity> findByShortKey(String shortKey);
 
-  Optional<LinkEntity> findByOriginalUrl(String originalUrl);
+  List<LinkEntity> findAllByShortKeyIn(Collection<String> shortKeys);
+
+  // A read-write transaction is never routed to a read replica.
+  @Transactional
+  @Query("select l from LinkEntity l where l.shortKey = :shortKey")
+  Optional<LinkEntity> findByShortKeyOnPrimary(@Param("shortKey") String shortKey);
+
+  // URLs are found by digest in link_digests, then the join on short_key touches a single links
+  // partition. The URL comparison guards against digest collisions.
+  default Optional<LinkEntity> findByOriginalUrl(String originalUrl) {
+    return findByUrlDigest(UrlDigest.of(originalUrl), originalUrl);
+  }
+
+  default List<LinkEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+    Set<String> wanted = new HashSet<>(originalUrls);
+    return findAllByUrlDigestIn(originalUrls.stream().map(UrlDigest::of).toList()).stream()
+        .filter(link -> wanted.contains(link.getOriginalUrl()))
+        .toList();
+  }
+
+  @Query(value = """
+      SELECT l.* FROM link_digests d JOIN links l ON l.short_key = d.short_key
+      WHERE d.url_digest = :digest AND l.original_url = :originalUrl""", nativeQuery = true)
+  Optional<LinkEntity> findByUrlDigest(@Param("digest") UUID digest, @Param("originalUrl") String originalUrl);
+
+  @Query(value = """
+      SELECT l.* FROM link_digests d JOIN links l ON l.short_key = d.short_key
+      WHERE d.url_digest IN (:digests)""", nativeQuery = true)
+  List<LinkEntity> findAllByUrlDigestIn(@Param("digests") Collection<UUID> digests);
 
   boolean existsByShortKey(String shortKey);
 }
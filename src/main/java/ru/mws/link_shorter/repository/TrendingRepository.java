@@ -0,0 +1,41 @@
+package ru.mws.link_shorter.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Profile("!embedded")
+public class TrendingRepository {
+  private static final String PUBLISH_SQL = """
+      INSERT INTO trending_summaries (instance_id, window_name, summary, updated_at) VALUES (?, ?, ?, now())
+      ON CONFLICT (instance_id, window_name) DO UPDATE SET summary = EXCLUDED.summary, updated_at = now()""";
+  private static final String DELETE_STALE_SQL = "DELETE FROM trending_summaries WHERE updated_at < ?";
+  private static final String FIND_OTHERS_SQL = """
+      SELECT summary FROM trending_summaries
+      WHERE window_name = ? AND instance_id <> ? AND updated_at >= ?""";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public TrendingRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public void publish(String instanceId, Map<String, byte[]> summariesByWindow, Instant deleteBefore) {
+    List<Object[]> rows = new ArrayList<>(summariesByWindow.size());
+    summariesByWindow.forEach((window, summary) -> rows.add(new Object[]{instanceId, window, summary}));
+    jdbcTemplate.batchUpdate(PUBLISH_SQL, rows);
+    jdbcTemplate.update(DELETE_STALE_SQL, Timestamp.from(deleteBefore));
+  }
+
+  public List<byte[]> findOthers(String window, String instanceId, Instant updatedAfter) {
+    return jdbcTemplate.query(FIND_OTHERS_SQL, (rs, rowNum) -> rs.getBytes(1),
+        window, instanceId, Timestamp.from(updatedAfter));
+  }
+}
@@ -0,0 +1,28 @@
+package ru.mws.link_shorter.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Dedup key of an original URL: the MD5 digest of its UTF-8 bytes as a UUID, equal to
+ * {@code md5(original_url)::uuid} in Postgres. Not a security boundary, lookups always compare the
+ * stored URL as well. ShorterService normalises a URL before it is hashed or stored, so both sides
+ * always see the same string.
+ */
+public final class UrlDigest {
+  private UrlDigest() {
+  }
+
+  public static UUID of(String originalUrl) {
+    try {
+      ByteBuffer digest = ByteBuffer.wrap(
+          MessageDigest.getInstance("MD5").digest(originalUrl.getBytes(StandardCharsets.UTF_8)));
+      return new UUID(digest.getLong(), digest.getLong());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+}
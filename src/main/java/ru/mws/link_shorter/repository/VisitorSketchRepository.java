@@ -0,0 +1,90 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mws.link_shorter.sketch.HyperLogLog;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Profile("!embedded")
+public class VisitorSketchRepository {
+  private static final String INSERT_EMPTY_SQL = """
+      INSERT INTO link_visitor_sketches (short_key, day, sketch)
+      SELECT short_key, day, ''::bytea FROM unnest(?::varchar[], ?::date[]) AS input (short_key, day)
+      ORDER BY short_key, day
+      ON CONFLICT DO NOTHING""";
+  private static final String LOCK_SQL = """
+      SELECT s.short_key, s.day, s.sketch FROM link_visitor_sketches s
+      JOIN unnest(?::varchar[], ?::date[]) AS input (short_key, day)
+        ON s.short_key = input.short_key AND s.day = input.day
+      ORDER BY s.short_key, s.day
+      FOR UPDATE OF s""";
+  private static final String UPDATE_SQL =
+      "UPDATE link_visitor_sketches SET sketch = ? WHERE short_key = ? AND day = ?";
+  private static final String FIND_SQL =
+      "SELECT day, sketch FROM link_visitor_sketches WHERE short_key = ? AND day >= ? AND day <= ? ORDER BY day";
+  private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::shortKey).thenComparing(Key::day);
+
+  public record Key(String shortKey, LocalDate day) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Timer mergeTimer;
+
+  public VisitorSketchRepository(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.mergeTimer = Timer.builder("links.visitors.jdbc")
+        .description("Latency of merging visitor sketches into link_visitor_sketches")
+        .tag("query", "merge_visitor_sketches")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  // Rows are created empty first and then locked in key order, so concurrent merges from several
+  // instances wait for each other instead of overwriting or deadlocking.
+  public void merge(Map<Key, HyperLogLog> sketches, int batchSize) {
+    List<Key> keys = new ArrayList<>(sketches.keySet());
+    keys.sort(KEY_ORDER);
+    for (int from = 0; from < keys.size(); from += batchSize) {
+      List<Key> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+      mergeTimer.record(() -> transactionTemplate.executeWithoutResult(status -> mergeChunk(chunk, sketches)));
+    }
+  }
+
+  public Map<LocalDate, HyperLogLog> findDaily(String shortKey, LocalDate from, LocalDate to) {
+    Map<LocalDate, HyperLogLog> daily = new LinkedHashMap<>();
+    jdbcTemplate.query(FIND_SQL, rs -> {
+      daily.put(rs.getDate(1).toLocalDate(), HyperLogLog.fromBytes(rs.getBytes(2)));
+    }, shortKey, Date.valueOf(from), Date.valueOf(to));
+    return daily;
+  }
+
+  private void mergeChunk(List<Key> chunk, Map<Key, HyperLogLog> sketches) {
+    String[] shortKeys = chunk.stream().map(Key::shortKey).toArray(String[]::new);
+    String[] days = chunk.stream().map(key -> key.day().toString()).toArray(String[]::new);
+    jdbcTemplate.update(INSERT_EMPTY_SQL, shortKeys, days);
+    List<Object[]> updates = new ArrayList<>(chunk.size());
+    jdbcTemplate.query(LOCK_SQL, rs -> {
+      Key key = new Key(rs.getString(1), rs.getDate(2).toLocalDate());
+      HyperLogLog merged = HyperLogLog.fromBytes(rs.getBytes(3));
+      merged.merge(sketches.get(key));
+      updates.add(new Object[]{merged.toBytes(), key.shortKey(), Date.valueOf(key.day())});
+    }, shortKeys, days);
+    jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+  }
+}
@@ -1,14 +1,32 @@
 package ru.mws.link_shorter.request;
 
 import jakarta.validation.constraints.*;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
 
 public record CreateLinkRequest(
     @NotBlank(message = "URL не может быть пустым")
-    @Size(max = 128, message = "Длина URL не должна превышать 128 символов")
+    @Size(max = CreateLinkRequest.MAX_URL_LENGTH, message = "Длина URL не должна превышать 4096 символов")
     String url,
 
     @NotNull(message = "Длина не может быть null")
     @Min(value = 3, message = "Длина должна быть не менее 3 символов")
     @Max(value = 12, message = "Длина должна быть не более 12 символов")
-    Integer len
-) {}
\ No newline at end of file
+    Integer len,
+
+    RedirectMode redirect,
+
+    @Future(message = "Срок действия ссылки должен быть в будущем")
+    Instant expiresAt
+) {
+  public static final int MAX_URL_LENGTH = 4096;
+
+  public CreateLinkRequest(String url, Integer len) {
+    this(url, len, null, null);
+  }
+
+  public CreateLinkRequest(String url, Integer len, RedirectMode redirect) {
+    this(url, len, redirect, null);
+  }
+}
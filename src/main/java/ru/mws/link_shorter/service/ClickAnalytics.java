@@ -0,0 +1,125 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+import ru.mws.link_shorter.repository.ClickStatsRepository.MinuteClicks;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects redirects per short key, minute, referrer host and country in memory and periodically
+ * appends them to {@code link_clicks_minute}. Works like {@link ClickCounter}: when the database is
+ * unreachable for long, clicks past {@code link-shorter.analytics.max-pending-keys} are dropped.
+ */
+@Component
+@Profile("!embedded")
+public class ClickAnalytics {
+  private static final Logger logger = LoggerFactory.getLogger(ClickAnalytics.class);
+  private static final int MAX_REFERRER_LENGTH = 255;
+
+  private record ClickKey(String shortKey, long minute, String referrer, String country) {}
+
+  private final WriteBehindBuffer<ClickKey, LongAdder, Long> pending;
+  private final ClickStatsRepository clickStatsRepository;
+  private final Counter droppedClicks;
+  private final int maxPendingKeys;
+  private final int batchSize;
+
+  public ClickAnalytics(ClickStatsRepository clickStatsRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${link-shorter.analytics.max-pending-keys:200000}") int maxPendingKeys,
+                        @Value("${link-shorter.analytics.batch-size:1000}") int batchSize) {
+    this.clickStatsRepository = clickStatsRepository;
+    this.maxPendingKeys = maxPendingKeys;
+    this.batchSize = batchSize;
+    this.pending = new WriteBehindBuffer<>("analytics-flush", false,
+        key -> new LongAdder(), ClickCounter::takeClicks, Long::sum, this::doFlush);
+    this.droppedClicks = Counter.builder("links.analytics.dropped")
+        .description("Clicks left out of analytics because they could not be written in time")
+        .register(meterRegistry);
+
+    Gauge.builder("links.analytics.pending", pending, WriteBehindBuffer::size)
+        .description("Click buckets recorded in memory but not yet written to the database")
+        .register(meterRegistry);
+  }
+
+  public void record(String shortKey, String referer, String country) {
+    long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    pending.get(new ClickKey(shortKey, minute, referrerHost(referer), countryCode(country))).increment();
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.analytics.flush-interval-ms:5000}")
+  public void flush() {
+    pending.flush();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flush();
+  }
+
+  private void doFlush() {
+    Map<ClickKey, Long> deltas = pending.drain();
+    if (deltas.isEmpty()) {
+      return;
+    }
+
+    List<MinuteClicks> rows = new ArrayList<>(deltas.size());
+    deltas.forEach((key, clicks) -> rows.add(new MinuteClicks(key.shortKey(),
+        Instant.ofEpochSecond(TimeUnit.MINUTES.toSeconds(key.minute())), key.referrer(), key.country(), clicks)));
+    try {
+      clickStatsRepository.appendMinuteClicks(rows, batchSize);
+      logger.debug("Appended {} click buckets", rows.size());
+    } catch (RuntimeException e) {
+      if (pending.size() + deltas.size() > maxPendingKeys) {
+        long dropped = deltas.values().stream().mapToLong(Long::longValue).sum();
+        droppedClicks.increment(dropped);
+        logger.error("Failed to append {} click buckets, dropping {} clicks", rows.size(), dropped, e);
+        return;
+      }
+      logger.warn("Failed to append {} click buckets, will retry", rows.size(), e);
+      deltas.forEach((key, clicks) -> pending.get(key).add(clicks));
+    }
+  }
+
+  // Only the host is kept: full referrer URLs would make the number of buckets unbounded.
+  static String referrerHost(String referer) {
+    if (referer == null || referer.isBlank()) {
+      return "";
+    }
+    try {
+      String host = URI.create(referer.trim()).getHost();
+      if (host == null) {
+        return "";
+      }
+      host = host.toLowerCase(Locale.ROOT);
+      return host.length() > MAX_REFERRER_LENGTH ? host.substring(0, MAX_REFERRER_LENGTH) : host;
+    } catch (IllegalArgumentException e) {
+      return "";
+    }
+  }
+
+  static String countryCode(String country) {
+    if (country == null) {
+      return "";
+    }
+    String code = country.trim().toUpperCase(Locale.ROOT);
+    return code.length() == 2 && code.chars().allMatch(c -> c >= 'A' && c <= 'Z') ? code : "";
+  }
+}
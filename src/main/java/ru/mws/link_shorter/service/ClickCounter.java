@@ -0,0 +1,129 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects redirect clicks in memory and periodically writes them to the {@link LinkStore}, in
+ * Postgres as batched {@code click_count = click_count + ?} updates. Every flush also feeds
+ * {@link TrendingLinks}, once per click even when the write has to be retried. Failed writes are
+ * retried until more than {@code link-shorter.clicks.max-pending-keys} links wait for a write, then
+ * the failed clicks are dropped and counted in {@code links.clicks.dropped}.
+ */
+@Component
+public class ClickCounter {
+  private static final Logger logger = LoggerFactory.getLogger(ClickCounter.class);
+  private static final int SHUTDOWN_DRAIN_ROUNDS = 3;
+
+  private final WriteBehindBuffer<String, LongAdder, Long> pending;
+  // Clicks whose write failed, kept apart from pending so they reach TrendingLinks only once.
+  private final ConcurrentHashMap<String, Long> failed = new ConcurrentHashMap<>();
+  private final LinkStore linkStore;
+  private final TrendingLinks trendingLinks;
+  private final Counter droppedClicks;
+  private final int maxPendingKeys;
+  private final int batchSize;
+
+  public ClickCounter(LinkStore linkStore,
+                      TrendingLinks trendingLinks,
+                      MeterRegistry meterRegistry,
+                      @Value("${link-shorter.clicks.max-pending-keys:100000}") int maxPendingKeys,
+                      @Value("${link-shorter.clicks.batch-size:500}") int batchSize,
+                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    this.linkStore = linkStore;
+    this.trendingLinks = trendingLinks;
+    this.maxPendingKeys = maxPendingKeys;
+    this.batchSize = batchSize;
+    this.pending = new WriteBehindBuffer<>("click-flush", virtualThreads,
+        key -> new LongAdder(), ClickCounter::takeClicks, Long::sum, this::doFlush);
+    this.droppedClicks = Counter.builder("links.clicks.dropped")
+        .description("Clicks left out of the click counts because they could not be written in time")
+        .register(meterRegistry);
+
+    Gauge.builder("links.clicks.pending", this, ClickCounter::pendingClicks)
+        .description("Clicks recorded in memory but not yet written to the database")
+        .register(meterRegistry);
+  }
+
+  public void record(String shortKey) {
+    pending.get(shortKey).increment();
+    if (pending.size() > maxPendingKeys) {
+      pending.flushSoon();
+    }
+  }
+
+  public long pendingClicks(String shortKey) {
+    LongAdder adder = pending.peek(shortKey);
+    return (adder == null ? 0 : adder.sum()) + failed.getOrDefault(shortKey, 0L);
+  }
+
+  public long pendingClicks() {
+    long total = pending.values().mapToLong(LongAdder::sum).sum();
+    for (long clicks : failed.values()) {
+      total += clicks;
+    }
+    return total;
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.clicks.flush-interval-ms:1000}")
+  public void flush() {
+    pending.flush();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    pending.shutdown();
+    for (int round = 0; round < SHUTDOWN_DRAIN_ROUNDS && pendingClicks() > 0; round++) {
+      flush();
+    }
+    long lost = pendingClicks();
+    if (lost > 0) {
+      logger.error("Shutting down with {} unflushed clicks", lost);
+    }
+  }
+
+  private void doFlush() {
+    Map<String, Long> deltas = pending.drain();
+    if (!deltas.isEmpty()) {
+      trendingLinks.offer(deltas);
+    }
+    for (String shortKey : failed.keySet()) {
+      deltas.merge(shortKey, failed.remove(shortKey), Long::sum);
+    }
+    if (deltas.isEmpty()) {
+      return;
+    }
+
+    try {
+      linkStore.incrementClickCounts(deltas, batchSize);
+      logger.debug("Flushed clicks for {} links", deltas.size());
+    } catch (RuntimeException e) {
+      if (pending.size() + deltas.size() > maxPendingKeys) {
+        long dropped = deltas.values().stream().mapToLong(Long::longValue).sum();
+        droppedClicks.increment(dropped);
+        logger.error("Failed to flush clicks for {} links, dropping {} clicks", deltas.size(), dropped, e);
+        return;
+      }
+      logger.error("Failed to flush clicks for {} links, will retry", deltas.size(), e);
+      deltas.forEach((shortKey, clicks) -> failed.merge(shortKey, clicks, Long::sum));
+    }
+  }
+
+  // Null for an adder with no clicks since the last flush, which lets its key be retired.
+  static Long takeClicks(LongAdder adder) {
+    long clicks = adder.sumThenReset();
+    return clicks == 0 ? null : clicks;
+  }
+}
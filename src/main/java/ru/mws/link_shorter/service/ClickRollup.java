@@ -0,0 +1,50 @@
+package ru.mws.link_shorter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Compacts click buckets past their retention into the next coarser table: minutes into hours,
+ * hours into days. Day buckets are kept. Safe to run on every instance at once: each row is
+ * deleted by exactly one of the concurrent statements.
+ */
+@Component
+@Profile("!embedded")
+public class ClickRollup {
+  private static final Logger logger = LoggerFactory.getLogger(ClickRollup.class);
+
+  private final ClickStatsRepository clickStatsRepository;
+  private final Duration minuteRetention;
+  private final Duration hourRetention;
+
+  public ClickRollup(ClickStatsRepository clickStatsRepository,
+                     @Value("${link-shorter.analytics.minute-retention:48h}") Duration minuteRetention,
+                     @Value("${link-shorter.analytics.hour-retention:90d}") Duration hourRetention) {
+    this.clickStatsRepository = clickStatsRepository;
+    this.minuteRetention = minuteRetention;
+    this.hourRetention = hourRetention;
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.analytics.rollup-interval-ms:60000}")
+  public void rollUp() {
+    Instant now = Instant.now();
+    try {
+      int hours = clickStatsRepository.rollUpMinutes(now.minus(minuteRetention));
+      int days = clickStatsRepository.rollUpHours(now.minus(hourRetention));
+      if (hours > 0 || days > 0) {
+        logger.debug("Rolled up clicks into {} hour and {} day buckets", hours, days);
+      }
+    } catch (DataAccessException e) {
+      logger.warn("Click rollup failed, will retry", e);
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package ru.mws.link_shorter.service;
+
+/**
+ * Request headers of a redirect that click analytics read. Any of them may be null.
+ */
+public record ClickSource(String referer, String country, String clientIp, String userAgent) {
+  public static final ClickSource NONE = new ClickSource(null, null, null, null);
+}
@@ -0,0 +1,101 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired links with their clicks. Each batch is a statement of its own, so locks are held
+ * for one batch only, and the pause between batches spreads dead rows out for autovacuum instead of
+ * leaving a run's worth at once. A run stops at a short batch or after {@code max-batches}; the rest
+ * waits for the next one. Redirects refuse expired links on their own until they are deleted.
+ * Safe to run on every instance at once: concurrent batches skip each other's rows.
+ * <p>
+ * Runs on a thread of its own rather than the shared {@code @Scheduled} one, which a run sleeping
+ * between batches would hold up for every other scheduled task.
+ */
+@Component
+public class ExpiredLinkReaper {
+  private static final Logger logger = LoggerFactory.getLogger(ExpiredLinkReaper.class);
+
+  private final LinkStore linkStore;
+  private final int batchSize;
+  private final int maxBatches;
+  private final Duration batchPause;
+  private final long reapIntervalMs;
+  private final Counter deleted;
+  private ScheduledExecutorService executor;
+
+  public ExpiredLinkReaper(LinkStore linkStore,
+                           @Value("${link-shorter.expiry.reap-interval-ms:60000}") long reapIntervalMs,
+                           @Value("${link-shorter.expiry.batch-size:500}") int batchSize,
+                           @Value("${link-shorter.expiry.max-batches:20}") int maxBatches,
+                           @Value("${link-shorter.expiry.batch-pause:200ms}") Duration batchPause,
+                           MeterRegistry meterRegistry) {
+    this.linkStore = linkStore;
+    this.reapIntervalMs = reapIntervalMs;
+    this.batchSize = batchSize;
+    this.maxBatches = maxBatches;
+    this.batchPause = batchPause;
+    this.deleted = Counter.builder("links.expired.deleted")
+        .description("Expired links deleted by the reaper")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void start() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("expired-link-reaper").daemon().factory());
+      executor.scheduleWithFixedDelay(this::reap, reapIntervalMs, reapIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // Interrupts a run sleeping between batches; a batch in flight finishes on its own.
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public void reap() {
+    int total = 0;
+    try {
+      for (int batch = 0; batch < maxBatches; batch++) {
+        int count = linkStore.deleteExpired(Instant.now(), batchSize);
+        total += count;
+        deleted.increment(count);
+        if (count < batchSize) {
+          break;
+        }
+        Thread.sleep(batchPause);
+      }
+    } catch (DataAccessException | UncheckedIOException e) {
+      logger.warn("Deleting expired links failed, will retry", e);
+    } catch (RuntimeException e) {
+      // An exception escaping the executor would cancel every later run.
+      logger.error("Deleting expired links failed, will retry", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (total > 0) {
+      logger.debug("Deleted {} expired links", total);
+    }
+  }
+}
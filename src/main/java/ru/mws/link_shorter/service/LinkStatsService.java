@@ -0,0 +1,89 @@
+package ru.mws.link_shorter.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.mws.link_shorter.dto.LinkStats;
+import ru.mws.link_shorter.dto.StatsGranularity;
+import ru.mws.link_shorter.dto.UniqueVisitors;
+import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+import ru.mws.link_shorter.repository.ShorterRepository;
+import ru.mws.link_shorter.repository.VisitorSketchRepository;
+import ru.mws.link_shorter.sketch.HyperLogLog;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Profile("!embedded")
+public class LinkStatsService {
+  private static final int TOP_DIMENSIONS = 10;
+
+  private final ClickStatsRepository clickStatsRepository;
+  private final ShorterRepository shorterRepository;
+  private final VisitorSketchRepository visitorSketchRepository;
+  private final int maxBuckets;
+  private final int maxVisitorDays;
+
+  public LinkStatsService(ClickStatsRepository clickStatsRepository,
+                          ShorterRepository shorterRepository,
+                          VisitorSketchRepository visitorSketchRepository,
+                          @Value("${link-shorter.analytics.max-buckets:1500}") int maxBuckets,
+                          @Value("${link-shorter.visitors.max-days:366}") int maxVisitorDays) {
+    this.clickStatsRepository = clickStatsRepository;
+    this.shorterRepository = shorterRepository;
+    this.visitorSketchRepository = visitorSketchRepository;
+    this.maxBuckets = maxBuckets;
+    this.maxVisitorDays = maxVisitorDays;
+  }
+
+  // Repeatable read gives the three queries one snapshot, so a concurrent rollup is seen either
+  // entirely or not at all.
+  @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+  public LinkStats getStats(String shortKey, Instant from, Instant to, StatsGranularity granularity) {
+    if (!from.isBefore(to)) {
+      throw new IllegalArgumentException("Stats range is empty: " + from + " - " + to);
+    }
+    if (Duration.between(from, to).dividedBy(granularity.step()) >= maxBuckets) {
+      throw new IllegalArgumentException("Stats range has more than " + maxBuckets + " buckets");
+    }
+    if (!shorterRepository.existsByShortKey(shortKey)) {
+      throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
+    }
+    List<LinkStats.Bucket> buckets = clickStatsRepository.series(shortKey, from, to, granularity.fieldName());
+    long total = buckets.stream().mapToLong(LinkStats.Bucket::clicks).sum();
+    return new LinkStats(shortKey, granularity.fieldName(), from, to, total, buckets,
+        clickStatsRepository.topReferrers(shortKey, from, to, TOP_DIMENSIONS),
+        clickStatsRepository.topCountries(shortKey, from, to, TOP_DIMENSIONS));
+  }
+
+  // Days are inclusive. The total is the estimate of the union of the daily sketches, so it is not
+  // the sum of the daily numbers.
+  public UniqueVisitors getUniqueVisitors(String shortKey, LocalDate from, LocalDate to) {
+    if (from.isAfter(to)) {
+      throw new IllegalArgumentException("Visitors range is empty: " + from + " - " + to);
+    }
+    if (ChronoUnit.DAYS.between(from, to) >= maxVisitorDays) {
+      throw new IllegalArgumentException("Visitors range is longer than " + maxVisitorDays + " days");
+    }
+    if (!shorterRepository.existsByShortKey(shortKey)) {
+      throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
+    }
+    Map<LocalDate, HyperLogLog> daily = visitorSketchRepository.findDaily(shortKey, from, to);
+    HyperLogLog union = new HyperLogLog();
+    List<UniqueVisitors.Day> days = new ArrayList<>(daily.size());
+    daily.forEach((day, sketch) -> {
+      union.merge(sketch);
+      days.add(new UniqueVisitors.Day(day, sketch.estimate()));
+    });
+    return new UniqueVisitors(shortKey, from, to, union.estimate(), days);
+  }
+}
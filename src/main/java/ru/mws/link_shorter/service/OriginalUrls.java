@@ -0,0 +1,39 @@
+package ru.mws.link_shorter.service;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings an original URL to the one form that is stored, hashed into its
+ * {@link ru.mws.link_shorter.repository.UrlDigest} and looked up, so spellings of the same address
+ * share a link. Only differences that never change the address are removed: the case of the scheme
+ * and the host, and a lone {@code /} as the path. Anything else, a trailing slash after a path
+ * segment included, may name another resource and is kept as is.
+ */
+public final class OriginalUrls {
+  private static final Pattern URL = Pattern.compile("(?:([A-Za-z][A-Za-z0-9+.-]*)://)?([^/?#]*)(.*)", Pattern.DOTALL);
+
+  private OriginalUrls() {
+  }
+
+  public static String normalize(String originalUrl) {
+    if (originalUrl == null) {
+      return null;
+    }
+    Matcher matcher = URL.matcher(originalUrl);
+    if (!matcher.matches()) {
+      return originalUrl;
+    }
+    String scheme = matcher.group(1);
+    String authority = matcher.group(2);
+    String rest = matcher.group(3);
+    if (rest.startsWith("/") && (rest.length() == 1 || rest.charAt(1) == '?' || rest.charAt(1) == '#')) {
+      rest = rest.substring(1);
+    }
+    int hostStart = authority.lastIndexOf('@') + 1;
+    return (scheme == null ? "" : scheme.toLowerCase(Locale.ROOT) + "://")
+        + authority.substring(0, hostStart) + authority.substring(hostStart).toLowerCase(Locale.ROOT)
+        + rest;
+  }
+}
@@ -0,0 +1,98 @@
+package ru.mws.link_shorter.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.mws.link_shorter.cache.LinkCache;
+import ru.mws.link_shorter.cache.SharedLinkCache;
+import ru.mws.link_shorter.dto.BatchLinkResult;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.repository.R2dbcLinkRepository;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link ShorterService} for the reactive mode. Redirects and link lookups never block: they go
+ * through the same {@link LinkCache} and shared cache, and on a miss to Postgres over R2DBC.
+ * Link creation keeps its JDBC transaction and runs on the bounded elastic scheduler, off the event
+ * loop; it is rare next to redirects.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveShorterService {
+  private final ShorterService shorterService;
+  private final LinkCache linkCache;
+  private final SharedLinkCache sharedLinkCache;
+  private final R2dbcLinkRepository r2dbcLinkRepository;
+
+  public ReactiveShorterService(ShorterService shorterService,
+                                LinkCache linkCache,
+                                SharedLinkCache sharedLinkCache,
+                                R2dbcLinkRepository r2dbcLinkRepository) {
+    this.shorterService = shorterService;
+    this.linkCache = linkCache;
+    this.sharedLinkCache = sharedLinkCache;
+    this.r2dbcLinkRepository = r2dbcLinkRepository;
+  }
+
+  public Mono<String> getRedirectLocation(String shortKey, ClickSource source) {
+    return Mono.fromFuture(() -> linkCache.getAsync(shortKey, this::loadRedirectLocation))
+        .flatMap(location -> location.map(Mono::just).orElseGet(() -> Mono.error(notFound(shortKey))))
+        .doOnNext(location -> shorterService.recordClick(shortKey, source));
+  }
+
+  // Rare, and reads the primary over JDBC like ShorterService does.
+  public Mono<String> refreshRedirectLocation(String shortKey) {
+    return offload(() -> shorterService.refreshRedirectLocation(shortKey));
+  }
+
+  public Mono<LinkDto> getOriginalLinkByShortKey(String shortKey) {
+    if (linkCache.isKnownMissing(shortKey)) {
+      return Mono.error(notFound(shortKey));
+    }
+    return r2dbcLinkRepository.findLink(shortKey)
+        .filter(link -> !ShorterService.isExpired(link))
+        .switchIfEmpty(Mono.defer(() -> {
+          linkCache.putMissing(shortKey);
+          return Mono.error(notFound(shortKey));
+        }));
+  }
+
+  public Mono<LinkDto> createShortLinkWithLen(String originalUrl, int len, RedirectMode redirect, Instant expiresAt) {
+    return offload(() -> shorterService.createShortLinkWithLen(originalUrl, len, redirect, expiresAt));
+  }
+
+  public Mono<List<BatchLinkResult>> createShortLinks(List<CreateLinkRequest> requests) {
+    return offload(() -> shorterService.createShortLinks(requests));
+  }
+
+  /** Runs a blocking call of the servlet stack off the event loop. */
+  public static <T> Mono<T> offload(Callable<T> call) {
+    return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private CompletableFuture<Optional<String>> loadRedirectLocation(String shortKey) {
+    return sharedLinkCache.getLocationAsync(shortKey).thenCompose(shared -> shared.isPresent()
+        ? CompletableFuture.completedFuture(shared)
+        : r2dbcLinkRepository.findLink(shortKey)
+            .filter(link -> !ShorterService.isExpired(link))
+            .map(link -> RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt()))
+            .doOnNext(location -> sharedLinkCache.putLocations(Map.of(shortKey, location)))
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .toFuture());
+  }
+
+  private static LinkNotFoundException notFound(String shortKey) {
+    return new LinkNotFoundException("Link with short key " + shortKey + " not found");
+  }
+}
@@ -0,0 +1,85 @@
+package ru.mws.link_shorter.service;
+
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * Turns a stored original URL into the value of the redirect {@code Location} header. Done once when
+ * a link enters the cache, so redirects serve the prepared string as is.
+ * <p>
+ * A link with its own {@link RedirectMode} is prepared as {@code "<status> <max-age> <location>"}:
+ * every cache tier keeps one string per link, and a normalized location never starts with a digit
+ * nor contains a space. A link that expires is prefixed with {@code "!<epoch millis> "}, so each
+ * tier can drop it at its expiry without asking the database.
+ */
+public final class RedirectLocations {
+  private static final char EXPIRY = '!';
+
+  private RedirectLocations() {
+  }
+
+  public static String normalize(String originalUrl) {
+    String url = originalUrl;
+    if (!url.startsWith("http://") && !url.startsWith("https://")) {
+      url = "https://" + url;
+    }
+    return URI.create(url).toASCIIString();
+  }
+
+  public static String prepare(String originalUrl, RedirectMode redirect) {
+    return prepare(originalUrl, redirect, null);
+  }
+
+  public static String prepare(String originalUrl, RedirectMode redirect, Instant expiresAt) {
+    String location = normalize(originalUrl);
+    String prepared = redirect == null ? location : redirect.type() + " " + redirect.maxAge() + " " + location;
+    return expiresAt == null ? prepared : EXPIRY + Long.toString(expiresAt.toEpochMilli()) + " " + prepared;
+  }
+
+  public static int status(String prepared) {
+    int start = start(prepared);
+    return hasMode(prepared, start) ? Integer.parseInt(prepared, start, start + 3, 10) : 302;
+  }
+
+  public static String location(String prepared) {
+    int start = start(prepared);
+    return hasMode(prepared, start) ? prepared.substring(prepared.indexOf(' ', start + 4) + 1) : prepared.substring(start);
+  }
+
+  /**
+   * Value of the {@code Cache-Control} header, or null for the default redirect that sends none. The
+   * max-age of an expiring link never reaches past its expiry.
+   */
+  public static String cacheControl(String prepared) {
+    int start = start(prepared);
+    if (!hasMode(prepared, start)) {
+      return null;
+    }
+    long maxAge = Long.parseLong(prepared, start + 4, prepared.indexOf(' ', start + 4), 10);
+    if (start > 0) {
+      long left = (expiresAt(prepared) - System.currentTimeMillis()) / 1000;
+      maxAge = Math.max(0, Math.min(maxAge, left));
+    }
+    return "public, max-age=" + maxAge;
+  }
+
+  /** Epoch millis the link expires at, or {@link Long#MAX_VALUE} for a link that never does. */
+  public static long expiresAt(String prepared) {
+    return prepared.charAt(0) == EXPIRY ? Long.parseLong(prepared, 1, prepared.indexOf(' '), 10) : Long.MAX_VALUE;
+  }
+
+  /** Whether the link has expired; only a link that expires reads the clock. */
+  public static boolean isExpired(String prepared) {
+    return prepared.charAt(0) == EXPIRY && expiresAt(prepared) <= System.currentTimeMillis();
+  }
+
+  private static int start(String prepared) {
+    return prepared.charAt(0) == EXPIRY ? prepared.indexOf(' ') + 1 : 0;
+  }
+
+  private static boolean hasMode(String prepared, int start) {
+    return prepared.charAt(start) <= '9';
+  }
+}
@@ -2,109 +2,423 @@ package ru.mws.link_shorter.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.mws.link_shorter.cache.LinkCache;
+import ru.mws.link_shorter.cache.ProxyCachePurger;
+import ru.mws.link_shorter.cache.SharedLinkCache;
+import ru.mws.link_shorter.dto.BatchLinkResult;
 import ru.mws.link_shorter.dto.LinkDto;
-import ru.mws.link_shorter.entity.LinkEntity;
+import ru.mws.link_shorter.dto.RedirectMode;
 import ru.mws.link_shorter.exception.LinkIsInvalid;
 import ru.mws.link_shorter.exception.LinkLengthOverflow;
 import ru.mws.link_shorter.exception.LinkNotFoundException;
-import ru.mws.link_shorter.repository.ShorterRepository;
+import ru.mws.link_shorter.exception.RedirectIsInvalid;
+import ru.mws.link_shorter.exception.ShortKeyUnavailable;
+import ru.mws.link_shorter.keygen.ShortKeyAllocator;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.repository.LinkStore;
+import ru.mws.link_shorter.request.CreateLinkRequest;
 
-import java.beans.Transient;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class ShorterService {
   private static final Logger logger = LoggerFactory.getLogger(ShorterService.class);
-  private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-  private final ShorterRepository shorterRepository;
+  private static final int MAX_INSERT_ATTEMPTS = 5;
+  private static final int LOOKUP_CHUNK_SIZE = 1000;
+  private final LinkStore linkStore;
+  private final ClickCounter clickCounter;
+  private final ClickAnalytics clickAnalytics;
+  private final VisitorCounter visitorCounter;
+  private final LinkCache linkCache;
+  private final SharedLinkCache sharedLinkCache;
+  private final ProxyCachePurger proxyCachePurger;
+  private final ShortKeyAllocator shortKeyAllocator;
+  private final LinkMetrics linkMetrics;
 
-  public ShorterService(ShorterRepository shorterRepository) {
-    this.shorterRepository = shorterRepository;
+  // Click analytics and unique visitors live in Postgres and are absent under the embedded profile.
+  public ShorterService(LinkStore linkStore,
+                        ClickCounter clickCounter,
+                        ObjectProvider<ClickAnalytics> clickAnalytics,
+                        ObjectProvider<VisitorCounter> visitorCounter,
+                        LinkCache linkCache,
+                        SharedLinkCache sharedLinkCache,
+                        ProxyCachePurger proxyCachePurger,
+                        ShortKeyAllocator shortKeyAllocator,
+                        LinkMetrics linkMetrics) {
+    this.linkStore = linkStore;
+    this.clickCounter = clickCounter;
+    this.clickAnalytics = clickAnalytics.getIfAvailable();
+    this.visitorCounter = visitorCounter.getIfAvailable();
+    this.linkCache = linkCache;
+    this.sharedLinkCache = sharedLinkCache;
+    this.proxyCachePurger = proxyCachePurger;
+    this.shortKeyAllocator = shortKeyAllocator;
+    this.linkMetrics = linkMetrics;
+    // A link deleted on any instance leaves this one's cache; marked missing, so a lagging replica
+    // cannot bring it back.
+    sharedLinkCache.onEvict(linkCache::putMissing);
   }
 
   public LinkDto getOriginalLinkByShortKey(String shortKey) {
-    logger.debug("Finding link by short key: {}", shortKey);
-    Optional<LinkEntity> linkEntity = shorterRepository.findByShortKey(shortKey);
-    if (linkEntity.isEmpty()) {
-      logger.warn("Link not found for short key: {}", shortKey);
+    if (linkCache.isKnownMissing(shortKey)) {
       throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
     }
-    logger.debug("Link found: {}", linkEntity.get());
-    return new LinkDto(linkEntity.get().getShortKey(), linkEntity.get().getOriginalUrl(), linkEntity.get().getClickCount());
+    Optional<LinkDto> link = linkStore.findByShortKey(shortKey).filter(found -> !isExpired(found));
+    if (link.isEmpty()) {
+      logger.debug("Link not found for short key: {}", shortKey);
+      linkCache.putMissing(shortKey);
+      throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
+    }
+    return link.get();
   }
 
-  @Transactional
   public LinkDto createShortLinkWithLen(String originalUrl, int len) {
-    logger.info("Creating short link for URL: {}, length: {}", originalUrl, len);
-    if (originalUrl.length() > 128) {
-      logger.warn("Original link is too long: {}", originalUrl);
-      throw new LinkLengthOverflow("Link:" + originalUrl + " is too long: " + originalUrl.length());
+    return createShortLinkWithLen(originalUrl, len, null, null);
+  }
+
+  // A link with its own redirect mode or an expiry is always a new one: handing out an existing link
+  // would change how long and how cacheably the redirects of its other users work.
+  @Transactional
+  public LinkDto createShortLinkWithLen(String url, int len, RedirectMode redirect, Instant expiresAt) {
+    logger.debug("Creating short link for URL: {}, length: {}, redirect: {}, expires at: {}",
+        url, len, redirect, expiresAt);
+    validateOriginalUrl(url);
+    String originalUrl = OriginalUrls.normalize(url);
+    validateRedirect(redirect);
+    validateExpiry(expiresAt);
+    Instant expiry = expiresAt == null ? null : expiresAt.truncatedTo(ChronoUnit.MILLIS);
+    boolean shared = redirect == null && expiry == null;
+
+    Optional<LinkDto> existing = shared ? findExistingLink(originalUrl) : Optional.empty();
+    if (existing.isPresent()) {
+      logger.debug("Found existing link for URL: {}", originalUrl);
+      return existing.get();
     }
 
-    if (!linkIsValid(originalUrl)) {
-      logger.warn("Original link is invalid: {}", originalUrl);
-      throw new LinkIsInvalid("Link is invalid: " + originalUrl);
+    for (int attempt = 1; attempt <= MAX_INSERT_ATTEMPTS; attempt++) {
+      String shortKey = shortKeyAllocator.allocate(len);
+      if (linkStore.insertIfAbsent(shortKey, originalUrl, redirect, expiry)) {
+        linkMetrics.recordCreateAttempts(attempt);
+        logger.debug("Created new link: {} -> {}", shortKey, originalUrl);
+        LinkDto created = new LinkDto(shortKey, originalUrl, 0, redirect, expiry);
+        cacheAfterCommit(List.of(created));
+        return created;
+      }
+
+      existing = shared ? linkStore.findByOriginalUrl(originalUrl) : Optional.empty();
+      if (existing.isPresent()) {
+        logger.info("Link for URL {} was created concurrently", originalUrl);
+        return existing.get();
+      }
+      logger.warn("Allocated short key {} is already taken, attempt {}", shortKey, attempt);
     }
 
-    Optional<LinkEntity> existing = shorterRepository.findByOriginalUrl(originalUrl);
-    if (existing.isPresent()) {
-      logger.info("Found existing link for URL: {}", originalUrl);
-      return new LinkDto(existing.get().getShortKey(), existing.get().getOriginalUrl(), existing.get().getClickCount());
-    }
-
-    String shortKey;
-    int attempts = 0;
-    do {
-      String salt = attempts > 0 ? "_" + attempts : "";
-      long hash = Math.abs((originalUrl + salt).hashCode());
-      shortKey = encodeAlphabetBase(hash);
-      while (shortKey.length() < len) {
-        shortKey += "0";
+    linkMetrics.recordCreateAttempts(MAX_INSERT_ATTEMPTS);
+    throw new ShortKeyUnavailable("Failed to allocate a free short key of length " + len);
+  }
+
+  @Transactional
+  public List<BatchLinkResult> createShortLinks(List<CreateLinkRequest> requests) {
+    BatchLinkResult[] results = new BatchLinkResult[requests.size()];
+    String[] originalUrls = new String[requests.size()];
+    Map<String, Integer> lengthByUrl = new LinkedHashMap<>();
+    for (int i = 0; i < requests.size(); i++) {
+      CreateLinkRequest request = requests.get(i);
+      try {
+        validateRequest(request);
+        if (request.redirect() != null || request.expiresAt() != null) {
+          results[i] = BatchLinkResult.created(
+              createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()));
+        } else {
+          originalUrls[i] = OriginalUrls.normalize(request.url());
+          lengthByUrl.putIfAbsent(originalUrls[i], request.len());
+        }
+      } catch (RuntimeException e) {
+        results[i] = BatchLinkResult.failed(e.getMessage());
       }
-      attempts++;
-      logger.debug("Generation attempt {}: shortKey = {}", attempts, shortKey);
-    } while (shorterRepository.existsByShortKey(shortKey) && attempts < 10);
-    shortKey = shortKey.substring(0, len);
+    }
 
-    if (attempts >= 10) {
-      logger.error("Failed to generate unique short key after {} attempts", attempts);
+    Map<String, BatchLinkResult> resultByUrl = new HashMap<>();
+    List<String> urls = new ArrayList<>(lengthByUrl.keySet());
+    for (int from = 0; from < urls.size(); from += LOOKUP_CHUNK_SIZE) {
+      List<String> chunk = urls.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, urls.size()));
+      for (LinkDto existing : findExistingLinks(chunk)) {
+        resultByUrl.put(existing.originalUrl(), BatchLinkResult.created(existing));
+      }
     }
 
-    LinkEntity newLinkEntity = new LinkEntity(shortKey, originalUrl);
-    shorterRepository.save(newLinkEntity);
-    logger.info("Created new link: {}", newLinkEntity);
+    Map<String, String> newUrlsByKey = new LinkedHashMap<>();
+    for (Map.Entry<String, Integer> entry : lengthByUrl.entrySet()) {
+      if (!resultByUrl.containsKey(entry.getKey())) {
+        try {
+          newUrlsByKey.put(shortKeyAllocator.allocate(entry.getValue()), entry.getKey());
+        } catch (ShortKeyUnavailable e) {
+          resultByUrl.put(entry.getKey(), BatchLinkResult.failed(e.getMessage()));
+        }
+      }
+    }
 
-    return new LinkDto(newLinkEntity.getShortKey(), newLinkEntity.getOriginalUrl(), newLinkEntity.getClickCount());
+    Set<String> inserted = linkStore.insertAllIfAbsent(newUrlsByKey);
+    List<LinkDto> created = new ArrayList<>();
+    for (Map.Entry<String, String> entry : newUrlsByKey.entrySet()) {
+      String shortKey = entry.getKey();
+      String originalUrl = entry.getValue();
+      if (inserted.contains(shortKey)) {
+        LinkDto link = new LinkDto(shortKey, originalUrl, 0);
+        created.add(link);
+        resultByUrl.put(originalUrl, BatchLinkResult.created(link));
+        continue;
+      }
+      try {
+        resultByUrl.put(originalUrl, BatchLinkResult.created(
+            createShortLinkWithLen(originalUrl, lengthByUrl.get(originalUrl))));
+      } catch (RuntimeException e) {
+        resultByUrl.put(originalUrl, BatchLinkResult.failed(e.getMessage()));
+      }
+    }
+    cacheAfterCommit(created);
+    logger.debug("Batch of {} links: {} created, {} existing or failed", requests.size(), created.size(),
+        requests.size() - created.size());
+
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] == null) {
+        results[i] = resultByUrl.get(originalUrls[i]);
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  public String getRedirectLocation(String shortKey) {
+    return getRedirectLocation(shortKey, ClickSource.NONE);
   }
 
+  public String getRedirectLocation(String shortKey, ClickSource source) {
+    Optional<String> location = linkCache.get(shortKey, this::loadRedirectLocation);
+    if (location.isEmpty()) {
+      throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
+    }
+    recordClick(shortKey, source);
+    return location.get();
+  }
+
+  /**
+   * Removes the link and then drops it from every cache tier: this instance's cache, the shared one,
+   * which tells the other instances to drop it as well, and then the nginx proxy cache. The purge
+   * request reads past the caches of whichever instance answers it ({@link #refreshRedirectLocation}).
+   */
   @Transactional
+  public boolean deleteLink(String shortKey) {
+    Optional<LinkDto> link = linkStore.findByShortKey(shortKey);
+    if (link.isEmpty() || !linkStore.delete(shortKey)) {
+      return false;
+    }
+    logger.info("Deleted link {} -> {}", shortKey, link.get().originalUrl());
+    afterCommit(() -> {
+      linkCache.putMissing(shortKey);
+      sharedLinkCache.evict(shortKey, link.get().originalUrl()).thenRun(() -> proxyCachePurger.purge(shortKey));
+    });
+    return true;
+  }
+
+  /**
+   * Answers the nginx purge request ({@link ProxyCachePurger#REFRESH_HEADER}): reads the link from the
+   * primary, past every cache, and caches the answer locally. An instance that has not yet heard of
+   * a deletion, or a lagging replica, must not give nginx a redirect of a deleted link to cache. Not
+   * counted as a click.
+   */
+  @Transactional
+  public String refreshRedirectLocation(String shortKey) {
+    Optional<String> location = linkStore.findByShortKey(shortKey)
+        .filter(link -> !isExpired(link))
+        .map(link -> RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt()));
+    if (location.isEmpty()) {
+      linkCache.putMissing(shortKey);
+      throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
+    }
+    linkCache.put(shortKey, location.get());
+    return location.get();
+  }
+
+  /** Location of a link already in the local cache, or null; never reaches the shared cache or the database. */
+  public String getCachedRedirectLocation(String shortKey) {
+    return linkCache.getIfPresent(shortKey);
+  }
+
+  // Only touches in-memory counters, so the reactive mode calls it straight from the event loop.
+  public void recordClick(String shortKey, ClickSource source) {
+    clickCounter.record(shortKey);
+    if (clickAnalytics != null) {
+      clickAnalytics.record(shortKey, source.referer(), source.country());
+    }
+    if (visitorCounter != null) {
+      visitorCounter.record(shortKey, source.clientIp(), source.userAgent());
+    }
+  }
+
   public LinkDto getIncrementedOriginalLinkByShortKey(String shortKey) {
-    logger.debug("Finding link to increment by short key: {}", shortKey);
-    Optional<LinkEntity> linkEntity = shorterRepository.findByShortKey(shortKey);
-    if (linkEntity.isEmpty()) {
-      logger.warn("Link not found for short key: {}", shortKey);
+    Optional<LinkDto> link = linkStore.findByShortKey(shortKey).filter(found -> !isExpired(found));
+    if (link.isEmpty()) {
+      logger.debug("Link not found for short key: {}", shortKey);
       throw new LinkNotFoundException("Link with short key " + shortKey + " not found");
     }
-    linkEntity.get().setClickCount(linkEntity.get().getClickCount() + 1);
-    shorterRepository.save(linkEntity.get());
-    logger.debug("Link was incremented: {}", linkEntity.get());
-    return new LinkDto(linkEntity.get().getShortKey(), linkEntity.get().getOriginalUrl(), linkEntity.get().getClickCount());
+    clickCounter.record(shortKey);
+    long clickCount = link.get().clickCount() + clickCounter.pendingClicks(shortKey);
+    return new LinkDto(link.get().shortKey(), link.get().originalUrl(), clickCount, link.get().redirect(),
+        link.get().expiresAt());
   }
 
-  private boolean linkIsValid(String originalUrl) {
-    return originalUrl.contains(".") && (originalUrl.length() > 4);
+  // Runs at most once per key at a time on this instance: LinkCache shares one load among concurrent misses.
+  private Optional<String> loadRedirectLocation(String shortKey) {
+    Optional<String> shared = sharedLinkCache.getLocation(shortKey);
+    if (shared.isPresent()) {
+      return shared;
+    }
+    Optional<String> location = linkStore.findForRedirect(shortKey)
+        .filter(link -> !isExpired(link))
+        .map(link -> RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt()));
+    location.ifPresent(value -> sharedLinkCache.putLocations(Map.of(shortKey, value)));
+    return location;
+  }
+
+  // An expired link stays in the store until ExpiredLinkReaper gets to it; reads treat it as gone.
+  static boolean isExpired(LinkDto link) {
+    return link.expiresAt() != null && !link.expiresAt().isAfter(Instant.now());
+  }
+
+  // The shared cache only names a candidate short key; the link itself is read by primary key and
+  // checked against the URL, so a stale entry costs one lookup and never returns a wrong link.
+  private Optional<LinkDto> findExistingLink(String originalUrl) {
+    Optional<String> cachedShortKey = sharedLinkCache.getShortKey(originalUrl);
+    if (cachedShortKey.isPresent()) {
+      Optional<LinkDto> link = linkStore.findByShortKey(cachedShortKey.get())
+          .filter(candidate -> candidate.originalUrl().equals(originalUrl));
+      if (link.isPresent()) {
+        return link;
+      }
+    }
+    Optional<LinkDto> link = linkStore.findByOriginalUrl(originalUrl);
+    link.ifPresent(found -> sharedLinkCache.putShortKeys(Map.of(originalUrl, found.shortKey())));
+    return link;
+  }
+
+  private List<LinkDto> findExistingLinks(List<String> originalUrls) {
+    Map<String, String> cachedShortKeys = sharedLinkCache.getShortKeys(originalUrls);
+    List<LinkDto> links = new ArrayList<>();
+    Set<String> found = new HashSet<>();
+    if (!cachedShortKeys.isEmpty()) {
+      for (LinkDto candidate : linkStore.findAllByShortKeyIn(cachedShortKeys.values())) {
+        if (candidate.shortKey().equals(cachedShortKeys.get(candidate.originalUrl()))) {
+          links.add(candidate);
+          found.add(candidate.originalUrl());
+        }
+      }
+    }
+    if (found.size() < originalUrls.size()) {
+      List<String> remaining = originalUrls.stream().filter(url -> !found.contains(url)).toList();
+      Map<String, String> loadedShortKeys = new HashMap<>();
+      for (LinkDto link : linkStore.findAllByOriginalUrlIn(remaining)) {
+        links.add(link);
+        loadedShortKeys.put(link.originalUrl(), link.shortKey());
+      }
+      sharedLinkCache.putShortKeys(loadedShortKeys);
+    }
+    return links;
+  }
+
+  private void cacheAfterCommit(List<LinkDto> links) {
+    if (!links.isEmpty()) {
+      afterCommit(() -> cacheLinks(links));
+    }
   }
 
-  private String encodeAlphabetBase(long number) {
-    if (number == 0) return "0";
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
 
-    StringBuilder sb = new StringBuilder();
-    while (number > 0) {
-      sb.append(ALPHABET.charAt((int) (number % ALPHABET.length())));
-      number /= ALPHABET.length();
+  private void cacheLinks(List<LinkDto> links) {
+    Map<String, String> locations = new HashMap<>();
+    Map<String, String> shortKeys = new HashMap<>();
+    for (LinkDto link : links) {
+      if (link.redirect() == null && link.expiresAt() == null) {
+        shortKeys.put(link.originalUrl(), link.shortKey());
+      }
+      try {
+        String location = RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt());
+        linkCache.put(link.shortKey(), location);
+        locations.put(link.shortKey(), location);
+      } catch (IllegalArgumentException e) {
+        linkCache.invalidate(link.shortKey());
+      }
     }
-    return sb.reverse().toString();
+    sharedLinkCache.putLocations(locations);
+    sharedLinkCache.putShortKeys(shortKeys);
   }
+
+  private void validateRequest(CreateLinkRequest request) {
+    if (request.url() == null || request.url().isBlank()) {
+      throw new LinkIsInvalid("Link is empty");
+    }
+    if (request.len() == null || request.len() < ShortKeyCodec.MIN_LENGTH || request.len() > ShortKeyCodec.MAX_LENGTH) {
+      throw new LinkIsInvalid("Short key length must be between " + ShortKeyCodec.MIN_LENGTH
+          + " and " + ShortKeyCodec.MAX_LENGTH);
+    }
+    validateOriginalUrl(request.url());
+    validateRedirect(request.redirect());
+    validateExpiry(request.expiresAt());
+  }
+
+  private void validateExpiry(Instant expiresAt) {
+    if (expiresAt != null && !expiresAt.isAfter(Instant.now())) {
+      throw new LinkIsInvalid("Link expiry must be in the future: " + expiresAt);
+    }
+  }
+
+  private void validateRedirect(RedirectMode redirect) {
+    if (redirect != null && !RedirectMode.isValid(redirect)) {
+      throw new RedirectIsInvalid("Redirect must be 301, 302 or 308 with max-age between 0 and "
+          + RedirectMode.MAX_AGE_LIMIT + ": " + redirect);
+    }
+  }
+
+  private void validateOriginalUrl(String originalUrl) {
+    if (originalUrl.length() > CreateLinkRequest.MAX_URL_LENGTH) {
+      logger.debug("Original link is too long: {}", originalUrl);
+      throw new LinkLengthOverflow("Link:" + originalUrl + " is too long: " + originalUrl.length());
+    }
+
+    if (!linkIsValid(originalUrl)) {
+      logger.debug("Original link is invalid: {}", originalUrl);
+      throw new LinkIsInvalid("Link is invalid: " + originalUrl);
+    }
+  }
+
+  private boolean linkIsValid(String originalUrl) {
+    return originalUrl.contains(".") && (originalUrl.length() > 4);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package ru.mws.link_shorter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.dto.TrendingLink;
+import ru.mws.link_shorter.repository.TrendingRepository;
+import ru.mws.link_shorter.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Most clicked links over sliding windows, in memory bounded by the summary capacity rather than by
+ * the number of links. {@link ClickCounter} feeds it the clicks of every flush. Each minute and each
+ * hour gets its own Space-Saving summary in a ring; a window is the merge of the slots it covers.
+ * Instances publish their window summaries to the database, and reads merge in the fresh ones of
+ * other instances; without the database (the embedded profile) the windows are this instance's own.
+ */
+@Component
+public class TrendingLinks {
+  private static final Logger logger = LoggerFactory.getLogger(TrendingLinks.class);
+  private static final int MINUTE_SLOTS = 60;
+  private static final int HOUR_SLOTS = 24;
+
+  public enum Window {
+    FIVE_MINUTES("5m"),
+    HOUR("1h"),
+    DAY("24h");
+
+    private final String label;
+
+    Window(String label) {
+      this.label = label;
+    }
+
+    public String label() {
+      return label;
+    }
+
+    public static Window of(String label) {
+      for (Window window : values()) {
+        if (window.label.equals(label.toLowerCase(Locale.ROOT))) {
+          return window;
+        }
+      }
+      throw new IllegalArgumentException("Unknown trending window: " + label);
+    }
+  }
+
+  private static final class Slot {
+    private long epoch = -1;
+    private final SpaceSaving summary;
+
+    private Slot(int capacity) {
+      this.summary = new SpaceSaving(capacity);
+    }
+  }
+
+  private record Cached(Instant expiresAt, List<TrendingLink> links) {}
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final Slot[] minuteSlots = new Slot[MINUTE_SLOTS];
+  private final Slot[] hourSlots = new Slot[HOUR_SLOTS];
+  private final Map<Window, Cached> cache = new ConcurrentHashMap<>();
+  private final TrendingRepository trendingRepository;
+  private final int capacity;
+  private final Duration staleAfter;
+  private final Duration cacheTtl;
+
+  public TrendingLinks(ObjectProvider<TrendingRepository> trendingRepository,
+                       @Value("${link-shorter.trending.capacity:1000}") int capacity,
+                       @Value("${link-shorter.trending.stale-after:30s}") Duration staleAfter,
+                       @Value("${link-shorter.trending.cache-ttl:5s}") Duration cacheTtl) {
+    this.trendingRepository = trendingRepository.getIfAvailable();
+    this.capacity = capacity;
+    this.staleAfter = staleAfter;
+    this.cacheTtl = cacheTtl;
+    for (int i = 0; i < MINUTE_SLOTS; i++) {
+      minuteSlots[i] = new Slot(capacity);
+    }
+    for (int i = 0; i < HOUR_SLOTS; i++) {
+      hourSlots[i] = new Slot(capacity);
+    }
+  }
+
+  public synchronized void offer(Map<String, Long> clicksByShortKey) {
+    long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    SpaceSaving minuteSummary = slot(minuteSlots, minute).summary;
+    SpaceSaving hourSummary = slot(hourSlots, minute / 60).summary;
+    clicksByShortKey.forEach((shortKey, clicks) -> {
+      minuteSummary.offer(shortKey, clicks);
+      hourSummary.offer(shortKey, clicks);
+    });
+  }
+
+  public List<TrendingLink> top(Window window, int limit) {
+    Instant now = Instant.now();
+    Cached cached = cache.get(window);
+    if (cached == null || cached.expiresAt().isBefore(now)) {
+      SpaceSaving summary = localSummary(window);
+      if (trendingRepository != null) {
+        mergeOthers(summary, window, now);
+      }
+      List<TrendingLink> links = summary.top(capacity).stream()
+          .map(entry -> new TrendingLink(entry.key(), entry.count(), entry.error()))
+          .toList();
+      cached = new Cached(now.plus(cacheTtl), links);
+      cache.put(window, cached);
+    }
+    return cached.links().size() > limit ? cached.links().subList(0, limit) : cached.links();
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.trending.publish-interval-ms:10000}")
+  public void publish() {
+    if (trendingRepository == null) {
+      return;
+    }
+    Map<String, byte[]> summaries = new LinkedHashMap<>();
+    for (Window window : Window.values()) {
+      summaries.put(window.label(), localSummary(window).toBytes());
+    }
+    try {
+      trendingRepository.publish(instanceId, summaries, Instant.now().minus(staleAfter.multipliedBy(10)));
+    } catch (DataAccessException e) {
+      logger.warn("Failed to publish trending links", e);
+    }
+  }
+
+  private void mergeOthers(SpaceSaving summary, Window window, Instant now) {
+    try {
+      for (byte[] other : trendingRepository.findOthers(window.label(), instanceId, now.minus(staleAfter))) {
+        summary.merge(SpaceSaving.fromBytes(other));
+      }
+    } catch (DataAccessException | IllegalArgumentException e) {
+      logger.debug("Showing trending links of this instance only", e);
+    }
+  }
+
+  synchronized SpaceSaving localSummary(Window window) {
+    long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    SpaceSaving summary = new SpaceSaving(capacity);
+    switch (window) {
+      case FIVE_MINUTES -> mergeSlots(summary, minuteSlots, minute, 5);
+      case HOUR -> mergeSlots(summary, minuteSlots, minute, MINUTE_SLOTS);
+      case DAY -> mergeSlots(summary, hourSlots, minute / 60, HOUR_SLOTS);
+    }
+    return summary;
+  }
+
+  private static void mergeSlots(SpaceSaving summary, Slot[] slots, long current, int count) {
+    for (long epoch = current - count + 1; epoch <= current; epoch++) {
+      Slot slot = slots[(int) Math.floorMod(epoch, (long) slots.length)];
+      if (slot.epoch == epoch && !slot.summary.isEmpty()) {
+        summary.merge(slot.summary);
+      }
+    }
+  }
+
+  private static Slot slot(Slot[] slots, long epoch) {
+    Slot slot = slots[(int) Math.floorMod(epoch, (long) slots.length)];
+    if (slot.epoch != epoch) {
+      slot.summary.clear();
+      slot.epoch = epoch;
+    }
+    return slot;
+  }
+}
@@ -0,0 +1,130 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.repository.VisitorSketchRepository;
+import ru.mws.link_shorter.repository.VisitorSketchRepository.Key;
+import ru.mws.link_shorter.sketch.HyperLogLog;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Counts unique visitors per link and UTC day with in-memory HyperLogLog sketches that are merged
+ * into {@code link_visitor_sketches} periodically. A visitor is the client IP and user agent pair.
+ * Merging is idempotent, so a flushed sketch is simply dropped and the next visit starts a new one.
+ * Sketches that fail to merge are kept for the next flush up to {@code max-pending-sketches}, and
+ * dropped beyond it.
+ */
+@Component
+@Profile("!embedded")
+public class VisitorCounter {
+  private static final Logger logger = LoggerFactory.getLogger(VisitorCounter.class);
+
+  // Lock-free: registers grow by compare-and-set, and the dirty flag is raised after the register,
+  // so a flush that clears it before its snapshot misses no visitor.
+  private static final class Sketch {
+    private final HyperLogLog hyperLogLog = new HyperLogLog();
+    private volatile boolean dirty;
+
+    void offer(String visitor) {
+      if (hyperLogLog.offerAtomically(visitor) && !dirty) {
+        dirty = true;
+      }
+    }
+
+    // Returns a copy if the sketch changed since the last call, otherwise null.
+    HyperLogLog takeChanges() {
+      if (!dirty) {
+        return null;
+      }
+      dirty = false;
+      return hyperLogLog.snapshot();
+    }
+
+    void restore(HyperLogLog changes) {
+      hyperLogLog.mergeAtomically(changes);
+      dirty = true;
+    }
+  }
+
+  private final WriteBehindBuffer<Key, Sketch, HyperLogLog> pending;
+  private final VisitorSketchRepository visitorSketchRepository;
+  private final Counter droppedSketches;
+  private final int maxPendingSketches;
+  private final int batchSize;
+
+  public VisitorCounter(VisitorSketchRepository visitorSketchRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${link-shorter.visitors.max-pending-sketches:20000}") int maxPendingSketches,
+                        @Value("${link-shorter.visitors.batch-size:500}") int batchSize,
+                        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    this.visitorSketchRepository = visitorSketchRepository;
+    this.maxPendingSketches = maxPendingSketches;
+    this.batchSize = batchSize;
+    this.pending = new WriteBehindBuffer<>("visitor-flush", virtualThreads,
+        key -> new Sketch(), Sketch::takeChanges, (a, b) -> {
+          a.merge(b);
+          return a;
+        }, this::doFlush);
+    this.droppedSketches = Counter.builder("links.visitors.dropped")
+        .description("Visitor sketches left out of the database because they could not be merged in time")
+        .register(meterRegistry);
+
+    Gauge.builder("links.visitors.pending", pending, WriteBehindBuffer::size)
+        .description("Visitor sketches held in memory until the next flush")
+        .register(meterRegistry);
+  }
+
+  public void record(String shortKey, String clientIp, String userAgent) {
+    if (clientIp == null || clientIp.isBlank()) {
+      return;
+    }
+    Key key = new Key(shortKey, LocalDate.now(ZoneOffset.UTC));
+    pending.get(key).offer(clientIp + '\n' + (userAgent == null ? "" : userAgent));
+    if (pending.size() > maxPendingSketches) {
+      pending.flushSoon();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${link-shorter.visitors.flush-interval-ms:60000}")
+  public void flush() {
+    pending.flush();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    pending.shutdown();
+    flush();
+    flush();
+  }
+
+  private void doFlush() {
+    Map<Key, HyperLogLog> changes = pending.drainAll();
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    try {
+      visitorSketchRepository.merge(changes, batchSize);
+      logger.debug("Merged {} visitor sketches", changes.size());
+    } catch (RuntimeException e) {
+      if (pending.size() + changes.size() > maxPendingSketches) {
+        droppedSketches.increment(changes.size());
+        logger.error("Failed to merge {} visitor sketches, dropping them", changes.size(), e);
+        return;
+      }
+      logger.warn("Failed to merge {} visitor sketches, will retry", changes.size(), e);
+      changes.forEach((key, sketch) -> pending.get(key).restore(sketch));
+    }
+  }
+}
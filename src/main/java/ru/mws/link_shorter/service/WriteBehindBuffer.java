@@ -0,0 +1,140 @@
+package ru.mws.link_shorter.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Per-key values updated on the redirect path and written out by one flush at a time, either on
+ * schedule or sooner through {@link #flushSoon()}. Shared by {@link ClickCounter},
+ * {@link ClickAnalytics} and {@link VisitorCounter}, which own the values and the write itself.
+ * <p>
+ * A drained value is removed from the map when it did not change since the last drain, or always
+ * by {@link #drainAll()}. A redirect may still hold it, so it is drained once more on the next flush
+ * before it is let go.
+ *
+ * @param <K> key of a value
+ * @param <V> value updated by redirects
+ * @param <D> changes taken out of a value by a drain
+ */
+final class WriteBehindBuffer<K, V, D> {
+  private final ConcurrentHashMap<K, V> pending = new ConcurrentHashMap<>();
+  private final Queue<Map.Entry<K, V>> retired = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final ThreadPoolExecutor flushExecutor;
+  private final Function<K, V> newValue;
+  private final Function<V, D> takeChanges;
+  private final BinaryOperator<D> mergeChanges;
+  private final Runnable flush;
+
+  /**
+   * @param takeChanges returns the changes of a value since the last call, or null if there are none
+   * @param flush       drains the buffer and writes the changes; runs under the flush lock
+   */
+  WriteBehindBuffer(String flushThreadName,
+                    boolean virtualThreads,
+                    Function<K, V> newValue,
+                    Function<V, D> takeChanges,
+                    BinaryOperator<D> mergeChanges,
+                    Runnable flush) {
+    this.newValue = newValue;
+    this.takeChanges = takeChanges;
+    this.mergeChanges = mergeChanges;
+    this.flush = flush;
+    ThreadFactory threadFactory = virtualThreads
+        ? Thread.ofVirtual().name(flushThreadName).factory()
+        : Thread.ofPlatform().name(flushThreadName).daemon().factory();
+    this.flushExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(1), threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  V get(K key) {
+    return pending.computeIfAbsent(key, newValue);
+  }
+
+  V peek(K key) {
+    return pending.get(key);
+  }
+
+  int size() {
+    return pending.size();
+  }
+
+  /** Values not yet let go, including those removed by the last drain. */
+  Stream<V> values() {
+    return Stream.concat(pending.values().stream(), retired.stream().map(Map.Entry::getValue));
+  }
+
+  /** Takes the changes of every value and removes the idle ones; called by the flush. */
+  Map<K, D> drain() {
+    return drain(false);
+  }
+
+  /** Takes the changes of every value and removes them all, for values that grow as they change. */
+  Map<K, D> drainAll() {
+    return drain(true);
+  }
+
+  private Map<K, D> drain(boolean all) {
+    Map<K, D> changes = new HashMap<>();
+    Map.Entry<K, V> retiredEntry;
+    while ((retiredEntry = retired.poll()) != null) {
+      take(changes, retiredEntry.getKey(), retiredEntry.getValue());
+    }
+    for (Map.Entry<K, V> entry : pending.entrySet()) {
+      boolean changed = take(changes, entry.getKey(), entry.getValue());
+      if ((all || !changed) && pending.remove(entry.getKey(), entry.getValue())) {
+        retired.add(Map.entry(entry.getKey(), entry.getValue()));
+      }
+    }
+    return changes;
+  }
+
+  void flush() {
+    flushLock.lock();
+    try {
+      flush.run();
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Starts a flush in the background unless one is already running or queued. */
+  void flushSoon() {
+    flushExecutor.execute(this::tryFlush);
+  }
+
+  void shutdown() throws InterruptedException {
+    flushExecutor.shutdown();
+    flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  private void tryFlush() {
+    if (flushLock.tryLock()) {
+      try {
+        flush.run();
+      } finally {
+        flushLock.unlock();
+      }
+    }
+  }
+
+  private boolean take(Map<K, D> changes, K key, V value) {
+    D taken = takeChanges.apply(value);
+    if (taken == null) {
+      return false;
+    }
+    changes.merge(key, taken, mergeChanges);
+    return true;
+  }
+}
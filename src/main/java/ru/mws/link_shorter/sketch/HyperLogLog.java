@@ -0,0 +1,185 @@
+package ru.mws.link_shorter.sketch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch with 2^11 registers: about 2.3% standard error at any cardinality. Merging two
+ * sketches takes the register-wise maximum, so merging is idempotent and order independent, and a
+ * union over days is the merge of the daily sketches.
+ *
+ * <p>Serialized form: empty for an empty sketch; otherwise a format byte and the precision, followed
+ * by either (index: 2 bytes, value: 1 byte) triples for the non-zero registers or all registers as
+ * one byte each, whichever is shorter.
+ *
+ * <p>A sketch is not thread-safe, except that {@link #offerAtomically}, {@link #mergeAtomically} and
+ * {@link #snapshot} may run concurrently with each other: a register only ever grows, by
+ * compare-and-set, so concurrent offers need no lock.
+ */
+public final class HyperLogLog {
+  public static final int PRECISION = 11;
+  private static final int REGISTERS = 1 << PRECISION;
+  private static final int MAX_RANK = 64 - PRECISION + 1;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+  private static final byte SPARSE = 1;
+  private static final byte DENSE = 2;
+  private static final VarHandle REGISTER = MethodHandles.arrayElementVarHandle(byte[].class);
+
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this.registers = new byte[REGISTERS];
+  }
+
+  private HyperLogLog(byte[] registers) {
+    this.registers = registers;
+  }
+
+  // Returns true if a register grew, i.e. the sketch changed.
+  public boolean offer(String value) {
+    return offerHash(hash(value));
+  }
+
+  boolean offerHash(long hash) {
+    int index = (int) (hash >>> (64 - PRECISION));
+    int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION) + 1, MAX_RANK);
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+      return true;
+    }
+    return false;
+  }
+
+  public boolean offerAtomically(String value) {
+    long hash = hash(value);
+    return raise((int) (hash >>> (64 - PRECISION)),
+        (byte) Math.min(Long.numberOfLeadingZeros(hash << PRECISION) + 1, MAX_RANK));
+  }
+
+  public void mergeAtomically(HyperLogLog other) {
+    for (int i = 0; i < REGISTERS; i++) {
+      raise(i, other.registers[i]);
+    }
+  }
+
+  // A copy that sees every register raised before the call.
+  public HyperLogLog snapshot() {
+    byte[] copy = new byte[REGISTERS];
+    for (int i = 0; i < REGISTERS; i++) {
+      copy[i] = (byte) REGISTER.getVolatile(registers, i);
+    }
+    return new HyperLogLog(copy);
+  }
+
+  private boolean raise(int index, byte rank) {
+    byte current = (byte) REGISTER.getVolatile(registers, index);
+    while (rank > current) {
+      byte witness = (byte) REGISTER.compareAndExchange(registers, index, current, rank);
+      if (witness == current) {
+        return true;
+      }
+      current = witness;
+    }
+    return false;
+  }
+
+  public void merge(HyperLogLog other) {
+    for (int i = 0; i < REGISTERS; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  public long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += Math.scalb(1.0, -register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+    if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+      estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  public HyperLogLog copy() {
+    return new HyperLogLog(registers.clone());
+  }
+
+  public byte[] toBytes() {
+    int nonZero = 0;
+    for (byte register : registers) {
+      if (register != 0) {
+        nonZero++;
+      }
+    }
+    if (nonZero == 0) {
+      return new byte[0];
+    }
+    if (nonZero * 3 >= REGISTERS) {
+      byte[] bytes = new byte[2 + REGISTERS];
+      bytes[0] = DENSE;
+      bytes[1] = PRECISION;
+      System.arraycopy(registers, 0, bytes, 2, REGISTERS);
+      return bytes;
+    }
+    byte[] bytes = new byte[2 + nonZero * 3];
+    bytes[0] = SPARSE;
+    bytes[1] = PRECISION;
+    int offset = 2;
+    for (int i = 0; i < REGISTERS; i++) {
+      if (registers[i] != 0) {
+        bytes[offset++] = (byte) (i >>> 8);
+        bytes[offset++] = (byte) i;
+        bytes[offset++] = registers[i];
+      }
+    }
+    return bytes;
+  }
+
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      return new HyperLogLog();
+    }
+    if (bytes.length < 2 || bytes[1] != PRECISION) {
+      throw new IllegalArgumentException("Unsupported sketch header");
+    }
+    if (bytes[0] == DENSE && bytes.length == 2 + REGISTERS) {
+      return new HyperLogLog(Arrays.copyOfRange(bytes, 2, bytes.length));
+    }
+    if (bytes[0] == SPARSE && (bytes.length - 2) % 3 == 0) {
+      byte[] registers = new byte[REGISTERS];
+      for (int offset = 2; offset < bytes.length; offset += 3) {
+        int index = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        if (index >= REGISTERS) {
+          throw new IllegalArgumentException("Register index out of range: " + index);
+        }
+        registers[index] = bytes[offset + 2];
+      }
+      return new HyperLogLog(registers);
+    }
+    throw new IllegalArgumentException("Malformed sketch of " + bytes.length + " bytes");
+  }
+
+  // FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer to spread the bits HyperLogLog reads.
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,192 @@
+package ru.mws.link_shorter.sketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Space-Saving heavy-hitter summary with a fixed number of counters. Any key with more than
+ * total / capacity occurrences is guaranteed to be tracked, and a tracked count overestimates the
+ * true one by at most its {@code error}. Counters sit in a min-heap, so an offer costs O(log capacity).
+ * Not thread-safe.
+ */
+public final class SpaceSaving {
+  public record Entry(String key, long count, long error) {}
+
+  private static final class Counter {
+    private String key;
+    private long count;
+    private long error;
+    private int position;
+  }
+
+  private final int capacity;
+  private final Map<String, Counter> counters;
+  private final Counter[] heap;
+  private int size;
+
+  public SpaceSaving(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 2);
+    this.heap = new Counter[capacity];
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public void offer(String key, long count) {
+    offer(key, count, 0);
+  }
+
+  public void merge(SpaceSaving other) {
+    // Mergeable summaries: a key missing from a full summary may have had up to its minimum count.
+    long thisMin = size == capacity ? heap[0].count : 0;
+    long otherMin = other.size == other.capacity ? other.heap[0].count : 0;
+    Map<String, long[]> merged = new HashMap<>();
+    Set<String> keys = new HashSet<>(counters.keySet());
+    keys.addAll(other.counters.keySet());
+    for (String key : keys) {
+      Counter mine = counters.get(key);
+      Counter theirs = other.counters.get(key);
+      long count = (mine == null ? thisMin : mine.count) + (theirs == null ? otherMin : theirs.count);
+      long error = (mine == null ? thisMin : mine.error) + (theirs == null ? otherMin : theirs.error);
+      merged.put(key, new long[]{count, error});
+    }
+    clear();
+    merged.entrySet().stream()
+        .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed())
+        .limit(capacity)
+        .forEach(e -> offer(e.getKey(), e.getValue()[0], e.getValue()[1]));
+  }
+
+  public List<Entry> top(int limit) {
+    List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new Entry(heap[i].key, heap[i].count, heap[i].error));
+    }
+    entries.sort(Comparator.comparingLong(Entry::count).reversed().thenComparing(Entry::key));
+    return entries.size() > limit ? entries.subList(0, limit) : entries;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    counters.clear();
+    for (int i = 0; i < size; i++) {
+      heap[i] = null;
+    }
+    size = 0;
+  }
+
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(capacity);
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        out.writeUTF(heap[i].key);
+        out.writeLong(heap[i].count);
+        out.writeLong(heap[i].error);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static SpaceSaving fromBytes(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      SpaceSaving summary = new SpaceSaving(in.readInt());
+      int size = in.readInt();
+      if (size > summary.capacity) {
+        throw new IllegalArgumentException("Summary holds more entries than its capacity");
+      }
+      for (int i = 0; i < size; i++) {
+        summary.offer(in.readUTF(), in.readLong(), in.readLong());
+      }
+      return summary;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Malformed summary", e);
+    }
+  }
+
+  private void offer(String key, long count, long error) {
+    Counter counter = counters.get(key);
+    if (counter != null) {
+      counter.count += count;
+      counter.error += error;
+      siftDown(counter.position);
+      return;
+    }
+    if (size < capacity) {
+      counter = new Counter();
+      counter.key = key;
+      counter.count = count;
+      counter.error = error;
+      counter.position = size;
+      heap[size++] = counter;
+      counters.put(key, counter);
+      siftUp(counter.position);
+      return;
+    }
+    // Evict the smallest counter; the newcomer may have occurred up to that many times before.
+    counter = heap[0];
+    counters.remove(counter.key);
+    counter.key = key;
+    counter.error = counter.count + error;
+    counter.count += count;
+    counters.put(key, counter);
+    siftDown(0);
+  }
+
+  private void siftUp(int position) {
+    Counter counter = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (heap[parent].count <= counter.count) {
+        break;
+      }
+      place(heap[parent], position);
+      position = parent;
+    }
+    place(counter, position);
+  }
+
+  private void siftDown(int position) {
+    Counter counter = heap[position];
+    int half = size >>> 1;
+    while (position < half) {
+      int child = 2 * position + 1;
+      if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+        child++;
+      }
+      if (counter.count <= heap[child].count) {
+        break;
+      }
+      place(heap[child], position);
+      position = child;
+    }
+    place(counter, position);
+  }
+
+  private void place(Counter counter, int position) {
+    heap[position] = counter;
+    counter.position = position;
+  }
+}
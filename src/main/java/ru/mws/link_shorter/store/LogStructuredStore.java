@@ -0,0 +1,935 @@
+package ru.mws.link_shorter.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Links in local files instead of Postgres. Every change is a record appended to the log of
+ * {@link Segment}s: a link, the new click count of a link, the new value of a key block sequence,
+ * the removal of a link. Two {@link OffHeapIndex} tables point from the short key and from the URL
+ * to the live records; links with their own redirect mode or an expiry are only found by short key.
+ * Expiring links are also kept in expiry order on the heap, so the expired ones are found without
+ * a scan; the order is rebuilt from the key table on start rather than stored.
+ * <p>
+ * Links and sequence blocks return once an fsync covers them; one background thread syncs for all
+ * waiting writers at once. Click counts are synced by the same thread within the sync interval
+ * without anyone waiting, so a power loss costs at most that much of clicks.
+ * <p>
+ * A checkpoint writes both tables to {@code index.bin}; on start the store loads it and replays only
+ * the log written after it, or the whole log when the file is missing or damaged. Compaction copies
+ * the live records of a sealed segment with enough superseded records to the head of the log and
+ * deletes the segment.
+ */
+public final class LogStructuredStore implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(LogStructuredStore.class);
+  private static final byte LINK = 1;
+  private static final byte CLICKS = 2;
+  private static final byte SEQUENCE = 3;
+  // A link whose value starts with its redirect status and max-age, ahead of the URL.
+  private static final byte LINK_WITH_REDIRECT = 4;
+  private static final byte DELETED = 5;
+  // A link whose value starts with its expiry in epoch millis, then its redirect status and max-age,
+  // zero for the default redirect, ahead of the URL.
+  private static final byte LINK_WITH_EXPIRY = 6;
+  private static final int CLICKS_FIELD = 0;
+  private static final int CLICKS_LOCATION_FIELD = 1;
+  private static final String INDEX_FILE = "index.bin";
+  private static final int INDEX_MAGIC = 0x4C4E4B49;
+  private static final int INDEX_VERSION = 1;
+  private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long syncIntervalNanos;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+  private final Map<Integer, Long> garbageBySegment = new HashMap<>();
+  // key length -> {next block, location of the sequence record}
+  private final Map<Integer, long[]> sequences = new HashMap<>();
+  private OffHeapIndex byKey = new OffHeapIndex(2, 0);
+  private OffHeapIndex byUrl = new OffHeapIndex(0, 0);
+  private final NavigableSet<Expiry> byExpiry =
+      new TreeSet<>(Comparator.comparingLong(Expiry::expiresAt).thenComparing(Expiry::shortKey));
+  private Segment active;
+  private long appended;
+  private long checkpointed = -1;
+
+  private final ReentrantLock forceLock = new ReentrantLock();
+  private int firstUnforcedSegment;
+  private final ReentrantLock syncLock = new ReentrantLock();
+  private final Condition syncRequested = syncLock.newCondition();
+  private final Condition syncDone = syncLock.newCondition();
+  private long synced;
+  private boolean syncPending;
+  private IOException syncFailure;
+  private boolean stopping;
+  private boolean closed;
+  private final Thread syncThread;
+
+  private LogStructuredStore(Path directory, int segmentSize, Duration syncInterval) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.syncIntervalNanos = Math.max(syncInterval.toNanos(), TimeUnit.MILLISECONDS.toNanos(1));
+    this.syncThread = Thread.ofPlatform().name("link-store-sync").daemon().unstarted(this::syncLoop);
+  }
+
+  public static LogStructuredStore open(Path directory, int segmentSize, Duration syncInterval) throws IOException {
+    if (segmentSize < Segment.HEADER_SIZE + Segment.RECORD_HEADER_SIZE + Long.BYTES) {
+      throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+    }
+    LogStructuredStore store = new LogStructuredStore(directory, segmentSize, syncInterval);
+    store.recover();
+    store.syncThread.start();
+    return store;
+  }
+
+  public Optional<LinkDto> findByShortKey(String shortKey) {
+    byte[] key = bytes(shortKey);
+    lock.readLock().lock();
+    try {
+      int slot = findKey(key);
+      return slot < 0 ? Optional.empty() : Optional.of(link(slot));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Optional<LinkDto> findByOriginalUrl(String originalUrl) {
+    byte[] url = bytes(originalUrl);
+    lock.readLock().lock();
+    try {
+      int urlSlot = findUrl(url);
+      return urlSlot < 0 ? Optional.empty() : Optional.of(link(findKey(key(byUrl.location(urlSlot)))));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the link unless its short key or its URL is taken; returns once the link is on disk. A link
+   * with a redirect mode or an expiry only needs a free short key.
+   */
+  public boolean insert(String shortKey, String originalUrl, RedirectMode redirect, Instant expiresAt) {
+    long lsn;
+    lock.writeLock().lock();
+    try {
+      if (!insertLocked(bytes(shortKey), bytes(originalUrl), redirect, expiresAt)) {
+        return false;
+      }
+      lsn = appended;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(lsn);
+    return true;
+  }
+
+  /** Same as {@link #insert} for many links with one sync; returns the short keys inserted. */
+  public Set<String> insertAll(Map<String, String> originalUrlsByShortKey) {
+    Set<String> inserted = new LinkedHashSet<>();
+    long lsn;
+    lock.writeLock().lock();
+    try {
+      originalUrlsByShortKey.forEach((shortKey, originalUrl) -> {
+        if (insertLocked(bytes(shortKey), bytes(originalUrl), null, null)) {
+          inserted.add(shortKey);
+        }
+      });
+      lsn = appended;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (!inserted.isEmpty()) {
+      awaitDurable(lsn);
+    }
+    return inserted;
+  }
+
+  /** Removes the link and its clicks; returns once the removal is on disk, or false for an unknown key. */
+  public boolean delete(String shortKey) {
+    byte[] key = bytes(shortKey);
+    long lsn;
+    lock.writeLock().lock();
+    try {
+      int slot = findKey(key);
+      if (slot < 0) {
+        return false;
+      }
+      unindex(slot);
+      addGarbage(append(DELETED, key, new byte[0]));
+      lsn = appended;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(lsn);
+    return true;
+  }
+
+  /**
+   * Removes up to {@code limit} links that expired by {@code nowMillis}; returns how many, once the
+   * removals are on disk. They are taken from the head of the expiry order, so the work is in
+   * proportion to the links removed, not to the store.
+   */
+  public int deleteExpired(long nowMillis, int limit) {
+    int deleted = 0;
+    long lsn;
+    lock.writeLock().lock();
+    try {
+      while (deleted < limit && !byExpiry.isEmpty() && byExpiry.first().expiresAt() <= nowMillis) {
+        byte[] key = bytes(byExpiry.first().shortKey());
+        int slot = findKey(key);
+        if (slot < 0) {
+          byExpiry.pollFirst();
+          continue;
+        }
+        unindex(slot);
+        addGarbage(append(DELETED, key, new byte[0]));
+        deleted++;
+      }
+      lsn = appended;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (deleted > 0) {
+      awaitDurable(lsn);
+    }
+    return deleted;
+  }
+
+  /** Returns the next value of the sequence for the given key length, starting at zero. */
+  public long nextSequence(int keyLength) {
+    long next;
+    long lsn;
+    lock.writeLock().lock();
+    try {
+      long[] sequence = sequences.get(keyLength);
+      next = sequence == null ? 0 : sequence[0];
+      long location = append(SEQUENCE, bytes(Integer.toString(keyLength)), longBytes(next + 1));
+      if (sequence != null) {
+        addGarbage(sequence[1]);
+      }
+      sequences.put(keyLength, new long[]{next + 1, location});
+      lsn = appended;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(lsn);
+    return next;
+  }
+
+  /** Adds clicks to the links that exist; does not wait for the sync. */
+  public void addClicks(Map<String, Long> clicksByShortKey) {
+    lock.writeLock().lock();
+    try {
+      clicksByShortKey.forEach((shortKey, clicks) -> {
+        byte[] key = bytes(shortKey);
+        int slot = findKey(key);
+        if (slot >= 0) {
+          appendClicks(slot, key, byKey.get(slot, CLICKS_FIELD) + clicks);
+        }
+      });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Most clicked links first, leaving out those expired by {@code nowMillis}. */
+  public List<LinkDto> hottest(int limit, long nowMillis) {
+    lock.readLock().lock();
+    try {
+      Comparator<Integer> byClicks = Comparator.comparingLong(slot -> byKey.get(slot, CLICKS_FIELD));
+      PriorityQueue<Integer> top = new PriorityQueue<>(byClicks);
+      byKey.forEach(slot -> {
+        if (expiresAt(byKey.location(slot)) <= nowMillis) {
+          return;
+        }
+        if (top.size() < limit) {
+          top.add(slot);
+        } else if (limit > 0 && byKey.get(slot, CLICKS_FIELD) > byKey.get(top.peek(), CLICKS_FIELD)) {
+          top.poll();
+          top.add(slot);
+        }
+      });
+      List<Integer> slots = new ArrayList<>(top);
+      slots.sort(byClicks.reversed());
+      return slots.stream().map(this::link).toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return byKey.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int segmentCount() {
+    lock.readLock().lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rewrites the sealed segments whose share of superseded records is at least the given one and
+   * returns how many were removed.
+   */
+  public synchronized int compact(double minGarbageRatio) throws IOException {
+    List<Segment> candidates = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (Segment segment : segments.headMap(active.id(), false).values()) {
+        long written = segment.writePosition() - Segment.HEADER_SIZE;
+        if (written <= 0 || garbageBySegment.getOrDefault(segment.id(), 0L) >= minGarbageRatio * written) {
+          candidates.add(segment);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (candidates.isEmpty()) {
+      return 0;
+    }
+    for (Segment segment : candidates) {
+      lock.writeLock().lock();
+      try {
+        copyLiveRecords(segment);
+        segments.remove(segment.id());
+        garbageBySegment.remove(segment.id());
+        checkpointed = -1;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    // The index must stop naming the old segments before they go.
+    checkpoint();
+    forceLock.lock();
+    try {
+      for (Segment segment : candidates) {
+        segment.delete();
+      }
+    } finally {
+      forceLock.unlock();
+    }
+    logger.info("Compacted {} segments of the link store", candidates.size());
+    return candidates.size();
+  }
+
+  /** Syncs the log and writes the index file, unless nothing changed since the last checkpoint. */
+  public synchronized void checkpoint() throws IOException {
+    sync();
+    Snapshot snapshot;
+    forceLock.lock();
+    lock.readLock().lock();
+    try {
+      if (checkpointed == appended) {
+        return;
+      }
+      // Only what was appended since the sync above is forced while writers wait.
+      forceUnforced(appended);
+      snapshot = snapshot();
+    } finally {
+      lock.readLock().unlock();
+      forceLock.unlock();
+    }
+    Path file = directory.resolve(INDEX_FILE);
+    Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+    CRC32C crc = new CRC32C();
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), crc));
+      writeIndex(out, snapshot);
+      out.flush();
+      channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) crc.getValue()));
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    checkpointed = snapshot.lsn();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    syncLock.lock();
+    try {
+      stopping = true;
+      syncRequested.signal();
+    } finally {
+      syncLock.unlock();
+    }
+    try {
+      syncThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkpoint();
+    lock.writeLock().lock();
+    syncLock.lock();
+    try {
+      closed = true;
+      syncDone.signalAll();
+      for (Segment segment : segments.values()) {
+        segment.close();
+      }
+    } finally {
+      syncLock.unlock();
+      lock.writeLock().unlock();
+    }
+  }
+
+  private boolean insertLocked(byte[] key, byte[] url, RedirectMode redirect, Instant expiresAt) {
+    if (findKey(key) >= 0) {
+      return false;
+    }
+    if (expiresAt != null) {
+      long location = append(LINK_WITH_EXPIRY, key, expiringValue(expiresAt, redirect, url));
+      byKey.insert(hash(key), location);
+      byExpiry.add(new Expiry(expiresAt(location), new String(key, StandardCharsets.UTF_8)));
+      return true;
+    }
+    if (redirect != null) {
+      byKey.insert(hash(key), append(LINK_WITH_REDIRECT, key, redirectValue(redirect, url)));
+      return true;
+    }
+    if (findUrl(url) >= 0) {
+      return false;
+    }
+    long location = append(LINK, key, url);
+    byKey.insert(hash(key), location);
+    byUrl.insert(hash(url), location);
+    return true;
+  }
+
+  // Takes the link out of both tables and the expiry order; its records become garbage.
+  private void unindex(int slot) {
+    long location = byKey.location(slot);
+    byte type = segment(location).type(offset(location));
+    if (type == LINK_WITH_EXPIRY) {
+      byExpiry.remove(new Expiry(expiresAt(location), segment(location).keyString(offset(location))));
+    }
+    if (type == LINK) {
+      int urlSlot = findUrl(segment(location).value(offset(location)));
+      if (urlSlot >= 0 && byUrl.location(urlSlot) == location) {
+        byUrl.remove(urlSlot);
+      }
+    }
+    addGarbage(location);
+    long clicks = byKey.get(slot, CLICKS_LOCATION_FIELD);
+    if (clicks != 0) {
+      addGarbage(clicks);
+    }
+    byKey.remove(slot);
+  }
+
+  private void appendClicks(int slot, byte[] key, long clicks) {
+    long location = append(CLICKS, key, longBytes(clicks));
+    long previous = byKey.get(slot, CLICKS_LOCATION_FIELD);
+    if (previous != 0) {
+      addGarbage(previous);
+    }
+    byKey.set(slot, CLICKS_FIELD, clicks);
+    byKey.set(slot, CLICKS_LOCATION_FIELD, location);
+  }
+
+  private long append(byte type, byte[] key, byte[] value) {
+    if (Segment.recordSize(key, value) > segmentSize - Segment.HEADER_SIZE) {
+      throw new IllegalArgumentException("Record of " + Segment.recordSize(key, value)
+          + " bytes does not fit into a segment");
+    }
+    int offset = active.append(type, key, value);
+    if (offset < 0) {
+      try {
+        active = Segment.create(directory, active.id() + 1, segmentSize);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to start a new segment", e);
+      }
+      segments.put(active.id(), active);
+      offset = active.append(type, key, value);
+    }
+    appended++;
+    return location(active.id(), offset);
+  }
+
+  // Links keep their clicks in the record that follows them in the log, so a copied link always
+  // gets its count written again right behind it. A removal is kept while older segments may still
+  // hold records of the removed link for a replay to bring back.
+  private void copyLiveRecords(Segment segment) {
+    segment.scan(Segment.HEADER_SIZE, (offset, type, key, value) -> {
+      long location = location(segment.id(), offset);
+      switch (type) {
+        case LINK, LINK_WITH_REDIRECT, LINK_WITH_EXPIRY -> {
+          int slot = findKey(key);
+          if (slot >= 0 && byKey.location(slot) == location) {
+            long copy = append(type, key, value);
+            byKey.setLocation(slot, copy);
+            int urlSlot = type == LINK ? findUrl(value) : -1;
+            if (urlSlot >= 0 && byUrl.location(urlSlot) == location) {
+              byUrl.setLocation(urlSlot, copy);
+            }
+            if (byKey.get(slot, CLICKS_FIELD) > 0) {
+              appendClicks(slot, key, byKey.get(slot, CLICKS_FIELD));
+            }
+          }
+        }
+        case CLICKS -> {
+          int slot = findKey(key);
+          if (slot >= 0 && byKey.get(slot, CLICKS_LOCATION_FIELD) == location) {
+            appendClicks(slot, key, byKey.get(slot, CLICKS_FIELD));
+          }
+        }
+        case SEQUENCE -> {
+          long[] sequence = sequences.get(Integer.parseInt(new String(key, StandardCharsets.UTF_8)));
+          if (sequence != null && sequence[1] == location) {
+            sequence[1] = append(SEQUENCE, key, value);
+          }
+        }
+        case DELETED -> {
+          if (segments.firstKey() < segment.id()) {
+            addGarbage(append(DELETED, key, value));
+          }
+        }
+        default -> {
+        }
+      }
+    });
+  }
+
+  private void recover() throws IOException {
+    Files.createDirectories(directory);
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path path : files.toList()) {
+        Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+        if (matcher.matches()) {
+          int id = Integer.parseInt(matcher.group(1));
+          segments.put(id, Segment.open(path, id));
+        }
+      }
+    }
+    if (segments.isEmpty()) {
+      active = Segment.create(directory, 1, segmentSize);
+      segments.put(active.id(), active);
+      firstUnforcedSegment = active.id();
+      return;
+    }
+
+    long replayFrom = loadIndex();
+    if (replayFrom < 0) {
+      byKey = new OffHeapIndex(2, 0);
+      byUrl = new OffHeapIndex(0, 0);
+      garbageBySegment.clear();
+      sequences.clear();
+      replayFrom = location(segments.firstKey(), Segment.HEADER_SIZE);
+    }
+    int fromSegment = segmentId(replayFrom);
+    long replayed = 0;
+    for (Segment segment : segments.tailMap(fromSegment, true).values()) {
+      int from = segment.id() == fromSegment ? offset(replayFrom) : Segment.HEADER_SIZE;
+      int end = segment.scan(from, (offset, type, key, value) -> replay(location(segment.id(), offset), type, key, value));
+      replayed += end - from;
+      if (segment.id() == segments.lastKey()) {
+        segment.resumeAt(end);
+      } else {
+        segment.markWritten(end);
+      }
+    }
+    active = segments.lastEntry().getValue();
+    firstUnforcedSegment = fromSegment;
+    checkpointed = replayed == 0 ? appended : -1;
+    byExpiry.clear();
+    byKey.forEach(slot -> {
+      long location = byKey.location(slot);
+      if (segment(location).type(offset(location)) == LINK_WITH_EXPIRY) {
+        byExpiry.add(new Expiry(expiresAt(location), segment(location).keyString(offset(location))));
+      }
+    });
+    logger.info("Opened link store with {} links in {} segments, replayed {} bytes of log",
+        byKey.size(), segments.size(), replayed);
+  }
+
+  private void replay(long location, byte type, byte[] key, byte[] value) {
+    switch (type) {
+      case LINK, LINK_WITH_REDIRECT, LINK_WITH_EXPIRY -> {
+        int slot = findKey(key);
+        if (slot >= 0) {
+          addGarbage(byKey.location(slot));
+          byKey.setLocation(slot, location);
+        } else {
+          byKey.insert(hash(key), location);
+        }
+        if (type != LINK) {
+          return;
+        }
+        int urlSlot = findUrl(value);
+        if (urlSlot >= 0) {
+          byUrl.setLocation(urlSlot, location);
+        } else {
+          byUrl.insert(hash(value), location);
+        }
+      }
+      case CLICKS -> {
+        int slot = findKey(key);
+        if (slot < 0) {
+          addGarbage(location);
+          return;
+        }
+        long previous = byKey.get(slot, CLICKS_LOCATION_FIELD);
+        if (previous != 0) {
+          addGarbage(previous);
+        }
+        byKey.set(slot, CLICKS_FIELD, ByteBuffer.wrap(value).getLong());
+        byKey.set(slot, CLICKS_LOCATION_FIELD, location);
+      }
+      case SEQUENCE -> {
+        long[] previous = sequences.put(Integer.parseInt(new String(key, StandardCharsets.UTF_8)),
+            new long[]{ByteBuffer.wrap(value).getLong(), location});
+        if (previous != null) {
+          addGarbage(previous[1]);
+        }
+      }
+      case DELETED -> {
+        int slot = findKey(key);
+        if (slot >= 0) {
+          unindex(slot);
+        }
+        addGarbage(location);
+      }
+      default -> addGarbage(location);
+    }
+  }
+
+  private record Expiry(long expiresAt, String shortKey) {}
+
+  private record Snapshot(long lsn, long covered, List<long[]> segments, Map<Integer, long[]> sequences,
+                          OffHeapIndex byKey, OffHeapIndex byUrl) {}
+
+  // Copies the tables under the read lock, so the file can be written without holding it.
+  private Snapshot snapshot() {
+    List<long[]> segmentEnds = new ArrayList<>();
+    for (Segment segment : segments.values()) {
+      segmentEnds.add(new long[]{segment.id(), segment.writePosition(),
+          garbageBySegment.getOrDefault(segment.id(), 0L)});
+    }
+    Map<Integer, long[]> sequenceCopies = new HashMap<>();
+    sequences.forEach((keyLength, sequence) -> sequenceCopies.put(keyLength, sequence.clone()));
+    return new Snapshot(appended, location(active.id(), active.writePosition()), segmentEnds, sequenceCopies,
+        byKey.copy(), byUrl.copy());
+  }
+
+  private static void writeIndex(DataOutputStream out, Snapshot snapshot) throws IOException {
+    out.writeInt(INDEX_MAGIC);
+    out.writeInt(INDEX_VERSION);
+    out.writeLong(snapshot.covered());
+    out.writeInt(snapshot.segments().size());
+    for (long[] segment : snapshot.segments()) {
+      out.writeInt((int) segment[0]);
+      out.writeInt((int) segment[1]);
+      out.writeLong(segment[2]);
+    }
+    out.writeInt(snapshot.sequences().size());
+    for (Map.Entry<Integer, long[]> sequence : snapshot.sequences().entrySet()) {
+      out.writeInt(sequence.getKey());
+      out.writeLong(sequence.getValue()[0]);
+      out.writeLong(sequence.getValue()[1]);
+    }
+    snapshot.byKey().writeTo(out);
+    snapshot.byUrl().writeTo(out);
+  }
+
+  /** Loads the index file and returns the log position it covers, or -1 to replay the whole log. */
+  private long loadIndex() {
+    Path file = directory.resolve(INDEX_FILE);
+    if (!Files.exists(file)) {
+      return -1;
+    }
+    CRC32C crc = new CRC32C();
+    try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+      if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+        throw new IOException("Unknown index format");
+      }
+      long covered = in.readLong();
+      Map<Integer, Integer> ends = new HashMap<>();
+      Map<Integer, Long> garbage = new HashMap<>();
+      int segmentCount = in.readInt();
+      for (int i = 0; i < segmentCount; i++) {
+        int id = in.readInt();
+        ends.put(id, in.readInt());
+        garbage.put(id, in.readLong());
+      }
+      Map<Integer, long[]> loadedSequences = new HashMap<>();
+      int sequenceCount = in.readInt();
+      for (int i = 0; i < sequenceCount; i++) {
+        loadedSequences.put(in.readInt(), new long[]{in.readLong(), in.readLong()});
+      }
+      OffHeapIndex loadedByKey = OffHeapIndex.readFrom(in, 2);
+      OffHeapIndex loadedByUrl = OffHeapIndex.readFrom(in, 0);
+      int expected = (int) crc.getValue();
+      if (in.readInt() != expected) {
+        throw new IOException("Index checksum mismatch");
+      }
+      if (!segments.keySet().containsAll(ends.keySet()) || !ends.containsKey(segmentId(covered))) {
+        throw new IOException("Index names segments that are gone");
+      }
+      // Segments older than the index that it does not name were compacted right before a crash.
+      for (Integer id : List.copyOf(segments.headMap(segmentId(covered), false).keySet())) {
+        if (!ends.containsKey(id)) {
+          segments.remove(id).delete();
+        } else {
+          segments.get(id).markWritten(ends.get(id));
+        }
+      }
+      byKey = loadedByKey;
+      byUrl = loadedByUrl;
+      garbageBySegment.putAll(garbage);
+      sequences.putAll(loadedSequences);
+      return covered;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Ignoring index file {}, replaying the whole log", file, e);
+      return -1;
+    }
+  }
+
+  private void syncLoop() {
+    while (true) {
+      syncLock.lock();
+      try {
+        if (!syncPending && !stopping) {
+          syncRequested.awaitNanos(syncIntervalNanos);
+        }
+        if (stopping) {
+          return;
+        }
+        syncPending = false;
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        syncLock.unlock();
+      }
+      try {
+        sync();
+      } catch (UncheckedIOException e) {
+        logger.error("Failed to sync the link store", e);
+        syncLock.lock();
+        try {
+          syncFailure = e.getCause();
+          syncDone.signalAll();
+        } finally {
+          syncLock.unlock();
+        }
+      }
+    }
+  }
+
+  // Pages go to disk outside the lock: the positions are taken under it, and appends past them
+  // wait for the next round.
+  private void sync() {
+    forceLock.lock();
+    try {
+      long target;
+      int activeId;
+      List<Segment> unforced;
+      int[] ends;
+      lock.readLock().lock();
+      try {
+        target = appended;
+        activeId = active.id();
+        unforced = List.copyOf(segments.tailMap(firstUnforcedSegment, true).values());
+        ends = unforced.stream().mapToInt(Segment::writePosition).toArray();
+      } finally {
+        lock.readLock().unlock();
+      }
+      for (int i = 0; i < unforced.size(); i++) {
+        unforced.get(i).force(ends[i]);
+      }
+      firstUnforcedSegment = activeId;
+      markSynced(target);
+    } finally {
+      forceLock.unlock();
+    }
+  }
+
+  // Runs under forceLock and the read lock.
+  private void forceUnforced(long target) {
+    for (Segment segment : segments.tailMap(firstUnforcedSegment, true).values()) {
+      segment.force(segment.writePosition());
+    }
+    firstUnforcedSegment = active.id();
+    markSynced(target);
+  }
+
+  private void markSynced(long target) {
+    syncLock.lock();
+    try {
+      synced = Math.max(synced, target);
+      syncDone.signalAll();
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  private void awaitDurable(long lsn) {
+    syncLock.lock();
+    try {
+      while (synced < lsn) {
+        if (syncFailure != null) {
+          throw new UncheckedIOException("Link store can no longer sync to disk", syncFailure);
+        }
+        if (closed) {
+          throw new IllegalStateException("Link store is closed");
+        }
+        syncPending = true;
+        syncRequested.signal();
+        syncDone.awaitUninterruptibly();
+      }
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  private int findKey(byte[] key) {
+    return byKey.find(hash(key), location -> segment(location).keyEquals(offset(location), key));
+  }
+
+  private int findUrl(byte[] url) {
+    return byUrl.find(hash(url), location -> segment(location).valueEquals(offset(location), url));
+  }
+
+  private LinkDto link(int slot) {
+    long location = byKey.location(slot);
+    Segment segment = segment(location);
+    int offset = offset(location);
+    long clicks = byKey.get(slot, CLICKS_FIELD);
+    byte type = segment.type(offset);
+    if (type == LINK) {
+      return new LinkDto(segment.keyString(offset), segment.valueString(offset), clicks);
+    }
+    ByteBuffer value = ByteBuffer.wrap(segment.value(offset));
+    Instant expiresAt = type == LINK_WITH_EXPIRY ? Instant.ofEpochMilli(value.getLong()) : null;
+    int redirectType = value.getInt();
+    int maxAge = value.getInt();
+    RedirectMode redirect = redirectType == 0 ? null : new RedirectMode(redirectType, maxAge);
+    return new LinkDto(segment.keyString(offset), StandardCharsets.UTF_8.decode(value).toString(), clicks,
+        redirect, expiresAt);
+  }
+
+  private long expiresAt(long location) {
+    Segment segment = segment(location);
+    return segment.type(offset(location)) == LINK_WITH_EXPIRY ? segment.longValue(offset(location)) : Long.MAX_VALUE;
+  }
+
+  private void addGarbage(long location) {
+    Segment segment = segments.get(segmentId(location));
+    if (segment != null) {
+      garbageBySegment.merge(segment.id(), (long) segment.recordSize(offset(location)), Long::sum);
+    }
+  }
+
+  private Segment segment(long location) {
+    return segments.get(segmentId(location));
+  }
+
+  private byte[] key(long location) {
+    return segment(location).key(offset(location));
+  }
+
+  private static long location(int segmentId, int offset) {
+    return (long) segmentId << 32 | offset;
+  }
+
+  private static int segmentId(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(long location) {
+    return (int) location;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] redirectValue(RedirectMode redirect, byte[] url) {
+    return ByteBuffer.allocate(2 * Integer.BYTES + url.length)
+        .putInt(redirect.type())
+        .putInt(redirect.maxAge())
+        .put(url)
+        .array();
+  }
+
+  private static byte[] expiringValue(Instant expiresAt, RedirectMode redirect, byte[] url) {
+    return ByteBuffer.allocate(Long.BYTES + 2 * Integer.BYTES + url.length)
+        .putLong(expiresAt.toEpochMilli())
+        .putInt(redirect == null ? 0 : redirect.type())
+        .putInt(redirect == null ? 0 : redirect.maxAge())
+        .put(url)
+        .array();
+  }
+
+  private static byte[] longBytes(long value) {
+    return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+  }
+
+  // FNV-1a, finished with the MurmurHash3 mixer so that the low bits used for slots are spread well.
+  static long hash(byte[] bytes) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,179 @@
+package ru.mws.link_shorter.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table in one direct buffer, so millions of links cost the GC nothing. A slot
+ * holds the 64-bit hash of a key, the location of its record in the log and a few more longs; a zero
+ * location marks a free slot. The table keeps no keys: a hash match is confirmed against the record
+ * itself. Not thread-safe, {@link LogStructuredStore} guards it with its lock.
+ */
+final class OffHeapIndex {
+  private static final int MIN_CAPACITY = 1024;
+  private static final double MAX_LOAD = 0.75;
+
+  private final int fields;
+  private final int slotSize;
+  private ByteBuffer table;
+  private int capacity;
+  private int size;
+
+  OffHeapIndex(int fields, int expectedSize) {
+    this.fields = fields;
+    this.slotSize = (2 + fields) * Long.BYTES;
+    this.capacity = capacityFor(expectedSize);
+    this.table = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, slotSize));
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Slot of the key with the given hash whose record passes the check, or -1. */
+  int find(long hash, LongPredicate matches) {
+    int mask = capacity - 1;
+    for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+      long location = location(slot);
+      if (location == 0) {
+        return -1;
+      }
+      if (table.getLong(slot * slotSize) == hash && matches.test(location)) {
+        return slot;
+      }
+    }
+  }
+
+  /** Adds a key the caller checked to be absent and returns its slot; the other fields are zero. */
+  int insert(long hash, long location) {
+    if (size + 1 > capacity * MAX_LOAD) {
+      resize(capacity * 2);
+    }
+    int slot = freeSlot(table, capacity, hash);
+    table.putLong(slot * slotSize, hash);
+    table.putLong(slot * slotSize + Long.BYTES, location);
+    size++;
+    return slot;
+  }
+
+  /**
+   * Frees the slot. Later keys of the same probe run move back into the hole, so that lookups still
+   * reach them without tombstones; slot numbers taken before the call are no longer valid.
+   */
+  void remove(int slot) {
+    int mask = capacity - 1;
+    int hole = slot;
+    for (int next = (hole + 1) & mask; location(next) != 0; next = (next + 1) & mask) {
+      int home = (int) table.getLong(next * slotSize) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        table.put(hole * slotSize, table, next * slotSize, slotSize);
+        hole = next;
+      }
+    }
+    for (int position = hole * slotSize; position < (hole + 1) * slotSize; position += Long.BYTES) {
+      table.putLong(position, 0);
+    }
+    size--;
+  }
+
+  long location(int slot) {
+    return table.getLong(slot * slotSize + Long.BYTES);
+  }
+
+  void setLocation(int slot, long location) {
+    table.putLong(slot * slotSize + Long.BYTES, location);
+  }
+
+  long get(int slot, int field) {
+    return table.getLong(slot * slotSize + (2 + field) * Long.BYTES);
+  }
+
+  void set(int slot, int field, long value) {
+    table.putLong(slot * slotSize + (2 + field) * Long.BYTES, value);
+  }
+
+  void forEach(IntConsumer visitor) {
+    for (int slot = 0; slot < capacity; slot++) {
+      if (location(slot) != 0) {
+        visitor.accept(slot);
+      }
+    }
+  }
+
+  OffHeapIndex copy() {
+    OffHeapIndex copy = new OffHeapIndex(fields, 0);
+    copy.capacity = capacity;
+    copy.size = size;
+    copy.table = ByteBuffer.allocateDirect(table.capacity()).put(0, table, 0, table.capacity());
+    return copy;
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(fields);
+    out.writeInt(capacity);
+    out.writeInt(size);
+    byte[] chunk = new byte[64 * 1024];
+    for (int position = 0; position < table.capacity(); position += chunk.length) {
+      int length = Math.min(chunk.length, table.capacity() - position);
+      table.get(position, chunk, 0, length);
+      out.write(chunk, 0, length);
+    }
+  }
+
+  static OffHeapIndex readFrom(DataInputStream in, int fields) throws IOException {
+    if (in.readInt() != fields) {
+      throw new IOException("Index has a different slot layout");
+    }
+    int capacity = in.readInt();
+    int size = in.readInt();
+    if (Integer.bitCount(capacity) != 1 || size < 0 || size > capacity) {
+      throw new IOException("Index is damaged");
+    }
+    OffHeapIndex index = new OffHeapIndex(fields, 0);
+    index.capacity = capacity;
+    index.size = size;
+    index.table = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, index.slotSize));
+    byte[] chunk = new byte[64 * 1024];
+    for (int position = 0; position < index.table.capacity(); position += chunk.length) {
+      int length = Math.min(chunk.length, index.table.capacity() - position);
+      in.readFully(chunk, 0, length);
+      index.table.put(position, chunk, 0, length);
+    }
+    return index;
+  }
+
+  private void resize(int newCapacity) {
+    ByteBuffer newTable = ByteBuffer.allocateDirect(Math.multiplyExact(newCapacity, slotSize));
+    byte[] slot = new byte[slotSize];
+    for (int i = 0; i < capacity; i++) {
+      if (location(i) != 0) {
+        table.get(i * slotSize, slot);
+        newTable.put(freeSlot(newTable, newCapacity, table.getLong(i * slotSize)) * slotSize, slot);
+      }
+    }
+    table = newTable;
+    capacity = newCapacity;
+  }
+
+  private int freeSlot(ByteBuffer table, int capacity, long hash) {
+    int mask = capacity - 1;
+    int slot = (int) hash & mask;
+    while (table.getLong(slot * slotSize + Long.BYTES) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int capacityFor(int expectedSize) {
+    long needed = (long) Math.ceil(expectedSize / MAX_LOAD);
+    int capacity = MIN_CAPACITY;
+    while (capacity < needed) {
+      capacity = Math.multiplyExact(capacity, 2);
+    }
+    return capacity;
+  }
+}
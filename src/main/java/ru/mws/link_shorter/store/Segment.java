@@ -0,0 +1,219 @@
+package ru.mws.link_shorter.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the log. Records are appended at the write position and never change:
+ * {@code [int length][int crc][byte type][short keyLength][key][value]}, where length and crc cover
+ * everything after the crc. A zero length or a wrong crc marks the end of the written part, so a
+ * record torn by a crash is dropped on the next scan. Appends run under the store's write lock,
+ * reads use absolute gets and may run concurrently.
+ */
+final class Segment {
+  static final int HEADER_SIZE = 16;
+  static final int RECORD_HEADER_SIZE = 4 + 4 + 1 + 2;
+  private static final int MAGIC = 0x4C4E4B53;
+  private static final int VERSION = 1;
+
+  interface RecordVisitor {
+    void visit(int offset, byte type, byte[] key, byte[] value);
+  }
+
+  private final int id;
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private volatile int writePosition;
+  private int forcedPosition;
+
+  private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer, int writePosition) {
+    this.id = id;
+    this.path = path;
+    this.channel = channel;
+    this.buffer = buffer;
+    this.writePosition = writePosition;
+  }
+
+  static Segment create(Path directory, int id, int capacity) throws IOException {
+    Path path = directory.resolve(fileName(id));
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, id);
+    return new Segment(id, path, channel, buffer, HEADER_SIZE);
+  }
+
+  /** Maps an existing file; the write position stays at the header until {@link #scan} finds the end. */
+  static Segment open(Path path, int id) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(8) != id) {
+      channel.close();
+      throw new IOException("Not a link store segment: " + path);
+    }
+    return new Segment(id, path, channel, buffer, HEADER_SIZE);
+  }
+
+  static String fileName(int id) {
+    return "segment-%08d.log".formatted(id);
+  }
+
+  static int recordSize(byte[] key, byte[] value) {
+    return RECORD_HEADER_SIZE + key.length + value.length;
+  }
+
+  int id() {
+    return id;
+  }
+
+  Path path() {
+    return path;
+  }
+
+  int capacity() {
+    return buffer.capacity();
+  }
+
+  int writePosition() {
+    return writePosition;
+  }
+
+  /** Appends a record and returns its offset, or -1 when it does not fit. */
+  int append(byte type, byte[] key, byte[] value) {
+    int offset = writePosition;
+    int size = recordSize(key, value);
+    if (offset + size > buffer.capacity()) {
+      return -1;
+    }
+    int bodyLength = size - 8;
+    buffer.put(offset + 8, type);
+    buffer.putShort(offset + 9, (short) key.length);
+    buffer.put(offset + RECORD_HEADER_SIZE, key);
+    buffer.put(offset + RECORD_HEADER_SIZE + key.length, value);
+    buffer.putInt(offset + 4, crc(offset + 8, bodyLength));
+    buffer.putInt(offset, bodyLength);
+    writePosition = offset + size;
+    return offset;
+  }
+
+  /** Calls the visitor for every intact record from the given offset and returns where they end. */
+  int scan(int from, RecordVisitor visitor) {
+    int offset = from;
+    while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      int bodyLength = buffer.getInt(offset);
+      if (bodyLength < RECORD_HEADER_SIZE - 8 || offset + 8 + bodyLength > buffer.capacity()
+          || buffer.getInt(offset + 4) != crc(offset + 8, bodyLength)) {
+        break;
+      }
+      int keyLength = buffer.getShort(offset + 9);
+      if (keyLength < 0 || keyLength > bodyLength - 3) {
+        break;
+      }
+      visitor.visit(offset, buffer.get(offset + 8), key(offset), value(offset));
+      offset += 8 + bodyLength;
+    }
+    return offset;
+  }
+
+  /**
+   * Continues appending where the last intact record ends. Pages of a mapping reach the disk in any
+   * order, so a crash can leave intact records behind a torn one; the rest of the file is zeroed to
+   * keep them from turning up again behind the new appends.
+   */
+  void resumeAt(int offset) {
+    byte[] zeros = new byte[64 * 1024];
+    for (int position = offset; position < buffer.capacity(); position += zeros.length) {
+      buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+    }
+    buffer.force();
+    writePosition = offset;
+    forcedPosition = offset;
+  }
+
+  /** Takes the end found by {@link #scan} or kept in the index for a segment that is no longer appended to. */
+  void markWritten(int end) {
+    writePosition = end;
+    forcedPosition = HEADER_SIZE;
+  }
+
+  byte type(int offset) {
+    return buffer.get(offset + 8);
+  }
+
+  int recordSize(int offset) {
+    return 8 + buffer.getInt(offset);
+  }
+
+  byte[] key(int offset) {
+    byte[] key = new byte[buffer.getShort(offset + 9)];
+    buffer.get(offset + RECORD_HEADER_SIZE, key);
+    return key;
+  }
+
+  byte[] value(int offset) {
+    int keyLength = buffer.getShort(offset + 9);
+    byte[] value = new byte[buffer.getInt(offset) - 3 - keyLength];
+    buffer.get(offset + RECORD_HEADER_SIZE + keyLength, value);
+    return value;
+  }
+
+  String keyString(int offset) {
+    return new String(key(offset), StandardCharsets.UTF_8);
+  }
+
+  String valueString(int offset) {
+    return new String(value(offset), StandardCharsets.UTF_8);
+  }
+
+  long longValue(int offset) {
+    return buffer.getLong(offset + RECORD_HEADER_SIZE + buffer.getShort(offset + 9));
+  }
+
+  boolean keyEquals(int offset, byte[] key) {
+    if (buffer.getShort(offset + 9) != key.length) {
+      return false;
+    }
+    return buffer.slice(offset + RECORD_HEADER_SIZE, key.length).equals(ByteBuffer.wrap(key));
+  }
+
+  boolean valueEquals(int offset, byte[] value) {
+    int keyLength = buffer.getShort(offset + 9);
+    if (buffer.getInt(offset) - 3 - keyLength != value.length) {
+      return false;
+    }
+    return buffer.slice(offset + RECORD_HEADER_SIZE + keyLength, value.length).equals(ByteBuffer.wrap(value));
+  }
+
+  /** Flushes the records appended since the last call up to the given position. */
+  void force(int upTo) {
+    if (upTo > forcedPosition) {
+      buffer.force(forcedPosition, upTo - forcedPosition);
+      forcedPosition = upTo;
+    }
+  }
+
+  void close() throws IOException {
+    channel.close();
+  }
+
+  void delete() throws IOException {
+    channel.close();
+    Files.deleteIfExists(path);
+  }
+
+  private int crc(int offset, int length) {
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.slice(offset, length));
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,79 @@
+package ru.mws.link_shorter.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mws.link_shorter.repository.LinkTransferRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the links table in short key order through a server-side cursor, so memory use does not
+ * depend on table size. An interrupted export resumes after the last short key it wrote.
+ */
+@Component
+@Profile("!embedded")
+public class LinkExporter {
+  private static final Logger logger = LoggerFactory.getLogger(LinkExporter.class);
+
+  private final LinkTransferRepository linkTransferRepository;
+  private final TransactionTemplate readOnlyTransaction;
+  private final ObjectMapper objectMapper;
+  private final int fetchSize;
+
+  public LinkExporter(LinkTransferRepository linkTransferRepository,
+                      PlatformTransactionManager transactionManager,
+                      ObjectMapper objectMapper,
+                      @Value("${link-shorter.transfer.fetch-size:5000}") int fetchSize) {
+    this.linkTransferRepository = linkTransferRepository;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.objectMapper = objectMapper;
+    this.fetchSize = fetchSize;
+  }
+
+  // Returns the number of links written. The stream is flushed, not closed.
+  public long export(OutputStream out, TransferFormat format, String afterShortKey) throws IOException {
+    long start = System.nanoTime();
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    if (format.header() != null && afterShortKey.isEmpty()) {
+      writer.write(format.header());
+      writer.write('\n');
+    }
+    long[] rows = new long[1];
+    try {
+      readOnlyTransaction.executeWithoutResult(status ->
+          linkTransferRepository.forEachLinkAfter(afterShortKey, fetchSize, link -> {
+            try {
+              writer.write(format.format(link, objectMapper));
+              writer.write('\n');
+              rows[0]++;
+            } catch (JsonProcessingException e) {
+              throw new IllegalStateException(e);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.flush();
+    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    logger.info("Exported {} links in {} ms, {} rows/s", rows[0], TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        Math.round(rows[0] * 1e9 / elapsedNanos));
+    return rows[0];
+  }
+}
@@ -0,0 +1,122 @@
+package ru.mws.link_shorter.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mws.link_shorter.dto.ImportReport;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.repository.LinkTransferRepository;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads an export file back with COPY, one transaction per batch. Links whose short key or URL is
+ * already taken are skipped, and so are links that expired since the export. Given an import id, every batch commits a checkpoint with its rows and
+ * a rerun with the same id and file skips what is already loaded.
+ */
+@Component
+@Profile("!embedded")
+public class LinkImporter {
+  private static final Logger logger = LoggerFactory.getLogger(LinkImporter.class);
+
+  private final LinkTransferRepository linkTransferRepository;
+  private final TransactionTemplate transaction;
+  private final ObjectMapper objectMapper;
+  private final int batchSize;
+
+  public LinkImporter(LinkTransferRepository linkTransferRepository,
+                      PlatformTransactionManager transactionManager,
+                      ObjectMapper objectMapper,
+                      @Value("${link-shorter.transfer.import-batch-size:10000}") int batchSize) {
+    this.linkTransferRepository = linkTransferRepository;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.objectMapper = objectMapper;
+    this.batchSize = batchSize;
+  }
+
+  public ImportReport importLinks(InputStream in, TransferFormat format, String importId) throws IOException {
+    long start = System.nanoTime();
+    long resumeAfter = importId == null ? 0 : linkTransferRepository.importCheckpoint(importId);
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    List<LinkDto> batch = new ArrayList<>(batchSize);
+    long rowsRead = 0;
+    long inserted = 0;
+    long invalid = 0;
+    long expired = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank() || format.isHeader(line)) {
+        continue;
+      }
+      rowsRead++;
+      if (rowsRead <= resumeAfter) {
+        continue;
+      }
+      LinkDto link = parse(line, format);
+      if (link == null) {
+        invalid++;
+      } else if (link.expiresAt() != null && !link.expiresAt().isAfter(Instant.now())) {
+        expired++;
+      } else {
+        batch.add(link);
+      }
+      if (batch.size() == batchSize) {
+        inserted += importBatch(batch, importId, rowsRead);
+        logProgress(rowsRead - resumeAfter, start);
+      }
+    }
+    inserted += importBatch(batch, importId, rowsRead);
+
+    long resumed = Math.min(resumeAfter, rowsRead);
+    long loaded = rowsRead - resumed;
+    double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+    ImportReport report = new ImportReport(rowsRead, resumed, inserted, loaded - invalid - expired - inserted,
+        invalid, expired, loaded / seconds);
+    logger.info("Import finished: {}", report);
+    return report;
+  }
+
+  private int importBatch(List<LinkDto> batch, String importId, long rowsDone) {
+    Integer inserted = transaction.execute(status -> batch.isEmpty() && importId == null
+        ? 0
+        : linkTransferRepository.importBatch(batch, importId, rowsDone));
+    batch.clear();
+    return inserted == null ? 0 : inserted;
+  }
+
+  private LinkDto parse(String line, TransferFormat format) {
+    try {
+      LinkDto link = format.parse(line, objectMapper);
+      boolean valid = link.shortKey() != null && !link.shortKey().isEmpty()
+          && link.shortKey().length() <= ShortKeyCodec.MAX_LENGTH
+          && link.originalUrl() != null && !link.originalUrl().isBlank()
+          && link.originalUrl().length() <= CreateLinkRequest.MAX_URL_LENGTH
+          && link.clickCount() >= 0
+          && (link.redirect() == null || RedirectMode.isValid(link.redirect()));
+      return valid ? link : null;
+    } catch (JsonProcessingException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private void logProgress(long rowsLoaded, long start) {
+    double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+    logger.info("Imported {} rows, {} rows/s", rowsLoaded, Math.round(rowsLoaded / seconds));
+  }
+}
@@ -0,0 +1,94 @@
+package ru.mws.link_shorter.transfer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.mws.link_shorter.dto.ImportReport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command line mode: runs one export or import and exits instead of serving requests.
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none \
+ *     --link-shorter.transfer.command=export --link-shorter.transfer.file=links.ndjson.gz
+ * </pre>
+ * The format follows the file extension ({@code .ndjson} or {@code .csv}, optionally {@code .gz}).
+ */
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(prefix = "link-shorter.transfer", name = "command")
+public class TransferCommand implements ApplicationRunner {
+  private static final Logger logger = LoggerFactory.getLogger(TransferCommand.class);
+
+  private final LinkExporter linkExporter;
+  private final LinkImporter linkImporter;
+  private final ConfigurableApplicationContext context;
+  private final String command;
+  private final Path file;
+  private final String after;
+  private final String importId;
+
+  public TransferCommand(LinkExporter linkExporter,
+                         LinkImporter linkImporter,
+                         ConfigurableApplicationContext context,
+                         @Value("${link-shorter.transfer.command}") String command,
+                         @Value("${link-shorter.transfer.file}") String file,
+                         @Value("${link-shorter.transfer.after:}") String after,
+                         @Value("${link-shorter.transfer.import-id:#{null}}") String importId) {
+    this.linkExporter = linkExporter;
+    this.linkImporter = linkImporter;
+    this.context = context;
+    this.command = command;
+    this.file = Path.of(file);
+    this.after = after;
+    this.importId = importId;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    TransferFormat format = TransferFormat.ofFileName(file.getFileName().toString());
+    boolean gzip = file.getFileName().toString().endsWith(".gz");
+    int exitCode = 0;
+    try {
+      switch (command) {
+        case "export" -> {
+          try (OutputStream out = gzip
+              ? new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))
+              : new BufferedOutputStream(Files.newOutputStream(file))) {
+            long rows = linkExporter.export(out, format, after);
+            logger.info("Exported {} links to {}", rows, file);
+          }
+        }
+        case "import" -> {
+          try (InputStream in = gzip
+              ? new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))
+              : new BufferedInputStream(Files.newInputStream(file))) {
+            ImportReport report = linkImporter.importLinks(in, format, importId);
+            logger.info("Imported {} from {}", report, file);
+          }
+        }
+        default -> throw new IllegalArgumentException("Unknown transfer command: " + command);
+      }
+    } catch (Exception e) {
+      logger.error("Transfer command {} failed", command, e);
+      exitCode = 1;
+    }
+    int code = exitCode;
+    System.exit(SpringApplication.exit(context, () -> code));
+  }
+}
@@ -0,0 +1,154 @@
+package ru.mws.link_shorter.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Line formats of link export files. Every link is one line; CSV files start with a header. CSV
+ * files from before redirect modes or expiry, without those trailing columns, still import.
+ */
+public enum TransferFormat {
+  NDJSON(MediaType.APPLICATION_NDJSON_VALUE, "ndjson") {
+    @Override
+    public String header() {
+      return null;
+    }
+
+    @Override
+    public String format(LinkDto link, ObjectMapper objectMapper) throws JsonProcessingException {
+      return objectMapper.writeValueAsString(link);
+    }
+
+    @Override
+    public LinkDto parse(String line, ObjectMapper objectMapper) throws JsonProcessingException {
+      return objectMapper.readValue(line, LinkDto.class);
+    }
+  },
+
+  CSV("text/csv", "csv") {
+    private static final String HEADER =
+        "short_key,original_url,click_count,redirect_type,redirect_max_age,expires_at";
+    private static final String REDIRECT_HEADER = "short_key,original_url,click_count,redirect_type,redirect_max_age";
+    private static final String PLAIN_HEADER = "short_key,original_url,click_count";
+
+    @Override
+    public String header() {
+      return HEADER;
+    }
+
+    @Override
+    public boolean isHeader(String line) {
+      return line.equals(HEADER) || line.equals(REDIRECT_HEADER) || line.equals(PLAIN_HEADER);
+    }
+
+    // Empty columns for a link without a redirect mode or expiry; the expiry is ISO-8601.
+    @Override
+    public String format(LinkDto link, ObjectMapper objectMapper) {
+      RedirectMode redirect = link.redirect();
+      return csvField(link.shortKey()) + ',' + csvField(link.originalUrl()) + ',' + link.clickCount()
+          + (redirect == null ? ",," : "," + redirect.type() + ',' + redirect.maxAge())
+          + ',' + (link.expiresAt() == null ? "" : link.expiresAt().toString());
+    }
+
+    @Override
+    public LinkDto parse(String line, ObjectMapper objectMapper) {
+      List<String> fields = csvFields(line);
+      if (fields.size() != 3 && fields.size() != 5 && fields.size() != 6) {
+        throw new IllegalArgumentException("Expected 3, 5 or 6 CSV fields, got " + fields.size());
+      }
+      RedirectMode redirect = fields.size() == 3 || fields.get(3).isEmpty() && fields.get(4).isEmpty()
+          ? null
+          : new RedirectMode(Integer.parseInt(fields.get(3)), Integer.parseInt(fields.get(4)));
+      Instant expiresAt = fields.size() < 6 || fields.get(5).isEmpty() ? null : parseInstant(fields.get(5));
+      return new LinkDto(fields.get(0), fields.get(1), Long.parseLong(fields.get(2)), redirect, expiresAt);
+    }
+  };
+
+  private final String contentType;
+  private final String extension;
+
+  TransferFormat(String contentType, String extension) {
+    this.contentType = contentType;
+    this.extension = extension;
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  public String extension() {
+    return extension;
+  }
+
+  public abstract String header();
+
+  public boolean isHeader(String line) {
+    return line.equals(header());
+  }
+
+  public abstract String format(LinkDto link, ObjectMapper objectMapper) throws JsonProcessingException;
+
+  public abstract LinkDto parse(String line, ObjectMapper objectMapper) throws JsonProcessingException;
+
+  public static TransferFormat of(String name) {
+    return valueOf(name.toUpperCase(Locale.ROOT));
+  }
+
+  // Guesses the format from a file name such as links.csv.gz.
+  public static TransferFormat ofFileName(String fileName) {
+    String name = fileName.toLowerCase(Locale.ROOT);
+    return name.endsWith(".csv") || name.endsWith(".csv.gz") ? CSV : NDJSON;
+  }
+
+  private static Instant parseInstant(String value) {
+    try {
+      return Instant.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid expiry: " + value, e);
+    }
+  }
+
+  private static String csvField(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  private static List<String> csvFields(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
@@ -0,0 +1,62 @@
+-- Optional expiry of a link. NULL keeps the link forever. ExpiredLinkReaper deletes expired links in
+-- small batches found through the partial index, which only holds links that expire: the index stays
+-- small, and the table and its other indexes shrink back as links go. Until then redirects refuse an
+-- expired link on their own.
+--
+-- The column is added without a rewrite. The index is created ON ONLY links, built CONCURRENTLY on
+-- each partition and attached, so writes go on while the partitions are scanned; CONCURRENTLY needs
+-- the migration to run outside a transaction, see the .conf file.
+
+ALTER TABLE links ADD COLUMN IF NOT EXISTS expires_at TIMESTAMPTZ;
+
+CREATE INDEX IF NOT EXISTS idx_links_expires_at ON ONLY links (expires_at) WHERE expires_at IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p00_expires_at_idx ON links_p00 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p01_expires_at_idx ON links_p01 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p02_expires_at_idx ON links_p02 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p03_expires_at_idx ON links_p03 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p04_expires_at_idx ON links_p04 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p05_expires_at_idx ON links_p05 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p06_expires_at_idx ON links_p06 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p07_expires_at_idx ON links_p07 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p08_expires_at_idx ON links_p08 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p09_expires_at_idx ON links_p09 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p10_expires_at_idx ON links_p10 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p11_expires_at_idx ON links_p11 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p12_expires_at_idx ON links_p12 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p13_expires_at_idx ON links_p13 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p14_expires_at_idx ON links_p14 (expires_at)
+    WHERE expires_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p15_expires_at_idx ON links_p15 (expires_at)
+    WHERE expires_at IS NOT NULL;
+
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p00_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p01_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p02_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p03_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p04_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p05_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p06_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p07_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p08_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p09_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p10_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p11_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p12_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p13_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p14_expires_at_idx;
+ALTER INDEX idx_links_expires_at ATTACH PARTITION links_p15_expires_at_idx;
@@ -0,0 +1,46 @@
+-- Supports the hottest-links query (ORDER BY click_count DESC LIMIT n) used by cache warmup: each
+-- partition reads its top entries from this index and the planner merges them, instead
+-- of sorting every link. The index costs click-count flushes their HOT updates, which the batched
+-- ClickCounter flushes keep infrequent per link.
+--
+-- CREATE INDEX on the partitioned table would block writes to every partition until all of them
+-- are indexed. Instead the parent index is created ON ONLY links, each partition is indexed
+-- CONCURRENTLY, and attaching the last partition makes the parent index valid. CONCURRENTLY cannot
+-- run in a transaction, hence the .conf file. If a build fails, drop the invalid partition index
+-- it leaves behind before running the migration again.
+
+CREATE INDEX IF NOT EXISTS idx_links_click_count ON ONLY links (click_count DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p00_click_count_idx ON links_p00 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p01_click_count_idx ON links_p01 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p02_click_count_idx ON links_p02 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p03_click_count_idx ON links_p03 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p04_click_count_idx ON links_p04 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p05_click_count_idx ON links_p05 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p06_click_count_idx ON links_p06 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p07_click_count_idx ON links_p07 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p08_click_count_idx ON links_p08 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p09_click_count_idx ON links_p09 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p10_click_count_idx ON links_p10 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p11_click_count_idx ON links_p11 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p12_click_count_idx ON links_p12 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p13_click_count_idx ON links_p13 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p14_click_count_idx ON links_p14 (click_count DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS links_p15_click_count_idx ON links_p15 (click_count DESC);
+
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p00_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p01_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p02_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p03_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p04_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p05_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p06_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p07_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p08_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p09_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p10_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p11_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p12_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p13_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p14_click_count_idx;
+ALTER INDEX idx_links_click_count ATTACH PARTITION links_p15_click_count_idx;
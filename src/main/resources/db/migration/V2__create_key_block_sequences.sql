@@ -0,0 +1,10 @@
+CREATE SEQUENCE link_key_block_seq_3 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_4 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_5 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_6 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_7 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_8 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_9 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_10 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_11 MINVALUE 0 START WITH 0;
+CREATE SEQUENCE link_key_block_seq_12 MINVALUE 0 START WITH 0;
@@ -0,0 +1,25 @@
+-- Replaces the URL-keyed link_urls with link_digests keyed by a 128-bit MD5 digest of the URL, so
+-- the dedup index stays 16 bytes per row whatever the URL length. Lookups verify the URL stored in
+-- links. UrlDigest computes the same value in the application: md5 over the UTF-8 bytes, read as a UUID.
+
+CREATE TABLE link_digests (
+    url_digest UUID NOT NULL,
+    short_key VARCHAR(12) NOT NULL,
+    PRIMARY KEY (url_digest)
+) PARTITION BY HASH (url_digest);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE link_digests_p%s PARTITION OF link_digests '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', lpad(i::text, 2, '0'), i);
+    END LOOP;
+END $$;
+
+INSERT INTO link_digests (url_digest, short_key)
+SELECT md5(original_url)::uuid, short_key FROM link_urls;
+
+DROP TABLE link_urls;
+
+-- Widening a VARCHAR does not rewrite the table.
+ALTER TABLE links ALTER COLUMN original_url TYPE VARCHAR(4096);
@@ -0,0 +1,5 @@
+CREATE TABLE link_import_checkpoints (
+    import_id VARCHAR(64) PRIMARY KEY,
+    rows_done BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
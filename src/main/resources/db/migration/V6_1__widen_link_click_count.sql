@@ -0,0 +1,56 @@
+-- Widens links.click_count to BIGINT without rewriting the table under an exclusive lock, which
+-- ALTER COLUMN ... TYPE would do for every partition at once. A BIGINT column is added next to the
+-- old one, a trigger keeps it in step with every write, existing rows are copied in batches that
+-- commit one by one, and the columns are swapped in a single short transaction.
+--
+-- Runs outside a transaction (see the .conf file) so the batches can commit; every step can be
+-- rerun if the migration is interrupted. The copy leaves one dead row version per link behind for
+-- autovacuum.
+
+ALTER TABLE links ADD COLUMN IF NOT EXISTS click_count_wide BIGINT;
+
+CREATE OR REPLACE FUNCTION links_widen_click_count() RETURNS trigger AS $$
+BEGIN
+    NEW.click_count_wide := coalesce(NEW.click_count, 0);
+    RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS links_widen_click_count ON links;
+CREATE TRIGGER links_widen_click_count BEFORE INSERT OR UPDATE ON links
+    FOR EACH ROW EXECUTE FUNCTION links_widen_click_count();
+
+-- Rows written from here on go through the trigger; the loop walks each partition by primary key.
+DO $$
+DECLARE
+    partition_name TEXT;
+    last_key VARCHAR(12);
+    batch_end VARCHAR(12);
+BEGIN
+    FOR i IN 0..15 LOOP
+        partition_name := format('links_p%s', lpad(i::text, 2, '0'));
+        last_key := '';
+        LOOP
+            EXECUTE format('SELECT max(short_key) FROM (SELECT short_key FROM %I WHERE short_key > $1 '
+                           'ORDER BY short_key LIMIT 10000) batch', partition_name)
+                INTO batch_end USING last_key;
+            EXIT WHEN batch_end IS NULL;
+            EXECUTE format('UPDATE %I SET click_count_wide = coalesce(click_count, 0) '
+                           'WHERE short_key > $1 AND short_key <= $2 AND click_count_wide IS NULL',
+                           partition_name)
+                USING last_key, batch_end;
+            COMMIT;
+            last_key := batch_end;
+        END LOOP;
+    END LOOP;
+END $$;
+
+-- Only catalog changes are left, so the exclusive lock is held for moments.
+DO $$
+BEGIN
+    LOCK TABLE links IN ACCESS EXCLUSIVE MODE;
+    DROP TRIGGER links_widen_click_count ON links;
+    DROP FUNCTION links_widen_click_count();
+    ALTER TABLE links DROP COLUMN click_count;
+    ALTER TABLE links RENAME COLUMN click_count_wide TO click_count;
+    ALTER TABLE links ALTER COLUMN click_count SET DEFAULT 0;
+END $$;
@@ -0,0 +1,38 @@
+-- Per-link click time series next to the running total in links.click_count, which V6_1 widens
+-- to BIGINT.
+--
+-- Redirects are aggregated in memory per (short key, minute, referrer host, country) and appended
+-- to link_clicks_minute; one minute may get several rows from successive flushes. ClickRollup moves
+-- minute rows past their retention into link_clicks_hour, and hour rows into link_clicks_day, summed
+-- per bucket. Reads union all three tables, so older data comes back at the coarser resolution.
+-- An empty referrer or country means a direct visit or an unknown country.
+
+CREATE TABLE link_clicks_minute (
+    short_key VARCHAR(12) NOT NULL,
+    bucket TIMESTAMPTZ NOT NULL,
+    referrer VARCHAR(255) NOT NULL,
+    country VARCHAR(2) NOT NULL,
+    clicks BIGINT NOT NULL
+);
+CREATE INDEX idx_link_clicks_minute_short_key ON link_clicks_minute (short_key, bucket);
+-- Rows arrive in time order, so a BRIN index finds the rows to roll up at a fraction of a B-tree's size.
+CREATE INDEX idx_link_clicks_minute_bucket ON link_clicks_minute USING brin (bucket);
+
+CREATE TABLE link_clicks_hour (
+    short_key VARCHAR(12) NOT NULL,
+    bucket TIMESTAMPTZ NOT NULL,
+    referrer VARCHAR(255) NOT NULL,
+    country VARCHAR(2) NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (short_key, bucket, referrer, country)
+);
+CREATE INDEX idx_link_clicks_hour_bucket ON link_clicks_hour USING brin (bucket);
+
+CREATE TABLE link_clicks_day (
+    short_key VARCHAR(12) NOT NULL,
+    bucket TIMESTAMPTZ NOT NULL,
+    referrer VARCHAR(255) NOT NULL,
+    country VARCHAR(2) NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (short_key, bucket, referrer, country)
+);
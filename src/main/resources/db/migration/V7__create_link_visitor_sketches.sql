@@ -0,0 +1,11 @@
+-- Daily HyperLogLog sketches of unique visitors per link, in the format of
+-- ru.mws.link_shorter.sketch.HyperLogLog: a few bytes for a quiet link, at most 2 KB for a busy one.
+-- Instances merge their in-memory sketches into the stored ones under a row lock, so a row always
+-- holds the union of everything flushed so far. Days are UTC.
+
+CREATE TABLE link_visitor_sketches (
+    short_key VARCHAR(12) NOT NULL,
+    day DATE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (short_key, day)
+);
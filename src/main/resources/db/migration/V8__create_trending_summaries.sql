@@ -0,0 +1,10 @@
+-- Heavy-hitter summaries (ru.mws.link_shorter.sketch.SpaceSaving) that every instance publishes per
+-- trending window. Readers merge the fresh rows of all instances; rows of stopped instances age out.
+
+CREATE TABLE trending_summaries (
+    instance_id VARCHAR(64) NOT NULL,
+    window_name VARCHAR(8) NOT NULL,
+    summary BYTEA NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (instance_id, window_name)
+);
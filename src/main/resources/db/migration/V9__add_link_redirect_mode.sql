@@ -0,0 +1,6 @@
+-- Opt-in cacheable redirect of a link (ru.mws.link_shorter.dto.RedirectMode): the status and the
+-- Cache-Control max-age in seconds. NULL keeps the default 302 without Cache-Control. Nullable
+-- columns without a default are added without rewriting the partitions.
+
+ALTER TABLE links ADD COLUMN redirect_type SMALLINT;
+ALTER TABLE links ADD COLUMN redirect_max_age INTEGER;
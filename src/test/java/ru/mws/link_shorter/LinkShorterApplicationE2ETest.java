@@ -32,7 +32,6 @@ public class LinkShorterApplicationE2ETest {
     registry.add("spring.datasource.url", postgres::getJdbcUrl);
     registry.add("spring.datasource.username", postgres::getUsername);
     registry.add("spring.datasource.password", postgres::getPassword);
-    registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
   }
 
   @Autowired
@@ -86,7 +85,7 @@ public class LinkShorterApplicationE2ETest {
 
   @Test
   void shouldReturn400ForTooLongUrl() {
-    String longUrl = "https://" + "a".repeat(200) + ".com";
+    String longUrl = "https://" + "a".repeat(CreateLinkRequest.MAX_URL_LENGTH) + ".com";
     CreateLinkRequest request = new CreateLinkRequest(longUrl, 6);
 
     ResponseEntity<String> response = restTemplate.postForEntity(
@@ -134,7 +133,7 @@ public class LinkShorterApplicationE2ETest {
     );
 
     String shortKey = createResponse.getBody().shortKey();
-    int initialCount = createResponse.getBody().clickCount();
+    long initialCount = createResponse.getBody().clickCount();
 
     for (int i = 0; i < 3; i++) {
       restTemplate.getForEntity("/api/links/" + shortKey, LinkDto.class);
@@ -0,0 +1,93 @@
+package ru.mws.link_shorter.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CacheWarmerTest {
+  private final LinkStore linkStore = mock(LinkStore.class);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldRestoreHotLinksSavedByPreviousInstance() {
+    Path snapshot = directory.resolve("hot-links.tsv");
+    LinkCache previousCache = newCache();
+    previousCache.put("abc123", "https://example.com");
+    previousCache.put("gone01", "https://example.com/deleted");
+    previousCache.putMissing("nothere");
+    warmer(previousCache, snapshot).saveSnapshot();
+
+    when(linkStore.findAllByShortKeyIn(anyCollection()))
+        .thenReturn(List.of(new LinkDto("abc123", "https://example.com/moved", 0)));
+    when(linkStore.streamHottestLinks(anyInt(), anyInt(), anyInt())).thenReturn(Stream.empty());
+    LinkCache cache = newCache();
+    warmer(cache, snapshot).warmUp();
+
+    verify(linkStore).findAllByShortKeyIn(argThat(keys -> keys.containsAll(List.of("abc123", "gone01"))));
+    assertThat(cache.get("abc123", key -> Optional.empty())).contains("https://example.com/moved");
+    assertThat(cache.get("gone01", key -> Optional.empty())).isEmpty();
+    assertThat(cache.isKnownMissing("nothere")).isFalse();
+  }
+
+  @Test
+  void shouldIgnoreStaleSnapshot() throws Exception {
+    Path snapshot = directory.resolve("hot-links.tsv");
+    Files.writeString(snapshot, "abc123\thttps://example.com\n");
+    Files.setLastModifiedTime(snapshot, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+    when(linkStore.streamHottestLinks(anyInt(), anyInt(), anyInt())).thenReturn(Stream.empty());
+    LinkCache cache = newCache();
+    warmer(cache, snapshot).warmUp();
+
+    assertThat(cache.get("abc123", key -> Optional.empty())).isEmpty();
+  }
+
+  @Test
+  void shouldPreloadMostClickedLinksAsRedirectLocations() {
+    when(linkStore.streamHottestLinks(eq(10), eq(1000), anyInt()))
+        .thenReturn(Stream.of(new LinkDto("abc123", "example.com/path", 42)));
+    LinkCache cache = newCache();
+
+    warmer(cache, null).warmUp();
+
+    assertThat(cache.get("abc123", key -> Optional.empty())).contains("https://example.com/path");
+  }
+
+  @Test
+  void shouldStayColdWhenDatabaseFails() {
+    when(linkStore.streamHottestLinks(anyInt(), anyInt(), anyInt()))
+        .thenThrow(new DataAccessResourceFailureException("down"));
+    LinkCache cache = newCache();
+
+    warmer(cache, null).warmUp();
+
+    assertThat(cache.hottest(10)).isEmpty();
+  }
+
+  private CacheWarmer warmer(LinkCache cache, Path snapshot) {
+    return new CacheWarmer(cache, linkStore, 10, 1000,
+        Duration.ofSeconds(30), snapshot == null ? "" : snapshot.toString(), Duration.ofDays(1));
+  }
+
+  private static LinkCache newCache() {
+    return new LinkCache(100, Duration.ofHours(1), Duration.ofMinutes(1), DataSize.ofBytes(0), new SimpleMeterRegistry());
+  }
+}
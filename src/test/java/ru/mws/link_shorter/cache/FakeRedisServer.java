@@ -0,0 +1,182 @@
+package ru.mws.link_shorter.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process stand-in for a Redis server: RESP2 with GET, MGET, SET (TTL ignored), DEL,
+ * PING, SUBSCRIBE and PUBLISH, which is all {@link RedisSharedLinkCache} sends. Counts commands by name.
+ */
+class FakeRedisServer implements AutoCloseable {
+  private final ServerSocket serverSocket;
+  private final Map<String, String> data = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+  private final List<Socket> clients = new ArrayList<>();
+  private final Map<String, List<OutputStream>> subscribers = new ConcurrentHashMap<>();
+
+  FakeRedisServer() throws IOException {
+    serverSocket = new ServerSocket(0);
+    Thread.ofVirtual().name("fake-redis-accept").start(this::acceptLoop);
+  }
+
+  String url() {
+    return "redis://localhost:" + serverSocket.getLocalPort();
+  }
+
+  Map<String, String> data() {
+    return data;
+  }
+
+  int commandCount(String command) {
+    AtomicInteger count = commandCounts.get(command);
+    return count == null ? 0 : count.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    synchronized (clients) {
+      for (Socket client : clients) {
+        client.close();
+      }
+    }
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket client = serverSocket.accept();
+        synchronized (clients) {
+          clients.add(client);
+        }
+        Thread.ofVirtual().start(() -> serve(client));
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket client) {
+    try (client;
+         InputStream in = new BufferedInputStream(client.getInputStream());
+         OutputStream out = new BufferedOutputStream(client.getOutputStream())) {
+      List<String> command;
+      while ((command = readCommand(in)) != null) {
+        // Published messages are written to a subscriber's stream from the publisher's thread.
+        synchronized (out) {
+          execute(command, out);
+          if (in.available() == 0) {
+            out.flush();
+          }
+        }
+      }
+    } catch (IOException e) {
+      // Client went away.
+    }
+  }
+
+  private void execute(List<String> command, OutputStream out) throws IOException {
+    String name = command.get(0).toUpperCase(Locale.ROOT);
+    commandCounts.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+    switch (name) {
+      case "PING" -> write(out, "+PONG\r\n");
+      case "GET" -> writeBulk(out, data.get(command.get(1)));
+      case "MGET" -> {
+        write(out, "*" + (command.size() - 1) + "\r\n");
+        for (String key : command.subList(1, command.size())) {
+          writeBulk(out, data.get(key));
+        }
+      }
+      case "SET" -> {
+        data.put(command.get(1), command.get(2));
+        write(out, "+OK\r\n");
+      }
+      case "DEL" -> {
+        int deleted = 0;
+        for (String key : command.subList(1, command.size())) {
+          deleted += data.remove(key) == null ? 0 : 1;
+        }
+        write(out, ":" + deleted + "\r\n");
+      }
+      case "SUBSCRIBE" -> {
+        for (int i = 1; i < command.size(); i++) {
+          subscribers.computeIfAbsent(command.get(i), key -> new CopyOnWriteArrayList<>()).add(out);
+          write(out, "*3\r\n");
+          writeBulk(out, "subscribe");
+          writeBulk(out, command.get(i));
+          write(out, ":" + i + "\r\n");
+        }
+      }
+      case "PUBLISH" -> {
+        List<OutputStream> receivers = subscribers.getOrDefault(command.get(1), List.of());
+        for (OutputStream receiver : receivers) {
+          synchronized (receiver) {
+            write(receiver, "*3\r\n");
+            writeBulk(receiver, "message");
+            writeBulk(receiver, command.get(1));
+            writeBulk(receiver, command.get(2));
+            receiver.flush();
+          }
+        }
+        write(out, ":" + receivers.size() + "\r\n");
+      }
+      default -> write(out, "-ERR unknown command '" + name + "'\r\n");
+    }
+  }
+
+  private static List<String> readCommand(InputStream in) throws IOException {
+    String header = readLine(in);
+    if (header == null) {
+      return null;
+    }
+    int count = Integer.parseInt(header.substring(1));
+    List<String> args = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int length = Integer.parseInt(readLine(in).substring(1));
+      args.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+      in.readNBytes(2);
+    }
+    return args;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1) {
+      if (c == '\r') {
+        in.read();
+        return line.toString();
+      }
+      line.append((char) c);
+    }
+    return null;
+  }
+
+  private static void writeBulk(OutputStream out, String value) throws IOException {
+    if (value == null) {
+      write(out, "$-1\r\n");
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    write(out, "$" + bytes.length + "\r\n");
+    out.write(bytes);
+    write(out, "\r\n");
+  }
+
+  private static void write(OutputStream out, String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,148 @@
+package ru.mws.link_shorter.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.service.RedirectLocations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LinkCacheTest {
+  private SimpleMeterRegistry meterRegistry;
+  private LinkCache linkCache;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    linkCache = new LinkCache(100, Duration.ofHours(1), Duration.ofMinutes(1), DataSize.ofBytes(0), meterRegistry);
+  }
+
+  @Test
+  void shouldLoadOnceAndServeFromCache() {
+    AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      Optional<String> url = linkCache.get("abc123", key -> {
+        loads.incrementAndGet();
+        return Optional.of("https://example.com");
+      });
+      assertThat(url).contains("https://example.com");
+    }
+
+    assertThat(loads).hasValue(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2.0);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  void shouldTreatExpiredLinkAsUnknown() {
+    String expired = RedirectLocations.prepare("https://example.com", null, Instant.now().minusSeconds(1));
+    linkCache.put("abc123", expired);
+
+    assertThat(linkCache.getIfPresent("abc123")).isNull();
+    assertThat(linkCache.get("abc123", key -> Optional.of(expired))).isEmpty();
+    assertThat(linkCache.isKnownMissing("abc123")).isTrue();
+  }
+
+  @Test
+  void shouldCacheUnknownKeys() {
+    AtomicInteger loads = new AtomicInteger();
+
+    linkCache.get("missing", key -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+    Optional<String> url = linkCache.get("missing", key -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+
+    assertThat(url).isEmpty();
+    assertThat(loads).hasValue(1);
+    assertThat(linkCache.isKnownMissing("missing")).isTrue();
+  }
+
+  @Test
+  void shouldReplaceNegativeEntryOnPut() {
+    linkCache.putMissing("abc123");
+
+    linkCache.put("abc123", "https://example.com");
+
+    assertThat(linkCache.isKnownMissing("abc123")).isFalse();
+    assertThat(linkCache.get("abc123", key -> Optional.empty())).contains("https://example.com");
+  }
+
+  @Test
+  void shouldLoadOnceForConcurrentMissesOnVirtualThreads() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<Optional<String>> first = executor.submit(() -> linkCache.get("abc123", key -> {
+        loads.incrementAndGet();
+        loading.countDown();
+        sleep(200);
+        return Optional.of("https://example.com");
+      }));
+      loading.await();
+      Future<Optional<String>> second = executor.submit(() -> linkCache.get("abc123", key -> {
+        loads.incrementAndGet();
+        return Optional.of("https://other.com");
+      }));
+
+      assertThat(first.get()).contains("https://example.com");
+      assertThat(second.get()).contains("https://example.com");
+    }
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void shouldNotCacheFailedLoads() {
+    assertThatThrownBy(() -> linkCache.get("abc123", key -> {
+      throw new IllegalStateException("database is down");
+    })).isInstanceOf(IllegalStateException.class);
+
+    assertThat(linkCache.get("abc123", key -> Optional.of("https://example.com"))).contains("https://example.com");
+  }
+
+  @Test
+  void shouldServeKnownLinksFromOffHeapTable() {
+    linkCache = new LinkCache(100, Duration.ofHours(1), Duration.ofMinutes(1), DataSize.ofMegabytes(8), meterRegistry);
+    AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      linkCache.get("abc123", key -> {
+        loads.incrementAndGet();
+        return Optional.of("https://example.com");
+      });
+    }
+    linkCache.get("missing", key -> Optional.empty());
+
+    assertThat(loads).hasValue(1);
+    assertThat(meterRegistry.get("links.cache.off_heap.hits").functionCounter().count()).isEqualTo(2.0);
+    assertThat(linkCache.isKnownMissing("missing")).isTrue();
+    assertThat(linkCache.hottest(10)).containsOnlyKeys("abc123");
+
+    linkCache.invalidate("abc123");
+    assertThat(linkCache.get("abc123", key -> Optional.of("https://other.com"))).contains("https://other.com");
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
\ No newline at end of file
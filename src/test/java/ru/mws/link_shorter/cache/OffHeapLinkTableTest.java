@@ -0,0 +1,118 @@
+package ru.mws.link_shorter.cache;
+
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapLinkTableTest {
+
+  @Test
+  void shouldPackKeysIntoTwoLongs() {
+    for (String shortKey : List.of("a", "000", "zzzzzzzzzzzz", "Ab3xY9", "0000000000Zz")) {
+      long high = OffHeapLinkTable.packHigh(shortKey);
+      assertThat(OffHeapLinkTable.unpack(high, OffHeapLinkTable.packLow(shortKey))).isEqualTo(shortKey);
+    }
+    assertThat(OffHeapLinkTable.packHigh("00a")).isNotEqualTo(OffHeapLinkTable.packHigh("0a"));
+    assertThat(OffHeapLinkTable.packHigh("with-dash")).isNegative();
+    assertThat(OffHeapLinkTable.packHigh("abcdefghijklm")).isNegative();
+  }
+
+  @Test
+  void shouldStoreOverwriteAndRemove() {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ofHours(1));
+
+    assertThat(table.put("abc123", "https://example.com/a")).isTrue();
+    assertThat(table.put("abc123", "https://example.com/b")).isTrue();
+    assertThat(table.put("xyz", "https://пример.рф/путь")).isTrue();
+
+    assertThat(table.get("abc123")).isEqualTo("https://example.com/b");
+    assertThat(table.get("xyz")).isEqualTo("https://пример.рф/путь");
+    assertThat(table.get("abc124")).isNull();
+    assertThat(table.size()).isEqualTo(2);
+
+    table.remove("abc123");
+    assertThat(table.get("abc123")).isNull();
+    assertThat(table.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRejectKeysItCannotPack() {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ofHours(1));
+
+    assertThat(table.put("not-base62", "https://example.com")).isFalse();
+    assertThat(table.get("not-base62")).isNull();
+  }
+
+  @Test
+  void shouldEvictOldestWhenArenaWraps() {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ofHours(1));
+    int links = 200_000;
+    for (int i = 0; i < links; i++) {
+      table.put(ShortKeyCodec.encode(i, 6), "https://example.com/" + i);
+    }
+
+    assertThat(table.get(ShortKeyCodec.encode(0, 6))).isNull();
+    assertThat(table.get(ShortKeyCodec.encode(links - 1, 6))).isEqualTo("https://example.com/" + (links - 1));
+    assertThat(table.memoryBytes()).isLessThan(64L * 1024 * 1024);
+  }
+
+  @Test
+  void shouldExpireEntries() {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ZERO);
+
+    table.put("abc123", "https://example.com");
+
+    assertThat(table.get("abc123")).isNull();
+  }
+
+  @Test
+  void shouldRankHottestByReads() {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ofHours(1));
+    table.put("cold", "https://example.com/cold");
+    table.put("warm", "https://example.com/warm");
+    table.put("hot", "https://example.com/hot");
+    for (int i = 0; i < 3; i++) {
+      table.get("hot");
+    }
+    table.get("warm");
+
+    assertThat(table.hottest(2)).containsExactly(
+        Map.entry("hot", "https://example.com/hot"), Map.entry("warm", "https://example.com/warm"));
+  }
+
+  @Test
+  void shouldReadWhileWriting() throws Exception {
+    OffHeapLinkTable table = new OffHeapLinkTable(0, Duration.ofHours(1));
+    table.put("abc123", "https://example.com/stable");
+
+    try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+      List<Future<?>> readers = new ArrayList<>();
+      Future<?> writer = executor.submit(() -> {
+        for (int i = 0; i < 100_000; i++) {
+          table.put(ShortKeyCodec.encode(i, 7), "https://example.com/" + i);
+        }
+      });
+      for (int r = 0; r < 3; r++) {
+        readers.add(executor.submit(() -> {
+          while (!writer.isDone()) {
+            String location = table.get(ShortKeyCodec.encode(50_000, 7));
+            assertThat(location).isIn(null, "https://example.com/50000");
+          }
+        }));
+      }
+      writer.get();
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    }
+  }
+}
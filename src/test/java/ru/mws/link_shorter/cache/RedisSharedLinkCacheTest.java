@@ -0,0 +1,120 @@
+package ru.mws.link_shorter.cache;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RedisSharedLinkCacheTest {
+  private FakeRedisServer server;
+  private RedisClient redisClient;
+  private RedisSharedLinkCache cache;
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = new FakeRedisServer();
+    redisClient = RedisClient.create(server.url());
+    redisClient.setDefaultTimeout(Duration.ofSeconds(1));
+    redisClient.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+    meterRegistry = new SimpleMeterRegistry();
+    cache = new RedisSharedLinkCache(redisClient, RedisURI.create(server.url()), Duration.ofHours(1),
+        Duration.ofSeconds(1), Duration.ofSeconds(5), meterRegistry);
+    // Connecting happens in the background; a lookup waits for it, so later writes are not dropped.
+    cache.getLocationAsync("warmup").join();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    cache.close();
+    redisClient.shutdown();
+    server.close();
+  }
+
+  @Test
+  void shouldReadBackLocationsWrittenByAnotherInstance() {
+    cache.putLocations(Map.of("abc123", "https://example.com"));
+    // Commands on one connection run in order, so this read waits for the pipelined write.
+    assertThat(cache.getLocation("abc123")).contains("https://example.com");
+
+    RedisSharedLinkCache otherInstance = new RedisSharedLinkCache(redisClient, RedisURI.create(server.url()),
+        Duration.ofHours(1), Duration.ofSeconds(1), Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+    assertThat(otherInstance.getLocation("abc123")).contains("https://example.com");
+    assertThat(otherInstance.getLocation("missing")).isEmpty();
+    assertThat(otherInstance.getLocationAsync("abc123").join()).contains("https://example.com");
+    assertThat(otherInstance.getLocationAsync("missing").join()).isEmpty();
+    otherInstance.close();
+  }
+
+  @Test
+  void shouldLookUpManyKeysWithOneMget() {
+    cache.putShortKeys(Map.of("https://a.example", "keyA", "https://b.example", "keyB"));
+
+    Map<String, String> found = cache.getShortKeys(List.of("https://a.example", "https://b.example", "https://c.example"));
+
+    assertThat(found).containsExactlyInAnyOrderEntriesOf(Map.of("https://a.example", "keyA", "https://b.example", "keyB"));
+    assertThat(server.commandCount("MGET")).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeyUrlEntriesByDigest() {
+    String longUrl = "https://example.com/" + "a".repeat(4000);
+    cache.putShortKeys(Map.of(longUrl, "longKey"));
+
+    assertThat(cache.getShortKey(longUrl)).contains("longKey");
+    assertThat(server.data().keySet()).singleElement().satisfies(key -> assertThat(key).hasSizeLessThan(64));
+  }
+
+  @Test
+  void shouldEvictBothEntriesOfRemovedLink() {
+    cache.putLocations(Map.of("abc123", "https://example.com"));
+    cache.putShortKeys(Map.of("https://example.com", "abc123"));
+
+    cache.evict("abc123", "https://example.com");
+
+    assertThat(cache.getLocation("abc123")).isEmpty();
+    assertThat(cache.getShortKey("https://example.com")).isEmpty();
+  }
+
+  @Test
+  void shouldTellEveryInstanceAboutEvictions() throws Exception {
+    RedisSharedLinkCache otherInstance = new RedisSharedLinkCache(redisClient, RedisURI.create(server.url()),
+        Duration.ofHours(1), Duration.ofSeconds(1), Duration.ofSeconds(5), new SimpleMeterRegistry());
+    BlockingQueue<String> evicted = new LinkedBlockingQueue<>();
+    otherInstance.onEvict(evicted::add);
+    otherInstance.getLocationAsync("warmup").join();
+
+    cache.evict("abc123", "https://example.com").join();
+
+    assertThat(evicted.poll(5, TimeUnit.SECONDS)).isEqualTo("abc123");
+    otherInstance.close();
+  }
+
+  @Test
+  void shouldMissInsteadOfFailingWhenServerIsDown() throws Exception {
+    server.close();
+    SimpleMeterRegistry downRegistry = new SimpleMeterRegistry();
+    RedisSharedLinkCache down = new RedisSharedLinkCache(redisClient, RedisURI.create(server.url()),
+        Duration.ofHours(1), Duration.ofSeconds(1), Duration.ofSeconds(5), downRegistry);
+
+    assertThat(down.getLocation("abc123")).isEmpty();
+    assertThat(down.getLocationAsync("abc123").join()).isEmpty();
+    down.putLocations(Map.of("abc123", "https://example.com"));
+    assertThat(downRegistry.counter("links.cache.shared.errors").count()).isPositive();
+    down.close();
+  }
+}
@@ -0,0 +1,113 @@
+package ru.mws.link_shorter.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ReadReplicaRoutingDataSourceTest {
+  private static final Duration VALIDATION_TIMEOUT = Duration.ofMillis(500);
+
+  private final DataSource primary = mock(DataSource.class);
+  private final DataSource first = mock(DataSource.class);
+  private final DataSource second = mock(DataSource.class);
+  private final Connection primaryConnection = mock(Connection.class);
+  private final Connection firstConnection = mock(Connection.class);
+  private final Connection secondConnection = mock(Connection.class);
+
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+  }
+
+  @Test
+  void shouldRouteReadOnlyTransactionsToReplicasInTurn() throws SQLException {
+    stubConnections();
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first, second), VALIDATION_TIMEOUT);
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertThat(List.of(routing.getConnection(), routing.getConnection(), routing.getConnection()))
+        .containsExactly(firstConnection, secondConnection, firstConnection);
+  }
+
+  @Test
+  void shouldRouteWritesToPrimary() throws SQLException {
+    stubConnections();
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first, second), VALIDATION_TIMEOUT);
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    verifyNoInteractions(first, second);
+  }
+
+  @Test
+  void shouldPassCredentialsToTheSelectedPool() throws SQLException {
+    when(primary.getConnection("reporter", "secret")).thenReturn(primaryConnection);
+    when(first.getConnection("reporter", "secret")).thenReturn(firstConnection);
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first), VALIDATION_TIMEOUT);
+
+    assertThat(routing.getConnection("reporter", "secret")).isSameAs(primaryConnection);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertThat(routing.getConnection("reporter", "secret")).isSameAs(firstConnection);
+    assertThat(routing.readOnlyView().getConnection("reporter", "secret")).isSameAs(firstConnection);
+  }
+
+  @Test
+  void shouldValidateReplicasWithinTheConfiguredTimeout() throws SQLException {
+    stubConnections();
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first), Duration.ofMillis(2500));
+
+    routing.checkHealth();
+
+    verify(firstConnection).isValid(3);
+  }
+
+  @Test
+  void shouldSkipFailedReplicaUntilHealthCheckPasses() throws SQLException {
+    stubConnections();
+    when(first.getConnection()).thenThrow(new SQLException("down")).thenReturn(firstConnection);
+    when(firstConnection.isValid(anyInt())).thenReturn(true);
+    when(secondConnection.isValid(anyInt())).thenReturn(true);
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first, second), VALIDATION_TIMEOUT);
+
+    assertThat(routing.getReadConnection()).isSameAs(secondConnection);
+    assertThat(routing.getReadConnection()).isSameAs(secondConnection);
+
+    routing.checkHealth();
+
+    assertThat(List.of(routing.getReadConnection(), routing.getReadConnection()))
+        .containsExactlyInAnyOrder(firstConnection, secondConnection);
+  }
+
+  @Test
+  void shouldFallBackToPrimaryWhenNoReplicaIsAvailable() throws SQLException {
+    stubConnections();
+    when(first.getConnection()).thenThrow(new SQLException("down"));
+    when(second.getConnection()).thenThrow(new SQLException("down"));
+    ReadReplicaRoutingDataSource routing =
+        new ReadReplicaRoutingDataSource(primary, List.of(first, second), VALIDATION_TIMEOUT);
+
+    assertThat(routing.readOnlyView().getConnection()).isSameAs(primaryConnection);
+    assertThat(new ReadReplicaRoutingDataSource(primary, List.of(), VALIDATION_TIMEOUT).getReadConnection())
+        .isSameAs(primaryConnection);
+  }
+
+  private void stubConnections() throws SQLException {
+    when(primary.getConnection()).thenReturn(primaryConnection);
+    when(first.getConnection()).thenReturn(firstConnection);
+    when(second.getConnection()).thenReturn(secondConnection);
+  }
+}
@@ -0,0 +1,96 @@
+package ru.mws.link_shorter.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.mws.link_shorter.dto.ImportReport;
+import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.transfer.LinkExporter;
+import ru.mws.link_shorter.transfer.LinkImporter;
+import ru.mws.link_shorter.transfer.TransferFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = AdminController.class, properties = "link-shorter.admin.enabled=true")
+public class AdminControllerTest {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private LinkExporter linkExporter;
+
+  @MockBean
+  private LinkImporter linkImporter;
+
+  @MockBean
+  private ShorterService shorterService;
+
+  @Test
+  void shouldStreamGzippedExport() throws Exception {
+    doAnswer(invocation -> {
+      OutputStream out = invocation.getArgument(0);
+      out.write("{\"shortKey\":\"abc123\"}\n".getBytes(StandardCharsets.UTF_8));
+      return 1L;
+    }).when(linkExporter).export(any(), eq(TransferFormat.NDJSON), eq(""));
+
+    MvcResult result = mockMvc.perform(get("/api/admin/links/export"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition", "attachment; filename=\"links.ndjson.gz\""))
+        .andReturn();
+
+    byte[] body = result.getResponse().getContentAsByteArray();
+    String text = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8);
+    assertThat(text).isEqualTo("{\"shortKey\":\"abc123\"}\n");
+  }
+
+  @Test
+  void shouldImportGzippedCsv() throws Exception {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+      out.write("short_key,original_url,click_count\n".getBytes(StandardCharsets.UTF_8));
+    }
+    when(linkImporter.importLinks(any(), eq(TransferFormat.CSV), eq("nightly")))
+        .thenReturn(new ImportReport(1, 0, 1, 0, 0, 0, 100.0));
+
+    mockMvc.perform(post("/api/admin/links/import")
+            .param("format", "csv")
+            .param("importId", "nightly")
+            .content(gzipped.toByteArray()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.inserted").value(1));
+  }
+
+  @Test
+  void shouldRejectUnknownFormat() throws Exception {
+    mockMvc.perform(get("/api/admin/links/export").param("format", "xml"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void shouldDeleteLink() throws Exception {
+    when(shorterService.deleteLink("abc123")).thenReturn(true);
+
+    mockMvc.perform(delete("/api/admin/links/abc123"))
+        .andExpect(status().isNoContent());
+    mockMvc.perform(delete("/api/admin/links/missing"))
+        .andExpect(status().isNotFound());
+  }
+}
@@ -0,0 +1,75 @@
+package ru.mws.link_shorter.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ClickSource;
+import ru.mws.link_shorter.service.ShorterService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class FastRedirectFilterTest {
+  private final ShorterService shorterService = mock(ShorterService.class);
+  private final FastRedirectFilter filter = new FastRedirectFilter(shorterService, mock(LinkMetrics.class),
+      new AccessLog(0), "X-Country-Code", "X-Real-IP");
+
+  @Test
+  void shouldRedirectCachedLinkWithoutCallingTheChain() throws Exception {
+    when(shorterService.getCachedRedirectLocation("abc123")).thenReturn("https://example.com");
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/abc123");
+    request.addHeader("X-Country-Code", "DE");
+    request.addHeader("X-Real-IP", "203.0.113.7");
+    MockFilterChain chain = new MockFilterChain();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(response.getStatus()).isEqualTo(302);
+    assertThat(response.getHeader("Location")).isEqualTo("https://example.com");
+    assertThat(chain.getRequest()).isNull();
+    verify(shorterService).recordClick("abc123", new ClickSource(null, "DE", "203.0.113.7", null));
+  }
+
+  @Test
+  void shouldPassUncachedLinksToTheController() throws Exception {
+    MockFilterChain chain = new MockFilterChain();
+
+    filter.doFilter(new MockHttpServletRequest("GET", "/abc123"), new MockHttpServletResponse(), chain);
+
+    assertThat(chain.getRequest()).isNotNull();
+    verify(shorterService, never()).recordClick(anyString(), any());
+  }
+
+  @Test
+  void shouldPassProxyCachePurgesToTheController() throws Exception {
+    when(shorterService.getCachedRedirectLocation("abc123")).thenReturn("https://example.com");
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/abc123");
+    request.addHeader("X-Cache-Refresh", "1");
+    MockFilterChain chain = new MockFilterChain();
+
+    filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+    assertThat(chain.getRequest()).isNotNull();
+    verify(shorterService, never()).getCachedRedirectLocation(anyString());
+  }
+
+  @Test
+  void shouldIgnorePathsThatAreNotShortKeys() throws Exception {
+    for (String uri : new String[] {"/", "/ab", "/api/links/abc123", "/favicon.ico", "/abcdefghijklm"}) {
+      MockFilterChain chain = new MockFilterChain();
+      filter.doFilter(new MockHttpServletRequest("GET", uri), new MockHttpServletResponse(), chain);
+      assertThat(chain.getRequest()).isNotNull();
+    }
+    MockFilterChain chain = new MockFilterChain();
+    filter.doFilter(new MockHttpServletRequest("POST", "/abc123"), new MockHttpServletResponse(), chain);
+    assertThat(chain.getRequest()).isNotNull();
+
+    verify(shorterService, never()).getCachedRedirectLocation(anyString());
+  }
+}
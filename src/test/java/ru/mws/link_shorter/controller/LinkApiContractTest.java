@@ -0,0 +1,170 @@
+package ru.mws.link_shorter.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.mws.link_shorter.dto.BatchLinkResult;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.exception.LinkIsInvalid;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+
+import java.util.List;
+
+/**
+ * HTTP contract of redirects and the links API, run against both the servlet and the reactive mode.
+ * Subclasses bind {@link #client} to their stack and translate the {@code given*} stubs to its services.
+ */
+abstract class LinkApiContractTest {
+  protected WebTestClient client;
+
+  protected abstract void givenLink(LinkDto link);
+
+  protected abstract void givenMissing(String shortKey);
+
+  protected abstract void givenCreated(CreateLinkRequest request, LinkDto link);
+
+  protected abstract void givenCreateFails(CreateLinkRequest request, RuntimeException failure);
+
+  protected abstract void givenBatch(List<CreateLinkRequest> requests, List<BatchLinkResult> results);
+
+  @Test
+  void shouldRedirectToOriginalUrl() {
+    givenLink(new LinkDto("abc123", "https://example.com", 5));
+
+    client.get().uri("/{shortKey}", "abc123")
+        .header("X-Real-IP", "203.0.113.7")
+        .exchange()
+        .expectStatus().isFound()
+        .expectHeader().valueEquals("Location", "https://example.com");
+  }
+
+  @Test
+  void shouldRedirectWithCacheableModeOfTheLink() {
+    givenLink(new LinkDto("perm01", "https://example.com", 5, new RedirectMode(301, 86400)));
+
+    client.get().uri("/{shortKey}", "perm01")
+        .exchange()
+        .expectStatus().isEqualTo(301)
+        .expectHeader().valueEquals("Location", "https://example.com")
+        .expectHeader().valueEquals("Cache-Control", "public, max-age=86400");
+  }
+
+  @Test
+  void shouldReturn404WhenRedirectLinkNotFound() {
+    givenMissing("missing");
+
+    client.get().uri("/{shortKey}", "missing")
+        .exchange()
+        .expectStatus().isNotFound()
+        .expectBody(String.class).isEqualTo("Ссылка не найдена");
+  }
+
+  @Test
+  void shouldReturnLinkWhenExists() {
+    givenLink(new LinkDto("abc123", "https://example.com", 5));
+
+    client.get().uri("/api/links/{shortKey}", "abc123")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.shortKey").isEqualTo("abc123")
+        .jsonPath("$.originalUrl").isEqualTo("https://example.com")
+        .jsonPath("$.clickCount").isEqualTo(5);
+  }
+
+  @Test
+  void shouldAnswer304WhenLinkIsUnchanged() {
+    givenLink(new LinkDto("abc123", "https://example.com", 5));
+
+    String etag = client.get().uri("/api/links/{shortKey}", "abc123")
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().exists("ETag")
+        .returnResult(String.class)
+        .getResponseHeaders().getETag();
+
+    client.get().uri("/api/links/{shortKey}", "abc123")
+        .ifNoneMatch(etag)
+        .exchange()
+        .expectStatus().isNotModified();
+  }
+
+  @Test
+  void shouldReturn404WhenLinkNotFound() {
+    givenMissing("missing");
+
+    client.get().uri("/api/links/{shortKey}", "missing")
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  void shouldCreateShortLink() {
+    CreateLinkRequest request = new CreateLinkRequest("https://example.com", 6);
+    givenCreated(request, new LinkDto("abc123", "https://example.com", 0));
+
+    client.post().uri("/api/links/")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(request)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.shortKey").isEqualTo("abc123")
+        .jsonPath("$.clickCount").isEqualTo(0);
+  }
+
+  @Test
+  void shouldReturn400WhenLinkIsInvalid() {
+    CreateLinkRequest request = new CreateLinkRequest("invalid-url", 6);
+    givenCreateFails(request, new LinkIsInvalid("Link is invalid"));
+
+    client.post().uri("/api/links/")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(request)
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody(String.class).isEqualTo("Ссылки невалидна");
+  }
+
+  @Test
+  void shouldRejectExpiryInThePast() {
+    client.post().uri("/api/links/")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue("{\"url\":\"https://example.com\",\"len\":6,\"expiresAt\":\"2020-01-01T00:00:00Z\"}")
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  @Test
+  void shouldRejectInvalidPayload() {
+    client.post().uri("/api/links/")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new CreateLinkRequest("https://example.com", 1))
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  @Test
+  void shouldStreamNdjsonBatchResults() {
+    CreateLinkRequest request = new CreateLinkRequest("https://example.com", 6);
+    givenBatch(List.of(request), List.of(BatchLinkResult.created(new LinkDto("abc123", "https://example.com", 0))));
+
+    client.post().uri("/api/links/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .bodyValue("{\"url\":\"https://example.com\",\"len\":6}\nnot json\n")
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+        .expectBodyList(BatchLinkResult.class)
+        .isEqualTo(List.of(BatchLinkResult.created(new LinkDto("abc123", "https://example.com", 0)),
+            BatchLinkResult.failed(ShorterController.MALFORMED_LINE)));
+  }
+
+  @Test
+  void shouldRejectUnknownTrendingWindow() {
+    client.get().uri("/api/links/trending?window=7d")
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+}
@@ -5,8 +5,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
-import ru.mws.link_shorter.dto.LinkDto;
 import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.service.ClickSource;
 import ru.mws.link_shorter.service.ShorterService;
 
 import static org.mockito.Mockito.when;
@@ -21,24 +23,24 @@ public class PageControllerTest {
   @MockBean
   private ShorterService shorterService;
 
-  @Test
-  void shouldRedirectToOriginalUrl() throws Exception {
-    String shortKey = "abc123";
-    LinkDto linkDto = new LinkDto(shortKey, "https://example.com", 5);
-    when(shorterService.getIncrementedOriginalLinkByShortKey(shortKey)).thenReturn(linkDto);
+  @MockBean
+  private LinkMetrics linkMetrics;
 
-    mockMvc.perform(get("/{shortKey}", shortKey))
-        .andExpect(status().isFound())
-        .andExpect(header().string("Location", "https://example.com"));
-  }
+  @MockBean
+  private AccessLog accessLog;
 
   @Test
-  void shouldAddHttpsWhenMissingProtocol() throws Exception {
+  void shouldRedirectToOriginalUrl() throws Exception {
     String shortKey = "abc123";
-    LinkDto linkDto = new LinkDto(shortKey, "example.com", 5);
-    when(shorterService.getIncrementedOriginalLinkByShortKey(shortKey)).thenReturn(linkDto);
+    when(shorterService.getRedirectLocation(shortKey,
+        new ClickSource("https://t.me/channel", "DE", "203.0.113.7", "Mozilla/5.0")))
+        .thenReturn("https://example.com");
 
-    mockMvc.perform(get("/{shortKey}", shortKey))
+    mockMvc.perform(get("/{shortKey}", shortKey)
+            .header("Referer", "https://t.me/channel")
+            .header("X-Country-Code", "DE")
+            .header("X-Real-IP", "203.0.113.7")
+            .header("User-Agent", "Mozilla/5.0"))
         .andExpect(status().isFound())
         .andExpect(header().string("Location", "https://example.com"));
   }
@@ -46,7 +48,7 @@ public class PageControllerTest {
   @Test
   void shouldReturn404WhenRedirectLinkNotFound() throws Exception {
     String shortKey = "non.existent";
-    when(shorterService.getIncrementedOriginalLinkByShortKey(shortKey))
+    when(shorterService.getRedirectLocation(shortKey, new ClickSource(null, null, "127.0.0.1", null)))
         .thenThrow(new LinkNotFoundException("Link not found"));
 
     mockMvc.perform(get("/{shortKey}", shortKey))
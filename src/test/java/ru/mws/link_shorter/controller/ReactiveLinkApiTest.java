@@ -0,0 +1,98 @@
+package ru.mws.link_shorter.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import ru.mws.link_shorter.cache.LinkCache;
+import ru.mws.link_shorter.cache.NoOpSharedLinkCache;
+import ru.mws.link_shorter.cache.SharedLinkCache;
+import ru.mws.link_shorter.dto.BatchLinkResult;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.repository.R2dbcLinkRepository;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+import ru.mws.link_shorter.service.LinkStatsService;
+import ru.mws.link_shorter.service.ReactiveShorterService;
+import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+// Runs the real ReactiveShorterService and LinkCache; only R2DBC and the blocking service are mocked.
+@WebFluxTest({ReactivePageController.class, ReactiveShorterController.class})
+@Import({ReactiveShorterService.class, ReactiveLinkApiTest.Caches.class})
+public class ReactiveLinkApiTest extends LinkApiContractTest {
+  @MockBean
+  private R2dbcLinkRepository r2dbcLinkRepository;
+
+  @MockBean
+  private ShorterService shorterService;
+
+  @MockBean
+  private LinkStatsService linkStatsService;
+
+  @MockBean
+  private TrendingLinks trendingLinks;
+
+  @MockBean
+  private LinkMetrics linkMetrics;
+
+  @MockBean
+  private AccessLog accessLog;
+
+  @TestConfiguration
+  static class Caches {
+    @Bean
+    LinkCache linkCache() {
+      return new LinkCache(1000, Duration.ofHours(1), Duration.ofMinutes(1), DataSize.ofBytes(0), new SimpleMeterRegistry());
+    }
+
+    @Bean
+    SharedLinkCache sharedLinkCache() {
+      return new NoOpSharedLinkCache();
+    }
+  }
+
+  @Autowired
+  void bindClient(WebTestClient webTestClient) {
+    client = webTestClient;
+  }
+
+  @Override
+  protected void givenLink(LinkDto link) {
+    when(r2dbcLinkRepository.findLink(link.shortKey())).thenReturn(Mono.just(link));
+  }
+
+  @Override
+  protected void givenMissing(String shortKey) {
+    when(r2dbcLinkRepository.findLink(shortKey)).thenReturn(Mono.empty());
+  }
+
+  @Override
+  protected void givenCreated(CreateLinkRequest request, LinkDto link) {
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
+        .thenReturn(link);
+  }
+
+  @Override
+  protected void givenCreateFails(CreateLinkRequest request, RuntimeException failure) {
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
+        .thenThrow(failure);
+  }
+
+  @Override
+  protected void givenBatch(List<CreateLinkRequest> requests, List<BatchLinkResult> results) {
+    when(shorterService.createShortLinks(requests)).thenReturn(results);
+  }
+}
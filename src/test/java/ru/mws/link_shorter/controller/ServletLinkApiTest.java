@@ -0,0 +1,80 @@
+package ru.mws.link_shorter.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.client.MockMvcWebTestClient;
+import ru.mws.link_shorter.dto.BatchLinkResult;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.exception.LinkNotFoundException;
+import ru.mws.link_shorter.logging.AccessLog;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+import ru.mws.link_shorter.service.LinkStatsService;
+import ru.mws.link_shorter.service.RedirectLocations;
+import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest({PageController.class, ShorterController.class})
+public class ServletLinkApiTest extends LinkApiContractTest {
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private ShorterService shorterService;
+
+  @MockBean
+  private LinkStatsService linkStatsService;
+
+  @MockBean
+  private TrendingLinks trendingLinks;
+
+  @MockBean
+  private LinkMetrics linkMetrics;
+
+  @MockBean
+  private AccessLog accessLog;
+
+  @BeforeEach
+  void bindClient() {
+    client = MockMvcWebTestClient.bindTo(mockMvc).build();
+  }
+
+  @Override
+  protected void givenLink(LinkDto link) {
+    when(shorterService.getRedirectLocation(eq(link.shortKey()), any()))
+        .thenReturn(RedirectLocations.prepare(link.originalUrl(), link.redirect(), link.expiresAt()));
+    when(shorterService.getOriginalLinkByShortKey(link.shortKey())).thenReturn(link);
+  }
+
+  @Override
+  protected void givenMissing(String shortKey) {
+    when(shorterService.getRedirectLocation(eq(shortKey), any())).thenThrow(new LinkNotFoundException("Link not found"));
+    when(shorterService.getOriginalLinkByShortKey(shortKey)).thenThrow(new LinkNotFoundException("Link not found"));
+  }
+
+  @Override
+  protected void givenCreated(CreateLinkRequest request, LinkDto link) {
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
+        .thenReturn(link);
+  }
+
+  @Override
+  protected void givenCreateFails(CreateLinkRequest request, RuntimeException failure) {
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
+        .thenThrow(failure);
+  }
+
+  @Override
+  protected void givenBatch(List<CreateLinkRequest> requests, List<BatchLinkResult> results) {
+    when(shorterService.createShortLinks(requests)).thenReturn(results);
+  }
+}
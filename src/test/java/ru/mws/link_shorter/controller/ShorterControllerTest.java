@@ -1,19 +1,37 @@
 package ru.mws.link_shorter.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.mws.link_shorter.dto.BatchLinkResult;
 import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.LinkStats;
+import ru.mws.link_shorter.dto.StatsGranularity;
+import ru.mws.link_shorter.dto.TrendingLink;
+import ru.mws.link_shorter.dto.UniqueVisitors;
 import ru.mws.link_shorter.exception.LinkIsInvalid;
 import ru.mws.link_shorter.exception.LinkLengthOverflow;
 import ru.mws.link_shorter.exception.LinkNotFoundException;
 import ru.mws.link_shorter.request.CreateLinkRequest;
+import ru.mws.link_shorter.metrics.LinkMetrics;
+import ru.mws.link_shorter.ratelimit.RateLimits;
+import ru.mws.link_shorter.service.LinkStatsService;
 import ru.mws.link_shorter.service.ShorterService;
+import ru.mws.link_shorter.service.TrendingLinks;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -27,9 +45,26 @@ public class ShorterControllerTest {
   @MockBean
   private ShorterService shorterService;
 
+  @MockBean
+  private LinkStatsService linkStatsService;
+
+  @MockBean
+  private TrendingLinks trendingLinks;
+
+  @MockBean
+  private LinkMetrics linkMetrics;
+
+  @MockBean
+  private RateLimits rateLimits;
+
   @Autowired
   private ObjectMapper objectMapper;
 
+  @BeforeEach
+  void allowAllLinks() {
+    when(rateLimits.acquireLinks(anyInt(), any(), any(), any())).thenAnswer(call -> call.getArgument(0));
+  }
+
   @Test
   void shouldReturnLinkWhenExists() throws Exception {
     String shortKey = "abc123";
@@ -58,7 +93,7 @@ public class ShorterControllerTest {
     CreateLinkRequest request = new CreateLinkRequest("https://example.com", 6);
     LinkDto linkDto = new LinkDto("abc123", "https://example.com", 0);
 
-    when(shorterService.createShortLinkWithLen(request.url(), request.len()))
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
         .thenReturn(linkDto);
 
     mockMvc.perform(post("/api/links/")
@@ -72,9 +107,9 @@ public class ShorterControllerTest {
 
   @Test
   void shouldReturn400WhenLinkIsTooLong() throws Exception {
-    CreateLinkRequest request = new CreateLinkRequest("https://" + "a".repeat(130) + ".com", 6);
+    CreateLinkRequest request = new CreateLinkRequest("https://" + "a".repeat(CreateLinkRequest.MAX_URL_LENGTH) + ".com", 6);
 
-    when(shorterService.createShortLinkWithLen(request.url(), request.len()))
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
         .thenThrow(new LinkLengthOverflow("Link is too long"));
 
     mockMvc.perform(post("/api/links/")
@@ -87,7 +122,7 @@ public class ShorterControllerTest {
   void shouldReturn400WhenLinkIsInvalid() throws Exception {
     CreateLinkRequest request = new CreateLinkRequest("invalid-url", 6);
 
-    when(shorterService.createShortLinkWithLen(request.url(), request.len()))
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
         .thenThrow(new LinkIsInvalid("Link is invalid"));
 
     mockMvc.perform(post("/api/links/")
@@ -101,7 +136,7 @@ public class ShorterControllerTest {
   void shouldReturn400ForUnexpectedError() throws Exception {
     CreateLinkRequest request = new CreateLinkRequest("https://example.com", 6);
 
-    when(shorterService.createShortLinkWithLen(request.url(), request.len()))
+    when(shorterService.createShortLinkWithLen(request.url(), request.len(), request.redirect(), request.expiresAt()))
         .thenThrow(new RuntimeException("Unexpected error"));
 
     mockMvc.perform(post("/api/links/")
@@ -150,4 +185,130 @@ public class ShorterControllerTest {
             .content(objectMapper.writeValueAsString(request)))
         .andExpect(status().isBadRequest());
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldCreateBatchPreservingInputOrder() throws Exception {
+    List<CreateLinkRequest> requests = List.of(
+        new CreateLinkRequest("https://example.com", 6),
+        new CreateLinkRequest("invalid-url", 6));
+    when(shorterService.createShortLinks(requests)).thenReturn(List.of(
+        BatchLinkResult.created(new LinkDto("abc123", "https://example.com", 0)),
+        BatchLinkResult.failed("Link is invalid: invalid-url")));
+
+    mockMvc.perform(post("/api/links/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(requests)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].link.shortKey").value("abc123"))
+        .andExpect(jsonPath("$[0].error").doesNotExist())
+        .andExpect(jsonPath("$[1].error").value("Link is invalid: invalid-url"));
+  }
+
+  @Test
+  void shouldRefuseBatchLinksBeyondTheCreateBudget() throws Exception {
+    List<CreateLinkRequest> requests = List.of(
+        new CreateLinkRequest("https://example.com", 6),
+        new CreateLinkRequest("https://example.org", 6));
+    when(rateLimits.acquireLinks(eq(2), any(), any(), any())).thenReturn(1);
+    when(shorterService.createShortLinks(requests.subList(0, 1))).thenReturn(List.of(
+        BatchLinkResult.created(new LinkDto("abc123", "https://example.com", 0))));
+
+    mockMvc.perform(post("/api/links/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(requests)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].link.shortKey").value("abc123"))
+        .andExpect(jsonPath("$[1].error").value(RateLimits.THROTTLED_LINK_MESSAGE));
+  }
+
+  @Test
+  void shouldStreamNdjsonBatchResults() throws Exception {
+    when(shorterService.createShortLinks(anyList())).thenReturn(List.of(
+        BatchLinkResult.created(new LinkDto("abc123", "https://example.com", 0))));
+
+    String body = "{\"url\":\"https://example.com\",\"len\":6}\nnot json\n";
+
+    mockMvc.perform(post("/api/links/batch")
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .content(body))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+        .andExpect(content().string(
+            "{\"link\":{\"shortKey\":\"abc123\",\"originalUrl\":\"https://example.com\",\"clickCount\":0}}\n"
+                + "{\"error\":\"" + ShorterController.MALFORMED_LINE + "\"}\n"));
+  }
+
+  @Test
+  void shouldReturnLinkStats() throws Exception {
+    Instant from = Instant.parse("2025-01-01T00:00:00Z");
+    Instant to = Instant.parse("2025-01-02T00:00:00Z");
+    when(linkStatsService.getStats("abc123", from, to, StatsGranularity.HOUR)).thenReturn(new LinkStats(
+        "abc123", "hour", from, to, 3,
+        List.of(new LinkStats.Bucket(Instant.parse("2025-01-01T13:00:00Z"), 3)),
+        List.of(new LinkStats.Dimension("t.me", 2), new LinkStats.Dimension("", 1)),
+        List.of(new LinkStats.Dimension("DE", 3))));
+
+    mockMvc.perform(get("/api/links/{shortKey}/stats", "abc123")
+            .param("from", "2025-01-01T00:00:00Z")
+            .param("to", "2025-01-02T00:00:00Z")
+            .param("granularity", "hour"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.total").value(3))
+        .andExpect(jsonPath("$.buckets[0].start").value("2025-01-01T13:00:00Z"))
+        .andExpect(jsonPath("$.referrers[0].value").value("t.me"))
+        .andExpect(jsonPath("$.countries[0].value").value("DE"));
+  }
+
+  @Test
+  void shouldRejectUnknownStatsGranularity() throws Exception {
+    mockMvc.perform(get("/api/links/{shortKey}/stats", "abc123").param("granularity", "week"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void shouldReturn404ForStatsOfUnknownLink() throws Exception {
+    Instant from = Instant.parse("2025-01-01T00:00:00Z");
+    Instant to = Instant.parse("2025-01-02T00:00:00Z");
+    when(linkStatsService.getStats("missing", from, to, StatsGranularity.DAY))
+        .thenThrow(new LinkNotFoundException("Link not found"));
+
+    mockMvc.perform(get("/api/links/{shortKey}/stats", "missing")
+            .param("from", "2025-01-01T00:00:00Z")
+            .param("to", "2025-01-02T00:00:00Z")
+            .param("granularity", "day"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void shouldReturnUniqueVisitors() throws Exception {
+    LocalDate from = LocalDate.parse("2025-01-01");
+    LocalDate to = LocalDate.parse("2025-01-02");
+    when(linkStatsService.getUniqueVisitors("abc123", from, to)).thenReturn(new UniqueVisitors("abc123", from, to, 150,
+        List.of(new UniqueVisitors.Day(from, 100), new UniqueVisitors.Day(to, 80))));
+
+    mockMvc.perform(get("/api/links/{shortKey}/visitors", "abc123")
+            .param("from", "2025-01-01")
+            .param("to", "2025-01-02"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.total").value(150))
+        .andExpect(jsonPath("$.days[1].day").value("2025-01-02"))
+        .andExpect(jsonPath("$.days[1].visitors").value(80));
+  }
+
+  @Test
+  void shouldReturnTrendingLinks() throws Exception {
+    when(trendingLinks.top(TrendingLinks.Window.FIVE_MINUTES, 2)).thenReturn(List.of(
+        new TrendingLink("abc123", 120, 0), new TrendingLink("xyz789", 40, 3)));
+
+    mockMvc.perform(get("/api/links/trending").param("window", "5m").param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].shortKey").value("abc123"))
+        .andExpect(jsonPath("$[1].maxOverestimate").value(3));
+  }
+
+  @Test
+  void shouldRejectUnknownTrendingWindow() throws Exception {
+    mockMvc.perform(get("/api/links/trending").param("window", "7d"))
+        .andExpect(status().isBadRequest());
+  }
+}
@@ -0,0 +1,51 @@
+package ru.mws.link_shorter.keygen;
+
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.exception.ShortKeyUnavailable;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class ShortKeyAllocatorTest {
+  @Test
+  void shouldReserveOneBlockPerBlockSizeKeys() {
+    LinkStore linkStore = mock(LinkStore.class);
+    when(linkStore.nextKeyBlock(6)).thenReturn(0L, 1L);
+    ShortKeyAllocator allocator = new ShortKeyAllocator(linkStore, 10);
+
+    Set<String> keys = new HashSet<>();
+    for (int i = 0; i < 15; i++) {
+      keys.add(allocator.allocate(6));
+    }
+
+    assertThat(keys).hasSize(15).allMatch(key -> key.length() == 6);
+    verify(linkStore, times(2)).nextKeyBlock(6);
+  }
+
+  @Test
+  void shouldKeepSeparateBlocksPerLength() {
+    LinkStore linkStore = mock(LinkStore.class);
+    when(linkStore.nextKeyBlock(anyInt())).thenReturn(0L);
+    ShortKeyAllocator allocator = new ShortKeyAllocator(linkStore, 10);
+
+    assertThat(allocator.allocate(4)).hasSize(4);
+    assertThat(allocator.allocate(8)).hasSize(8);
+    verify(linkStore).nextKeyBlock(4);
+    verify(linkStore).nextKeyBlock(8);
+  }
+
+  @Test
+  void shouldFailWhenKeySpaceIsExhausted() {
+    LinkStore linkStore = mock(LinkStore.class);
+    long lastBlock = ShortKeyCodec.capacity(3).longValueExact() / 1000 + 1;
+    when(linkStore.nextKeyBlock(3)).thenReturn(lastBlock);
+    ShortKeyAllocator allocator = new ShortKeyAllocator(linkStore, 1000);
+
+    assertThatThrownBy(() -> allocator.allocate(3)).isInstanceOf(ShortKeyUnavailable.class);
+  }
+}
@@ -0,0 +1,54 @@
+package ru.mws.link_shorter.keygen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShortKeyCodecTest {
+  @Test
+  void shouldMapEveryIdToDistinctKeyOfShortestLength() {
+    int capacity = ShortKeyCodec.capacity(3).intValueExact();
+    Set<String> keys = new HashSet<>(capacity);
+
+    for (long id = 0; id < capacity; id++) {
+      keys.add(ShortKeyCodec.encode(id, 3));
+    }
+
+    assertThat(keys).hasSize(capacity);
+  }
+
+  @Test
+  void shouldProduceKeysOfRequestedLength() {
+    for (int len = ShortKeyCodec.MIN_LENGTH; len <= ShortKeyCodec.MAX_LENGTH; len++) {
+      assertThat(ShortKeyCodec.encode(0, len)).hasSize(len).matches("[A-Za-z0-9]+");
+    }
+    assertThat(ShortKeyCodec.encode(Long.MAX_VALUE, 12)).hasSize(12).matches("[A-Za-z0-9]+");
+  }
+
+  @Test
+  void shouldNotRepeatKeysForConsecutiveIds() {
+    assertThat(ShortKeyCodec.encode(1, 6)).isNotEqualTo(ShortKeyCodec.encode(2, 6));
+  }
+
+  @Test
+  void shouldDecodeKeysBackToTheirIds() {
+    for (int len = ShortKeyCodec.MIN_LENGTH; len <= ShortKeyCodec.MAX_LENGTH; len++) {
+      assertThat(ShortKeyCodec.decode(ShortKeyCodec.encode(12345, len))).isEqualTo(12345);
+    }
+    assertThat(ShortKeyCodec.decode(ShortKeyCodec.encode(Long.MAX_VALUE, 12))).isEqualTo(Long.MAX_VALUE);
+    assertThat(ShortKeyCodec.decode("ab-")).isEqualTo(-1);
+    assertThat(ShortKeyCodec.decode("ab")).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldRejectIdOutsideKeySpace() {
+    long capacity = ShortKeyCodec.capacity(3).longValueExact();
+
+    assertThatThrownBy(() -> ShortKeyCodec.encode(capacity, 3)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> ShortKeyCodec.encode(-1, 3)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
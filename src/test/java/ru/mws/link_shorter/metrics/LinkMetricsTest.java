@@ -0,0 +1,24 @@
+package ru.mws.link_shorter.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinkMetricsTest {
+  @Test
+  void shouldRecordRequestsPerOperation() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LinkMetrics linkMetrics = new LinkMetrics(meterRegistry);
+
+    linkMetrics.recordRedirect(System.nanoTime());
+    linkMetrics.recordRedirect(System.nanoTime());
+    linkMetrics.recordCreate(System.nanoTime());
+    linkMetrics.recordCreateAttempts(2);
+
+    assertThat(meterRegistry.get("links.requests").tag("operation", "redirect").timer().count()).isEqualTo(2);
+    assertThat(meterRegistry.get("links.requests").tag("operation", "create").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("links.requests").tag("operation", "get_link").timer().count()).isZero();
+    assertThat(meterRegistry.get("links.create.attempts").summary().totalAmount()).isEqualTo(2.0);
+  }
+}
@@ -0,0 +1,77 @@
+package ru.mws.link_shorter.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitFilterTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RateLimitFilter filter = new RateLimitFilter(new RateLimits(
+      new RateLimiter("create", 1, 1, 1000, meterRegistry),
+      new RateLimiter("create_api_key", 1, 2, 1000, meterRegistry),
+      new RateLimiter("redirect", 1, 1, 1000, meterRegistry),
+      Set.of("partner-key"),
+      1));
+
+  @Test
+  void shouldRejectWithRetryAfterOnceBudgetIsSpent() throws Exception {
+    MockHttpServletResponse first = perform(post("/api/links/", "10.0.0.1"));
+    MockHttpServletResponse second = perform(post("/api/links/batch", "10.0.0.1"));
+
+    assertThat(first.getStatus()).isEqualTo(200);
+    assertThat(second.getStatus()).isEqualTo(429);
+    assertThat(second.getHeader("Retry-After")).isEqualTo("1");
+    assertThat(perform(post("/api/links/", "10.0.0.2")).getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  void shouldKeyOnAddressAddedByTrustedProxy() throws Exception {
+    MockHttpServletRequest spoofed = get("/abc123", "10.0.0.1");
+    spoofed.addHeader("X-Forwarded-For", "1.2.3.4, 10.0.0.1");
+    MockHttpServletRequest respoofed = get("/abc123", "10.0.0.1");
+    respoofed.addHeader("X-Forwarded-For", "5.6.7.8, 10.0.0.1");
+
+    assertThat(perform(spoofed).getStatus()).isEqualTo(200);
+    assertThat(perform(respoofed).getStatus()).isEqualTo(429);
+    assertThat(perform(get("/api/links/abc123/stats", "10.0.0.1")).getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  void shouldGiveKnownApiKeysTheirOwnBudget() throws Exception {
+    MockHttpServletRequest withKey = post("/api/links/", "10.0.0.1");
+    withKey.addHeader(RateLimits.API_KEY_HEADER, "partner-key");
+    MockHttpServletRequest withKeyAgain = post("/api/links/", "10.0.0.1");
+    withKeyAgain.addHeader(RateLimits.API_KEY_HEADER, "partner-key");
+    MockHttpServletRequest unknownKey = post("/api/links/", "10.0.0.1");
+    unknownKey.addHeader(RateLimits.API_KEY_HEADER, "made-up");
+
+    assertThat(perform(withKey).getStatus()).isEqualTo(200);
+    assertThat(perform(withKeyAgain).getStatus()).isEqualTo(200);
+    assertThat(perform(unknownKey).getStatus()).isEqualTo(200);
+    assertThat(perform(post("/api/links/", "10.0.0.1")).getStatus()).isEqualTo(429);
+  }
+
+  private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+
+  private static MockHttpServletRequest post(String path, String forwardedFor) {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+    request.addHeader("X-Forwarded-For", forwardedFor);
+    return request;
+  }
+
+  private static MockHttpServletRequest get(String path, String forwardedFor) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setRemoteAddr(forwardedFor);
+    return request;
+  }
+}
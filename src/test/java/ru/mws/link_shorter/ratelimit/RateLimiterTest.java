@@ -0,0 +1,62 @@
+package ru.mws.link_shorter.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RateLimiter limiter = new RateLimiter("create", 10, 3, 1000, meterRegistry);
+
+  @Test
+  void shouldAllowBurstThenThrottle() {
+    long now = TimeUnit.SECONDS.toNanos(100);
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAcquire("10.0.0.1", now)).isZero();
+    }
+
+    long wait = limiter.tryAcquire("10.0.0.1", now);
+
+    assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThat(meterRegistry.get("links.rate_limit.throttled").tag("budget", "create").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void shouldRefillAtConfiguredRate() {
+    long now = TimeUnit.SECONDS.toNanos(100);
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("10.0.0.1", now);
+    }
+
+    assertThat(limiter.tryAcquire("10.0.0.1", now + TimeUnit.MILLISECONDS.toNanos(50))).isPositive();
+    assertThat(limiter.tryAcquire("10.0.0.1", now + TimeUnit.MILLISECONDS.toNanos(100))).isZero();
+    assertThat(limiter.tryAcquire("10.0.0.1", now + TimeUnit.MILLISECONDS.toNanos(100))).isPositive();
+  }
+
+  @Test
+  void shouldGrantAsManyPermitsAsTheBucketHolds() {
+    long now = TimeUnit.SECONDS.toNanos(100);
+
+    assertThat(limiter.tryAcquireUpTo("10.0.0.1", 2, now)).isEqualTo(2);
+    assertThat(limiter.tryAcquireUpTo("10.0.0.1", 5, now)).isEqualTo(1);
+    assertThat(limiter.tryAcquireUpTo("10.0.0.1", 5, now)).isZero();
+    assertThat(limiter.tryAcquireUpTo("10.0.0.1", 5, now + TimeUnit.MILLISECONDS.toNanos(200))).isEqualTo(2);
+    assertThat(meterRegistry.get("links.rate_limit.throttled").tag("budget", "create").counter().count())
+        .isEqualTo(12);
+  }
+
+  @Test
+  void shouldKeepSeparateBucketsPerClient() {
+    long now = TimeUnit.SECONDS.toNanos(100);
+    for (int i = 0; i < 3; i++) {
+      limiter.tryAcquire("10.0.0.1", now);
+    }
+
+    assertThat(limiter.tryAcquire("10.0.0.1", now)).isPositive();
+    assertThat(limiter.tryAcquire("10.0.0.2", now)).isZero();
+  }
+}
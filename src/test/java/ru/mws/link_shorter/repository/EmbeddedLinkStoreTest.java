@@ -0,0 +1,167 @@
+package ru.mws.link_shorter.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmbeddedLinkStoreTest extends LinkStoreContractTest {
+  private static final DataSize SEGMENT_SIZE = DataSize.ofKilobytes(1);
+
+  @TempDir
+  Path directory;
+
+  private SimpleMeterRegistry meterRegistry;
+  private EmbeddedLinkStore linkStore;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    linkStore = open();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    linkStore.close();
+  }
+
+  @Override
+  protected LinkStore linkStore() {
+    return linkStore;
+  }
+
+  @Test
+  void shouldKeepLinksClicksAndSequencesAfterRestart() throws IOException {
+    linkStore.insertIfAbsent(key("a"), url("a"));
+    linkStore.incrementClickCounts(Map.of(key("a"), 7L), 100);
+    linkStore.nextKeyBlock(6);
+
+    reopen();
+
+    assertThat(linkStore.findByShortKey(key("a"))).contains(new LinkDto(key("a"), url("a"), 7));
+    assertThat(linkStore.nextKeyBlock(6)).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReplayWholeLogWithoutIndexFile() throws IOException {
+    linkStore.insertIfAbsent(key("a"), url("a"));
+    linkStore.incrementClickCounts(Map.of(key("a"), 7L), 100);
+    linkStore.close();
+    Files.delete(directory.resolve("index.bin"));
+
+    linkStore = open();
+
+    assertThat(linkStore.findByOriginalUrl(url("a"))).contains(new LinkDto(key("a"), url("a"), 7));
+    assertThat(linkStore.insertIfAbsent(key("b"), url("a"))).isFalse();
+  }
+
+  @Test
+  void shouldDropTornRecordAtTheEndOfTheLog() throws IOException {
+    linkStore.insertIfAbsent(key("a"), url("a"));
+    linkStore.insertIfAbsent(key("b"), url("b"));
+    linkStore.close();
+    Files.delete(directory.resolve("index.bin"));
+    int recordSize = 11 + key("a").length() + url("a").getBytes(StandardCharsets.UTF_8).length;
+    try (RandomAccessFile segment = new RandomAccessFile(directory.resolve("segment-00000001.log").toFile(), "rw")) {
+      segment.seek(16 + 2L * recordSize - 1);
+      segment.write(0x7f);
+    }
+
+    linkStore = open();
+
+    assertThat(linkStore.findForRedirect(key("a"))).isPresent();
+    assertThat(linkStore.findForRedirect(key("b"))).isEmpty();
+    assertThat(linkStore.insertIfAbsent(key("c"), url("c"))).isTrue();
+    reopen();
+    assertThat(linkStore.findForRedirect(key("c"))).isPresent();
+  }
+
+  @Test
+  void shouldCompactSegmentsOfSupersededClicks() throws IOException {
+    linkStore.insertIfAbsent(key("a"), url("a"));
+    linkStore.insertIfAbsent(key("b"), url("b"));
+    for (int i = 0; i < 200; i++) {
+      linkStore.incrementClickCounts(Map.of(key("a"), 1L), 100);
+    }
+    double segmentsBefore = segments();
+
+    linkStore.compact();
+
+    assertThat(segments()).isLessThan(segmentsBefore);
+    assertThat(linkStore.findByShortKey(key("a")).orElseThrow().clickCount()).isEqualTo(200);
+    assertThat(linkStore.findForRedirect(key("b"))).isPresent();
+    reopen();
+    assertThat(linkStore.findByShortKey(key("a")).orElseThrow().clickCount()).isEqualTo(200);
+    assertThat(linkStore.findByOriginalUrl(url("b")).orElseThrow().shortKey()).isEqualTo(key("b"));
+  }
+
+  @Test
+  void shouldReplayDeletesRedirectModesAndExpiriesAcrossCompaction() throws IOException {
+    RedirectMode redirect = new RedirectMode(308, 600);
+    linkStore.insertIfAbsent(key("a"), url("a"));
+    Instant expiresAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+    linkStore.insertIfAbsent(key("b"), url("b"), redirect, null);
+    linkStore.insertIfAbsent(key("d"), url("d"), redirect, expiresAt);
+    linkStore.delete(key("a"));
+    for (int i = 0; i < 200; i++) {
+      linkStore.incrementClickCounts(Map.of(key("b"), 1L), 100);
+    }
+
+    linkStore.compact();
+    linkStore.close();
+    Files.delete(directory.resolve("index.bin"));
+    linkStore = open();
+
+    assertThat(linkStore.findForRedirect(key("a"))).isEmpty();
+    assertThat(linkStore.findByOriginalUrl(url("a"))).isEmpty();
+    assertThat(linkStore.findForRedirect(key("b"))).contains(new LinkDto(key("b"), url("b"), 200, redirect));
+    assertThat(linkStore.findForRedirect(key("d"))).contains(new LinkDto(key("d"), url("d"), 0, redirect, expiresAt));
+    assertThat(linkStore.insertIfAbsent(key("c"), url("a"))).isTrue();
+  }
+
+  @Test
+  void shouldDeleteExpiredLinksEarliestFirstAfterRestart() throws IOException {
+    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    linkStore.insertIfAbsent(key("a"), url("a"), null, now.minusSeconds(1));
+    linkStore.insertIfAbsent(key("b"), url("b"), null, now.minusSeconds(3));
+    linkStore.insertIfAbsent(key("c"), url("c"), null, now.plus(1, ChronoUnit.DAYS));
+
+    reopen();
+
+    assertThat(linkStore.deleteExpired(now, 1)).isEqualTo(1);
+    assertThat(linkStore.findForRedirect(key("b"))).isEmpty();
+    assertThat(linkStore.findForRedirect(key("a"))).isPresent();
+    assertThat(linkStore.deleteExpired(now, 10)).isEqualTo(1);
+    assertThat(linkStore.deleteExpired(now, 10)).isZero();
+    assertThat(linkStore.findForRedirect(key("c"))).isPresent();
+  }
+
+  private double segments() {
+    return meterRegistry.get("links.embedded.segments").gauge().value();
+  }
+
+  private void reopen() throws IOException {
+    linkStore.close();
+    linkStore = open();
+  }
+
+  private EmbeddedLinkStore open() throws IOException {
+    meterRegistry = new SimpleMeterRegistry();
+    return new EmbeddedLinkStore(directory, SEGMENT_SIZE, Duration.ofMillis(10), 0.5, meterRegistry);
+  }
+}
@@ -0,0 +1,60 @@
+package ru.mws.link_shorter.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers
+@SpringBootTest
+public class JdbcLinkStoreTest extends LinkStoreContractTest {
+  @Container
+  static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+      .withDatabaseName("testdb")
+      .withUsername("test")
+      .withPassword("test");
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+  }
+
+  @AfterAll
+  static void shutDown() {
+    postgres.close();
+  }
+
+  @Autowired
+  private JdbcLinkStore jdbcLinkStore;
+
+  @Override
+  protected LinkStore linkStore() {
+    return jdbcLinkStore;
+  }
+
+  @Test
+  void shouldNotKeepEarlierBatchesWhenALaterOneFails() {
+    linkStore().insertIfAbsent(key("a"), url("a"));
+    linkStore().insertIfAbsent(key("b"), url("b"));
+    linkStore().incrementClickCounts(Map.of(key("b"), Long.MAX_VALUE), 1);
+
+    assertThatThrownBy(() -> linkStore().incrementClickCounts(Map.of(key("a"), 1L, key("b"), 1L), 1))
+        .isInstanceOf(RuntimeException.class);
+    // Out of the hottest links the other tests list
+    linkStore().delete(key("b"));
+
+    assertThat(linkStore().findByShortKey(key("a")).orElseThrow().clickCount()).isZero();
+  }
+}
@@ -0,0 +1,138 @@
+package ru.mws.link_shorter.repository;
+
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Behaviour every {@link LinkStore} shares; subclasses provide the store. Keys and URLs are unique
+ * per test, so the stores may keep data between tests.
+ */
+public abstract class LinkStoreContractTest {
+  private final String prefix = UUID.randomUUID().toString().substring(0, 8);
+
+  protected abstract LinkStore linkStore();
+
+  @Test
+  void shouldFindInsertedLinkByShortKeyAndUrl() {
+    assertThat(linkStore().insertIfAbsent(key("a"), url("a"))).isTrue();
+
+    assertThat(linkStore().findByShortKey(key("a"))).contains(new LinkDto(key("a"), url("a"), 0));
+    assertThat(linkStore().findByOriginalUrl(url("a"))).contains(new LinkDto(key("a"), url("a"), 0));
+    assertThat(linkStore().findForRedirect(key("a"))).contains(new LinkDto(key("a"), url("a"), 0));
+    assertThat(linkStore().findByShortKey(key("missing"))).isEmpty();
+    assertThat(linkStore().findByOriginalUrl(url("missing"))).isEmpty();
+  }
+
+  @Test
+  void shouldRejectTakenShortKeyOrUrl() {
+    linkStore().insertIfAbsent(key("a"), url("a"));
+
+    assertThat(linkStore().insertIfAbsent(key("a"), url("b"))).isFalse();
+    assertThat(linkStore().insertIfAbsent(key("b"), url("a"))).isFalse();
+    assertThat(linkStore().findByShortKey(key("b"))).isEmpty();
+    assertThat(linkStore().findForRedirect(key("a"))).contains(new LinkDto(key("a"), url("a"), 0));
+  }
+
+  @Test
+  void shouldInsertBatchSkippingTakenLinks() {
+    linkStore().insertIfAbsent(key("a"), url("a"));
+    Map<String, String> batch = new LinkedHashMap<>();
+    batch.put(key("a"), url("b"));
+    batch.put(key("c"), url("a"));
+    batch.put(key("d"), url("d"));
+    batch.put(key("e"), url("e"));
+
+    assertThat(linkStore().insertAllIfAbsent(batch)).containsExactlyInAnyOrder(key("d"), key("e"));
+    assertThat(linkStore().findAllByShortKeyIn(List.of(key("a"), key("c"), key("d"))))
+        .extracting(LinkDto::shortKey)
+        .containsExactlyInAnyOrder(key("a"), key("d"));
+    assertThat(linkStore().findAllByOriginalUrlIn(List.of(url("a"), url("b"), url("e"))))
+        .extracting(LinkDto::shortKey)
+        .containsExactlyInAnyOrder(key("a"), key("e"));
+  }
+
+  @Test
+  void shouldHandOutConsecutiveKeyBlocksPerLength() {
+    long first = linkStore().nextKeyBlock(11);
+
+    assertThat(linkStore().nextKeyBlock(11)).isEqualTo(first + 1);
+    assertThat(linkStore().nextKeyBlock(11)).isEqualTo(first + 2);
+  }
+
+  @Test
+  void shouldAddClicksAndListMostClickedFirst() {
+    linkStore().insertIfAbsent(key("a"), url("a"));
+    linkStore().insertIfAbsent(key("b"), url("b"));
+
+    linkStore().incrementClickCounts(Map.of(key("a"), 1_000_000L, key("b"), 2_000_000L), 1);
+    linkStore().incrementClickCounts(Map.of(key("a"), 5L, key("missing"), 3L), 100);
+
+    assertThat(linkStore().findByShortKey(key("a")).orElseThrow().clickCount()).isEqualTo(1_000_005);
+    try (Stream<LinkDto> hottest = linkStore().streamHottestLinks(2, 100, 10)) {
+      assertThat(hottest.toList()).extracting(LinkDto::shortKey).containsExactly(key("b"), key("a"));
+    }
+  }
+
+  @Test
+  void shouldKeepRedirectModeOutsideOfUrlDedupe() {
+    RedirectMode redirect = new RedirectMode(301, 86400);
+
+    assertThat(linkStore().insertIfAbsent(key("a"), url("a"), redirect, null)).isTrue();
+
+    assertThat(linkStore().findForRedirect(key("a"))).contains(new LinkDto(key("a"), url("a"), 0, redirect));
+    assertThat(linkStore().findByOriginalUrl(url("a"))).isEmpty();
+    assertThat(linkStore().insertIfAbsent(key("b"), url("a"))).isTrue();
+    assertThat(linkStore().findByOriginalUrl(url("a")).orElseThrow().shortKey()).isEqualTo(key("b"));
+  }
+
+  @Test
+  void shouldFreeShortKeyAndUrlOfDeletedLink() {
+    linkStore().insertIfAbsent(key("a"), url("a"));
+    linkStore().incrementClickCounts(Map.of(key("a"), 3L), 100);
+
+    assertThat(linkStore().delete(key("a"))).isTrue();
+    assertThat(linkStore().delete(key("a"))).isFalse();
+
+    assertThat(linkStore().findForRedirect(key("a"))).isEmpty();
+    assertThat(linkStore().findByOriginalUrl(url("a"))).isEmpty();
+    assertThat(linkStore().insertIfAbsent(key("b"), url("a"))).isTrue();
+    assertThat(linkStore().insertIfAbsent(key("a"), url("c"))).isTrue();
+    assertThat(linkStore().findByShortKey(key("a"))).contains(new LinkDto(key("a"), url("c"), 0));
+  }
+
+  @Test
+  void shouldDeleteOnlyExpiredLinks() {
+    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    Instant later = now.plus(1, ChronoUnit.HOURS);
+    linkStore().insertIfAbsent(key("a"), url("a"), null, now.minusSeconds(1));
+    linkStore().insertIfAbsent(key("b"), url("b"), null, later);
+    linkStore().insertIfAbsent(key("c"), url("c"));
+    linkStore().incrementClickCounts(Map.of(key("a"), 3L), 100);
+
+    assertThat(linkStore().deleteExpired(now, 1000)).isPositive();
+
+    assertThat(linkStore().findByShortKey(key("a"))).isEmpty();
+    assertThat(linkStore().findForRedirect(key("b"))).contains(new LinkDto(key("b"), url("b"), 0, null, later));
+    assertThat(linkStore().findByOriginalUrl(url("b"))).isEmpty();
+    assertThat(linkStore().findByShortKey(key("c"))).isPresent();
+  }
+
+  protected String key(String name) {
+    return prefix + name;
+  }
+
+  protected String url(String name) {
+    return "https://" + prefix + "-" + name + ".example.com/path";
+  }
+}
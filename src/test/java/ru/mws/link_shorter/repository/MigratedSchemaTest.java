@@ -0,0 +1,76 @@
+package ru.mws.link_shorter.repository;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationState;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.mws.link_shorter.entity.LinkEntity;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots JPA on the schema the Flyway migrations build, from an empty database, with the
+ * {@code validate} setting the application runs with, so entity and migrations cannot drift apart.
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class MigratedSchemaTest {
+  @Container
+  static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+      .withDatabaseName("testdb")
+      .withUsername("test")
+      .withPassword("test");
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+  }
+
+  @AfterAll
+  static void shutDown() {
+    postgres.close();
+  }
+
+  @Autowired
+  private Flyway flyway;
+
+  @Autowired
+  private ShorterRepository shorterRepository;
+
+  @Test
+  void shouldApplyEveryMigrationToAnEmptyDatabase() {
+    assertThat(flyway.info().pending()).isEmpty();
+    assertThat(flyway.info().applied()).allMatch(migration -> migration.getState() == MigrationState.SUCCESS);
+  }
+
+  @Test
+  void shouldMapRedirectModeAndExpiryOnTheMigratedSchema() {
+    LinkEntity link = new LinkEntity("abc123", "https://example.com");
+    link.setRedirectType(308);
+    link.setRedirectMaxAge(86400);
+    Instant expiresAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MICROS);
+    link.setExpiresAt(expiresAt);
+    shorterRepository.saveAndFlush(link);
+
+    LinkEntity found = shorterRepository.findByShortKey("abc123").orElseThrow();
+
+    assertThat(found.getRedirectType()).isEqualTo(308);
+    assertThat(found.getRedirectMaxAge()).isEqualTo(86400);
+    assertThat(found.getExpiresAt()).isEqualTo(expiresAt);
+  }
+}
@@ -0,0 +1,23 @@
+package ru.mws.link_shorter.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrlDigestTest {
+  @Test
+  void shouldMatchPostgresMd5CastToUuid() {
+    assertThat(UrlDigest.of("")).isEqualTo(UUID.fromString("d41d8cd9-8f00-b204-e980-0998ecf8427e"));
+    assertThat(UrlDigest.of("https://пример.рф/путь"))
+        .isEqualTo(UUID.fromString("ea8c8275-c8d2-e45e-9e19-8b23d75a743a"));
+  }
+
+  @Test
+  void shouldKeepDigestSizeIndependentOfUrlLength() {
+    String longUrl = "https://example.com/" + "a".repeat(4000);
+
+    assertThat(UrlDigest.of(longUrl)).isNotEqualTo(UrlDigest.of(longUrl + "b"));
+  }
+}
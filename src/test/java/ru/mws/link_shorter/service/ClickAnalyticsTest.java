@@ -0,0 +1,72 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+import ru.mws.link_shorter.repository.ClickStatsRepository.MinuteClicks;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ClickAnalyticsTest {
+  private ClickStatsRepository clickStatsRepository;
+  private SimpleMeterRegistry meterRegistry;
+  private ClickAnalytics clickAnalytics;
+
+  @BeforeEach
+  void setUp() {
+    clickStatsRepository = mock(ClickStatsRepository.class);
+    meterRegistry = new SimpleMeterRegistry();
+    clickAnalytics = new ClickAnalytics(clickStatsRepository, meterRegistry, 2, 100);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldAppendClicksAggregatedByDimensions() {
+    clickAnalytics.record("abc123", "https://T.me/channel/1", "de");
+    clickAnalytics.record("abc123", "https://t.me/channel/2", "DE");
+    clickAnalytics.record("abc123", null, null);
+
+    clickAnalytics.flush();
+
+    ArgumentCaptor<List<MinuteClicks>> captor = ArgumentCaptor.forClass(List.class);
+    verify(clickStatsRepository).appendMinuteClicks(captor.capture(), eq(100));
+    assertThat(captor.getValue())
+        .extracting(MinuteClicks::referrer, MinuteClicks::country, MinuteClicks::clicks)
+        .containsExactlyInAnyOrder(tuple("t.me", "DE", 2L), tuple("", "", 1L));
+    assertThat(captor.getValue()).allSatisfy(row -> assertThat(row.bucket().getEpochSecond() % 60).isZero());
+  }
+
+  @Test
+  void shouldNormalizeDimensions() {
+    assertThat(ClickAnalytics.referrerHost("android-app://org.telegram.messenger/")).isEqualTo("org.telegram.messenger");
+    assertThat(ClickAnalytics.referrerHost("not a url")).isEmpty();
+    assertThat(ClickAnalytics.countryCode(" us ")).isEqualTo("US");
+    assertThat(ClickAnalytics.countryCode("XX1")).isEmpty();
+    assertThat(ClickAnalytics.countryCode("Ü1")).isEmpty();
+  }
+
+  @Test
+  void shouldRetryAndThenDropWhenAppendKeepsFailing() {
+    doThrow(new RuntimeException("database is down"))
+        .when(clickStatsRepository).appendMinuteClicks(anyList(), anyInt());
+    clickAnalytics.record("abc123", null, "DE");
+
+    clickAnalytics.flush();
+    assertThat(meterRegistry.get("links.analytics.pending").gauge().value()).isEqualTo(1.0);
+
+    clickAnalytics.record("xyz789", null, "FR");
+    clickAnalytics.record("xyz789", null, "US");
+    clickAnalytics.flush();
+
+    assertThat(meterRegistry.get("links.analytics.dropped").counter().count()).isEqualTo(3.0);
+    verify(clickStatsRepository, times(2)).appendMinuteClicks(anyList(), anyInt());
+  }
+}
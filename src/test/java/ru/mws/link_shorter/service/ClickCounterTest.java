@@ -0,0 +1,113 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ClickCounterTest {
+  private LinkStore linkStore;
+  private TrendingLinks trendingLinks;
+  private SimpleMeterRegistry meterRegistry;
+  private ClickCounter clickCounter;
+
+  @BeforeEach
+  void setUp() {
+    linkStore = mock(LinkStore.class);
+    trendingLinks = mock(TrendingLinks.class);
+    meterRegistry = new SimpleMeterRegistry();
+    clickCounter = new ClickCounter(linkStore, trendingLinks, meterRegistry, 1000, 100, false);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldFlushAggregatedClicksInOneBatch() {
+    clickCounter.record("abc123");
+    clickCounter.record("abc123");
+    clickCounter.record("xyz789");
+
+    clickCounter.flush();
+
+    ArgumentCaptor<Map<String, Long>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(linkStore).incrementClickCounts(captor.capture(), eq(100));
+    assertThat(captor.getValue()).containsExactlyInAnyOrderEntriesOf(Map.of("abc123", 2L, "xyz789", 1L));
+    assertThat(clickCounter.pendingClicks()).isZero();
+  }
+
+  @Test
+  void shouldExposePendingClicksGauge() {
+    clickCounter.record("abc123");
+    clickCounter.record("abc123");
+
+    assertThat(clickCounter.pendingClicks("abc123")).isEqualTo(2);
+    assertThat(meterRegistry.get("links.clicks.pending").gauge().value()).isEqualTo(2.0);
+  }
+
+  @Test
+  void shouldKeepClicksWhenFlushFails() {
+    doThrow(new RuntimeException("database is down"))
+        .when(linkStore).incrementClickCounts(anyMap(), anyInt());
+    clickCounter.record("abc123");
+
+    clickCounter.flush();
+
+    assertThat(clickCounter.pendingClicks("abc123")).isEqualTo(1);
+  }
+
+  @Test
+  void shouldDropFailedClicksWhenTooManyLinksWait() {
+    clickCounter = new ClickCounter(linkStore, trendingLinks, meterRegistry, 2, 100, false);
+    doThrow(new RuntimeException("database is down"))
+        .when(linkStore).incrementClickCounts(anyMap(), anyInt());
+    clickCounter.record("abc123");
+
+    clickCounter.flush();
+    assertThat(clickCounter.pendingClicks()).isEqualTo(1);
+
+    clickCounter.record("xyz789");
+    clickCounter.record("xyz789");
+    clickCounter.flush();
+
+    assertThat(clickCounter.pendingClicks()).isZero();
+    assertThat(meterRegistry.get("links.clicks.dropped").counter().count()).isEqualTo(3.0);
+  }
+
+  @Test
+  void shouldNotWriteWhenNothingIsPending() {
+    clickCounter.flush();
+
+    verifyNoInteractions(linkStore);
+  }
+
+  @Test
+  void shouldDrainPendingClicksOnShutdown() throws InterruptedException {
+    clickCounter.record("abc123");
+
+    clickCounter.shutdown();
+
+    verify(linkStore).incrementClickCounts(Map.of("abc123", 1L), 100);
+    assertThat(clickCounter.pendingClicks()).isZero();
+  }
+
+  @Test
+  void shouldFeedTrendingOncePerClickWhenWriteIsRetried() {
+    doThrow(new RuntimeException("database is down")).doNothing()
+        .when(linkStore).incrementClickCounts(anyMap(), anyInt());
+    clickCounter.record("abc123");
+
+    clickCounter.flush();
+    clickCounter.flush();
+
+    verify(trendingLinks, times(1)).offer(Map.of("abc123", 1L));
+    verify(linkStore, times(2)).incrementClickCounts(Map.of("abc123", 1L), 100);
+    assertThat(clickCounter.pendingClicks()).isZero();
+  }
+}
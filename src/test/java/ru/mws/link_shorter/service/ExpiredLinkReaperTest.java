@@ -0,0 +1,46 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.repository.LinkStore;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ExpiredLinkReaperTest {
+  private LinkStore linkStore;
+  private SimpleMeterRegistry meterRegistry;
+  private ExpiredLinkReaper reaper;
+
+  @BeforeEach
+  void setUp() {
+    linkStore = mock(LinkStore.class);
+    meterRegistry = new SimpleMeterRegistry();
+    reaper = new ExpiredLinkReaper(linkStore, 60_000, 10, 3, Duration.ZERO, meterRegistry);
+  }
+
+  @Test
+  void shouldStopAtShortBatch() {
+    when(linkStore.deleteExpired(any(), eq(10))).thenReturn(10, 4);
+
+    reaper.reap();
+
+    verify(linkStore, times(2)).deleteExpired(any(), eq(10));
+    assertThat(meterRegistry.get("links.expired.deleted").counter().count()).isEqualTo(14.0);
+  }
+
+  @Test
+  void shouldLeaveTheRestToTheNextRun() {
+    when(linkStore.deleteExpired(any(), eq(10))).thenReturn(10);
+
+    reaper.reap();
+
+    verify(linkStore, times(3)).deleteExpired(any(), eq(10));
+    assertThat(meterRegistry.get("links.expired.deleted").counter().count()).isEqualTo(30.0);
+  }
+}
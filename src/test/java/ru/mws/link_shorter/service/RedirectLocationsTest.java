@@ -0,0 +1,74 @@
+package ru.mws.link_shorter.service;
+
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RedirectLocationsTest {
+  @Test
+  void shouldKeepUrlWithProtocol() {
+    assertThat(RedirectLocations.normalize("http://example.com/a?b=c")).isEqualTo("http://example.com/a?b=c");
+    assertThat(RedirectLocations.normalize("https://example.com")).isEqualTo("https://example.com");
+  }
+
+  @Test
+  void shouldAddHttpsWhenMissingProtocol() {
+    assertThat(RedirectLocations.normalize("example.com")).isEqualTo("https://example.com");
+  }
+
+  @Test
+  void shouldEncodeNonAsciiCharacters() {
+    assertThat(RedirectLocations.normalize("https://example.com/путь")).isEqualTo("https://example.com/%D0%BF%D1%83%D1%82%D1%8C");
+  }
+
+  @Test
+  void shouldRejectMalformedUrl() {
+    assertThatThrownBy(() -> RedirectLocations.normalize("https://exa mple.com")).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldPrepareDefaultRedirectAsPlainLocation() {
+    String prepared = RedirectLocations.prepare("example.com/a", null);
+
+    assertThat(prepared).isEqualTo("https://example.com/a");
+    assertThat(RedirectLocations.status(prepared)).isEqualTo(302);
+    assertThat(RedirectLocations.location(prepared)).isEqualTo("https://example.com/a");
+    assertThat(RedirectLocations.cacheControl(prepared)).isNull();
+  }
+
+  @Test
+  void shouldCarryRedirectModeInPreparedLocation() {
+    String prepared = RedirectLocations.prepare("https://example.com/a?b=c", new RedirectMode(308, 86400));
+
+    assertThat(RedirectLocations.status(prepared)).isEqualTo(308);
+    assertThat(RedirectLocations.location(prepared)).isEqualTo("https://example.com/a?b=c");
+    assertThat(RedirectLocations.cacheControl(prepared)).isEqualTo("public, max-age=86400");
+  }
+
+  @Test
+  void shouldCapMaxAgeOfExpiringLinkAtItsExpiry() {
+    Instant expiresAt = Instant.now().plusSeconds(600);
+    String prepared = RedirectLocations.prepare("https://example.com/a", new RedirectMode(301, 86400), expiresAt);
+
+    assertThat(RedirectLocations.status(prepared)).isEqualTo(301);
+    assertThat(RedirectLocations.location(prepared)).isEqualTo("https://example.com/a");
+    assertThat(RedirectLocations.cacheControl(prepared)).matches("public, max-age=(59[0-9]|600)");
+    assertThat(RedirectLocations.expiresAt(prepared)).isEqualTo(expiresAt.toEpochMilli());
+    assertThat(RedirectLocations.isExpired(prepared)).isFalse();
+  }
+
+  @Test
+  void shouldExpireDefaultRedirect() {
+    String prepared = RedirectLocations.prepare("example.com/a", null, Instant.now().minusMillis(1));
+
+    assertThat(RedirectLocations.status(prepared)).isEqualTo(302);
+    assertThat(RedirectLocations.location(prepared)).isEqualTo("https://example.com/a");
+    assertThat(RedirectLocations.cacheControl(prepared)).isNull();
+    assertThat(RedirectLocations.isExpired(prepared)).isTrue();
+    assertThat(RedirectLocations.isExpired(RedirectLocations.prepare("example.com/a", null))).isFalse();
+  }
+}
@@ -9,7 +9,20 @@ import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.mws.link_shorter.dto.BatchLinkResult;
 import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.LinkStats;
+import ru.mws.link_shorter.dto.StatsGranularity;
+import ru.mws.link_shorter.dto.UniqueVisitors;
+import ru.mws.link_shorter.repository.ClickStatsRepository;
+import ru.mws.link_shorter.repository.LinkJdbcRepository;
+import ru.mws.link_shorter.request.CreateLinkRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,7 +40,6 @@ public class ShorterServiceTest {
     registry.add("spring.datasource.url", postgres::getJdbcUrl);
     registry.add("spring.datasource.username", postgres::getUsername);
     registry.add("spring.datasource.password", postgres::getPassword);
-    registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
   }
 
   @AfterAll
@@ -38,6 +50,24 @@ public class ShorterServiceTest {
   @Autowired
   private ShorterService shorterService;
 
+  @Autowired
+  private ClickCounter clickCounter;
+
+  @Autowired
+  private LinkJdbcRepository linkJdbcRepository;
+
+  @Autowired
+  private ClickAnalytics clickAnalytics;
+
+  @Autowired
+  private ClickStatsRepository clickStatsRepository;
+
+  @Autowired
+  private LinkStatsService linkStatsService;
+
+  @Autowired
+  private VisitorCounter visitorCounter;
+
   @Test
   void shouldCreateAndRetrieveLink() {
     String originalUrl = "https://integration-test.com";
@@ -60,4 +90,123 @@ public class ShorterServiceTest {
     assertThat(afterFirstClick.clickCount()).isEqualTo(1);
     assertThat(afterSecondClick.clickCount()).isEqualTo(2);
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldPersistClicksAfterFlush() {
+    String originalUrl = "https://flush-test.com";
+    LinkDto created = shorterService.createShortLinkWithLen(originalUrl, 6);
+
+    for (int i = 0; i < 5; i++) {
+      shorterService.getIncrementedOriginalLinkByShortKey(created.shortKey());
+    }
+    clickCounter.flush();
+
+    assertThat(clickCounter.pendingClicks(created.shortKey())).isZero();
+    assertThat(shorterService.getOriginalLinkByShortKey(created.shortKey()).clickCount()).isEqualTo(5);
+  }
+
+  @Test
+  void shouldResolveRedirectForJustCreatedLink() {
+    String originalUrl = "https://negative-cache-test.com";
+    LinkDto created = shorterService.createShortLinkWithLen(originalUrl, 6);
+
+    assertThat(shorterService.getRedirectLocation(created.shortKey())).isEqualTo(originalUrl);
+  }
+
+  @Test
+  void shouldCreateBatchWithDeduplicationAndPerItemErrors() {
+    LinkDto existing = shorterService.createShortLinkWithLen("https://batch-existing.com", 6);
+
+    List<BatchLinkResult> results = shorterService.createShortLinks(List.of(
+        new CreateLinkRequest("https://batch-new.com", 7),
+        new CreateLinkRequest("https://batch-existing.com", 6),
+        new CreateLinkRequest("invalid", 6),
+        new CreateLinkRequest("https://batch-new.com", 7)));
+
+    assertThat(results).hasSize(4);
+    assertThat(results.get(0).link().shortKey()).hasSize(7);
+    assertThat(results.get(1).link().shortKey()).isEqualTo(existing.shortKey());
+    assertThat(results.get(2).error()).isNotNull();
+    assertThat(results.get(3).link()).isEqualTo(results.get(0).link());
+    assertThat(shorterService.getOriginalLinkByShortKey(results.get(0).link().shortKey()).originalUrl())
+        .isEqualTo("https://batch-new.com");
+  }
+
+  @Test
+  void shouldShareOneLinkBetweenSpellingsOfAUrl() {
+    LinkDto created = shorterService.createShortLinkWithLen("HTTPS://Spelling-Test.com/", 6);
+
+    assertThat(created.originalUrl()).isEqualTo("https://spelling-test.com");
+    assertThat(shorterService.createShortLinkWithLen("https://spelling-test.com", 6)).isEqualTo(created);
+    assertThat(shorterService.createShortLinks(List.of(new CreateLinkRequest("https://SPELLING-TEST.com/", 6))))
+        .extracting(BatchLinkResult::link).containsExactly(created);
+  }
+
+  @Test
+  void shouldStoreNormalizedRedirectLocation() {
+    LinkDto created = shorterService.createShortLinkWithLen("no-scheme-test.com/path", 6);
+
+    assertThat(shorterService.getRedirectLocation(created.shortKey())).isEqualTo("https://no-scheme-test.com/path");
+  }
+
+  @Test
+  void shouldReleaseUrlWhenShortKeyIsTaken() {
+    LinkDto existing = shorterService.createShortLinkWithLen("https://taken-key-test.com", 6);
+
+    assertThat(linkJdbcRepository.insertIfAbsent(existing.shortKey(), "https://released-url-test.com")).isFalse();
+    assertThat(linkJdbcRepository.insertIfAbsent("relKey", "https://released-url-test.com")).isTrue();
+    assertThat(shorterService.createShortLinkWithLen("https://released-url-test.com", 6).shortKey())
+        .isEqualTo("relKey");
+  }
+
+  @Test
+  void shouldDeduplicateUrlsLongerThanIndexableLength() {
+    String longUrl = "https://long-url-test.com/" + "a".repeat(4000);
+
+    LinkDto first = shorterService.createShortLinkWithLen(longUrl, 6);
+    LinkDto second = shorterService.createShortLinkWithLen(longUrl, 8);
+
+    assertThat(second.shortKey()).isEqualTo(first.shortKey());
+    assertThat(shorterService.getOriginalLinkByShortKey(first.shortKey()).originalUrl()).isEqualTo(longUrl);
+  }
+
+  @Test
+  void shouldKeepClickStatsAcrossRollup() {
+    LinkDto created = shorterService.createShortLinkWithLen("https://stats-test.com", 6);
+    shorterService.getRedirectLocation(created.shortKey(), new ClickSource("https://t.me/channel", "DE", null, null));
+    shorterService.getRedirectLocation(created.shortKey(), new ClickSource("https://t.me/other", "DE", null, null));
+    shorterService.getRedirectLocation(created.shortKey(), ClickSource.NONE);
+    clickAnalytics.flush();
+    Instant from = Instant.now().minus(Duration.ofHours(2));
+    Instant to = Instant.now().plus(Duration.ofHours(2));
+
+    LinkStats minutes = linkStatsService.getStats(created.shortKey(), from, to, StatsGranularity.MINUTE);
+    clickStatsRepository.rollUpMinutes(to);
+    LinkStats hours = linkStatsService.getStats(created.shortKey(), from, to, StatsGranularity.HOUR);
+
+    assertThat(minutes.total()).isEqualTo(3);
+    assertThat(hours.total()).isEqualTo(3);
+    assertThat(hours.buckets()).allSatisfy(bucket -> assertThat(bucket.start().getEpochSecond() % 3600).isZero());
+    assertThat(hours.referrers()).containsExactly(new LinkStats.Dimension("t.me", 2), new LinkStats.Dimension("", 1));
+    assertThat(hours.countries()).containsExactly(new LinkStats.Dimension("DE", 2), new LinkStats.Dimension("", 1));
+  }
+
+  @Test
+  void shouldMergeVisitorSketchesAcrossFlushes() {
+    LinkDto created = shorterService.createShortLinkWithLen("https://visitors-test.com", 6);
+    for (int i = 0; i < 50; i++) {
+      shorterService.getRedirectLocation(created.shortKey(), new ClickSource(null, null, "198.51.100." + i, "Mozilla/5.0"));
+    }
+    visitorCounter.flush();
+    for (int i = 25; i < 75; i++) {
+      shorterService.getRedirectLocation(created.shortKey(), new ClickSource(null, null, "198.51.100." + i, "Mozilla/5.0"));
+    }
+    visitorCounter.flush();
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    UniqueVisitors visitors = linkStatsService.getUniqueVisitors(created.shortKey(), today.minusDays(1), today);
+
+    assertThat(visitors.days()).singleElement().satisfies(day -> assertThat(day.visitors()).isBetween(73L, 77L));
+    assertThat(visitors.total()).isBetween(73L, 77L);
+  }
+}
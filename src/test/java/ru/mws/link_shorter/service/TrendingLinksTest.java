@@ -0,0 +1,65 @@
+package ru.mws.link_shorter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.mws.link_shorter.dto.TrendingLink;
+import ru.mws.link_shorter.repository.TrendingRepository;
+import ru.mws.link_shorter.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TrendingLinksTest {
+  private TrendingRepository trendingRepository;
+  private TrendingLinks trendingLinks;
+
+  @BeforeEach
+  void setUp() {
+    trendingRepository = mock(TrendingRepository.class);
+    trendingLinks = new TrendingLinks(new StaticListableBeanFactory(Map.of("trendingRepository", trendingRepository))
+        .getBeanProvider(TrendingRepository.class), 100, Duration.ofSeconds(30), Duration.ofSeconds(5));
+  }
+
+  @Test
+  void shouldMergeLocalClicksWithOtherInstances() {
+    SpaceSaving other = new SpaceSaving(100);
+    other.offer("xyz789", 50);
+    other.offer("abc123", 5);
+    when(trendingRepository.findOthers(eq("5m"), anyString(), any())).thenReturn(List.of(other.toBytes()));
+    trendingLinks.offer(Map.of("abc123", 30L, "def456", 1L));
+    trendingLinks.offer(Map.of("abc123", 10L));
+
+    List<TrendingLink> top = trendingLinks.top(TrendingLinks.Window.FIVE_MINUTES, 2);
+
+    assertThat(top).containsExactly(new TrendingLink("xyz789", 50, 0), new TrendingLink("abc123", 45, 0));
+  }
+
+  @Test
+  void shouldServeLocalViewWhenDatabaseIsDown() {
+    when(trendingRepository.findOthers(anyString(), anyString(), any()))
+        .thenThrow(new DataAccessResourceFailureException("database is down"));
+    trendingLinks.offer(Map.of("abc123", 3L));
+
+    assertThat(trendingLinks.top(TrendingLinks.Window.DAY, 10)).containsExactly(new TrendingLink("abc123", 3, 0));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldPublishEveryWindow() {
+    trendingLinks.offer(Map.of("abc123", 3L));
+
+    trendingLinks.publish();
+
+    verify(trendingRepository).publish(anyString(), (Map<String, byte[]>) argThat(summaries ->
+        ((Map<String, byte[]>) summaries).keySet().containsAll(List.of("5m", "1h", "24h"))), any());
+  }
+}
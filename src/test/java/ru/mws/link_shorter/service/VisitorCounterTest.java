@@ -0,0 +1,89 @@
+package ru.mws.link_shorter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.mws.link_shorter.repository.VisitorSketchRepository;
+import ru.mws.link_shorter.repository.VisitorSketchRepository.Key;
+import ru.mws.link_shorter.sketch.HyperLogLog;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class VisitorCounterTest {
+  private VisitorSketchRepository visitorSketchRepository;
+  private VisitorCounter visitorCounter;
+
+  @BeforeEach
+  void setUp() {
+    visitorSketchRepository = mock(VisitorSketchRepository.class);
+    visitorCounter = new VisitorCounter(visitorSketchRepository, new SimpleMeterRegistry(), 1000, 100, false);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldMergeOneSketchPerLinkAndDay() {
+    visitorCounter.record("abc123", "203.0.113.7", "Mozilla/5.0");
+    visitorCounter.record("abc123", "203.0.113.7", "Mozilla/5.0");
+    visitorCounter.record("abc123", "203.0.113.8", "Mozilla/5.0");
+    visitorCounter.record("abc123", "203.0.113.7", "curl/8.0");
+    visitorCounter.record("xyz789", null, "Mozilla/5.0");
+
+    visitorCounter.flush();
+
+    ArgumentCaptor<Map<Key, HyperLogLog>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(visitorSketchRepository).merge(captor.capture(), eq(100));
+    assertThat(captor.getValue()).hasSize(1);
+    Map.Entry<Key, HyperLogLog> entry = captor.getValue().entrySet().iterator().next();
+    assertThat(entry.getKey().shortKey()).isEqualTo("abc123");
+    assertThat(entry.getValue().estimate()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldNotWriteUnchangedSketches() {
+    visitorCounter.record("abc123", "203.0.113.7", "Mozilla/5.0");
+    visitorCounter.flush();
+    visitorCounter.flush();
+
+    verify(visitorSketchRepository, times(1)).merge(anyMap(), anyInt());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldRetryAfterFailedMerge() {
+    doThrow(new RuntimeException("database is down")).doNothing()
+        .when(visitorSketchRepository).merge(anyMap(), anyInt());
+    visitorCounter.record("abc123", "203.0.113.7", "Mozilla/5.0");
+
+    visitorCounter.flush();
+    visitorCounter.flush();
+
+    ArgumentCaptor<Map<Key, HyperLogLog>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(visitorSketchRepository, times(2)).merge(captor.capture(), eq(100));
+    assertThat(captor.getValue().values()).singleElement()
+        .satisfies(sketch -> assertThat(sketch.estimate()).isEqualTo(1));
+  }
+
+  @Test
+  void shouldDropSketchesWhenMergeKeepsFailing() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    VisitorCounter bounded = new VisitorCounter(visitorSketchRepository, meterRegistry, 1, 100, false);
+    doThrow(new RuntimeException("database is down"))
+        .when(visitorSketchRepository).merge(anyMap(), anyInt());
+    bounded.record("abc123", "203.0.113.7", "Mozilla/5.0");
+
+    bounded.flush();
+    assertThat(meterRegistry.get("links.visitors.pending").gauge().value()).isEqualTo(1.0);
+
+    bounded.record("xyz789", "203.0.113.7", "Mozilla/5.0");
+    bounded.flush();
+
+    assertThat(meterRegistry.get("links.visitors.dropped").counter().count()).isEqualTo(2.0);
+    assertThat(meterRegistry.get("links.visitors.pending").gauge().value()).isZero();
+  }
+}
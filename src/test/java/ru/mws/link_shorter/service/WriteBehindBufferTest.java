@@ -0,0 +1,37 @@
+package ru.mws.link_shorter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteBehindBufferTest {
+
+  @Test
+  void shouldDrainIdleValuesOnceMoreBeforeLettingThemGo() {
+    WriteBehindBuffer<String, LongAdder, Long> buffer = new WriteBehindBuffer<>("test-flush", false,
+        key -> new LongAdder(), ClickCounter::takeClicks, Long::sum, () -> {});
+    LongAdder held = buffer.get("abc123");
+    held.increment();
+
+    assertThat(buffer.drain()).containsEntry("abc123", 1L);
+    assertThat(buffer.drain()).isEmpty();
+    assertThat(buffer.size()).isZero();
+
+    held.increment();
+    assertThat(buffer.drain()).containsEntry("abc123", 1L);
+    assertThat(buffer.values()).isEmpty();
+  }
+
+  @Test
+  void shouldRemoveEveryValueOnDrainAll() {
+    WriteBehindBuffer<String, LongAdder, Long> buffer = new WriteBehindBuffer<>("test-flush", false,
+        key -> new LongAdder(), ClickCounter::takeClicks, Long::sum, () -> {});
+    buffer.get("abc123").increment();
+
+    assertThat(buffer.drainAll()).containsEntry("abc123", 1L);
+    assertThat(buffer.size()).isZero();
+    assertThat(buffer.values()).hasSize(1);
+  }
+}
@@ -0,0 +1,67 @@
+package ru.mws.link_shorter.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class HyperLogLogTest {
+
+  @Test
+  void shouldEstimateSmallCardinalitiesAlmostExactly() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = 0; i < 100; i++) {
+      sketch.offer("10.0.0." + i + "|Mozilla/5.0");
+      sketch.offer("10.0.0." + i + "|Mozilla/5.0");
+    }
+
+    assertThat(sketch.estimate()).isCloseTo(100, within(2L));
+  }
+
+  @Test
+  void shouldEstimateLargeCardinalitiesWithinErrorBound() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = 0; i < 1_000_000; i++) {
+      sketch.offer("visitor-" + i);
+    }
+
+    assertThat((double) sketch.estimate()).isCloseTo(1_000_000, within(1_000_000 * 0.07));
+  }
+
+  @Test
+  void shouldEstimateUnionByMerge() {
+    HyperLogLog monday = new HyperLogLog();
+    HyperLogLog tuesday = new HyperLogLog();
+    for (int i = 0; i < 20_000; i++) {
+      monday.offer("visitor-" + i);
+      tuesday.offer("visitor-" + (i + 10_000));
+    }
+
+    HyperLogLog union = monday.copy();
+    union.merge(tuesday);
+    union.merge(tuesday);
+
+    assertThat((double) union.estimate()).isCloseTo(30_000, within(30_000 * 0.07));
+    assertThat(monday.estimate()).isNotEqualTo(union.estimate());
+  }
+
+  @Test
+  void shouldRoundTripSparseAndDenseForms() {
+    HyperLogLog small = new HyperLogLog();
+    small.offer("a");
+    small.offer("b");
+    HyperLogLog large = new HyperLogLog();
+    for (int i = 0; i < 50_000; i++) {
+      large.offer("visitor-" + i);
+    }
+
+    assertThat(small.toBytes()).hasSize(2 + 2 * 3);
+    assertThat(large.toBytes()).hasSize(2 + (1 << HyperLogLog.PRECISION));
+    assertThat(HyperLogLog.fromBytes(small.toBytes()).estimate()).isEqualTo(small.estimate());
+    assertThat(HyperLogLog.fromBytes(large.toBytes()).estimate()).isEqualTo(large.estimate());
+    assertThat(HyperLogLog.fromBytes(new byte[0]).estimate()).isZero();
+    assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{1, 14}))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,63 @@
+package ru.mws.link_shorter.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpaceSavingTest {
+
+  @Test
+  void shouldKeepHeavyHittersWithBoundedError() {
+    SpaceSaving summary = new SpaceSaving(50);
+    Map<String, Long> exact = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      String key = random.nextInt(10) < 3 ? "hot-" + random.nextInt(5) : "cold-" + random.nextInt(10_000);
+      summary.offer(key, 1);
+      exact.merge(key, 1L, Long::sum);
+    }
+
+    List<SpaceSaving.Entry> top = summary.top(5);
+
+    assertThat(top).extracting(SpaceSaving.Entry::key)
+        .containsExactlyInAnyOrder("hot-0", "hot-1", "hot-2", "hot-3", "hot-4");
+    assertThat(top).allSatisfy(entry -> {
+      assertThat(entry.count()).isGreaterThanOrEqualTo(exact.get(entry.key()));
+      assertThat(entry.count() - entry.error()).isLessThanOrEqualTo(exact.get(entry.key()));
+    });
+  }
+
+  @Test
+  void shouldMergeSummaries() {
+    SpaceSaving first = new SpaceSaving(3);
+    first.offer("a", 10);
+    first.offer("b", 5);
+    SpaceSaving second = new SpaceSaving(3);
+    second.offer("a", 1);
+    second.offer("c", 7);
+
+    first.merge(second);
+
+    assertThat(first.top(3)).containsExactly(
+        new SpaceSaving.Entry("a", 11, 0), new SpaceSaving.Entry("c", 7, 0), new SpaceSaving.Entry("b", 5, 0));
+  }
+
+  @Test
+  void shouldRoundTripThroughBytes() {
+    SpaceSaving summary = new SpaceSaving(2);
+    summary.offer("a", 3);
+    summary.offer("b", 2);
+    summary.offer("c", 1);
+
+    SpaceSaving copy = SpaceSaving.fromBytes(summary.toBytes());
+
+    assertThat(copy.capacity()).isEqualTo(2);
+    assertThat(copy.top(2)).isEqualTo(summary.top(2));
+    assertThat(copy.top(2)).contains(new SpaceSaving.Entry("c", 3, 2));
+  }
+}
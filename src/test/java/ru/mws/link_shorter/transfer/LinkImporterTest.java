@@ -0,0 +1,78 @@
+package ru.mws.link_shorter.transfer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.mws.link_shorter.dto.ImportReport;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.repository.LinkTransferRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class LinkImporterTest {
+  private static final String CSV = """
+      short_key,original_url,click_count
+      key1,https://one.example,1
+      key2,https://two.example,2
+      not a link
+      key4,https://four.example,4,303,60
+      key5,https://five.example,5,,,2020-01-01T00:00:00Z
+      key3,https://three.example,3
+      """;
+
+  private final LinkTransferRepository repository = mock(LinkTransferRepository.class);
+  private final List<List<LinkDto>> batches = new ArrayList<>();
+  private final List<Long> checkpoints = new ArrayList<>();
+
+  @Test
+  void shouldLoadInBatchesAndCountInvalidRows() throws Exception {
+    recordBatches(1);
+
+    ImportReport report = importer(2).importLinks(input(CSV), TransferFormat.CSV, "nightly");
+
+    assertThat(batches).containsExactly(
+        List.of(new LinkDto("key1", "https://one.example", 1), new LinkDto("key2", "https://two.example", 2)),
+        List.of(new LinkDto("key3", "https://three.example", 3)));
+    assertThat(checkpoints).containsExactly(2L, 6L);
+    assertThat(report.rowsRead()).isEqualTo(6);
+    assertThat(report.invalid()).isEqualTo(2);
+    assertThat(report.expired()).isEqualTo(1);
+    assertThat(report.inserted()).isEqualTo(2);
+    assertThat(report.conflicts()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldResumeAfterCheckpoint() throws Exception {
+    when(repository.importCheckpoint("nightly")).thenReturn(2L);
+    recordBatches(1);
+
+    ImportReport report = importer(10).importLinks(input(CSV), TransferFormat.CSV, "nightly");
+
+    assertThat(batches).containsExactly(List.of(new LinkDto("key3", "https://three.example", 3)));
+    assertThat(report.rowsResumed()).isEqualTo(2);
+    assertThat(report.invalid()).isEqualTo(2);
+  }
+
+  private void recordBatches(int insertedPerBatch) {
+    when(repository.importBatch(anyList(), any(), anyLong())).thenAnswer(invocation -> {
+      List<LinkDto> batch = invocation.getArgument(0);
+      batches.add(List.copyOf(batch));
+      checkpoints.add(invocation.getArgument(2));
+      return Math.min(insertedPerBatch, batch.size());
+    });
+  }
+
+  private LinkImporter importer(int batchSize) {
+    return new LinkImporter(repository, mock(PlatformTransactionManager.class), new ObjectMapper(), batchSize);
+  }
+
+  private static ByteArrayInputStream input(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,138 @@
+package ru.mws.link_shorter.transfer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.mws.link_shorter.dto.ImportReport;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+import ru.mws.link_shorter.keygen.ShortKeyCodec;
+import ru.mws.link_shorter.service.ShorterService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@SpringBootTest
+public class LinkTransferIntegrationTest {
+  @Container
+  static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+      .withDatabaseName("testdb")
+      .withUsername("test")
+      .withPassword("test");
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+  }
+
+  @AfterAll
+  static void shutDown() {
+    postgres.close();
+  }
+
+  @Autowired
+  private ShorterService shorterService;
+
+  @Autowired
+  private LinkExporter linkExporter;
+
+  @Autowired
+  private LinkImporter linkImporter;
+
+  @Test
+  void shouldImportWithCopySkippingConflictsAndExportResult() throws Exception {
+    LinkDto existing = shorterService.createShortLinkWithLen("https://existing-transfer-test.com", 6);
+    String csv = "short_key,original_url,click_count\n"
+        + "imp001,\"https://imported-transfer-test.com/?a=1,2\",5\n"
+        + existing.shortKey() + ",https://other-transfer-test.com,1\n"
+        + "imp002,https://existing-transfer-test.com,1\n";
+
+    ImportReport report = linkImporter.importLinks(input(csv), TransferFormat.CSV, "transfer-test");
+
+    assertThat(report.inserted()).isEqualTo(1);
+    assertThat(report.conflicts()).isEqualTo(2);
+    assertThat(shorterService.getOriginalLinkByShortKey("imp001").originalUrl())
+        .isEqualTo("https://imported-transfer-test.com/?a=1,2");
+    assertThat(shorterService.createShortLinkWithLen("https://other-transfer-test.com", 6).shortKey())
+        .isNotEqualTo(existing.shortKey());
+
+    ImportReport rerun = linkImporter.importLinks(input(csv), TransferFormat.CSV, "transfer-test");
+    assertThat(rerun.rowsResumed()).isEqualTo(3);
+    assertThat(rerun.inserted()).isZero();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    linkExporter.export(out, TransferFormat.NDJSON, "imp000");
+    assertThat(out.toString(StandardCharsets.UTF_8))
+        .contains("{\"shortKey\":\"imp001\",\"originalUrl\":\"https://imported-transfer-test.com/?a=1,2\",\"clickCount\":5}");
+  }
+
+  @Test
+  void shouldCarryRedirectModeWithoutClaimingTheUrl() throws Exception {
+    LinkDto plain = shorterService.createShortLinkWithLen("https://redirect-transfer-test.com", 6);
+    String csv = "short_key,original_url,click_count,redirect_type,redirect_max_age\n"
+        + "imr001,https://redirect-transfer-test.com,3,301,3600\n";
+
+    ImportReport report = linkImporter.importLinks(input(csv), TransferFormat.CSV, null);
+
+    assertThat(report.inserted()).isEqualTo(1);
+    assertThat(shorterService.getOriginalLinkByShortKey("imr001").redirect()).isEqualTo(new RedirectMode(301, 3600));
+    assertThat(shorterService.createShortLinkWithLen("https://redirect-transfer-test.com", 6).shortKey())
+        .isEqualTo(plain.shortKey());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    linkExporter.export(out, TransferFormat.CSV, "imr000");
+    assertThat(out.toString(StandardCharsets.UTF_8)).contains("imr001,https://redirect-transfer-test.com,3,301,3600,\n");
+  }
+
+  @Test
+  void shouldCarryExpiryAndLeaveExpiredLinksBehind() throws Exception {
+    Instant expiresAt = Instant.now().plus(Duration.ofDays(1)).truncatedTo(ChronoUnit.MILLIS);
+    String csv = "short_key,original_url,click_count,redirect_type,redirect_max_age,expires_at\n"
+        + "ime001,https://expiring-transfer-test.com,2,,," + expiresAt + "\n"
+        + "ime002,https://expired-transfer-test.com,2,,,2020-01-01T00:00:00Z\n";
+
+    ImportReport report = linkImporter.importLinks(input(csv), TransferFormat.CSV, null);
+
+    assertThat(report.inserted()).isEqualTo(1);
+    assertThat(report.expired()).isEqualTo(1);
+    assertThat(shorterService.getOriginalLinkByShortKey("ime001").expiresAt()).isEqualTo(expiresAt);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    linkExporter.export(out, TransferFormat.CSV, "ime000");
+    assertThat(out.toString(StandardCharsets.UTF_8))
+        .contains("ime001,https://expiring-transfer-test.com,2,,," + expiresAt + "\n");
+  }
+
+  @Test
+  void shouldCreateLinksAfterImportingTheFirstKeysOfALength() throws Exception {
+    StringBuilder csv = new StringBuilder("short_key,original_url,click_count\n");
+    for (int id = 0; id < 10; id++) {
+      csv.append(ShortKeyCodec.encode(id, 9)).append(",https://sequence-transfer-test.com/").append(id).append(",0\n");
+    }
+
+    ImportReport report = linkImporter.importLinks(input(csv.toString()), TransferFormat.CSV, null);
+    LinkDto created = shorterService.createShortLinkWithLen("https://sequence-transfer-test.com/new", 9);
+
+    assertThat(report.inserted()).isEqualTo(10);
+    assertThat(ShortKeyCodec.decode(created.shortKey())).isGreaterThanOrEqualTo(10);
+  }
+
+  private static ByteArrayInputStream input(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
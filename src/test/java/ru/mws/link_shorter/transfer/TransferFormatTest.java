@@ -0,0 +1,74 @@
+package ru.mws.link_shorter.transfer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.mws.link_shorter.dto.LinkDto;
+import ru.mws.link_shorter.dto.RedirectMode;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferFormatTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void shouldRoundTripCsvWithQuotedFields() throws Exception {
+    LinkDto link = new LinkDto("abc123", "https://example.com/?q=a,b&name=\"x\"", 42);
+
+    String line = TransferFormat.CSV.format(link, objectMapper);
+
+    assertThat(line).isEqualTo("abc123,\"https://example.com/?q=a,b&name=\"\"x\"\"\",42,,,");
+    assertThat(TransferFormat.CSV.parse(line, objectMapper)).isEqualTo(link);
+  }
+
+  @Test
+  void shouldRoundTripRedirectModeInCsv() throws Exception {
+    LinkDto link = new LinkDto("abc123", "https://example.com", 42, new RedirectMode(308, 86400));
+
+    String line = TransferFormat.CSV.format(link, objectMapper);
+
+    assertThat(line).isEqualTo("abc123,https://example.com,42,308,86400,");
+    assertThat(TransferFormat.CSV.parse(line, objectMapper)).isEqualTo(link);
+  }
+
+  @Test
+  void shouldRoundTripExpiryInCsv() throws Exception {
+    LinkDto link = new LinkDto("abc123", "https://example.com", 42, null, Instant.parse("2030-01-01T00:00:00Z"));
+
+    String line = TransferFormat.CSV.format(link, objectMapper);
+
+    assertThat(line).isEqualTo("abc123,https://example.com,42,,,2030-01-01T00:00:00Z");
+    assertThat(TransferFormat.CSV.parse(line, objectMapper)).isEqualTo(link);
+  }
+
+  @Test
+  void shouldReadCsvWithoutRedirectColumns() throws Exception {
+    assertThat(TransferFormat.CSV.isHeader("short_key,original_url,click_count")).isTrue();
+    assertThat(TransferFormat.CSV.parse("abc123,https://example.com,42", objectMapper))
+        .isEqualTo(new LinkDto("abc123", "https://example.com", 42));
+  }
+
+  @Test
+  void shouldRoundTripNdjson() throws Exception {
+    LinkDto link = new LinkDto("abc123", "https://example.com", 7, new RedirectMode(301, 60));
+
+    String line = TransferFormat.NDJSON.format(link, objectMapper);
+
+    assertThat(line).doesNotContain("\n");
+    assertThat(TransferFormat.NDJSON.parse(line, objectMapper)).isEqualTo(link);
+  }
+
+  @Test
+  void shouldRejectCsvLineWithWrongFieldCount() {
+    assertThatThrownBy(() -> TransferFormat.CSV.parse("abc123,https://example.com", objectMapper))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldPickFormatFromFileName() {
+    assertThat(TransferFormat.ofFileName("links.csv.gz")).isEqualTo(TransferFormat.CSV);
+    assertThat(TransferFormat.ofFileName("links.ndjson")).isEqualTo(TransferFormat.NDJSON);
+  }
+}